@@ -248,6 +248,20 @@ public class ToolLauncher extends JFrame {
         JLabel windowCountLabel = new JLabel("窗口数: 0");
         statusBar.add(windowCountLabel, BorderLayout.EAST);
 
+        // 界面响应：最近 10 秒事件派发耗时的 p99 和卡顿次数
+        JLabel latencyLabel = new JLabel("", SwingConstants.RIGHT);
+        latencyLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 16));
+        statusBar.add(latencyLabel, BorderLayout.CENTER);
+        EdtWatchdog watchdog = EdtWatchdog.get();
+        if (watchdog != null) {
+            Timer latencyTimer = new Timer(1000, e -> {
+                long p99 = watchdog.getRecentHistogram().getValueAtPercentile(99);
+                latencyLabel.setText(String.format("界面延迟 p99: %.1f ms | 卡顿: %d", p99 / 1e6, watchdog.getStallCount()));
+                latencyLabel.setForeground(p99 >= watchdog.getStallThresholdMillis() * 1_000_000 ? Color.RED : Color.BLACK);
+            });
+            latencyTimer.start();
+        }
+
         // 将状态栏添加到底部面板
         JPanel bottomPanel = (JPanel) ((BorderLayout) getContentPane().getLayout()).getLayoutComponent(BorderLayout.SOUTH);
         bottomPanel.add(statusBar, BorderLayout.SOUTH);
@@ -690,6 +704,9 @@ public class ToolLauncher extends JFrame {
         // 设置全局字体
         setGlobalFont();
 
+        // 监控事件派发线程，记录界面延迟并捕获卡顿时的调用栈
+        EdtWatchdog.install();
+
         SwingUtilities.invokeLater(() -> new ToolLauncher().setVisible(true));
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package cn.moerain.javaows.applications;
 
+import cn.moerain.javaows.misc.NamedThreadFactory;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -93,7 +94,7 @@ public class Downloader extends JFrame {
             return;
         }
 
-        executorService = Executors.newFixedThreadPool(threadCount);
+        executorService = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("Downloader-Worker"));
 
         try {
             URL fileUrl = new URL(url);
@@ -0,0 +1,206 @@
+package cn.moerain.javaows.applications;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+// 火焰图（根在上方的冰柱图）：每层一个调用帧，宽度按权重占比分配。
+// 单击节点放大到该节点，双击空白处恢复；鼠标悬停显示方法名和权重
+class FlameGraph extends JComponent implements Scrollable {
+    private static final int ROW_HEIGHT = 17;
+    // 窄于该宽度的节点不绘制
+    private static final double MIN_WIDTH = 0.5;
+
+    private Profile.Node root;
+    private Profile.Node focus;
+    private Profile.Kind kind = Profile.Kind.CPU;
+    private int depth;
+
+    FlameGraph() {
+        setFont(new Font("SansSerif", Font.PLAIN, 11));
+        ToolTipManager.sharedInstance().registerComponent(this);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Profile.Node node = nodeAt(e.getX(), e.getY());
+                if (node != null) {
+                    setFocus(node);
+                } else if (e.getClickCount() == 2) {
+                    setFocus(root);
+                }
+            }
+        });
+    }
+
+    void setRoot(Profile.Node root, Profile.Kind kind) {
+        this.root = root;
+        this.focus = root;
+        this.kind = kind;
+        // 放大后的节点上方还要画出祖先，所以高度按整棵树计算
+        depth = root != null ? root.getDepth() : 0;
+        revalidate();
+        repaint();
+    }
+
+    void resetZoom() {
+        setFocus(root);
+    }
+
+    private void setFocus(Profile.Node node) {
+        focus = node;
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(400, Math.max(1, depth) * ROW_HEIGHT);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        Profile.Node node = nodeAt(e.getX(), e.getY());
+        if (node == null || root == null || root.weight == 0) return null;
+        return String.format("<html><b>%s</b><br>%s (%.1f%%)</html>",
+            escape(node.name), kind.format(node.weight), node.weight * 100.0 / root.weight);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (root == null || root.weight == 0) {
+            g.setColor(Color.GRAY);
+            g.drawString("没有样本", 10, 20);
+            return;
+        }
+
+        // 焦点节点的祖先占满整行，颜色变淡
+        List<Profile.Node> path = ancestors(focus);
+        for (int level = 0; level < path.size(); level++) {
+            drawNode(g, path.get(level), 0, getWidth(), level, true);
+        }
+        paintSubtree(g, focus, 0, getWidth(), path.size());
+    }
+
+    private void paintSubtree(Graphics g, Profile.Node node, double x, double width, int level) {
+        drawNode(g, node, x, width, level, false);
+        double childX = x;
+        for (Profile.Node child : node.getChildren()) {
+            double childWidth = width * child.weight / node.weight;
+            if (childWidth >= MIN_WIDTH) {
+                paintSubtree(g, child, childX, childWidth, level + 1);
+            }
+            childX += childWidth;
+        }
+    }
+
+    private void drawNode(Graphics g, Profile.Node node, double x, double width, int level, boolean faded) {
+        int left = (int) x;
+        int right = (int) (x + width);
+        int y = level * ROW_HEIGHT;
+        g.setColor(faded ? new Color(225, 225, 225) : colorFor(node.name));
+        g.fillRect(left, y, Math.max(1, right - left - 1), ROW_HEIGHT - 1);
+
+        FontMetrics metrics = g.getFontMetrics();
+        int available = right - left - 6;
+        if (available > metrics.charWidth('m') * 3) {
+            String text = fit(node.name, metrics, available);
+            g.setColor(Color.BLACK);
+            g.drawString(text, left + 3, y + ROW_HEIGHT - 5);
+        }
+    }
+
+    // 与绘制相同的布局规则查找坐标处的节点
+    private Profile.Node nodeAt(int px, int py) {
+        if (root == null || root.weight == 0) return null;
+        int level = py / ROW_HEIGHT;
+        List<Profile.Node> path = ancestors(focus);
+        if (level < path.size()) return path.get(level);
+
+        Profile.Node node = focus;
+        double x = 0;
+        double width = getWidth();
+        for (int current = path.size(); current < level; current++) {
+            Profile.Node next = null;
+            double childX = x;
+            for (Profile.Node child : node.getChildren()) {
+                double childWidth = width * child.weight / node.weight;
+                if (px >= childX && px < childX + childWidth && childWidth >= MIN_WIDTH) {
+                    next = child;
+                    x = childX;
+                    width = childWidth;
+                    break;
+                }
+                childX += childWidth;
+            }
+            if (next == null) return null;
+            node = next;
+        }
+        return px >= x && px < x + width ? node : null;
+    }
+
+    private static List<Profile.Node> ancestors(Profile.Node node) {
+        List<Profile.Node> path = new ArrayList<>();
+        for (Profile.Node n = node != null ? node.parent : null; n != null; n = n.parent) {
+            path.add(0, n);
+        }
+        return path;
+    }
+
+    // 同一个类的方法颜色相同：暖色调，由类名的哈希决定深浅
+    private static Color colorFor(String name) {
+        if (name.startsWith("new ") || name.startsWith("synchronized ") || name.startsWith("park ")) {
+            return new Color(120, 180, 230);
+        }
+        int dot = name.lastIndexOf('.');
+        int hash = (dot > 0 ? name.substring(0, dot) : name).hashCode();
+        int green = 90 + Math.floorMod(hash, 130);
+        int blue = Math.floorMod(hash >> 8, 60);
+        return new Color(230, green, blue);
+    }
+
+    private static String fit(String text, FontMetrics metrics, int width) {
+        if (metrics.stringWidth(text) <= width) return text;
+        // 优先保留方法名和简单类名
+        int packageEnd = text.lastIndexOf('.', Math.max(0, text.lastIndexOf('.') - 1));
+        String shorter = packageEnd > 0 ? text.substring(packageEnd + 1) : text;
+        if (metrics.stringWidth(shorter) <= width) return shorter;
+        while (shorter.length() > 1 && metrics.stringWidth(shorter + "…") > width) {
+            shorter = shorter.substring(0, shorter.length() - 1);
+        }
+        return shorter + "…";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(400, 300);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return ROW_HEIGHT;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return visibleRect.height - ROW_HEIGHT;
+    }
+
+    // 宽度始终跟随视口，只在纵向滚动
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -1,5 +1,6 @@
 package cn.moerain.javaows.applications;
 
+import cn.moerain.javaows.misc.FileTypeRegistry;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
@@ -172,9 +173,7 @@ public class ImgViewer extends JFrame {
 
     private void openFile() {
         JFileChooser fileChooser = new JFileChooser();
-        FileNameExtensionFilter filter = new FileNameExtensionFilter(
-            "图片文件 (*.jpg, *.jpeg, *.png, *.bmp)",
-            "jpg", "jpeg", "png", "bmp");
+        FileNameExtensionFilter filter = FileTypeRegistry.fileFilter("图片文件", FileTypeRegistry.IMAGE_VIEWER);
         fileChooser.setFileFilter(filter);
 
         int result = fileChooser.showOpenDialog(this);
@@ -202,11 +201,7 @@ public class ImgViewer extends JFrame {
 
     private void loadImagesFromDirectory(File directory) {
         if (directory != null && directory.isDirectory()) {
-            imageFiles = directory.listFiles(file -> {
-                String name = file.getName().toLowerCase();
-                return name.endsWith(".jpg") || name.endsWith(".jpeg") ||
-                       name.endsWith(".png") || name.endsWith(".bmp");
-            });
+            imageFiles = directory.listFiles(file -> FileTypeRegistry.opensWith(file.getName(), FileTypeRegistry.IMAGE_VIEWER));
 
             if (imageFiles != null) {
                 // 找到当前图片的索引
@@ -1,5 +1,6 @@
 package cn.moerain.javaows.applications;
 
+import cn.moerain.javaows.misc.NamedThreadFactory;
 import java.util.List;
 import javax.swing.*;
 import java.awt.*;
@@ -119,7 +120,7 @@ public class JavaLauncher extends JFrame {
             }
         });
 
-        Executors.newSingleThreadExecutor().submit(() -> {
+        Executors.newSingleThreadExecutor(new NamedThreadFactory("JavaLauncher-Process")).submit(() -> {
             try {
                 ProcessBuilder pb = new ProcessBuilder(cmd);
                 pb.directory(workDir);
@@ -0,0 +1,153 @@
+package cn.moerain.javaows.applications;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 进程内 JFR 记录：在 Javaows 自己的 JVM 中开启执行采样、分配采样和锁竞争事件，
+// 记录指定时长后写入临时文件，再用 RecordingFile 读回并聚合为 Profile。
+// 空闲线程等待任务时的 park 不是锁竞争，按栈中的等待方法过滤掉
+class JfrProfiler {
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+    // 短于该时长的锁等待不记录
+    private static final Duration LOCK_THRESHOLD = Duration.ofMillis(5);
+    // 线程池、事件队列和定时器空闲时停在这些方法里
+    private static final Set<String> IDLE_WAIT_FRAMES = new HashSet<>(Arrays.asList(
+        "java.awt.EventQueue.getNextEvent",
+        "java.util.concurrent.ThreadPoolExecutor.getTask",
+        "java.util.concurrent.ScheduledThreadPoolExecutor$DelayedWorkQueue.take",
+        "java.util.concurrent.ForkJoinPool.awaitWork",
+        "javax.swing.TimerQueue.run"
+    ));
+
+    static boolean isAvailable() {
+        try {
+            return FlightRecorder.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    // 阻塞当前线程直到记录结束，返回 .jfr 文件
+    static Path record(Duration duration) throws IOException, InterruptedException {
+        Path file = Files.createTempFile("javaows-profile-", ".jfr");
+        boolean recorded = false;
+        try (Recording recording = new Recording()) {
+            recording.setName("Javaows TaskMgr");
+            recording.enable(EXECUTION_SAMPLE).withPeriod(Duration.ofMillis(10));
+            recording.enable(ALLOCATION_SAMPLE).with("throttle", "300/s");
+            recording.enable(MONITOR_ENTER).withThreshold(LOCK_THRESHOLD);
+            recording.enable(THREAD_PARK).withThreshold(LOCK_THRESHOLD);
+            recording.setToDisk(true);
+            recording.start();
+            try {
+                Thread.sleep(duration.toMillis());
+            } finally {
+                recording.stop();
+            }
+            recording.dump(file);
+            recorded = true;
+        } finally {
+            if (!recorded) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return file;
+    }
+
+    static Profile parse(Path file, long durationMillis) throws IOException {
+        Profile profile = new Profile(durationMillis);
+        // 同一方法在不同样本中重复出现，名称只生成一次
+        Map<RecordedMethod, String> names = new HashMap<>();
+        List<String> frames = new ArrayList<>();
+
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String type = event.getEventType().getName();
+                if (!collectFrames(event.getStackTrace(), names, frames)) continue;
+
+                switch (type) {
+                    case EXECUTION_SAMPLE:
+                        profile.add(Profile.Kind.CPU, isEventThread(event.getThread("sampledThread")),
+                            frames, frames.get(0), null, 1);
+                        break;
+                    case ALLOCATION_SAMPLE: {
+                        String objectClass = className(event.getClass("objectClass"));
+                        profile.add(Profile.Kind.ALLOCATION, isEventThread(event.getThread()),
+                            frames, frames.get(0) + " → " + objectClass, "new " + objectClass, event.getLong("weight"));
+                        break;
+                    }
+                    case MONITOR_ENTER: {
+                        String monitorClass = className(event.getClass("monitorClass"));
+                        profile.add(Profile.Kind.LOCK, isEventThread(event.getThread()),
+                            frames, frames.get(0) + " 等待 " + monitorClass, "synchronized " + monitorClass,
+                            event.getDuration().toNanos());
+                        break;
+                    }
+                    case THREAD_PARK: {
+                        if (isIdleWait(frames)) break;
+                        String parkedClass = className(event.getClass("parkedClass"));
+                        profile.add(Profile.Kind.LOCK, isEventThread(event.getThread()),
+                            frames, frames.get(0) + " 等待 " + parkedClass, "park " + parkedClass,
+                            event.getDuration().toNanos());
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        return profile;
+    }
+
+    // 把栈帧转换为 "类.方法" 列表，从栈顶开始
+    private static boolean collectFrames(RecordedStackTrace stackTrace, Map<RecordedMethod, String> names, List<String> frames) {
+        frames.clear();
+        if (stackTrace == null) return false;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            RecordedMethod method = frame.getMethod();
+            if (method == null) continue;
+            frames.add(names.computeIfAbsent(method, m -> className(m.getType()) + "." + m.getName()));
+        }
+        if (stackTrace.isTruncated()) {
+            frames.add("...");
+        }
+        return !frames.isEmpty();
+    }
+
+    private static boolean isIdleWait(List<String> frames) {
+        for (String frame : frames) {
+            if (IDLE_WAIT_FRAMES.contains(frame)) return true;
+        }
+        return false;
+    }
+
+    private static String className(RecordedClass recordedClass) {
+        return recordedClass != null ? recordedClass.getName() : "?";
+    }
+
+    private static boolean isEventThread(RecordedThread thread) {
+        return thread != null && thread.getJavaName() != null && thread.getJavaName().startsWith("AWT-EventQueue");
+    }
+}
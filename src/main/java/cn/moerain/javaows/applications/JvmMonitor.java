@@ -0,0 +1,394 @@
+package cn.moerain.javaows.applications;
+
+import cn.moerain.javaows.misc.EdtWatchdog;
+import cn.moerain.javaows.misc.LatencyHistogram;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Javaows 自身 JVM 的内部指标：GC 通知（停顿直方图）、每个线程的 CPU 时间和分配字节数、
+// 内存池、JIT 编译和代码缓存。线程按名称前缀归属到应用（线程池由 NamedThreadFactory 命名）。
+// sample() 在采样线程中每秒调用一次，结果发布为不可变的 Snapshot，界面线程只读取快照
+class JvmMonitor {
+    // GC 停顿直方图的桶上界（毫秒，含上界），最后一个桶为 > 1000
+    static final long[] PAUSE_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+    static class ThreadStat {
+        final String name;
+        final String app;
+        final Thread.State state;
+        final double cpuPercent;
+        final double allocationRate;
+        final long allocatedBytes;
+
+        ThreadStat(String name, String app, Thread.State state, double cpuPercent, double allocationRate, long allocatedBytes) {
+            this.name = name;
+            this.app = app;
+            this.state = state;
+            this.cpuPercent = cpuPercent;
+            this.allocationRate = allocationRate;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    static class AppStat {
+        final String app;
+        int threads;
+        double cpuPercent;
+        double allocationRate;
+
+        AppStat(String app) {
+            this.app = app;
+        }
+    }
+
+    static class GcStat {
+        final String name;
+        final long count;
+        final long timeMillis;
+        final long maxPauseMillis;
+        final String lastCause;
+
+        GcStat(String name, long count, long timeMillis, long maxPauseMillis, String lastCause) {
+            this.name = name;
+            this.count = count;
+            this.timeMillis = timeMillis;
+            this.maxPauseMillis = maxPauseMillis;
+            this.lastCause = lastCause;
+        }
+    }
+
+    static class PoolStat {
+        final String name;
+        final boolean heap;
+        final long used;
+        final long committed;
+        final long max;
+        final long usedAfterGc;
+
+        PoolStat(String name, boolean heap, long used, long committed, long max, long usedAfterGc) {
+            this.name = name;
+            this.heap = heap;
+            this.used = used;
+            this.committed = committed;
+            this.max = max;
+            this.usedAfterGc = usedAfterGc;
+        }
+    }
+
+    static class Snapshot {
+        List<ThreadStat> threads = Collections.emptyList();
+        List<AppStat> apps = Collections.emptyList();
+        List<GcStat> collectors = Collections.emptyList();
+        List<PoolStat> pools = Collections.emptyList();
+        long[] pauseCounts = new long[PAUSE_BOUNDS_MILLIS.length + 1];
+        long pauseMillisTotal;
+        double allocationRate;
+        long totalAllocatedBytes;
+        String compilerName = "";
+        long compilationMillis = -1;
+        double compilationPercent;
+        long codeCacheUsed;
+        long codeCacheMax;
+        int loadedClasses;
+        long unloadedClasses;
+
+        // 界面响应，没有安装 EdtWatchdog 时 edtEvents 为 -1
+        long edtEvents = -1;
+        long edtP50Nanos;
+        long edtP99Nanos;
+        long edtMaxNanos;
+        long responseP99Nanos;
+        long stallCount;
+        List<EdtWatchdog.Stall> stalls = Collections.emptyList();
+    }
+
+    // 每个线程上一次采样的累计值
+    private static class ThreadCounters {
+        long cpuNanos;
+        long allocatedBytes;
+        int generation;
+    }
+
+    private static class CollectorState {
+        long maxPauseMillis;
+        String lastCause = "";
+    }
+
+    final TimeSeries allocationRate = new TimeSeries();
+    final TimeSeries gcPauseMillis = new TimeSeries();
+    final TimeSeries codeCacheUsed = new TimeSeries();
+    final TimeSeries edtP99Millis = new TimeSeries();
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean sunThreadBean =
+        threadBean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threadBean : null;
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<MemoryPoolMXBean> poolBeans = ManagementFactory.getMemoryPoolMXBeans();
+    private final CompilationMXBean compilationBean = ManagementFactory.getCompilationMXBean();
+    private final ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+    private final int processorCount = Runtime.getRuntime().availableProcessors();
+
+    private final Map<Long, ThreadCounters> threadCounters = new HashMap<>();
+    private int generation;
+    private long lastSampleNanos;
+    private long lastCompilationMillis = -1;
+    private long totalAllocatedBytes;
+
+    // 以下由 GC 通知线程写入
+    private final long[] pauseCounts = new long[PAUSE_BOUNDS_MILLIS.length + 1];
+    private long pauseMillisTotal;
+    private final Map<String, CollectorState> collectorStates = new HashMap<>();
+    private long pendingPauseMillis;
+
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            onCollection(info.getGcName(), info.getGcCause(), info.getGcInfo().getDuration());
+        }
+    };
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    JvmMonitor() {
+        if (threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        if (sunThreadBean != null && sunThreadBean.isThreadAllocatedMemorySupported()
+                && !sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+            sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            if (gcBean instanceof NotificationEmitter) {
+                ((NotificationEmitter) gcBean).addNotificationListener(gcListener, null, null);
+            }
+        }
+    }
+
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void close() {
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            if (gcBean instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) gcBean).removeNotificationListener(gcListener);
+                } catch (ListenerNotFoundException e) {
+                    // 已经移除
+                }
+            }
+        }
+    }
+
+    // ZGC、Shenandoah 的 Cycles 和 G1 的 Concurrent 收集器报告的是并发周期时长，不是停顿
+    private static boolean isConcurrent(String gcName) {
+        return gcName.contains("Cycles") || gcName.contains("Concurrent");
+    }
+
+    private synchronized void onCollection(String gcName, String cause, long durationMillis) {
+        CollectorState state = collectorStates.computeIfAbsent(gcName, name -> new CollectorState());
+        state.lastCause = cause;
+        if (isConcurrent(gcName)) return;
+
+        state.maxPauseMillis = Math.max(state.maxPauseMillis, durationMillis);
+        pendingPauseMillis += durationMillis;
+        pauseMillisTotal += durationMillis;
+        int bucket = 0;
+        while (bucket < PAUSE_BOUNDS_MILLIS.length && durationMillis > PAUSE_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        pauseCounts[bucket]++;
+    }
+
+    void sample() {
+        long nowNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        double seconds = lastSampleNanos > 0 ? (nowNanos - lastSampleNanos) / 1e9 : 0;
+        boolean firstSample = lastSampleNanos == 0;
+        lastSampleNanos = nowNanos;
+
+        Snapshot next = new Snapshot();
+        sampleThreads(next, seconds, firstSample);
+        sampleMemoryPools(next);
+        sampleCompilation(next, seconds);
+        next.loadedClasses = classLoadingBean.getLoadedClassCount();
+        next.unloadedClasses = classLoadingBean.getUnloadedClassCount();
+        sampleEventThread(next, now);
+
+        long pauseMillis;
+        synchronized (this) {
+            List<GcStat> collectors = new ArrayList<>();
+            for (GarbageCollectorMXBean gcBean : gcBeans) {
+                CollectorState state = collectorStates.get(gcBean.getName());
+                collectors.add(new GcStat(gcBean.getName(), gcBean.getCollectionCount(), gcBean.getCollectionTime(),
+                    state != null ? state.maxPauseMillis : 0, state != null ? state.lastCause : ""));
+            }
+            next.collectors = collectors;
+            next.pauseCounts = pauseCounts.clone();
+            next.pauseMillisTotal = pauseMillisTotal;
+            pauseMillis = pendingPauseMillis;
+            pendingPauseMillis = 0;
+        }
+
+        if (!firstSample) {
+            allocationRate.add(now, next.allocationRate);
+            gcPauseMillis.add(now, pauseMillis);
+        }
+        codeCacheUsed.add(now, next.codeCacheUsed);
+        snapshot = next;
+    }
+
+    // 已结束线程在本次间隔内的分配无法再读取，分配速率因此会略微偏低
+    private void sampleThreads(Snapshot next, double seconds, boolean firstSample) {
+        long[] ids = threadBean.getAllThreadIds();
+        ThreadInfo[] infos = threadBean.getThreadInfo(ids);
+        long[] cpuTimes = new long[ids.length];
+        long[] allocated = new long[ids.length];
+        if (sunThreadBean != null) {
+            cpuTimes = sunThreadBean.getThreadCpuTime(ids);
+            allocated = sunThreadBean.isThreadAllocatedMemoryEnabled()
+                ? sunThreadBean.getThreadAllocatedBytes(ids) : allocated;
+        } else if (threadBean.isThreadCpuTimeEnabled()) {
+            for (int i = 0; i < ids.length; i++) {
+                cpuTimes[i] = threadBean.getThreadCpuTime(ids[i]);
+            }
+        }
+
+        generation++;
+        long allocatedInInterval = 0;
+        List<ThreadStat> threads = new ArrayList<>(ids.length);
+        Map<String, AppStat> apps = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo info = infos[i];
+            // 采样期间结束的线程没有信息
+            if (info == null) continue;
+            long cpuNanos = Math.max(0, cpuTimes[i]);
+            long allocatedBytes = Math.max(0, allocated[i]);
+
+            ThreadCounters counters = threadCounters.get(ids[i]);
+            // 上次采样之后才启动的线程，其全部分配都发生在本次间隔内
+            long cpuDelta = counters != null ? cpuNanos - counters.cpuNanos : firstSample ? 0 : cpuNanos;
+            long allocDelta = counters != null ? allocatedBytes - counters.allocatedBytes : firstSample ? 0 : allocatedBytes;
+            if (counters == null) {
+                counters = new ThreadCounters();
+                threadCounters.put(ids[i], counters);
+            }
+            counters.cpuNanos = cpuNanos;
+            counters.allocatedBytes = allocatedBytes;
+            counters.generation = generation;
+
+            double cpuPercent = seconds > 0 ? Math.max(0, cpuDelta) / (seconds * 1e9) * 100 : 0;
+            double rate = seconds > 0 ? Math.max(0, allocDelta) / seconds : 0;
+            allocatedInInterval += Math.max(0, allocDelta);
+
+            String app = appOf(info.getThreadName());
+            threads.add(new ThreadStat(info.getThreadName(), app, info.getThreadState(), cpuPercent, rate, allocatedBytes));
+            AppStat appStat = apps.computeIfAbsent(app, AppStat::new);
+            appStat.threads++;
+            appStat.cpuPercent += cpuPercent;
+            appStat.allocationRate += rate;
+        }
+        for (Iterator<ThreadCounters> it = threadCounters.values().iterator(); it.hasNext(); ) {
+            if (it.next().generation != generation) it.remove();
+        }
+
+        threads.sort(Comparator.comparingDouble((ThreadStat t) -> t.allocationRate)
+            .thenComparingDouble(t -> t.cpuPercent).reversed());
+        List<AppStat> appList = new ArrayList<>(apps.values());
+        appList.sort(Comparator.comparingDouble((AppStat a) -> a.allocationRate).reversed());
+
+        totalAllocatedBytes += allocatedInInterval;
+        next.threads = threads;
+        next.apps = appList;
+        next.allocationRate = seconds > 0 ? allocatedInInterval / seconds : 0;
+        next.totalAllocatedBytes = totalAllocatedBytes;
+    }
+
+    private void sampleMemoryPools(Snapshot next) {
+        List<PoolStat> pools = new ArrayList<>(poolBeans.size());
+        for (MemoryPoolMXBean pool : poolBeans) {
+            if (!pool.isValid()) continue;
+            MemoryUsage usage = pool.getUsage();
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            pools.add(new PoolStat(pool.getName(), pool.getType() == MemoryType.HEAP,
+                usage.getUsed(), usage.getCommitted(), usage.getMax(), afterGc != null ? afterGc.getUsed() : -1));
+            // 分段代码缓存为 CodeHeap 'non-nmethods' 等三个池，未分段时为 Code Cache
+            if (pool.getName().startsWith("CodeHeap") || pool.getName().equals("Code Cache")) {
+                next.codeCacheUsed += usage.getUsed();
+                next.codeCacheMax += Math.max(0, usage.getMax());
+            }
+        }
+        next.pools = pools;
+    }
+
+    private void sampleCompilation(Snapshot next, double seconds) {
+        if (compilationBean == null) return;
+        next.compilerName = compilationBean.getName();
+        if (!compilationBean.isCompilationTimeMonitoringSupported()) return;
+
+        long millis = compilationBean.getTotalCompilationTime();
+        next.compilationMillis = millis;
+        // 编译线程的耗时占所有处理器时间的比例
+        if (lastCompilationMillis >= 0 && seconds > 0) {
+            next.compilationPercent = Math.min(100, (millis - lastCompilationMillis) / (seconds * 1000 * processorCount) * 100);
+        }
+        lastCompilationMillis = millis;
+    }
+
+    private void sampleEventThread(Snapshot next, long now) {
+        EdtWatchdog watchdog = EdtWatchdog.get();
+        if (watchdog == null) return;
+
+        LatencyHistogram recent = watchdog.getRecentHistogram();
+        next.edtEvents = watchdog.getTotalHistogram().getCount();
+        next.edtP50Nanos = recent.getValueAtPercentile(50);
+        next.edtP99Nanos = recent.getValueAtPercentile(99);
+        next.edtMaxNanos = watchdog.getTotalHistogram().getMaxNanos();
+        next.responseP99Nanos = watchdog.getResponseHistogram().getValueAtPercentile(99);
+        next.stallCount = watchdog.getStallCount();
+        next.stalls = watchdog.getRecentStalls();
+        edtP99Millis.add(now, watchdog.getRecentHistogram(1).getValueAtPercentile(99) / 1e6);
+    }
+
+    // 线程名到应用：命名线程取第一个 "-" 之前的部分，其余按 JVM 和 AWT 的线程名归类
+    static String appOf(String threadName) {
+        if (threadName.startsWith("AWT-EventQueue")) return "Swing 事件线程";
+        if (threadName.startsWith("AWT-") || threadName.startsWith("Java2D") || threadName.startsWith("TimerQueue")
+                || threadName.startsWith("Image ") || threadName.startsWith("SwingWorker")) {
+            return "Swing";
+        }
+        if (threadName.startsWith("C1 ") || threadName.startsWith("C2 ") || threadName.startsWith("GC ")
+                || threadName.startsWith("G1 ") || threadName.equals("Reference Handler") || threadName.equals("Finalizer")
+                || threadName.equals("Signal Dispatcher") || threadName.equals("Common-Cleaner")
+                || threadName.equals("Notification Thread") || threadName.startsWith("Attach ")) {
+            return "JVM";
+        }
+        int dash = threadName.indexOf('-');
+        if (dash > 0 && !threadName.startsWith("pool-") && !threadName.startsWith("Thread-")
+                && !threadName.startsWith("ForkJoinPool")) {
+            return threadName.substring(0, dash);
+        }
+        return threadName.equals("main") ? "main" : "其他";
+    }
+}
@@ -0,0 +1,285 @@
+package cn.moerain.javaows.applications;
+
+import cn.moerain.javaows.misc.EdtWatchdog;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// 任务管理器的 JVM 选项卡：分配速率、GC 停顿、代码缓存和界面延迟曲线，
+// 以及按分配速率排序的线程和应用、内存池、GC 收集器和停顿直方图、界面卡顿记录
+class JvmPanel extends JPanel {
+    private static final int MAX_THREAD_ROWS = 30;
+
+    // 只读表格的数据模型，每次更新整体替换行
+    private static class RowsTableModel extends AbstractTableModel {
+        private final String[] columns;
+        private List<Object[]> rows = new ArrayList<>();
+
+        RowsTableModel(String... columns) {
+            this.columns = columns;
+        }
+
+        void setRows(List<Object[]> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+
+    // GC 停顿直方图：每个桶一根柱子，高度按最多的桶缩放
+    private static class PauseHistogram extends JComponent {
+        private long[] counts = new long[JvmMonitor.PAUSE_BOUNDS_MILLIS.length + 1];
+
+        PauseHistogram() {
+            setPreferredSize(new Dimension(260, 90));
+        }
+
+        void setCounts(long[] counts) {
+            this.counts = counts;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setFont(new Font("SansSerif", Font.PLAIN, 10));
+            FontMetrics metrics = g.getFontMetrics();
+
+            long max = 1;
+            for (long count : counts) max = Math.max(max, count);
+            int labelHeight = metrics.getHeight() * 2;
+            int barAreaHeight = getHeight() - labelHeight - 4;
+            int barWidth = getWidth() / counts.length;
+            for (int i = 0; i < counts.length; i++) {
+                int x = i * barWidth;
+                int barHeight = (int) (counts[i] * barAreaHeight / max);
+                g.setColor(new Color(205, 92, 92));
+                g.fillRect(x + 2, 2 + barAreaHeight - barHeight, barWidth - 4, barHeight);
+
+                g.setColor(Color.BLACK);
+                String label = i < JvmMonitor.PAUSE_BOUNDS_MILLIS.length
+                    ? "<=" + JvmMonitor.PAUSE_BOUNDS_MILLIS[i] : ">" + JvmMonitor.PAUSE_BOUNDS_MILLIS[i - 1];
+                String count = String.valueOf(counts[i]);
+                g.drawString(label, x + (barWidth - metrics.stringWidth(label)) / 2, getHeight() - metrics.getHeight() - 2);
+                g.drawString(count, x + (barWidth - metrics.stringWidth(count)) / 2, getHeight() - 2);
+            }
+        }
+    }
+
+    private final JvmMonitor monitor;
+    private final List<TimeSeriesChart> charts = new ArrayList<>();
+    private final JLabel summaryLabel = new JLabel();
+    private final RowsTableModel threadModel = new RowsTableModel("线程", "应用", "状态", "CPU", "分配速率", "累计分配");
+    private final RowsTableModel appModel = new RowsTableModel("应用", "线程数", "CPU", "分配速率");
+    private final RowsTableModel poolModel = new RowsTableModel("内存池", "类型", "已用", "已提交", "最大", "GC 后");
+    private final RowsTableModel gcModel = new RowsTableModel("收集器", "次数", "总耗时", "最长停顿", "最近原因");
+    private final PauseHistogram histogram = new PauseHistogram();
+    private final RowsTableModel stallModel = new RowsTableModel("时间", "事件", "耗时");
+    private final JTextArea stallStackArea = new JTextArea();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private List<EdtWatchdog.Stall> stalls = new ArrayList<>();
+
+    JvmPanel(JvmMonitor monitor) {
+        super(new BorderLayout(6, 6));
+        this.monitor = monitor;
+        setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+        summaryLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        summaryLabel.setVerticalAlignment(SwingConstants.TOP);
+
+        JPanel chartGrid = new JPanel(new GridLayout(1, 0, 6, 6));
+        chartGrid.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        addChart(chartGrid, new TimeSeriesChart("分配速率", TaskMgr.METAL_BLUE, 0, v -> TaskMgr.formatBytes((long) v) + "/s"),
+            monitor.allocationRate);
+        addChart(chartGrid, new TimeSeriesChart("GC 停顿 (毫秒/秒)", new Color(205, 92, 92), 0, v -> String.format("%.0f ms", v)),
+            monitor.gcPauseMillis);
+        addChart(chartGrid, new TimeSeriesChart("代码缓存", new Color(147, 112, 219), 0, v -> TaskMgr.formatBytes((long) v)),
+            monitor.codeCacheUsed);
+        addChart(chartGrid, new TimeSeriesChart("界面延迟 p99", new Color(238, 154, 0), 0, v -> String.format("%.1f ms", v)),
+            monitor.edtP99Millis);
+
+        JPanel topPanel = new JPanel(new BorderLayout(6, 6));
+        topPanel.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        topPanel.add(summaryLabel, BorderLayout.WEST);
+        topPanel.add(chartGrid, BorderLayout.CENTER);
+        add(topPanel, BorderLayout.NORTH);
+
+        JPanel gcPanel = new JPanel(new BorderLayout(4, 4));
+        gcPanel.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        gcPanel.add(createTable(gcModel), BorderLayout.CENTER);
+        gcPanel.add(histogram, BorderLayout.SOUTH);
+
+        JTable stallTable = new JTable(stallModel);
+        JScrollPane stallScroll = createTable(stallTable);
+        stallTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) showStallStack(stallTable.getSelectedRow());
+        });
+        stallStackArea.setEditable(false);
+        stallStackArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+
+        JPanel tables = new JPanel(new GridLayout(0, 2, 6, 6));
+        tables.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        tables.add(titled("线程（按分配速率）", createTable(threadModel)));
+        tables.add(titled("应用", createTable(appModel)));
+        tables.add(titled("内存池", createTable(poolModel)));
+        tables.add(titled("垃圾回收（停顿分布，毫秒）", gcPanel));
+        tables.add(titled("界面卡顿", stallScroll));
+        tables.add(titled("卡顿时的事件线程调用栈", new JScrollPane(stallStackArea)));
+        add(tables, BorderLayout.CENTER);
+
+        update();
+    }
+
+    List<TimeSeriesChart> getCharts() {
+        return charts;
+    }
+
+    private void addChart(JPanel grid, TimeSeriesChart chart, TimeSeries series) {
+        chart.setPreferredSize(new Dimension(200, 90));
+        chart.setSeries(series);
+        charts.add(chart);
+        grid.add(chart);
+    }
+
+    private JComponent titled(String title, JComponent component) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+        panel.add(component, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private JScrollPane createTable(RowsTableModel model) {
+        return createTable(new JTable(model));
+    }
+
+    private JScrollPane createTable(JTable table) {
+        table.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        table.setRowHeight(18);
+        table.setGridColor(TaskMgr.METAL_GRAY);
+        table.setSelectionBackground(TaskMgr.METAL_BLUE);
+        table.setSelectionForeground(Color.WHITE);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 11));
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.getViewport().setBackground(Color.WHITE);
+        return scrollPane;
+    }
+
+    // EDT：用最新的快照刷新表格和摘要，曲线由任务管理器统一更新
+    void update() {
+        JvmMonitor.Snapshot snapshot = monitor.getSnapshot();
+
+        summaryLabel.setText(String.format(
+            "<html><div style='font-family: SansSerif; font-size: 11px;'>" +
+            "<b>分配速率:</b> %s/s<br>" +
+            "<b>累计分配:</b> %s<br>" +
+            "<b>JIT:</b> %s<br>" +
+            "<b>编译耗时:</b> %s (%.1f%%)<br>" +
+            "<b>代码缓存:</b> %s / %s<br>" +
+            "<b>已加载类:</b> %d (已卸载 %d)<br>" +
+            "<b>界面:</b> %s" +
+            "</div></html>",
+            TaskMgr.formatBytes((long) snapshot.allocationRate),
+            TaskMgr.formatBytes(snapshot.totalAllocatedBytes),
+            snapshot.compilerName.isEmpty() ? "无" : snapshot.compilerName,
+            snapshot.compilationMillis >= 0 ? snapshot.compilationMillis + " ms" : "不可用",
+            snapshot.compilationPercent,
+            TaskMgr.formatBytes(snapshot.codeCacheUsed),
+            snapshot.codeCacheMax > 0 ? TaskMgr.formatBytes(snapshot.codeCacheMax) : "-",
+            snapshot.loadedClasses,
+            snapshot.unloadedClasses,
+            snapshot.edtEvents < 0 ? "未启用监控" : String.format(
+                "派发 p50 %.1f / p99 %.1f ms，最长 %.0f ms，响应 p99 %.1f ms，卡顿 %d 次",
+                snapshot.edtP50Nanos / 1e6, snapshot.edtP99Nanos / 1e6, snapshot.edtMaxNanos / 1e6,
+                snapshot.responseP99Nanos / 1e6, snapshot.stallCount)));
+
+        List<Object[]> threadRows = new ArrayList<>();
+        for (JvmMonitor.ThreadStat thread : snapshot.threads) {
+            if (threadRows.size() >= MAX_THREAD_ROWS) break;
+            threadRows.add(new Object[]{thread.name, thread.app, thread.state,
+                String.format("%.1f%%", thread.cpuPercent), TaskMgr.formatBytes((long) thread.allocationRate) + "/s",
+                TaskMgr.formatBytes(thread.allocatedBytes)});
+        }
+        threadModel.setRows(threadRows);
+
+        List<Object[]> appRows = new ArrayList<>();
+        for (JvmMonitor.AppStat app : snapshot.apps) {
+            appRows.add(new Object[]{app.app, app.threads, String.format("%.1f%%", app.cpuPercent),
+                TaskMgr.formatBytes((long) app.allocationRate) + "/s"});
+        }
+        appModel.setRows(appRows);
+
+        List<Object[]> poolRows = new ArrayList<>();
+        for (JvmMonitor.PoolStat pool : snapshot.pools) {
+            poolRows.add(new Object[]{pool.name, pool.heap ? "堆" : "非堆", TaskMgr.formatBytes(pool.used),
+                TaskMgr.formatBytes(pool.committed), pool.max > 0 ? TaskMgr.formatBytes(pool.max) : "-",
+                pool.usedAfterGc >= 0 ? TaskMgr.formatBytes(pool.usedAfterGc) : "-"});
+        }
+        poolModel.setRows(poolRows);
+
+        List<Object[]> gcRows = new ArrayList<>();
+        for (JvmMonitor.GcStat gc : snapshot.collectors) {
+            gcRows.add(new Object[]{gc.name, gc.count, gc.timeMillis + " ms", gc.maxPauseMillis + " ms", gc.lastCause});
+        }
+        gcModel.setRows(gcRows);
+        histogram.setCounts(snapshot.pauseCounts);
+
+        // 卡顿列表只在有新记录时刷新，保留选中行
+        if (!snapshot.stalls.equals(stalls) || hasOngoingStall()) {
+            stalls = snapshot.stalls;
+            List<Object[]> stallRows = new ArrayList<>();
+            for (EdtWatchdog.Stall stall : stalls) {
+                long duration = stall.getDurationNanos();
+                stallRows.add(new Object[]{timeFormat.format(new Date(stall.timeMillis)), stall.event,
+                    duration >= 0 ? String.format("%.0f ms", duration / 1e6) : "进行中"});
+            }
+            stallModel.setRows(stallRows);
+        }
+    }
+
+    private boolean hasOngoingStall() {
+        for (EdtWatchdog.Stall stall : stalls) {
+            if (stall.getDurationNanos() < 0) return true;
+        }
+        return false;
+    }
+
+    private void showStallStack(int row) {
+        if (row < 0 || row >= stalls.size()) {
+            stallStackArea.setText("");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (StackTraceElement frame : stalls.get(row).stack) {
+            text.append("at ").append(frame).append('\n');
+        }
+        stallStackArea.setText(text.toString());
+        stallStackArea.setCaretPosition(0);
+    }
+}
@@ -0,0 +1,361 @@
+package cn.moerain.javaows.applications;
+
+import cn.moerain.javaows.misc.CsvParser;
+import cn.moerain.javaows.misc.NamedThreadFactory;
+import cn.moerain.javaows.misc.SnapshotExchanger;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 任务管理器的采样管线：采样线程按节拍进行——整机指标每 250 毫秒，JVM 指标和性能历史每秒；
+// 进程列表按更新速度交给单独的线程，ps / tasklist 最多可能阻塞 5 秒，不能拖住其他指标。
+// 每次进程采样生成不可变的 Snapshot，通过 SnapshotExchanger 交给界面，
+// 界面按自己的刷新频率取最新的一份，不会积压。
+// 窗口最小化或隐藏时降低整机指标和进程列表的采样频率。
+// 不依赖 Swing，MetricsExporter 在没有界面的情况下也使用它
+class MetricsCollector {
+    static final long TICK_MILLIS = 250;
+    private static final int HISTORY_TICKS = 4;
+    private static final int BACKGROUND_SYSTEM_TICKS = 4;
+    private static final int BACKGROUND_PROCESS_TICKS = 60;
+    private static final long COMMAND_TIMEOUT_SECONDS = 5;
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("windows");
+
+    // 一次进程采样的结果，发布后不再修改
+    static final class Snapshot {
+        final long timeMillis;
+        final List<ProcessInfo> processes;
+        final double cpuPercent;
+        final long memoryTotal;
+        final long memoryUsed;
+        // 采样失败时不为 null，processes 为空
+        final String error;
+
+        Snapshot(List<ProcessInfo> processes, double cpuPercent, long memoryTotal, long memoryUsed, String error) {
+            this.timeMillis = System.currentTimeMillis();
+            this.processes = Collections.unmodifiableList(processes);
+            this.cpuPercent = cpuPercent;
+            this.memoryTotal = memoryTotal;
+            this.memoryUsed = memoryUsed;
+            this.error = error;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("TaskMgr-Sampler", true));
+    private final ExecutorService processExecutor =
+        Executors.newSingleThreadExecutor(new NamedThreadFactory("TaskMgr-Processes", true));
+    private final SnapshotExchanger<Snapshot> snapshots = new SnapshotExchanger<>();
+    // 最近一次的快照，供 MetricsExporter 等只读的使用者随时读取
+    private volatile Snapshot latest;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final PerformanceHistory history = new PerformanceHistory();
+    private final JvmMonitor jvmMonitor = new JvmMonitor();
+    // Linux 下直接读取 /proc，其余系统仍使用 ps / tasklist
+    private final SystemMetrics systemMetrics = createSystemMetrics();
+    private final ProcSampler procSampler = ProcSampler.isSupported() ? new ProcSampler() : null;
+
+    // 由界面线程设置
+    private volatile int processIntervalTicks = 3000 / (int) TICK_MILLIS;
+    private volatile boolean background;
+    private volatile boolean refreshRequested = true;
+    private volatile long historyTicks;
+    // 进程采样进行中，由采样线程置位、进程线程清除
+    private volatile boolean processSampling;
+
+    // 仅采样线程访问
+    private long tick;
+    private long lastSystemTick = Long.MIN_VALUE / 2;
+    private long lastProcessTick = Long.MIN_VALUE / 2;
+
+    private static SystemMetrics createSystemMetrics() {
+        if (!SystemMetrics.isSupported()) return null;
+        try {
+            SystemMetrics metrics = new SystemMetrics();
+            metrics.sample();
+            return metrics;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void close() {
+        scheduler.shutdownNow();
+        processExecutor.shutdownNow();
+        jvmMonitor.close();
+    }
+
+    PerformanceHistory getHistory() {
+        return history;
+    }
+
+    JvmMonitor getJvmMonitor() {
+        return jvmMonitor;
+    }
+
+    // 不支持 /proc 时为 null
+    SystemMetrics getSystemMetrics() {
+        return systemMetrics;
+    }
+
+    // 上次取走之后的最新快照，没有新快照时返回 null
+    Snapshot takeSnapshot() {
+        return snapshots.take();
+    }
+
+    // 最近一次的快照，不影响 takeSnapshot()；还没有采样时返回 null
+    Snapshot getLatestSnapshot() {
+        return latest;
+    }
+
+    // 性能历史每记录一次加一，界面据此判断是否需要重绘曲线
+    long getHistoryTicks() {
+        return historyTicks;
+    }
+
+    // 进程列表的采样间隔，0 表示暂停
+    void setProcessInterval(long millis) {
+        processIntervalTicks = (int) (millis / TICK_MILLIS);
+    }
+
+    void setBackground(boolean background) {
+        if (this.background && !background) {
+            // 恢复显示时立即采样一次，不让界面停留在旧数据上
+            refreshRequested = true;
+        }
+        this.background = background;
+    }
+
+    boolean isBackground() {
+        return background;
+    }
+
+    void requestRefresh() {
+        refreshRequested = true;
+    }
+
+    private void tick() {
+        tick++;
+        boolean inBackground = background;
+
+        if (systemMetrics != null && tick - lastSystemTick >= (inBackground ? BACKGROUND_SYSTEM_TICKS : 1)) {
+            lastSystemTick = tick;
+            try {
+                systemMetrics.sample();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        // 历史曲线固定每秒记录一次，不受更新速度和窗口状态影响
+        if (tick % HISTORY_TICKS == 0) {
+            try {
+                jvmMonitor.sample();
+                history.record();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            historyTicks++;
+        }
+
+        int interval = processIntervalTicks;
+        boolean due = interval > 0 && tick - lastProcessTick >= (inBackground ? Math.max(interval, BACKGROUND_PROCESS_TICKS) : interval);
+        // 上一次进程采样还没结束时不排队，到期的采样顺延；刷新请求保留到下一个节拍
+        if ((due || refreshRequested) && !processSampling) {
+            refreshRequested = false;
+            lastProcessTick = tick;
+            processSampling = true;
+            processExecutor.execute(this::publishProcesses);
+        }
+    }
+
+    private void publishProcesses() {
+        try {
+            Snapshot snapshot = sampleProcesses();
+            latest = snapshot;
+            snapshots.publish(snapshot);
+        } finally {
+            processSampling = false;
+        }
+    }
+
+    private Snapshot sampleProcesses() {
+        List<ProcessInfo> processes = new ArrayList<>();
+        String error = null;
+        try {
+            if (WINDOWS) {
+                loadWindowsProcesses(processes);
+            } else {
+                loadUnixProcesses(processes);
+            }
+            fillParentPids(processes);
+            history.recordProcesses(processes);
+        } catch (Exception e) {
+            e.printStackTrace();
+            processes.clear();
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return new Snapshot(processes, getCpuUsage(), getMemoryTotal(), getMemoryUsed(), error);
+    }
+
+    double getCpuUsage() {
+        if (systemMetrics != null) {
+            return systemMetrics.get(SystemMetrics.CPU);
+        }
+        // 没有 /proc 时使用 JVM 提供的整机负载，无法获取时显示 0
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            double cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getCpuLoad();
+            return cpuLoad >= 0 ? cpuLoad * 100 : 0;
+        }
+        return 0;
+    }
+
+    long getMemoryTotal() {
+        if (systemMetrics != null) {
+            return systemMetrics.getMemoryTotal();
+        }
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalMemorySize();
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    long getMemoryUsed() {
+        if (systemMetrics != null) {
+            return (long) systemMetrics.get(SystemMetrics.MEMORY);
+        }
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean sunOsBean = (com.sun.management.OperatingSystemMXBean) osBean;
+            return sunOsBean.getTotalMemorySize() - sunOsBean.getFreeMemorySize();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private void loadWindowsProcesses(List<ProcessInfo> processList) throws IOException, InterruptedException {
+        // tasklist 按系统代码页输出（中文系统为 GBK），由 CsvParser 识别编码
+        CsvParser.Block table = new CsvParser(false).parse(runCommand("tasklist", "/fo", "csv", "/v"));
+        if (table.getColumnCount() < 8) return;
+        for (int row = 1; row < table.getRowCount(); row++) { // 跳过标题
+            if (table.getText(row, 0) == null) continue;
+            ProcessInfo info = new ProcessInfo(
+                field(table, row, 0), field(table, row, 1), field(table, row, 2), field(table, row, 3),
+                field(table, row, 4), "0", field(table, row, 5), field(table, row, 6)
+            );
+            info.residentBytes = parseWindowsMemory(field(table, row, 4));
+            processList.add(info);
+        }
+    }
+
+    private static String field(CsvParser.Block table, int row, int column) {
+        String text = table.getText(row, column);
+        return text != null ? text.trim() : "";
+    }
+
+    private void loadUnixProcesses(List<ProcessInfo> processList) throws IOException, InterruptedException {
+        if (procSampler != null) {
+            try {
+                processList.addAll(procSampler.sample());
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        boolean header = true;
+        String output = new String(runCommand("ps", "-eo", "pid,ppid,user,comm,pmem,pcpu,stat"), StandardCharsets.UTF_8);
+        for (String line : output.split("\\R")) {
+            if (header) {
+                header = false; // 跳过标题行
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 7) {
+                ProcessInfo info = new ProcessInfo(parts[3], parts[0], "Console", "0",
+                                                                  parts[4] + "%", parts[5], parts[6], parts[2]);
+                try {
+                    info.cpuPercent = Double.parseDouble(parts[5]);
+                    info.parentPid = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException e) {
+                    // 保持默认值
+                }
+                processList.add(info);
+            }
+        }
+    }
+
+    // 输出先写入临时文件，等待命令结束后再读取，超时直接结束命令；
+    // 进程线程自己等待，不需要另一个线程读管道
+    private static byte[] runCommand(String... command) throws IOException, InterruptedException {
+        File output = File.createTempFile("taskmgr", ".txt");
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectOutput(output)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException(command[0] + " 超过 " + COMMAND_TIMEOUT_SECONDS + " 秒没有结束");
+            }
+            return Files.readAllBytes(output.toPath());
+        } finally {
+            output.delete();
+        }
+    }
+
+    // tasklist 不输出父进程，缺少父进程的条目统一从 ProcessHandle 补齐，只遍历一次进程表
+    private static void fillParentPids(List<ProcessInfo> processList) {
+        boolean missing = false;
+        for (ProcessInfo info : processList) {
+            if (info.parentPid < 0) {
+                missing = true;
+                break;
+            }
+        }
+        if (!missing) return;
+
+        Map<String, Integer> parents = new HashMap<>(processList.size() * 2);
+        try {
+            ProcessHandle.allProcesses().forEach(handle -> handle.parent()
+                .ifPresent(parent -> parents.put(Long.toString(handle.pid()), (int) parent.pid())));
+        } catch (SecurityException | UnsupportedOperationException e) {
+            e.printStackTrace();
+            return;
+        }
+        for (ProcessInfo info : processList) {
+            if (info.parentPid < 0) {
+                Integer parent = parents.get(info.pid);
+                if (parent != null) info.parentPid = parent;
+            }
+        }
+    }
+
+    // tasklist 的内存列形如 "12,345 K"
+    private static long parseWindowsMemory(String text) {
+        long kilobytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                kilobytes = kilobytes * 10 + (c - '0');
+            }
+        }
+        return kilobytes * 1024;
+    }
+}
@@ -0,0 +1,472 @@
+package cn.moerain.javaows.applications;
+
+import cn.moerain.javaows.misc.NamedThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 把 MetricsCollector 采集的指标通过内置 HttpServer 导出：
+//   /metrics       Prometheus 文本格式
+//   /metrics.json  JSON，加 ?history=N 时附带每个序列最近 N 秒的历史
+// 数值直接读取界面曲线使用的同一批 TimeSeries 环形缓冲区和进程快照。
+// 响应写入一个复用的字节缓冲区，数字和字符串逐字节编码，
+// 因此一次抓取的分配量与进程数无关。请求在单个线程上依次处理。
+// 也可以单独运行，不打开任何窗口：
+//   java -cp javaows.jar cn.moerain.javaows.applications.MetricsExporter [端口] [监听地址]
+class MetricsExporter {
+    static final int DEFAULT_PORT = 9465;
+    private static final int MAX_HISTORY = TimeSeries.DEFAULT_FINE_CAPACITY;
+    private static final String[] SYSTEM_NAMES = {
+        "system_cpu_percent", "system_memory_used_bytes", "system_swap_used_bytes",
+        "system_disk_read_bytes_per_second", "system_disk_write_bytes_per_second", "system_disk_iops",
+        "system_network_receive_bytes_per_second", "system_network_send_bytes_per_second"
+    };
+    private static final String[] SYSTEM_HELP = {
+        "Machine CPU usage", "Machine memory in use", "Swap in use",
+        "Disk read throughput", "Disk write throughput", "Disk operations per second",
+        "Network receive throughput", "Network send throughput"
+    };
+    private static final String[] PAUSE_BUCKETS = new String[JvmMonitor.PAUSE_BOUNDS_MILLIS.length + 1];
+
+    static {
+        for (int i = 0; i < JvmMonitor.PAUSE_BOUNDS_MILLIS.length; i++) {
+            PAUSE_BUCKETS[i] = Long.toString(JvmMonitor.PAUSE_BOUNDS_MILLIS[i]);
+        }
+        PAUSE_BUCKETS[PAUSE_BUCKETS.length - 1] = "+Inf";
+    }
+
+    private final MetricsCollector collector;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("MetricsExporter-Http", true));
+    private final ResponseBuffer buffer = new ResponseBuffer();
+
+    // 环形缓冲区序列及其名称，序号一一对应
+    private final List<String> seriesNames = new ArrayList<>();
+    private final List<String> seriesHelp = new ArrayList<>();
+    private final List<TimeSeries> series = new ArrayList<>();
+    private final List<Integer> seriesDecimals = new ArrayList<>();
+    private final int coreCount;
+
+    MetricsExporter(MetricsCollector collector, InetAddress address, int port) throws IOException {
+        this.collector = collector;
+
+        SystemMetrics systemMetrics = collector.getSystemMetrics();
+        if (systemMetrics != null) {
+            for (int i = 0; i < SYSTEM_NAMES.length; i++) {
+                addSeries(SYSTEM_NAMES[i], SYSTEM_HELP[i], systemMetrics.getSeries(i));
+            }
+            coreCount = systemMetrics.getCoreCount();
+        } else {
+            coreCount = 0;
+        }
+        PerformanceHistory history = collector.getHistory();
+        JvmMonitor jvmMonitor = collector.getJvmMonitor();
+        addSeries("jvm_cpu_percent", "Javaows process CPU usage", history.cpu);
+        addSeries("jvm_heap_used_bytes", "Java heap in use", history.heapUsed);
+        addSeries("jvm_gc_time_percent", "Share of wall time spent in GC", history.gcPercent);
+        addSeries("jvm_threads", "Live Java threads", history.threadCount);
+        addSeries("jvm_allocation_bytes_per_second", "Java heap allocation rate", jvmMonitor.allocationRate);
+        addSeries("jvm_gc_pause_milliseconds_per_second", "GC pause time per second", jvmMonitor.gcPauseMillis);
+        addSeries("jvm_code_cache_used_bytes", "JIT code cache in use", jvmMonitor.codeCacheUsed);
+
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    private void addSeries(String name, String help, TimeSeries timeSeries) {
+        seriesNames.add(name);
+        seriesHelp.add(help);
+        series.add(timeSeries);
+        // 字节数和次数取整，百分比和毫秒保留小数
+        seriesDecimals.add(name.endsWith("_percent") ? 2 : name.contains("milliseconds") ? 1 : 0);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String contentType;
+            synchronized (buffer) {
+                buffer.reset();
+                if (path.equals("/metrics")) {
+                    writePrometheus();
+                    contentType = "text/plain; version=0.0.4; charset=utf-8";
+                } else if (path.equals("/metrics.json")) {
+                    writeJson(parseHistory(exchange.getRequestURI().getRawQuery()));
+                    contentType = "application/json; charset=utf-8";
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                if (method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, buffer.length());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    buffer.writeTo(out);
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // history=N，超出范围时截断
+    private static int parseHistory(String query) {
+        if (query == null) return 0;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("history=")) {
+                try {
+                    return Math.max(0, Math.min(MAX_HISTORY, Integer.parseInt(parameter.substring(8))));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void writePrometheus() {
+        ResponseBuffer out = buffer;
+        for (int i = 0; i < series.size(); i++) {
+            writeHeader(seriesNames.get(i), seriesHelp.get(i), "gauge");
+            out.ascii("javaows_").ascii(seriesNames.get(i)).ascii(" ").number(series.get(i).getLatest(), seriesDecimals.get(i)).ascii("\n");
+        }
+
+        SystemMetrics systemMetrics = collector.getSystemMetrics();
+        if (coreCount > 0) {
+            writeHeader("system_core_cpu_percent", "CPU usage of one core", "gauge");
+            for (int i = 0; i < coreCount; i++) {
+                out.ascii("javaows_system_core_cpu_percent{core=\"").number(i).ascii("\"} ")
+                    .number(systemMetrics.getSeries(SystemMetrics.FIRST_CORE + i).getLatest(), 2).ascii("\n");
+            }
+        }
+
+        JvmMonitor.Snapshot jvm = collector.getJvmMonitor().getSnapshot();
+        writeHeader("jvm_allocated_bytes_total", "Bytes allocated by all live threads", "counter");
+        out.ascii("javaows_jvm_allocated_bytes_total ").number(jvm.totalAllocatedBytes).ascii("\n");
+        writeHeader("jvm_loaded_classes", "Currently loaded classes", "gauge");
+        out.ascii("javaows_jvm_loaded_classes ").number(jvm.loadedClasses).ascii("\n");
+
+        writeHeader("jvm_gc_collections_total", "Collections per collector", "counter");
+        for (int i = 0; i < jvm.collectors.size(); i++) {
+            JvmMonitor.GcStat gc = jvm.collectors.get(i);
+            out.ascii("javaows_jvm_gc_collections_total{collector=\"").label(gc.name).ascii("\"} ").number(gc.count).ascii("\n");
+        }
+        writeHeader("jvm_gc_time_milliseconds_total", "Time spent per collector", "counter");
+        for (int i = 0; i < jvm.collectors.size(); i++) {
+            JvmMonitor.GcStat gc = jvm.collectors.get(i);
+            out.ascii("javaows_jvm_gc_time_milliseconds_total{collector=\"").label(gc.name).ascii("\"} ").number(gc.timeMillis).ascii("\n");
+        }
+        // 停顿直方图按 Prometheus 的约定输出累计计数
+        writeHeader("jvm_gc_pause_milliseconds", "GC pause durations", "histogram");
+        long cumulative = 0;
+        for (int i = 0; i < jvm.pauseCounts.length; i++) {
+            cumulative += jvm.pauseCounts[i];
+            out.ascii("javaows_jvm_gc_pause_milliseconds_bucket{le=\"").ascii(PAUSE_BUCKETS[i]).ascii("\"} ").number(cumulative).ascii("\n");
+        }
+        out.ascii("javaows_jvm_gc_pause_milliseconds_sum ").number(jvm.pauseMillisTotal).ascii("\n");
+        out.ascii("javaows_jvm_gc_pause_milliseconds_count ").number(cumulative).ascii("\n");
+
+        writeHeader("jvm_memory_pool_used_bytes", "Memory pool usage", "gauge");
+        for (int i = 0; i < jvm.pools.size(); i++) {
+            JvmMonitor.PoolStat pool = jvm.pools.get(i);
+            out.ascii("javaows_jvm_memory_pool_used_bytes{pool=\"").label(pool.name).ascii("\"} ").number(pool.used).ascii("\n");
+        }
+
+        if (jvm.edtEvents >= 0) {
+            writeHeader("ui_dispatch_p99_seconds", "99th percentile EDT dispatch time over the last seconds", "gauge");
+            out.ascii("javaows_ui_dispatch_p99_seconds ").number(jvm.edtP99Nanos / 1e9, 6).ascii("\n");
+            writeHeader("ui_stalls_total", "EDT dispatches above the stall threshold", "counter");
+            out.ascii("javaows_ui_stalls_total ").number(jvm.stallCount).ascii("\n");
+        }
+
+        MetricsCollector.Snapshot snapshot = collector.getLatestSnapshot();
+        if (snapshot == null || snapshot.error != null) return;
+        List<ProcessInfo> processes = snapshot.processes;
+        writeHeader("processes", "Number of processes", "gauge");
+        out.ascii("javaows_processes ").number(processes.size()).ascii("\n");
+        writeHeader("process_cpu_percent", "Process CPU usage", "gauge");
+        for (int i = 0; i < processes.size(); i++) {
+            ProcessInfo process = processes.get(i);
+            writeProcessLabels("javaows_process_cpu_percent", process).number(process.cpuPercent, 2).ascii("\n");
+        }
+        writeHeader("process_resident_bytes", "Process resident memory", "gauge");
+        for (int i = 0; i < processes.size(); i++) {
+            ProcessInfo process = processes.get(i);
+            writeProcessLabels("javaows_process_resident_bytes", process).number(process.residentBytes).ascii("\n");
+        }
+    }
+
+    private void writeHeader(String name, String help, String type) {
+        buffer.ascii("# HELP javaows_").ascii(name).ascii(" ").ascii(help).ascii("\n")
+            .ascii("# TYPE javaows_").ascii(name).ascii(" ").ascii(type).ascii("\n");
+    }
+
+    private ResponseBuffer writeProcessLabels(String metric, ProcessInfo process) {
+        return buffer.ascii(metric).ascii("{pid=\"").ascii(process.pid)
+            .ascii("\",ppid=\"").number(process.parentPid)
+            .ascii("\",name=\"").label(process.imageName)
+            .ascii("\",user=\"").label(process.user).ascii("\"} ");
+    }
+
+    private void writeJson(int history) {
+        ResponseBuffer out = buffer;
+        MetricsCollector.Snapshot snapshot = collector.getLatestSnapshot();
+
+        out.ascii("{\"time\":").number(System.currentTimeMillis());
+        out.ascii(",\"metrics\":{");
+        for (int i = 0; i < series.size(); i++) {
+            if (i > 0) out.ascii(",");
+            out.ascii("\"").ascii(seriesNames.get(i)).ascii("\":").json(series.get(i).getLatest(), seriesDecimals.get(i));
+        }
+        out.ascii("}");
+
+        SystemMetrics systemMetrics = collector.getSystemMetrics();
+        out.ascii(",\"cores\":[");
+        for (int i = 0; i < coreCount; i++) {
+            if (i > 0) out.ascii(",");
+            out.json(systemMetrics.getSeries(SystemMetrics.FIRST_CORE + i).getLatest(), 2);
+        }
+        out.ascii("]");
+
+        if (snapshot != null) {
+            out.ascii(",\"sampleTime\":").number(snapshot.timeMillis);
+            if (snapshot.error != null) {
+                out.ascii(",\"error\":\"").string(snapshot.error).ascii("\"");
+            }
+            out.ascii(",\"processes\":[");
+            List<ProcessInfo> processes = snapshot.processes;
+            for (int i = 0; i < processes.size(); i++) {
+                ProcessInfo process = processes.get(i);
+                if (i > 0) out.ascii(",");
+                out.ascii("{\"pid\":").ascii(process.pid)
+                    .ascii(",\"ppid\":").number(process.parentPid)
+                    .ascii(",\"name\":\"").string(process.imageName)
+                    .ascii("\",\"user\":\"").string(process.user)
+                    .ascii("\",\"status\":\"").string(process.status)
+                    .ascii("\",\"cpuPercent\":").json(process.cpuPercent, 2)
+                    .ascii(",\"residentBytes\":").number(process.residentBytes)
+                    .ascii("}");
+            }
+            out.ascii("]");
+        }
+
+        if (history > 0) {
+            out.ascii(",\"history\":{\"stepMillis\":").number(TimeSeries.FINE_STEP_MILLIS);
+            for (int i = 0; i < series.size(); i++) {
+                TimeSeries timeSeries = series.get(i);
+                int decimals = seriesDecimals.get(i);
+                out.ascii(",\"").ascii(seriesNames.get(i)).ascii("\":[");
+                long total = timeSeries.getTotal(TimeSeries.FINE);
+                long first = Math.max(timeSeries.getFirst(TimeSeries.FINE), total - history);
+                for (long s = first; s < total; s++) {
+                    if (s > first) out.ascii(",");
+                    out.ascii("[").number(timeSeries.getTime(TimeSeries.FINE, s))
+                        .ascii(",").json(timeSeries.getValue(TimeSeries.FINE, s), decimals).ascii("]");
+                }
+                out.ascii("]");
+            }
+            out.ascii("}");
+        }
+        out.ascii("}");
+    }
+
+    // 复用的响应缓冲区：只在容量不够时扩容，之后的请求不再分配
+    private static final class ResponseBuffer {
+        private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+        private byte[] bytes = new byte[64 * 1024];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+
+        private void put(int b) {
+            ensure(1);
+            bytes[length++] = (byte) b;
+        }
+
+        // 已知只含 ASCII 的名称和常量
+        ResponseBuffer ascii(String text) {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                bytes[length++] = (byte) text.charAt(i);
+            }
+            return this;
+        }
+
+        // Prometheus 标签值：转义反斜杠、引号和换行
+        ResponseBuffer label(String text) {
+            if (text == null) return this;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' || c == '"') {
+                    put('\\');
+                    put(c);
+                } else if (c == '\n') {
+                    put('\\');
+                    put('n');
+                } else {
+                    i = utf8(text, i);
+                }
+            }
+            return this;
+        }
+
+        // JSON 字符串内容：转义引号、反斜杠和控制字符
+        ResponseBuffer string(String text) {
+            if (text == null) return this;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' || c == '"') {
+                    put('\\');
+                    put(c);
+                } else if (c < 0x20) {
+                    ascii("\\u00");
+                    put(Character.forDigit(c >> 4, 16));
+                    put(Character.forDigit(c & 0xF, 16));
+                } else {
+                    i = utf8(text, i);
+                }
+            }
+            return this;
+        }
+
+        // 编码 text[i] 处的字符，返回最后处理的下标（代理对占两个）
+        private int utf8(String text, int i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                put(c);
+            } else if (c < 0x800) {
+                put(0xC0 | (c >> 6));
+                put(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(i + 1));
+                put(0xF0 | (cp >> 18));
+                put(0x80 | ((cp >> 12) & 0x3F));
+                put(0x80 | ((cp >> 6) & 0x3F));
+                put(0x80 | (cp & 0x3F));
+                return i + 1;
+            } else if (Character.isSurrogate(c)) {
+                put('?');
+            } else {
+                put(0xE0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3F));
+                put(0x80 | (c & 0x3F));
+            }
+            return i;
+        }
+
+        ResponseBuffer number(long value) {
+            if (value == Long.MIN_VALUE) return ascii("-9223372036854775808");
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            // 数字是倒序写入的
+            for (int a = start, b = length - 1; a < b; a++, b--) {
+                byte t = bytes[a];
+                bytes[a] = bytes[b];
+                bytes[b] = t;
+            }
+            return this;
+        }
+
+        // 固定小数位；NaN 和无穷大按 Prometheus 的写法输出
+        ResponseBuffer number(double value, int decimals) {
+            if (Double.isNaN(value)) return ascii("NaN");
+            if (Double.isInfinite(value)) return ascii(value > 0 ? "+Inf" : "-Inf");
+            if (Math.abs(value) >= 1e15) return number(Math.round(value));
+
+            long scale = POWERS_OF_TEN[decimals];
+            long scaled = Math.round(Math.abs(value) * scale);
+            if (value < 0 && scaled != 0) put('-');
+            number(scaled / scale);
+            if (decimals > 0) {
+                put('.');
+                long fraction = scaled % scale;
+                for (long p = scale / 10; p > 0; p /= 10) {
+                    put((int) ('0' + fraction / p % 10));
+                }
+            }
+            return this;
+        }
+
+        // JSON 没有 NaN，输出 null
+        ResponseBuffer json(double value, int decimals) {
+            return Double.isFinite(value) ? number(value, decimals) : ascii("null");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress address = InetAddress.getByName(args.length > 1 ? args[1] : "127.0.0.1");
+
+        MetricsCollector collector = new MetricsCollector();
+        MetricsExporter exporter = new MetricsExporter(collector, address, port);
+        collector.start();
+        exporter.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            exporter.stop();
+            collector.close();
+        }, "MetricsExporter-Shutdown"));
+        System.out.println("指标导出: http://" + address.getHostAddress() + ":" + exporter.getPort() + "/metrics");
+    }
+}
@@ -1,5 +1,6 @@
 package cn.moerain.javaows.applications;
 
+import cn.moerain.javaows.misc.FileTypeRegistry;
 import uk.co.caprica.vlcj.factory.EqualizerApi;
 import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
 import uk.co.caprica.vlcj.player.base.AudioApi;
@@ -9,7 +10,6 @@ import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
 import uk.co.caprica.vlcj.player.component.AudioPlayerComponent;
 
 import javax.swing.*;
-import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -360,8 +360,7 @@ public class MusicPlayer extends JFrame {
 
     private void addMusic() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(new FileNameExtensionFilter("音频文件",
-            "mp3", "ogg", "flac", "aac", "m4a", "wma", "wav", "au", "aiff", "opus"));
+        fileChooser.setFileFilter(FileTypeRegistry.fileFilter("音频文件", FileTypeRegistry.MUSIC_PLAYER));
         fileChooser.setMultiSelectionEnabled(true);
 
         int result = fileChooser.showOpenDialog(this);
@@ -385,18 +384,8 @@ public class MusicPlayer extends JFrame {
     }
 
     private String getAudioFormat(File file) {
-        String fileName = file.getName().toLowerCase();
-        if (fileName.endsWith(".mp3")) return "MP3";
-        if (fileName.endsWith(".ogg")) return "OGG";
-        if (fileName.endsWith(".flac")) return "FLAC";
-        if (fileName.endsWith(".aac")) return "AAC";
-        if (fileName.endsWith(".m4a")) return "M4A";
-        if (fileName.endsWith(".wma")) return "WMA";
-        if (fileName.endsWith(".wav")) return "WAV";
-        if (fileName.endsWith(".au")) return "AU";
-        if (fileName.endsWith(".aiff")) return "AIFF";
-        if (fileName.endsWith(".opus")) return "OPUS";
-        return "未知";
+        FileTypeRegistry.FileType type = FileTypeRegistry.lookup(file.getName());
+        return type.getCategory() == FileTypeRegistry.Category.AUDIO ? type.getFormatName() : "未知";
     }
 
     private String getAudioDuration(File file) {
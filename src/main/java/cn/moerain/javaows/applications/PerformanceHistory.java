@@ -0,0 +1,94 @@
+package cn.moerain.javaows.applications;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// 任务管理器的性能历史：CPU、堆内存、GC 时间占比、线程数，以及每个进程的 CPU 和内存
+class PerformanceHistory {
+    // 每个进程的序列较短：3 秒一次约保留 3 分钟，10 秒粒度保留 10 分钟
+    private static final int PROCESS_FINE_CAPACITY = 60;
+    private static final int PROCESS_COARSE_CAPACITY = 60;
+
+    final TimeSeries cpu = new TimeSeries();
+    final TimeSeries heapUsed = new TimeSeries();
+    final TimeSeries gcPercent = new TimeSeries();
+    final TimeSeries threadCount = new TimeSeries();
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private static class ProcessSeries {
+        final TimeSeries cpu = new TimeSeries(PROCESS_FINE_CAPACITY, PROCESS_COARSE_CAPACITY);
+        final TimeSeries memory = new TimeSeries(PROCESS_FINE_CAPACITY, PROCESS_COARSE_CAPACITY);
+        int generation;
+    }
+
+    private final Map<String, ProcessSeries> processes = new HashMap<>();
+    private int processGeneration;
+
+    private long lastGcMillis = -1;
+    private long lastSampleMillis;
+
+    // 记录一次 JVM 指标，建议每秒调用一次
+    void record() {
+        long now = System.currentTimeMillis();
+
+        double cpuLoad = -1;
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+        }
+        cpu.add(now, cpuLoad >= 0 ? cpuLoad * 100 : 0);
+        heapUsed.add(now, memoryBean.getHeapMemoryUsage().getUsed());
+        threadCount.add(now, threadBean.getThreadCount());
+
+        // GC 耗时占两次采样间隔的百分比
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            gcMillis += Math.max(0, gcBean.getCollectionTime());
+        }
+        if (lastGcMillis >= 0 && now > lastSampleMillis) {
+            gcPercent.add(now, Math.min(100, (gcMillis - lastGcMillis) * 100.0 / (now - lastSampleMillis)));
+        }
+        lastGcMillis = gcMillis;
+        lastSampleMillis = now;
+    }
+
+    long getHeapMax() {
+        long max = memoryBean.getHeapMemoryUsage().getMax();
+        return max > 0 ? max : memoryBean.getHeapMemoryUsage().getCommitted();
+    }
+
+    // 记录一次进程采样，已退出进程的序列随之丢弃
+    synchronized void recordProcesses(List<ProcessInfo> sample) {
+        long now = System.currentTimeMillis();
+        processGeneration++;
+        for (ProcessInfo process : sample) {
+            ProcessSeries series = processes.computeIfAbsent(process.pid, pid -> new ProcessSeries());
+            series.cpu.add(now, process.cpuPercent);
+            series.memory.add(now, process.residentBytes);
+            series.generation = processGeneration;
+        }
+        for (Iterator<ProcessSeries> it = processes.values().iterator(); it.hasNext(); ) {
+            if (it.next().generation != processGeneration) it.remove();
+        }
+    }
+
+    synchronized TimeSeries getProcessCpu(String pid) {
+        ProcessSeries series = processes.get(pid);
+        return series != null ? series.cpu : null;
+    }
+
+    synchronized TimeSeries getProcessMemory(String pid) {
+        ProcessSeries series = processes.get(pid);
+        return series != null ? series.memory : null;
+    }
+}
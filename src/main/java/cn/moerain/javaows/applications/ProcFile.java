@@ -0,0 +1,105 @@
+package cn.moerain.javaows.applications;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+
+// /proc 文件读取器：整个文件读入可复用的缓冲区，再用游标逐个解析空白分隔的字段和数字，
+// 解析过程不创建字符串。超过缓冲区的部分被截断，/proc 中需要的内容都在文件开头
+class ProcFile {
+    private static final Set<OpenOption> READ_OPTIONS = Collections.singleton(StandardOpenOption.READ);
+
+    private final ByteBuffer buffer;
+    final byte[] bytes;
+    int position;
+    int limit;
+
+    ProcFile(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+        bytes = buffer.array();
+    }
+
+    void read(Path path) throws IOException {
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(path, READ_OPTIONS)) {
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 继续读取
+            }
+        }
+        position = 0;
+        limit = buffer.position();
+    }
+
+    boolean hasMore() {
+        return position < limit;
+    }
+
+    long nextLong() {
+        skipSpaces();
+        boolean negative = position < limit && bytes[position] == '-';
+        if (negative) position++;
+        long value = 0;
+        while (position < limit) {
+            int digit = bytes[position] - '0';
+            if (digit < 0 || digit > 9) break;
+            value = value * 10 + digit;
+            position++;
+        }
+        return negative ? -value : value;
+    }
+
+    void skipSpaces() {
+        while (position < limit && (bytes[position] == ' ' || bytes[position] == '\t')) position++;
+    }
+
+    void skipField() {
+        skipSpaces();
+        while (position < limit && bytes[position] != ' ' && bytes[position] != '\t' && bytes[position] != '\n') position++;
+    }
+
+    void skipFields(int count) {
+        for (int i = 0; i < count; i++) skipField();
+    }
+
+    // 移到下一行开头，没有下一行时返回 false
+    boolean nextLine() {
+        while (position < limit && bytes[position] != '\n') position++;
+        position++;
+        return position < limit;
+    }
+
+    boolean startsWith(String prefix) {
+        if (position + prefix.length() > limit) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[position + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    int indexOf(byte b) {
+        for (int i = position; i < limit; i++) {
+            if (bytes[i] == b) return i;
+        }
+        return -1;
+    }
+
+    int lastIndexOf(byte b) {
+        for (int i = limit - 1; i >= position; i--) {
+            if (bytes[i] == b) return i;
+        }
+        return -1;
+    }
+
+    boolean regionEquals(int start, int end, byte[] other) {
+        if (other == null || other.length != end - start) return false;
+        for (int i = 0; i < other.length; i++) {
+            if (other[i] != bytes[start + i]) return false;
+        }
+        return true;
+    }
+}
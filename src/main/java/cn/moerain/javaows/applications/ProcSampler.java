@@ -0,0 +1,251 @@
+package cn.moerain.javaows.applications;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Linux 进程采样器：直接读取 /proc/[pid]/stat，代替每次 fork 一个 ps 再用正则拆分输出。
+// 读缓冲区复用，数字由 ProcFile 直接从字节中解析；每个进程的名称、PID 字符串和用户名
+// 都缓存在进程状态里，不会每次重新创建。
+// CPU 使用率由两次采样之间的 jiffies 差值计算，按所有核心归一化（与 Windows 任务管理器一致）。
+// 不是线程安全的，同一时间只能有一个线程调用 sample()
+class ProcSampler {
+    private static final Path PROC = Paths.get("/proc");
+
+    // 单个进程在两次采样之间保留的状态
+    private static class ProcState {
+        final String pid;
+        final Path statPath;
+        final Path statusPath;
+        long startTime;
+        long cpuJiffies;
+        byte[] nameBytes;
+        String name;
+        String user;
+        int generation;
+        // 显示文本只在数值变化时重新格式化
+        long shownResidentBytes = -1;
+        String memoryText;
+        long shownCpuTenths = -1;
+        String cpuText;
+
+        ProcState(String pid) {
+            this.pid = pid;
+            Path directory = PROC.resolve(pid);
+            this.statPath = directory.resolve("stat");
+            this.statusPath = directory.resolve("status");
+        }
+    }
+
+    private final Map<Integer, ProcState> states = new HashMap<>();
+    private final Map<Integer, String> userNames = new HashMap<>();
+    private final ProcFile file = new ProcFile(8192);
+    private final long pageSize = readPageSize();
+
+    private long lastTotalJiffies;
+    private int generation;
+
+    static boolean isSupported() {
+        return Files.isReadable(PROC.resolve("self").resolve("stat"));
+    }
+
+    List<ProcessInfo> sample() throws IOException {
+        generation++;
+        long totalJiffies = readTotalJiffies();
+        long elapsedJiffies = lastTotalJiffies > 0 ? totalJiffies - lastTotalJiffies : 0;
+
+        String[] names = new File("/proc").list();
+        if (names == null) throw new IOException("无法读取 /proc");
+
+        List<ProcessInfo> result = new ArrayList<>(names.length);
+        for (String name : names) {
+            int pid = parsePid(name);
+            if (pid < 0) continue;
+
+            ProcState state = states.get(pid);
+            boolean isNew = state == null;
+            if (isNew) {
+                state = new ProcState(name);
+            }
+
+            ProcessInfo info = readProcess(state, isNew, elapsedJiffies);
+            if (info != null) {
+                if (isNew) states.put(pid, state);
+                state.generation = generation;
+                result.add(info);
+            }
+        }
+
+        // 丢弃已退出进程的状态
+        for (Iterator<ProcState> it = states.values().iterator(); it.hasNext(); ) {
+            if (it.next().generation != generation) it.remove();
+        }
+        lastTotalJiffies = totalJiffies;
+        return result;
+    }
+
+    // 进程在读取期间退出时返回 null
+    private ProcessInfo readProcess(ProcState state, boolean isNew, long elapsedJiffies) {
+        try {
+            file.read(state.statPath);
+        } catch (IOException e) {
+            return null;
+        }
+
+        // 进程名在括号中且可能包含空格和括号，以最后一个 ')' 为准
+        int nameEnd = file.lastIndexOf((byte) ')');
+        int nameStart = file.indexOf((byte) '(') + 1;
+        if (nameStart <= 0 || nameEnd < nameStart || nameEnd + 2 >= file.limit) return null;
+
+        // 从字段 3（状态）开始逐个读取
+        file.position = nameEnd + 2;
+        char stateCode = (char) file.bytes[file.position];
+        file.skipField();
+        int ppid = (int) file.nextLong();              // 4
+        file.skipFields(9);                            // 5..13
+        long cpuJiffies = file.nextLong() + file.nextLong(); // 14 utime, 15 stime
+        file.skipFields(6);                            // 16..21
+        long startTime = file.nextLong();              // 22
+        file.skipField();                              // 23 vsize
+        long residentBytes = file.nextLong() * pageSize; // 24 rss（页）
+
+        // PID 被复用时当作新进程
+        if (!isNew && startTime != state.startTime) {
+            isNew = true;
+            state.nameBytes = null;
+            state.user = null;
+        }
+        long deltaJiffies = isNew ? (lastTotalJiffies > 0 ? cpuJiffies : 0) : cpuJiffies - state.cpuJiffies;
+        state.startTime = startTime;
+        state.cpuJiffies = cpuJiffies;
+
+        if (!file.regionEquals(nameStart, nameEnd, state.nameBytes)) {
+            state.nameBytes = new byte[nameEnd - nameStart];
+            System.arraycopy(file.bytes, nameStart, state.nameBytes, 0, state.nameBytes.length);
+            state.name = new String(state.nameBytes, StandardCharsets.UTF_8);
+        }
+        if (state.user == null) {
+            state.user = readUser(state.statusPath);
+        }
+
+        double cpuPercent = elapsedJiffies > 0 ? Math.min(100.0, deltaJiffies * 100.0 / elapsedJiffies) : 0;
+        if (residentBytes != state.shownResidentBytes) {
+            state.shownResidentBytes = residentBytes;
+            state.memoryText = TaskMgr.formatBytes(residentBytes);
+        }
+        long cpuTenths = Math.round(cpuPercent * 10);
+        if (cpuTenths != state.shownCpuTenths) {
+            state.shownCpuTenths = cpuTenths;
+            state.cpuText = cpuTenths / 10 + "." + cpuTenths % 10;
+        }
+
+        ProcessInfo info = new ProcessInfo(state.name, state.pid, "Console", "0",
+            state.memoryText, state.cpuText, describeState(stateCode), state.user);
+        info.parentPid = ppid;
+        info.residentBytes = residentBytes;
+        info.cpuPercent = cpuPercent;
+        return info;
+    }
+
+    // /proc/stat 第一行所有 CPU 时间之和（guest 已计入 user，不重复累加）
+    private long readTotalJiffies() throws IOException {
+        file.read(PROC.resolve("stat"));
+        file.skipField();
+        long total = 0;
+        for (int i = 0; i < 8; i++) {
+            total += file.nextLong();
+        }
+        return total;
+    }
+
+    // 用户名只在进程首次出现时读取 status 中的 Uid 行
+    private String readUser(Path statusPath) {
+        int uid = -1;
+        try {
+            file.read(statusPath);
+            do {
+                if (file.startsWith("Uid:")) {
+                    file.skipField();
+                    uid = (int) file.nextLong();
+                    break;
+                }
+            } while (file.nextLine());
+        } catch (IOException e) {
+            // 进程已退出
+        }
+        return userName(uid);
+    }
+
+    private String userName(int uid) {
+        if (userNames.isEmpty()) {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/etc/passwd"))) {
+                    String[] parts = line.split(":");
+                    if (parts.length > 2) {
+                        try {
+                            userNames.putIfAbsent(Integer.parseInt(parts[2]), parts[0]);
+                        } catch (NumberFormatException e) {
+                            // 忽略格式错误的行
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return userNames.computeIfAbsent(uid, String::valueOf);
+    }
+
+    private static int parsePid(String name) {
+        int pid = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            pid = pid * 10 + (c - '0');
+        }
+        return name.isEmpty() ? -1 : pid;
+    }
+
+    private static String describeState(char code) {
+        switch (code) {
+            case 'R': return "运行";
+            case 'S': return "睡眠";
+            case 'D': return "磁盘等待";
+            case 'Z': return "僵尸";
+            case 'T': return "已停止";
+            case 't': return "跟踪停止";
+            case 'I': return "空闲";
+            case 'X': return "已退出";
+            default: return String.valueOf(code);
+        }
+    }
+
+    // 从 /proc/self/auxv 的 AT_PAGESZ 读取页大小，读取失败时按 4 KB 处理
+    private static long readPageSize() {
+        try {
+            ByteBuffer auxv = ByteBuffer.wrap(Files.readAllBytes(PROC.resolve("self").resolve("auxv")))
+                .order(ByteOrder.nativeOrder());
+            boolean wide = !"32".equals(System.getProperty("sun.arch.data.model"));
+            int entrySize = wide ? 16 : 8;
+            while (auxv.remaining() >= entrySize) {
+                long type = wide ? auxv.getLong() : auxv.getInt();
+                long value = wide ? auxv.getLong() : auxv.getInt();
+                if (type == 6) return value;
+                if (type == 0) break;
+            }
+        } catch (IOException | SecurityException e) {
+            // 使用默认值
+        }
+        return 4096;
+    }
+}
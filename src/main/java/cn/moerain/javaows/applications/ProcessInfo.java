@@ -0,0 +1,36 @@
+package cn.moerain.javaows.applications;
+
+// 一个进程的采样结果，由 MetricsCollector 创建，发布之后只有 ProcessTree 会在界面线程写入树状视图字段
+class ProcessInfo {
+    String imageName;
+    String pid;
+    String sessionName;
+    String sessionId;
+    String memUsage;
+    String cpuUsage;
+    String status;
+    String user;
+
+    // 数值形式，供进程树、历史曲线和指标导出使用；父进程未知时为 -1
+    int parentPid = -1;
+    long residentBytes;
+    double cpuPercent;
+
+    // 由 ProcessTree 计算
+    int treeDepth;
+    int childCount;
+    long subtreeResidentBytes;
+    double subtreeCpuPercent;
+
+    ProcessInfo(String imageName, String pid, String sessionName, String sessionId,
+                String memUsage, String cpuUsage, String status, String user) {
+        this.imageName = imageName;
+        this.pid = pid;
+        this.sessionName = sessionName;
+        this.sessionId = sessionId;
+        this.memUsage = memUsage;
+        this.cpuUsage = cpuUsage;
+        this.status = status;
+        this.user = user;
+    }
+}
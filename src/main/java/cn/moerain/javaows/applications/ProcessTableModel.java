@@ -0,0 +1,223 @@
+package cn.moerain.javaows.applications;
+
+import javax.swing.DefaultRowSorter;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// 进程表格模型：按 PID 把新的采样结果与当前行比较，只发出插入/更新/删除事件，
+// 因此选中行和滚动位置在刷新时保持不变。
+// 排序交给 createRowSorter() 返回的排序器，它直接比较进程的数值字段，
+// 并且只重新定位发生变化的行，不必每次整表重排。
+// 树状视图下行顺序由 ProcessTree 决定，通过 setRows() 整体替换
+class ProcessTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"映像名称", "PID", "用户名", "会话名", "内存使用", "CPU使用率", "状态"};
+
+    private final List<ProcessInfo> rows = new ArrayList<>();
+    private boolean treeMode;
+    private Set<String> collapsedPids = Collections.emptySet();
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        ProcessInfo process = rows.get(row);
+        switch (column) {
+            case 0: return treeMode ? treeName(process) : process.imageName;
+            case 1: return process.pid;
+            case 2: return process.user;
+            case 3: return process.sessionName;
+            case 4:
+                return treeMode && process.childCount > 0
+                    ? process.memUsage + " (合计 " + TaskMgr.formatBytes(process.subtreeResidentBytes) + ")"
+                    : process.memUsage;
+            case 5:
+                return treeMode && process.childCount > 0
+                    ? process.cpuUsage + "% (合计 " + String.format("%.1f", process.subtreeCpuPercent) + "%)"
+                    : process.cpuUsage + "%";
+            case 6: return process.status;
+            default: return null;
+        }
+    }
+
+    // 按深度缩进，有子进程的行前显示展开/折叠标记
+    private String treeName(ProcessInfo process) {
+        StringBuilder text = new StringBuilder(process.treeDepth * 2 + process.imageName.length() + 2);
+        for (int i = 0; i < process.treeDepth; i++) {
+            text.append("  ");
+        }
+        if (process.childCount > 0) {
+            text.append(collapsedPids.contains(process.pid) ? "▸ " : "▾ ");
+        } else {
+            text.append("  ");
+        }
+        return text.append(process.imageName).toString();
+    }
+
+    ProcessInfo getProcess(int row) {
+        return rows.get(row);
+    }
+
+    int indexOf(String pid) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).pid.equals(pid)) return i;
+        }
+        return -1;
+    }
+
+    boolean isTreeMode() {
+        return treeMode;
+    }
+
+    void setTreeMode(boolean treeMode) {
+        this.treeMode = treeMode;
+    }
+
+    // 树状视图：行的顺序和可见性都可能变化，直接整体替换
+    void setRows(List<ProcessInfo> newRows, Set<String> collapsed) {
+        rows.clear();
+        rows.addAll(newRows);
+        collapsedPids = collapsed;
+        fireTableDataChanged();
+    }
+
+    // EDT：用新的采样结果更新表格
+    void update(List<ProcessInfo> sample) {
+        Map<String, ProcessInfo> incoming = new HashMap<>(sample.size() * 2);
+        for (ProcessInfo process : sample) {
+            incoming.put(process.pid, process);
+        }
+
+        // 从后往前删除已退出的进程，连续的行合并为一个事件
+        int deleteEnd = -1;
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            boolean gone = !incoming.containsKey(rows.get(i).pid);
+            if (gone) {
+                rows.remove(i);
+                if (deleteEnd < 0) deleteEnd = i;
+            }
+            if (deleteEnd >= 0 && (!gone || i == 0)) {
+                int first = gone ? i : i + 1;
+                fireTableRowsDeleted(first, deleteEnd);
+                deleteEnd = -1;
+            }
+        }
+
+        // 仍在运行的进程：只有显示内容变化时才发出更新事件
+        int updateStart = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            ProcessInfo fresh = incoming.remove(rows.get(i).pid);
+            boolean changed = isChanged(rows.get(i), fresh);
+            rows.set(i, fresh);
+            if (changed && updateStart < 0) {
+                updateStart = i;
+            } else if (!changed && updateStart >= 0) {
+                fireTableRowsUpdated(updateStart, i - 1);
+                updateStart = -1;
+            }
+        }
+        if (updateStart >= 0) {
+            fireTableRowsUpdated(updateStart, rows.size() - 1);
+        }
+
+        // 新进程按采样顺序追加到末尾
+        int insertStart = rows.size();
+        for (ProcessInfo process : sample) {
+            if (incoming.containsKey(process.pid)) {
+                rows.add(process);
+            }
+        }
+        if (rows.size() > insertStart) {
+            fireTableRowsInserted(insertStart, rows.size() - 1);
+        }
+    }
+
+    private static boolean isChanged(ProcessInfo old, ProcessInfo fresh) {
+        return !Objects.equals(old.imageName, fresh.imageName)
+            || !Objects.equals(old.user, fresh.user)
+            || !Objects.equals(old.sessionName, fresh.sessionName)
+            || !Objects.equals(old.memUsage, fresh.memUsage)
+            || !Objects.equals(old.cpuUsage, fresh.cpuUsage)
+            || !Objects.equals(old.status, fresh.status);
+    }
+
+    DefaultRowSorter<ProcessTableModel, Integer> createRowSorter() {
+        return new ProcessRowSorter(this);
+    }
+
+    // 排序器直接比较 ProcessInfo，内存和 CPU 按数值排序而不是按显示文本
+    private static class ProcessRowSorter extends DefaultRowSorter<ProcessTableModel, Integer> {
+        ProcessRowSorter(ProcessTableModel model) {
+            setModelWrapper(new ModelWrapper<ProcessTableModel, Integer>() {
+                @Override
+                public ProcessTableModel getModel() {
+                    return model;
+                }
+
+                @Override
+                public int getColumnCount() {
+                    return model.getColumnCount();
+                }
+
+                @Override
+                public int getRowCount() {
+                    return model.getRowCount();
+                }
+
+                @Override
+                public Object getValueAt(int row, int column) {
+                    return model.rows.get(row);
+                }
+
+                @Override
+                public Integer getIdentifier(int row) {
+                    return row;
+                }
+            });
+
+            Comparator<ProcessInfo> byName = Comparator.comparing(p -> p.imageName, String.CASE_INSENSITIVE_ORDER);
+            // PID 没有前导零，先比长度再比字符即为数值顺序
+            Comparator<ProcessInfo> byPid = (a, b) -> a.pid.length() != b.pid.length()
+                ? Integer.compare(a.pid.length(), b.pid.length()) : a.pid.compareTo(b.pid);
+            Comparator<ProcessInfo> byUser = Comparator.comparing(p -> p.user, String.CASE_INSENSITIVE_ORDER);
+            Comparator<ProcessInfo> bySession = Comparator.comparing(p -> p.sessionName, String.CASE_INSENSITIVE_ORDER);
+            Comparator<ProcessInfo> byMemory = (a, b) -> Long.compare(a.residentBytes, b.residentBytes);
+            Comparator<ProcessInfo> byCpu = (a, b) -> Double.compare(a.cpuPercent, b.cpuPercent);
+            Comparator<ProcessInfo> byStatus = Comparator.comparing(p -> p.status);
+
+            List<Comparator<ProcessInfo>> comparators = new ArrayList<>();
+            comparators.add(byName);
+            comparators.add(byPid);
+            comparators.add(byUser);
+            comparators.add(bySession);
+            comparators.add(byMemory);
+            comparators.add(byCpu);
+            comparators.add(byStatus);
+            for (int i = 0; i < comparators.size(); i++) {
+                setComparator(i, comparators.get(i).thenComparing(byPid));
+            }
+
+            // 更新事件只重新定位变化的行
+            setSortsOnUpdates(true);
+        }
+    }
+}
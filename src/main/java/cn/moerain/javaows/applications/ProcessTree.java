@@ -0,0 +1,155 @@
+package cn.moerain.javaows.applications;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 进程树：节点按 PID 保存在多次采样之间，每次采样只处理新出现、已退出和父进程变化的节点，
+// 然后自底向上汇总每棵子树的 CPU 和常驻内存。flatten() 按深度优先顺序输出要显示的行
+class ProcessTree {
+    private static class Node {
+        final String pid;
+        // 已挂接到父节点或根列表
+        boolean linked;
+        Node parent;
+        final List<Node> children = new ArrayList<>();
+        ProcessInfo info;
+        int generation;
+
+        Node(String pid) {
+            this.pid = pid;
+        }
+    }
+
+    // 兄弟节点按子树内存从大到小排列，占用最多的进程树排在最前
+    private static final Comparator<Node> BY_SUBTREE_MEMORY =
+        (a, b) -> Long.compare(b.info.subtreeResidentBytes, a.info.subtreeResidentBytes);
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final List<Node> roots = new ArrayList<>();
+    private final Set<String> collapsed = new HashSet<>();
+    private int generation;
+
+    void update(List<ProcessInfo> sample) {
+        generation++;
+        for (ProcessInfo info : sample) {
+            Node node = nodes.get(info.pid);
+            if (node == null) {
+                node = new Node(info.pid);
+                nodes.put(info.pid, node);
+            }
+            node.info = info;
+            node.generation = generation;
+        }
+
+        // 已退出的进程：从父节点摘除，子节点在下面重新挂接（系统会把它们过继给其他进程）
+        for (Iterator<Node> it = nodes.values().iterator(); it.hasNext(); ) {
+            Node node = it.next();
+            if (node.generation != generation) {
+                detach(node);
+                for (Node child : node.children) {
+                    child.parent = null;
+                    child.linked = false;
+                }
+                it.remove();
+                collapsed.remove(node.pid);
+            }
+        }
+
+        // 新节点和父进程变化的节点重新挂接，其余节点保持不动
+        for (Node node : nodes.values()) {
+            int parentPid = node.info.parentPid;
+            Node parent = parentPid >= 0 ? nodes.get(Integer.toString(parentPid)) : null;
+            if (parent != null && isAncestor(node, parent)) {
+                parent = null;
+            }
+            if (node.linked && node.parent == parent) continue;
+
+            detach(node);
+            node.parent = parent;
+            node.linked = true;
+            if (parent != null) {
+                parent.children.add(node);
+            } else {
+                roots.add(node);
+            }
+        }
+
+        for (Node root : roots) {
+            aggregate(root, 0);
+        }
+    }
+
+    private void detach(Node node) {
+        if (!node.linked) return;
+        node.linked = false;
+        if (node.parent != null) {
+            node.parent.children.remove(node);
+            node.parent = null;
+        } else {
+            roots.remove(node);
+        }
+    }
+
+    // 避免数据不一致时形成环
+    private static boolean isAncestor(Node node, Node candidate) {
+        for (Node n = candidate; n != null; n = n.parent) {
+            if (n == node) return true;
+        }
+        return false;
+    }
+
+    private static void aggregate(Node node, int depth) {
+        ProcessInfo info = node.info;
+        info.treeDepth = depth;
+        info.childCount = node.children.size();
+        info.subtreeResidentBytes = info.residentBytes;
+        info.subtreeCpuPercent = info.cpuPercent;
+        for (Node child : node.children) {
+            aggregate(child, depth + 1);
+            info.subtreeResidentBytes += child.info.subtreeResidentBytes;
+            info.subtreeCpuPercent += child.info.subtreeCpuPercent;
+        }
+    }
+
+    Set<String> getCollapsed() {
+        return Collections.unmodifiableSet(collapsed);
+    }
+
+    boolean isCollapsed(String pid) {
+        return collapsed.contains(pid);
+    }
+
+    void setCollapsed(String pid, boolean value) {
+        if (value) {
+            collapsed.add(pid);
+        } else {
+            collapsed.remove(pid);
+        }
+    }
+
+    // 深度优先输出，折叠节点的后代不输出
+    List<ProcessInfo> flatten() {
+        List<ProcessInfo> rows = new ArrayList<>(nodes.size());
+        roots.sort(BY_SUBTREE_MEMORY);
+        for (Node root : roots) {
+            flatten(root, rows);
+        }
+        return rows;
+    }
+
+    private void flatten(Node node, List<ProcessInfo> rows) {
+        rows.add(node.info);
+        if (collapsed.contains(node.pid)) return;
+        node.children.sort(BY_SUBTREE_MEMORY);
+        for (Node child : node.children) {
+            flatten(child, rows);
+        }
+    }
+}
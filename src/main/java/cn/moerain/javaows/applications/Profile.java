@@ -0,0 +1,154 @@
+package cn.moerain.javaows.applications;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 一次性能分析的聚合结果：每种事件（CPU 采样、内存分配、锁等待）分别按全部线程和仅 Swing 事件线程
+// 各保存一棵调用树（火焰图）和按方法汇总的自身/总计权重
+class Profile {
+    enum Kind {
+        CPU("CPU 采样"),
+        ALLOCATION("内存分配"),
+        LOCK("锁等待");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+
+        // CPU 为样本数，分配为字节，锁等待为纳秒
+        String format(long weight) {
+            switch (this) {
+                case ALLOCATION:
+                    return TaskMgr.formatBytes(weight);
+                case LOCK:
+                    return String.format("%.1f ms", weight / 1e6);
+                default:
+                    return weight + " 个样本";
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // 调用树节点，根节点代表全部样本
+    static class Node {
+        final String name;
+        final Node parent;
+        long weight;
+        private final Map<String, Node> children = new HashMap<>();
+        private List<Node> sortedChildren;
+
+        Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        // 子节点按名称排序，火焰图布局稳定，两次记录之间容易比较
+        List<Node> getChildren() {
+            if (sortedChildren == null || sortedChildren.size() != children.size()) {
+                sortedChildren = new ArrayList<>(children.values());
+                sortedChildren.sort((a, b) -> a.name.compareTo(b.name));
+            }
+            return sortedChildren;
+        }
+
+        Node child(String name) {
+            return children.computeIfAbsent(name, n -> new Node(n, this));
+        }
+
+        int getDepth() {
+            int depth = 0;
+            for (Node child : children.values()) {
+                depth = Math.max(depth, child.getDepth());
+            }
+            return depth + 1;
+        }
+    }
+
+    // 按方法汇总：自身为栈顶，总计为出现在栈中（递归只计一次）
+    static class MethodStat {
+        final String name;
+        long self;
+        long total;
+
+        MethodStat(String name) {
+            this.name = name;
+        }
+    }
+
+    static class Aggregate {
+        final Node root = new Node("全部", null);
+        final Map<String, MethodStat> methods = new HashMap<>();
+        long events;
+
+        // frames 从栈顶到栈底，site 为栈顶的汇总键（分配时附带对象类型）
+        void add(List<String> frames, String site, String leaf, long weight) {
+            events++;
+            root.weight += weight;
+            Node node = root;
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                node = node.child(frames.get(i));
+                node.weight += weight;
+            }
+            if (leaf != null) {
+                node = node.child(leaf);
+                node.weight += weight;
+            }
+
+            methods.computeIfAbsent(site, MethodStat::new).self += weight;
+            Set<String> seen = new HashSet<>();
+            for (String frame : frames) {
+                if (seen.add(frame)) {
+                    methods.computeIfAbsent(frame, MethodStat::new).total += weight;
+                }
+            }
+        }
+
+        // 按自身权重排序的前 count 个
+        List<MethodStat> getTopMethods(int count) {
+            List<MethodStat> list = new ArrayList<>();
+            for (MethodStat stat : methods.values()) {
+                if (stat.self > 0) list.add(stat);
+            }
+            list.sort((a, b) -> Long.compare(b.self, a.self));
+            return list.size() > count ? list.subList(0, count) : list;
+        }
+    }
+
+    private final Aggregate[] allThreads = new Aggregate[Kind.values().length];
+    private final Aggregate[] eventThread = new Aggregate[Kind.values().length];
+    final long durationMillis;
+
+    Profile(long durationMillis) {
+        this.durationMillis = durationMillis;
+        for (int i = 0; i < allThreads.length; i++) {
+            allThreads[i] = new Aggregate();
+            eventThread[i] = new Aggregate();
+        }
+    }
+
+    Aggregate get(Kind kind, boolean eventThreadOnly) {
+        return (eventThreadOnly ? eventThread : allThreads)[kind.ordinal()];
+    }
+
+    void add(Kind kind, boolean onEventThread, List<String> frames, String site, String leaf, long weight) {
+        if (frames.isEmpty()) return;
+        allThreads[kind.ordinal()].add(frames, site, leaf, weight);
+        if (onEventThread) {
+            eventThread[kind.ordinal()].add(frames, site, leaf, weight);
+        }
+    }
+}
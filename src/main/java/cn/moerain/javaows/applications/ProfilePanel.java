@@ -0,0 +1,223 @@
+package cn.moerain.javaows.applications;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// 任务管理器的性能分析选项卡：对 Javaows 自身做一次 JFR 记录，
+// 显示火焰图和按自身权重排序的热点方法 / 分配位置 / 锁等待位置
+class ProfilePanel extends JPanel {
+    private static final int TOP_COUNT = 50;
+    private static final int[] DURATIONS = {10, 30, 60};
+
+    private static class TopMethodsModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"方法 / 位置", "自身", "自身占比", "总计"};
+        private List<Profile.MethodStat> rows = new ArrayList<>();
+        private Profile.Kind kind = Profile.Kind.CPU;
+        private long totalWeight;
+
+        void setRows(List<Profile.MethodStat> rows, Profile.Kind kind, long totalWeight) {
+            this.rows = rows;
+            this.kind = kind;
+            this.totalWeight = totalWeight;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Profile.MethodStat stat = rows.get(row);
+            switch (column) {
+                case 0:
+                    return stat.name;
+                case 1:
+                    return kind.format(stat.self);
+                case 2:
+                    return totalWeight > 0 ? String.format("%.1f%%", stat.self * 100.0 / totalWeight) : "-";
+                default:
+                    return stat.total > 0 ? kind.format(stat.total) : "-";
+            }
+        }
+    }
+
+    private final JComboBox<String> durationBox = new JComboBox<>();
+    private final JButton recordButton = new JButton("开始记录");
+    private final JButton saveButton = new JButton("保存记录...");
+    private final JComboBox<Profile.Kind> kindBox = new JComboBox<>(Profile.Kind.values());
+    private final JComboBox<String> threadBox = new JComboBox<>(new String[]{"全部线程", "仅 Swing 事件线程"});
+    private final JLabel statusLabel = new JLabel();
+    private final FlameGraph flameGraph = new FlameGraph();
+    private final TopMethodsModel topModel = new TopMethodsModel();
+
+    private Profile profile;
+    private Path recordingFile;
+    private Timer countdownTimer;
+
+    ProfilePanel() {
+        super(new BorderLayout(6, 6));
+        setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+        for (int seconds : DURATIONS) {
+            durationBox.addItem(seconds + " 秒");
+        }
+        recordButton.addActionListener(e -> startRecording());
+        saveButton.addActionListener(e -> saveRecording());
+        saveButton.setEnabled(false);
+        kindBox.addActionListener(e -> showProfile());
+        threadBox.addActionListener(e -> showProfile());
+        JButton resetButton = new JButton("重置缩放");
+        resetButton.addActionListener(e -> flameGraph.resetZoom());
+
+        JPanel toolBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolBar.setBackground(TaskMgr.METAL_LIGHT_GRAY);
+        toolBar.add(new JLabel("时长:"));
+        toolBar.add(durationBox);
+        toolBar.add(recordButton);
+        toolBar.add(saveButton);
+        toolBar.add(Box.createHorizontalStrut(12));
+        toolBar.add(new JLabel("事件:"));
+        toolBar.add(kindBox);
+        toolBar.add(threadBox);
+        toolBar.add(resetButton);
+        toolBar.add(Box.createHorizontalStrut(12));
+        toolBar.add(statusLabel);
+        add(toolBar, BorderLayout.NORTH);
+
+        JScrollPane flameScroll = new JScrollPane(flameGraph);
+        flameScroll.setBorder(BorderFactory.createTitledBorder("火焰图（单击放大，双击空白处恢复）"));
+
+        JTable topTable = new JTable(topModel);
+        topTable.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        topTable.setRowHeight(18);
+        topTable.setGridColor(TaskMgr.METAL_GRAY);
+        topTable.setSelectionBackground(TaskMgr.METAL_BLUE);
+        topTable.setSelectionForeground(Color.WHITE);
+        topTable.getTableHeader().setReorderingAllowed(false);
+        topTable.getColumnModel().getColumn(0).setPreferredWidth(500);
+        JScrollPane topScroll = new JScrollPane(topTable);
+        topScroll.setBorder(BorderFactory.createTitledBorder("热点（前 " + TOP_COUNT + " 个）"));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, flameScroll, topScroll);
+        splitPane.setResizeWeight(0.6);
+        add(splitPane, BorderLayout.CENTER);
+
+        if (JfrProfiler.isAvailable()) {
+            statusLabel.setText("选择时长后开始记录，记录期间照常使用其他应用");
+        } else {
+            recordButton.setEnabled(false);
+            statusLabel.setText("当前 JVM 不支持 JFR");
+        }
+    }
+
+    void startRecording() {
+        if (!recordButton.isEnabled()) return;
+        int seconds = DURATIONS[durationBox.getSelectedIndex()];
+        recordButton.setEnabled(false);
+        durationBox.setEnabled(false);
+
+        long start = System.currentTimeMillis();
+        countdownTimer = new Timer(1000, e -> {
+            long remaining = seconds - (System.currentTimeMillis() - start) / 1000;
+            statusLabel.setText(remaining > 0 ? "正在记录，剩余 " + remaining + " 秒..." : "正在解析记录...");
+        });
+        countdownTimer.setInitialDelay(0);
+        countdownTimer.start();
+
+        Thread thread = new Thread(() -> {
+            try {
+                Path file = JfrProfiler.record(Duration.ofSeconds(seconds));
+                Profile result;
+                try {
+                    result = JfrProfiler.parse(file, seconds * 1000L);
+                } catch (Exception e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+                SwingUtilities.invokeLater(() -> finishRecording(file, result, null));
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> finishRecording(null, null, e));
+            }
+        }, "TaskMgr-Profiler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishRecording(Path file, Profile result, Exception error) {
+        countdownTimer.stop();
+        recordButton.setEnabled(true);
+        durationBox.setEnabled(true);
+        if (error != null) {
+            statusLabel.setText("记录失败");
+            JOptionPane.showMessageDialog(this, "性能分析失败: " + error.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        deleteRecording();
+        recordingFile = file;
+        recordingFile.toFile().deleteOnExit();
+        profile = result;
+        saveButton.setEnabled(true);
+        statusLabel.setText(String.format("记录 %d 秒：CPU 样本 %d，分配样本 %d，锁等待 %d",
+            result.durationMillis / 1000,
+            result.get(Profile.Kind.CPU, false).events,
+            result.get(Profile.Kind.ALLOCATION, false).events,
+            result.get(Profile.Kind.LOCK, false).events));
+        showProfile();
+    }
+
+    private void showProfile() {
+        if (profile == null) return;
+        Profile.Kind kind = (Profile.Kind) kindBox.getSelectedItem();
+        Profile.Aggregate aggregate = profile.get(kind, threadBox.getSelectedIndex() == 1);
+        flameGraph.setRoot(aggregate.root, kind);
+        topModel.setRows(aggregate.getTopMethods(TOP_COUNT), kind, aggregate.root.weight);
+    }
+
+    private void saveRecording() {
+        if (recordingFile == null) return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("javaows.jfr"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            Files.copy(recordingFile, chooser.getSelectedFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "保存失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    void deleteRecording() {
+        if (recordingFile != null) {
+            try {
+                Files.deleteIfExists(recordingFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            recordingFile = null;
+        }
+    }
+}
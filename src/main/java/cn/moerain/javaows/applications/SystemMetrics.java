@@ -0,0 +1,305 @@
+package cn.moerain.javaows.applications;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// 整机指标采集：读取 /proc/stat（每个核心）、/proc/meminfo、/proc/diskstats 和 /proc/net/dev，
+// 累计计数器与上一次采样做差得到使用率和速率。
+// 一次采样只读四个文件且不创建字符串，可以 250 毫秒运行一次；
+// 历史序列按 1 秒写入（期间多次采样取平均）。sample() 只能在一个线程中调用，get() 可在任意线程读取
+class SystemMetrics {
+    static final int CPU = 0;
+    static final int MEMORY = 1;
+    static final int SWAP = 2;
+    static final int DISK_READ = 3;
+    static final int DISK_WRITE = 4;
+    static final int DISK_IOPS = 5;
+    static final int NET_RECEIVE = 6;
+    static final int NET_SEND = 7;
+    // 之后依次是每个核心的使用率
+    static final int FIRST_CORE = 8;
+
+    private static final Path PROC_STAT = Paths.get("/proc/stat");
+    private static final Path MEMINFO = Paths.get("/proc/meminfo");
+    private static final Path DISKSTATS = Paths.get("/proc/diskstats");
+    private static final Path NET_DEV = Paths.get("/proc/net/dev");
+    private static final long RECORD_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int SECTOR_SIZE = 512;
+
+    // 磁盘或网卡的累计计数器
+    private static class Device {
+        final byte[] name;
+        // 只统计物理设备，分区、loop、dm 等虚拟设备会重复计数
+        final boolean physical;
+        final long[] counters = new long[4];
+        boolean seen;
+
+        Device(byte[] name, boolean physical) {
+            this.name = name;
+            this.physical = physical;
+        }
+    }
+
+    private final ProcFile file = new ProcFile(65536);
+    private final boolean hasDiskStats = Files.isReadable(DISKSTATS);
+    private final boolean hasNetDev = Files.isReadable(NET_DEV);
+    private final int coreCount;
+    private final long[] lastCpuTotal;
+    private final long[] lastCpuIdle;
+    private final List<Device> disks = new ArrayList<>();
+    private final List<Device> interfaces = new ArrayList<>();
+    private long memoryTotal;
+    private long swapTotal;
+
+    private final double[] current;
+    private final double[] published;
+    private final double[] sums;
+    private int sumCount;
+    private final TimeSeries[] series;
+
+    private long lastSampleNanos;
+    private long lastRecordNanos;
+
+    static boolean isSupported() {
+        return Files.isReadable(PROC_STAT) && Files.isReadable(MEMINFO);
+    }
+
+    SystemMetrics() throws IOException {
+        coreCount = countCores();
+        int metrics = FIRST_CORE + coreCount;
+        lastCpuTotal = new long[coreCount + 1];
+        lastCpuIdle = new long[coreCount + 1];
+        current = new double[metrics];
+        published = new double[metrics];
+        sums = new double[metrics];
+        series = new TimeSeries[metrics];
+        for (int i = 0; i < metrics; i++) {
+            series[i] = new TimeSeries();
+        }
+    }
+
+    int getCoreCount() {
+        return coreCount;
+    }
+
+    synchronized long getMemoryTotal() {
+        return memoryTotal;
+    }
+
+    synchronized long getSwapTotal() {
+        return swapTotal;
+    }
+
+    // 最近一次采样的值：CPU 为百分比，内存为字节，磁盘和网络为每秒字节数或次数
+    synchronized double get(int metric) {
+        return published[metric];
+    }
+
+    TimeSeries getSeries(int metric) {
+        return series[metric];
+    }
+
+    void sample() throws IOException {
+        long now = System.nanoTime();
+        double seconds = lastSampleNanos > 0 ? (now - lastSampleNanos) / 1e9 : 0;
+        lastSampleNanos = now;
+
+        readCpu();
+        readMemory();
+        readDisks(seconds);
+        readNetwork(seconds);
+
+        synchronized (this) {
+            System.arraycopy(current, 0, published, 0, current.length);
+        }
+
+        // 第一次采样没有差值，不写入历史
+        if (seconds <= 0) {
+            lastRecordNanos = now;
+            return;
+        }
+        for (int i = 0; i < current.length; i++) {
+            sums[i] += current[i];
+        }
+        sumCount++;
+        if (now - lastRecordNanos >= RECORD_INTERVAL_NANOS) {
+            long time = System.currentTimeMillis();
+            for (int i = 0; i < sums.length; i++) {
+                series[i].add(time, sums[i] / sumCount);
+                sums[i] = 0;
+            }
+            sumCount = 0;
+            lastRecordNanos = now;
+        }
+    }
+
+    private int countCores() throws IOException {
+        file.read(PROC_STAT);
+        int cores = 0;
+        while (file.nextLine()) {
+            if (!file.startsWith("cpu")) break;
+            cores++;
+        }
+        return cores;
+    }
+
+    // cpu 行：user nice system idle iowait irq softirq steal，idle 与 iowait 计为空闲
+    private void readCpu() throws IOException {
+        file.read(PROC_STAT);
+        for (int line = 0; line <= coreCount; line++) {
+            if (!file.startsWith("cpu")) break;
+            file.skipField();
+            long total = 0;
+            long idle = 0;
+            for (int i = 0; i < 8; i++) {
+                long value = file.nextLong();
+                total += value;
+                if (i == 3 || i == 4) idle += value;
+            }
+
+            long deltaTotal = total - lastCpuTotal[line];
+            long deltaIdle = idle - lastCpuIdle[line];
+            double usage = lastCpuTotal[line] > 0 && deltaTotal > 0 ? (deltaTotal - deltaIdle) * 100.0 / deltaTotal : 0;
+            current[line == 0 ? CPU : FIRST_CORE + line - 1] = Math.max(0, Math.min(100, usage));
+            lastCpuTotal[line] = total;
+            lastCpuIdle[line] = idle;
+            if (!file.nextLine()) break;
+        }
+    }
+
+    private void readMemory() throws IOException {
+        file.read(MEMINFO);
+        long total = 0, available = 0, swapTotalKb = 0, swapFree = 0;
+        do {
+            if (file.startsWith("MemTotal:")) {
+                file.skipField();
+                total = file.nextLong();
+            } else if (file.startsWith("MemAvailable:")) {
+                file.skipField();
+                available = file.nextLong();
+            } else if (file.startsWith("SwapTotal:")) {
+                file.skipField();
+                swapTotalKb = file.nextLong();
+            } else if (file.startsWith("SwapFree:")) {
+                file.skipField();
+                swapFree = file.nextLong();
+            }
+        } while (file.nextLine());
+
+        synchronized (this) {
+            memoryTotal = total * 1024;
+            swapTotal = swapTotalKb * 1024;
+        }
+        current[MEMORY] = (total - available) * 1024.0;
+        current[SWAP] = (swapTotalKb - swapFree) * 1024.0;
+    }
+
+    // diskstats 每行：major minor 名称 读完成 读合并 读扇区 读耗时 写完成 写合并 写扇区 ...
+    private void readDisks(double seconds) throws IOException {
+        if (!hasDiskStats) return;
+        file.read(DISKSTATS);
+        long reads = 0, readSectors = 0, writes = 0, writeSectors = 0;
+        do {
+            file.skipFields(2);
+            file.skipSpaces();
+            int nameStart = file.position;
+            file.skipField();
+            Device disk = findDevice(disks, nameStart, file.position, "/sys/block/");
+            if (disk == null || !disk.physical) continue;
+
+            long diskReads = file.nextLong();
+            file.skipField();
+            long diskReadSectors = file.nextLong();
+            file.skipField();
+            long diskWrites = file.nextLong();
+            file.skipField();
+            long diskWriteSectors = file.nextLong();
+
+            // 新出现的设备本次不计入速率
+            long[] counters = disk.counters;
+            if (disk.seen) {
+                reads += diskReads - counters[0];
+                readSectors += diskReadSectors - counters[1];
+                writes += diskWrites - counters[2];
+                writeSectors += diskWriteSectors - counters[3];
+            }
+            counters[0] = diskReads;
+            counters[1] = diskReadSectors;
+            counters[2] = diskWrites;
+            counters[3] = diskWriteSectors;
+            disk.seen = true;
+        } while (file.nextLine());
+
+        current[DISK_READ] = rate(readSectors, seconds) * SECTOR_SIZE;
+        current[DISK_WRITE] = rate(writeSectors, seconds) * SECTOR_SIZE;
+        current[DISK_IOPS] = rate(reads + writes, seconds);
+    }
+
+    // net/dev 每行：名称: 接收字节 包 错误 丢弃 fifo frame compressed multicast 发送字节 ...
+    private void readNetwork(double seconds) throws IOException {
+        if (!hasNetDev) return;
+        file.read(NET_DEV);
+        // 跳过两行表头
+        file.nextLine();
+        if (!file.nextLine()) return;
+
+        long physicalDelta = 0, physicalSendDelta = 0, otherDelta = 0, otherSendDelta = 0;
+        boolean anyPhysical = false;
+        do {
+            file.skipSpaces();
+            int nameStart = file.position;
+            int colon = file.indexOf((byte) ':');
+            if (colon < 0) break;
+            Device device = findDevice(interfaces, nameStart, colon, "/sys/class/net/");
+            file.position = colon + 1;
+            long received = file.nextLong();
+            file.skipFields(7);
+            long sent = file.nextLong();
+            if (device == null || (colon - nameStart == 2 && file.bytes[nameStart] == 'l' && file.bytes[nameStart + 1] == 'o')) {
+                continue;
+            }
+
+            long[] counters = device.counters;
+            long receiveDelta = device.seen ? received - counters[0] : 0;
+            long sendDelta = device.seen ? sent - counters[1] : 0;
+            counters[0] = received;
+            counters[1] = sent;
+            device.seen = true;
+            if (device.physical) {
+                anyPhysical = true;
+                physicalDelta += receiveDelta;
+                physicalSendDelta += sendDelta;
+            } else {
+                otherDelta += receiveDelta;
+                otherSendDelta += sendDelta;
+            }
+        } while (file.nextLine());
+
+        // 容器和虚拟机中通常没有物理网卡，此时统计除 lo 以外的全部接口
+        current[NET_RECEIVE] = rate(anyPhysical ? physicalDelta : otherDelta, seconds);
+        current[NET_SEND] = rate(anyPhysical ? physicalSendDelta : otherSendDelta, seconds);
+    }
+
+    private Device findDevice(List<Device> devices, int start, int end, String sysDirectory) {
+        if (end <= start) return null;
+        for (Device device : devices) {
+            if (file.regionEquals(start, end, device.name)) return device;
+        }
+        // 新设备：只在第一次出现时创建名称并检查 sysfs
+        byte[] name = new byte[end - start];
+        System.arraycopy(file.bytes, start, name, 0, name.length);
+        boolean physical = Files.exists(Paths.get(sysDirectory, new String(name, StandardCharsets.UTF_8), "device"));
+        Device device = new Device(name, physical);
+        devices.add(device);
+        return device;
+    }
+
+    private static double rate(long delta, double seconds) {
+        return seconds > 0 && delta > 0 ? delta / seconds : 0;
+    }
+}
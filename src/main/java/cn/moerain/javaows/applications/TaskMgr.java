@@ -1,45 +1,76 @@
 package cn.moerain.javaows.applications;
 
-
+import cn.moerain.javaows.misc.EdtWatchdog;
+import cn.moerain.javaows.misc.NamedThreadFactory;
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import javax.swing.plaf.metal.MetalLookAndFeel;
 import javax.swing.plaf.metal.MetalTheme;
 import javax.swing.plaf.metal.DefaultMetalTheme;
 import javax.swing.plaf.metal.OceanTheme;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class TaskMgr extends JFrame {
     private JTabbedPane tabbedPane;
     private JTable processTable;
-    private DefaultTableModel processTableModel;
+    private ProcessTableModel processTableModel;
     private JLabel statusLabel;
     private JLabel performanceLabel;
     private JProgressBar memoryBar;
     private JProgressBar cpuBar;
-    private Timer updateTimer;
+    private Timer uiTimer;
+    // 在 ToolLauncher 中承载内容面板的内部框架，单独运行时为 null
+    private JInternalFrame hostFrame;
+    private boolean closed;
+    private long drawnHistoryTicks = -1;
     private List<ProcessInfo> processes;
 
-    // 线程池用于异步处理
-    private ExecutorService executor = Executors.newFixedThreadPool(2);
-    private volatile boolean isLoading = false;
+    // 树状视图：按父进程组织并汇总子树的 CPU 和内存，只在 EDT 上访问
+    private final ProcessTree processTree = new ProcessTree();
+    private JCheckBoxMenuItem treeViewItem;
+
+    // 结束进程、新建任务等用户操作；采样不在这里进行
+    private ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TaskMgr-Worker"));
+
+    // 所有采样都在采样管线的线程上进行，界面只取它发布的快照
+    private final MetricsCollector collector = new MetricsCollector();
+    // 开启“指标导出”后才创建，只监听本机
+    private MetricsExporter exporter;
+
+    // 性能历史和曲线图
+    private final PerformanceHistory history = collector.getHistory();
+    private final List<TimeSeriesChart> charts = new ArrayList<>();
+    private TimeSeriesChart processCpuChart;
+    private TimeSeriesChart processMemoryChart;
+
+    // 整机指标，250 毫秒采样一次；不支持 /proc 时为 null
+    private final SystemMetrics systemMetrics = collector.getSystemMetrics();
+
+    // Javaows 自身 JVM 的 GC、线程分配和 JIT 指标，每秒采样一次
+    private final JvmMonitor jvmMonitor = collector.getJvmMonitor();
+    private JvmPanel jvmPanel;
+    private ProfilePanel profilePanel;
 
     // 系统监控相关
     private OperatingSystemMXBean osBean;
@@ -50,34 +81,10 @@ public class TaskMgr extends JFrame {
     private int processorCount;
 
     // Metal主题颜色
-    private static final Color METAL_BLUE = new Color(102, 153, 204);
-    private static final Color METAL_GRAY = new Color(204, 204, 204);
-    private static final Color METAL_DARK_GRAY = new Color(102, 102, 102);
-    private static final Color METAL_LIGHT_GRAY = new Color(238, 238, 238);
-
-    // 进程信息类
-    static class ProcessInfo {
-        String imageName;
-        String pid;
-        String sessionName;
-        String sessionId;
-        String memUsage;
-        String cpuUsage;
-        String status;
-        String user;
-
-        ProcessInfo(String imageName, String pid, String sessionName, String sessionId,
-                   String memUsage, String cpuUsage, String status, String user) {
-            this.imageName = imageName;
-            this.pid = pid;
-            this.sessionName = sessionName;
-            this.sessionId = sessionId;
-            this.memUsage = memUsage;
-            this.cpuUsage = cpuUsage;
-            this.status = status;
-            this.user = user;
-        }
-    }
+    static final Color METAL_BLUE = new Color(102, 153, 204);
+    static final Color METAL_GRAY = new Color(204, 204, 204);
+    static final Color METAL_DARK_GRAY = new Color(102, 102, 102);
+    static final Color METAL_LIGHT_GRAY = new Color(238, 238, 238);
 
     public TaskMgr() {
         // 设置Metal外观
@@ -87,9 +94,7 @@ public class TaskMgr extends JFrame {
         processes = new ArrayList<>();
         setupUI();
         setupTimer();
-
-        // 异步加载进程数据，避免阻塞EDT
-        loadRealProcessDataAsync();
+        statusLabel.setText("正在加载进程...");
     }
 
     private void setupMetalLookAndFeel() {
@@ -168,6 +173,15 @@ public class TaskMgr extends JFrame {
         // 创建性能选项卡
         createPerformanceTab();
 
+        // 创建JVM选项卡
+        jvmPanel = new JvmPanel(jvmMonitor);
+        charts.addAll(jvmPanel.getCharts());
+        tabbedPane.addTab("JVM", jvmPanel);
+
+        // 创建性能分析选项卡
+        profilePanel = new ProfilePanel();
+        tabbedPane.addTab("性能分析", profilePanel);
+
         add(tabbedPane, BorderLayout.CENTER);
 
         // 创建状态栏
@@ -219,8 +233,23 @@ public class TaskMgr extends JFrame {
         refreshItem.addActionListener(e -> refreshProcesses());
         styleMenuItem(refreshItem);
 
+        JMenuItem profileItem = new JMenuItem("性能分析(P)");
+        profileItem.setMnemonic('P');
+        profileItem.addActionListener(e -> {
+            tabbedPane.setSelectedComponent(profilePanel);
+            profilePanel.startRecording();
+        });
+        styleMenuItem(profileItem);
+
         optionsMenu.add(alwaysOnTopItem);
         optionsMenu.add(refreshItem);
+        optionsMenu.addSeparator();
+        optionsMenu.add(profileItem);
+
+        JCheckBoxMenuItem exportItem = new JCheckBoxMenuItem("指标导出 (HTTP " + MetricsExporter.DEFAULT_PORT + ")");
+        exportItem.addActionListener(e -> exportItem.setSelected(setExporting(exportItem.isSelected())));
+        styleMenuItem(exportItem);
+        optionsMenu.add(exportItem);
 
         // 查看菜单
         JMenu viewMenu = new JMenu("查看(V)");
@@ -232,7 +261,13 @@ public class TaskMgr extends JFrame {
         updateSpeedItem.addActionListener(e -> showUpdateSpeedDialog());
         styleMenuItem(updateSpeedItem);
 
+        treeViewItem = new JCheckBoxMenuItem("树状视图(T)");
+        treeViewItem.setMnemonic('T');
+        treeViewItem.addActionListener(e -> setTreeView(treeViewItem.isSelected()));
+        styleMenuItem(treeViewItem);
+
         viewMenu.add(updateSpeedItem);
+        viewMenu.add(treeViewItem);
 
         // 帮助菜单
         JMenu helpMenu = new JMenu("帮助(H)");
@@ -270,16 +305,11 @@ public class TaskMgr extends JFrame {
         JPanel processPanel = new JPanel(new BorderLayout());
         processPanel.setBackground(METAL_LIGHT_GRAY);
 
-        // 创建进程表格
-        String[] columnNames = {"映像名称", "PID", "用户名", "会话名", "内存使用", "CPU使用率", "状态"};
-        processTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // 创建进程表格，按 PID 增量更新并支持点击表头排序
+        processTableModel = new ProcessTableModel();
 
         processTable = new JTable(processTableModel);
+        processTable.setRowSorter(processTableModel.createRowSorter());
         processTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         processTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
 
@@ -340,6 +370,12 @@ public class TaskMgr extends JFrame {
         // 添加右键菜单
         createProcessContextMenu();
 
+        processTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                updateSelectedProcessCharts();
+            }
+        });
+
         JScrollPane scrollPane = new JScrollPane(processTable);
         scrollPane.setBackground(METAL_LIGHT_GRAY);
         scrollPane.getViewport().setBackground(Color.WHITE);
@@ -354,6 +390,10 @@ public class TaskMgr extends JFrame {
         JButton endProcessButton = new JButton("结束进程");
         styleButton(endProcessButton);
         endProcessButton.addActionListener(e -> endSelectedProcess());
+        JButton endTreeButton = new JButton("结束进程树");
+        styleButton(endTreeButton);
+        endTreeButton.addActionListener(e -> endSelectedProcessTree());
+        buttonPanel.add(endTreeButton);
         buttonPanel.add(endProcessButton);
 
         processPanel.add(buttonPanel, BorderLayout.SOUTH);
@@ -415,14 +455,126 @@ public class TaskMgr extends JFrame {
         performanceLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
         performanceLabel.setForeground(Color.BLACK);
         performanceLabel.setVerticalAlignment(SwingConstants.TOP);
-        updatePerformanceInfo();
+        updatePerformanceInfo(collector.getMemoryTotal(), collector.getMemoryUsed());
         metricsPanel.add(performanceLabel, gbc);
 
-        performancePanel.add(metricsPanel, BorderLayout.CENTER);
+        performancePanel.add(metricsPanel, BorderLayout.NORTH);
+        performancePanel.add(createChartsPanel(), BorderLayout.CENTER);
 
         tabbedPane.addTab("性能", performancePanel);
     }
 
+    private JPanel createChartsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(METAL_LIGHT_GRAY);
+        panel.setBorder(BorderFactory.createTitledBorder(
+            BorderFactory.createRaisedBevelBorder(), "历史",
+            0, 0, new Font("SansSerif", Font.BOLD, 14), Color.BLACK));
+
+        JComboBox<String> rangeBox = new JComboBox<>(new String[]{"最近 10 分钟 (1 秒)", "最近 24 小时 (10 秒)"});
+        rangeBox.addActionListener(e -> {
+            int resolution = rangeBox.getSelectedIndex() == 0 ? TimeSeries.FINE : TimeSeries.COARSE;
+            for (TimeSeriesChart chart : charts) {
+                chart.setResolution(resolution);
+            }
+        });
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        topPanel.setBackground(METAL_LIGHT_GRAY);
+        topPanel.add(rangeBox);
+        panel.add(topPanel, BorderLayout.NORTH);
+
+        JPanel content = new JPanel();
+        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
+        content.setBackground(METAL_LIGHT_GRAY);
+
+        if (systemMetrics != null) {
+            JPanel systemGrid = createChartGrid(content, "系统", 2);
+            addChart(systemGrid, new TimeSeriesChart("CPU", METAL_BLUE, 100, v -> String.format("%.1f%%", v)),
+                systemMetrics.getSeries(SystemMetrics.CPU));
+            addChart(systemGrid, new TimeSeriesChart("内存", new Color(34, 139, 34), systemMetrics.getMemoryTotal(), v -> formatBytes((long) v)),
+                systemMetrics.getSeries(SystemMetrics.MEMORY));
+            addChart(systemGrid, new TimeSeriesChart("交换空间", new Color(139, 69, 19), systemMetrics.getSwapTotal(), v -> formatBytes((long) v)),
+                systemMetrics.getSeries(SystemMetrics.SWAP));
+            addChart(systemGrid, new TimeSeriesChart("磁盘 IOPS", new Color(238, 154, 0), 0, v -> String.format("%.0f 次/秒", v)),
+                systemMetrics.getSeries(SystemMetrics.DISK_IOPS));
+            addChart(systemGrid, new TimeSeriesChart("磁盘读取", new Color(0, 139, 139), 0, v -> formatBytes((long) v) + "/s"),
+                systemMetrics.getSeries(SystemMetrics.DISK_READ));
+            addChart(systemGrid, new TimeSeriesChart("磁盘写入", new Color(205, 92, 92), 0, v -> formatBytes((long) v) + "/s"),
+                systemMetrics.getSeries(SystemMetrics.DISK_WRITE));
+            addChart(systemGrid, new TimeSeriesChart("网络接收", new Color(65, 105, 225), 0, v -> formatBytes((long) v) + "/s"),
+                systemMetrics.getSeries(SystemMetrics.NET_RECEIVE));
+            addChart(systemGrid, new TimeSeriesChart("网络发送", new Color(147, 112, 219), 0, v -> formatBytes((long) v) + "/s"),
+                systemMetrics.getSeries(SystemMetrics.NET_SEND));
+
+            JPanel coreGrid = createChartGrid(content, "CPU 核心", 4);
+            for (int i = 0; i < systemMetrics.getCoreCount(); i++) {
+                TimeSeriesChart chart = new TimeSeriesChart("CPU " + i, METAL_BLUE, 100, v -> String.format("%.0f%%", v));
+                chart.setPreferredSize(new Dimension(120, 70));
+                addChart(coreGrid, chart, systemMetrics.getSeries(SystemMetrics.FIRST_CORE + i));
+            }
+        }
+
+        JPanel grid = createChartGrid(content, "Javaows", 2);
+        addChart(grid, new TimeSeriesChart("CPU (Javaows)", METAL_BLUE, 100, v -> String.format("%.1f%%", v)), history.cpu);
+        addChart(grid, new TimeSeriesChart("堆内存", new Color(34, 139, 34), history.getHeapMax(), v -> formatBytes((long) v)), history.heapUsed);
+        addChart(grid, new TimeSeriesChart("GC 时间占比", new Color(205, 92, 92), 0, v -> String.format("%.1f%%", v)), history.gcPercent);
+        addChart(grid, new TimeSeriesChart("线程数", new Color(147, 112, 219), 0, v -> String.valueOf((long) v)), history.threadCount);
+        processCpuChart = new TimeSeriesChart("所选进程 CPU", METAL_BLUE, 100, v -> String.format("%.1f%%", v));
+        processMemoryChart = new TimeSeriesChart("所选进程内存", new Color(34, 139, 34), 0, v -> formatBytes((long) v));
+        addChart(grid, processCpuChart, null);
+        addChart(grid, processMemoryChart, null);
+
+        JScrollPane scrollPane = new JScrollPane(content);
+        scrollPane.setBorder(null);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private JPanel createChartGrid(JPanel content, String title, int columns) {
+        JPanel grid = new JPanel(new GridLayout(0, columns, 6, 6));
+        grid.setBackground(METAL_LIGHT_GRAY);
+        grid.setBorder(BorderFactory.createTitledBorder(title));
+        content.add(grid);
+        return grid;
+    }
+
+    private void addChart(JPanel grid, TimeSeriesChart chart, TimeSeries series) {
+        chart.setSeries(series);
+        charts.add(chart);
+        grid.add(chart);
+    }
+
+    // 进程表选中行变化时切换进程曲线的数据源
+    private void updateSelectedProcessCharts() {
+        int selectedRow = processTable.getSelectedRow();
+        String pid = selectedRow >= 0
+            ? processTableModel.getProcess(processTable.convertRowIndexToModel(selectedRow)).pid : null;
+        processCpuChart.setSeries(pid != null ? history.getProcessCpu(pid) : null);
+        processMemoryChart.setSeries(pid != null ? history.getProcessMemory(pid) : null);
+    }
+
+    // 界面定时器：取最新的进程快照；性能历史有新记录时重绘曲线。窗口最小化时什么都不做
+    private void pullSnapshot() {
+        if (collector.isBackground()) return;
+
+        MetricsCollector.Snapshot snapshot = collector.takeSnapshot();
+        if (snapshot != null) {
+            showSnapshot(snapshot);
+        }
+
+        long historyTicks = collector.getHistoryTicks();
+        if (historyTicks != drawnHistoryTicks) {
+            drawnHistoryTicks = historyTicks;
+            for (TimeSeriesChart chart : charts) {
+                chart.update();
+            }
+            if (jvmPanel.isShowing()) {
+                jvmPanel.update();
+            }
+        }
+    }
+
     private void styleButton(JButton button) {
         button.setBackground(METAL_LIGHT_GRAY);
         button.setForeground(Color.BLACK);
@@ -465,15 +617,33 @@ public class TaskMgr extends JFrame {
         endProcessItem.addActionListener(e -> endSelectedProcess());
         styleMenuItem(endProcessItem);
 
+        JMenuItem endTreeItem = new JMenuItem("结束进程树");
+        endTreeItem.addActionListener(e -> endSelectedProcessTree());
+        styleMenuItem(endTreeItem);
+
         JMenuItem refreshItem = new JMenuItem("刷新");
         refreshItem.addActionListener(e -> refreshProcesses());
         styleMenuItem(refreshItem);
 
         contextMenu.add(endProcessItem);
+        contextMenu.add(endTreeItem);
         contextMenu.addSeparator();
         contextMenu.add(refreshItem);
 
         processTable.addMouseListener(new MouseAdapter() {
+            // 树状视图中双击有子进程的行展开或折叠
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2 || !processTableModel.isTreeMode()) return;
+                int row = processTable.rowAtPoint(e.getPoint());
+                if (row < 0) return;
+                ProcessInfo process = processTableModel.getProcess(processTable.convertRowIndexToModel(row));
+                if (process.childCount > 0) {
+                    processTree.setCollapsed(process.pid, !processTree.isCollapsed(process.pid));
+                    showTreeRows();
+                }
+            }
+
             @Override
             public void mousePressed(MouseEvent e) {
                 if (e.isPopupTrigger()) {
@@ -498,239 +668,135 @@ public class TaskMgr extends JFrame {
         });
     }
 
-    // 异步加载进程数据，避免阻塞EDT
-    private void loadRealProcessDataAsync() {
-        if (isLoading) return;
-
-        isLoading = true;
-        statusLabel.setText("正在加载进程...");
-
-        executor.submit(() -> {
-            try {
-                List<ProcessInfo> newProcesses = new ArrayList<>();
-
-                if (System.getProperty("os.name").toLowerCase().contains("windows")) {
-                    loadWindowsProcesses(newProcesses);
-                } else {
-                    loadUnixProcesses(newProcesses);
-                }
-
-                // 在EDT中更新UI
-                SwingUtilities.invokeLater(() -> {
-                    synchronized (processes) {
-                        processes.clear();
-                        processes.addAll(newProcesses);
-                    }
-                    refreshProcessTable();
-                    isLoading = false;
-                });
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    statusLabel.setText("加载进程失败: " + e.getMessage());
-                    isLoading = false;
-                });
-            }
-        });
-    }
-
-    private void loadWindowsProcesses(List<ProcessInfo> processList) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("tasklist", "/fo", "csv", "/v");
-            Process process = pb.start();
-
-            // 设置超时，避免无限等待
-            Future<?> future = executor.submit(() -> {
-                try {
-                    BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(process.getInputStream(), "GBK")
-                    );
-
-                    String line;
-                    int count = 0;
-                    while ((line = reader.readLine()) != null) {
-                        if (count++ == 0) continue; // 跳过标题
-
-                        String[] parts = parseCSVLine(line);
-                        if (parts.length >= 8) {
-                            processList.add(new ProcessInfo(
-                                parts[0], parts[1], parts[2], parts[3],
-                                parts[4], "0", parts[5], parts[6]
-                            ));
-                        }
-                    }
-                    reader.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
-
-            // 等待最多5秒
-            try {
-                future.get(5, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                future.cancel(true);
-                process.destroyForcibly();
+    private void refreshProcessTable() {
+        // 只对比变化的行发出事件，保留选中行、滚动位置和排序
+        synchronized (processes) {
+            processTree.update(processes);
+            if (processTableModel.isTreeMode()) {
+                showTreeRows();
+            } else {
+                processTableModel.update(processes);
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void loadUnixProcesses(List<ProcessInfo> processList) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("ps", "-eo", "pid,ppid,user,comm,pmem,pcpu,stat");
-            Process process = pb.start();
-
-            // 设置超时，避免无限等待
-            Future<?> future = executor.submit(() -> {
-                try {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                    String line;
-                    boolean firstLine = true;
-
-                    while ((line = reader.readLine()) != null) {
-                        if (firstLine) {
-                            firstLine = false;
-                            continue; // 跳过标题行
-                        }
-
-                        String[] parts = line.trim().split("\\s+");
-                        if (parts.length >= 7) {
-                            String pid = parts[0];
-                            String user = parts[2];
-                            String comm = parts[3];
-                            String mem = parts[4] + "%";
-                            String cpu = parts[5];
-                            String stat = parts[6];
-
-                            processList.add(new ProcessInfo(comm, pid, "Console", "0",
-                                                          mem, cpu, stat, user));
-                        }
-                    }
-                    reader.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
-
-            // 等待最多5秒
-            try {
-                future.get(5, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                future.cancel(true);
-                process.destroyForcibly();
+            // 刚选中的进程可能在上一次采样之后才有历史
+            if (processCpuChart.getSeries() == null) {
+                updateSelectedProcessCharts();
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
+            statusLabel.setText("进程: " + processes.size());
         }
     }
 
-    private String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder current = new StringBuilder();
-
-        for (char c : line.toCharArray()) {
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                result.add(current.toString().trim());
-                current.setLength(0);
-            } else {
-                current.append(c);
-            }
+    // 树状视图按 ProcessTree 的顺序整体替换行，然后按 PID 恢复选中行
+    private void showTreeRows() {
+        int selectedRow = processTable.getSelectedRow();
+        String selectedPid = selectedRow >= 0
+            ? processTableModel.getProcess(processTable.convertRowIndexToModel(selectedRow)).pid : null;
+        processTableModel.setRows(processTree.flatten(), processTree.getCollapsed());
+        int row = selectedPid != null ? processTableModel.indexOf(selectedPid) : -1;
+        if (row >= 0) {
+            processTable.setRowSelectionInterval(row, row);
         }
-        result.add(current.toString().trim());
-
-        return result.toArray(new String[0]);
     }
 
-    private void refreshProcessTable() {
-        processTableModel.setRowCount(0);
-
-        synchronized (processes) {
-            for (ProcessInfo process : processes) {
-                processTableModel.addRow(new Object[]{
-                    process.imageName,
-                    process.pid,
-                    process.user,
-                    process.sessionName,
-                    process.memUsage,
-                    process.cpuUsage + "%",
-                    process.status
-                });
+    // 树状视图的行顺序由父子关系决定，不能再按列排序
+    private void setTreeView(boolean enabled) {
+        if (enabled == processTableModel.isTreeMode()) return;
+        processTableModel.setTreeMode(enabled);
+        if (enabled) {
+            processTable.setRowSorter(null);
+            showTreeRows();
+        } else {
+            synchronized (processes) {
+                processTableModel.update(processes);
             }
-            statusLabel.setText("进程: " + processes.size());
+            processTable.setRowSorter(processTableModel.createRowSorter());
         }
+        treeViewItem.setSelected(enabled);
     }
 
     private void setupTimer() {
-        // 修复Timer循环依赖问题
-        updateTimer = new Timer(3000, e -> {
+        // 采样由 MetricsCollector 的线程完成，这里只按重绘频率取快照
+        uiTimer = new Timer((int) MetricsCollector.TICK_MILLIS, e -> {
             try {
-                updatePerformanceData();
-                if (tabbedPane.getSelectedIndex() == 0 && !isLoading) {
-                    loadRealProcessDataAsync();
-                }
+                pullSnapshot();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
         });
-        updateTimer.start();
+        uiTimer.start();
+
+        // 界面不可见时采样管线降频。在 ToolLauncher 中只有内容面板被放进内部框架，
+        // 这个 JFrame 本身从不显示，所以看内容面板是否在屏幕上：内部框架最小化时会被移出桌面
+        JComponent content = (JComponent) getContentPane();
+        content.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                updateSamplingMode();
+            }
+            if ((e.getChangeFlags() & HierarchyEvent.PARENT_CHANGED) != 0) {
+                attachToInternalFrame();
+            }
+        });
+        addWindowStateListener(e -> updateSamplingMode());
+        // 单独运行时关闭窗口即释放资源
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                cleanup();
+            }
+        });
+        collector.start();
+        updateSamplingMode();
     }
 
-    private void updatePerformanceData() {
-        try {
-            // 获取内存使用情况
-            long maxMemory = Runtime.getRuntime().maxMemory();
-            long totalMem = Runtime.getRuntime().totalMemory();
-            long freeMem = Runtime.getRuntime().freeMemory();
-            long usedMem = totalMem - freeMem;
+    private void updateSamplingMode() {
+        JComponent content = (JComponent) getContentPane();
+        Window window = SwingUtilities.getWindowAncestor(content);
+        boolean iconified = window instanceof Frame && (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0;
+        collector.setBackground(!content.isShowing() || iconified);
+    }
 
-            int memoryPercentage = (int) ((usedMem * 100) / maxMemory);
+    // 内容面板放进内部框架后，框架关闭时停止采样、导出和定时器
+    private void attachToInternalFrame() {
+        JInternalFrame frame = (JInternalFrame) SwingUtilities.getAncestorOfClass(JInternalFrame.class, getContentPane());
+        if (frame == null || frame == hostFrame) return;
+        hostFrame = frame;
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                cleanup();
+            }
+        });
+    }
 
-            memoryBar.setValue(memoryPercentage);
-            memoryBar.setString(memoryPercentage + "% (" + formatBytes(usedMem) + " / " + formatBytes(maxMemory) + ")");
+    private void showSnapshot(MetricsCollector.Snapshot snapshot) {
+        if (snapshot.error != null) {
+            statusLabel.setText("加载进程失败: " + snapshot.error);
+            return;
+        }
+        synchronized (processes) {
+            processes.clear();
+            processes.addAll(snapshot.processes);
+        }
+        refreshProcessTable();
 
-            // 获取CPU使用率（简化计算）
-            double cpuUsage = getCPUUsage();
-            cpuBar.setValue((int) cpuUsage);
-            cpuBar.setString(String.format("%.1f%%", cpuUsage));
+        // 整机内存使用情况
+        long totalMem = snapshot.memoryTotal;
+        long usedMem = snapshot.memoryUsed;
+        int memoryPercentage = totalMem > 0 ? (int) ((usedMem * 100) / totalMem) : 0;
 
-            // 更新性能信息
-            updatePerformanceInfo();
+        memoryBar.setValue(memoryPercentage);
+        memoryBar.setString(memoryPercentage + "% (" + formatBytes(usedMem) + " / " + formatBytes(totalMem) + ")");
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
+        // 整机CPU使用率
+        double cpuUsage = snapshot.cpuPercent;
+        cpuBar.setValue((int) cpuUsage);
+        cpuBar.setString(String.format("%.1f%%", cpuUsage));
 
-    private double getCPUUsage() {
-        try {
-            // 使用反射获取CPU使用率（仅适用于某些JVM实现）
-            if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
-                com.sun.management.OperatingSystemMXBean sunOsBean =
-                    (com.sun.management.OperatingSystemMXBean) osBean;
-                double cpuLoad = sunOsBean.getProcessCpuLoad();
-                return cpuLoad >= 0 ? cpuLoad * 100 : 0;
-            }
-        } catch (Exception e) {
-            // 如果无法获取，返回模拟值
-        }
-
-        // 如果无法获取真实CPU使用率，返回基于线程活动的估计值
-        return Math.min(100, Thread.activeCount() * 2);
+        // 更新性能信息
+        updatePerformanceInfo(totalMem, usedMem);
     }
 
-    private void updatePerformanceInfo() {
-        Runtime runtime = Runtime.getRuntime();
-        long totalMemory = runtime.totalMemory();
-        long freeMemory = runtime.freeMemory();
-        long usedMemory = totalMemory - freeMemory;
+    private void updatePerformanceInfo(long totalMemory, long usedMemory) {
+        long heapUsed = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
 
         synchronized (processes) {
             performanceLabel.setText(String.format(
@@ -739,6 +805,7 @@ public class TaskMgr extends JFrame {
                 "<b>系统信息:</b><br>" +
                 "物理内存: %s / %s<br>" +
                 "可用内存: %s<br>" +
+                "Java 堆: %s / %s<br>" +
                 "处理器数: %d<br>" +
                 "运行时间: %s<br>" +
                 "总计进程: %d<br>" +
@@ -747,7 +814,9 @@ public class TaskMgr extends JFrame {
                 "</html>",
                 formatBytes(usedMemory),
                 formatBytes(totalMemory),
-                formatBytes(freeMemory),
+                formatBytes(totalMemory - usedMemory),
+                formatBytes(heapUsed),
+                formatBytes(Runtime.getRuntime().maxMemory()),
                 processorCount,
                 formatUptime(runtimeBean.getUptime()),
                 processes.size()
@@ -755,7 +824,7 @@ public class TaskMgr extends JFrame {
         }
     }
 
-    private String formatBytes(long bytes) {
+    static String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
         if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
@@ -778,8 +847,9 @@ public class TaskMgr extends JFrame {
     private void endSelectedProcess() {
         int selectedRow = processTable.getSelectedRow();
         if (selectedRow >= 0) {
-            String processName = (String) processTableModel.getValueAt(selectedRow, 0);
-            String pid = (String) processTableModel.getValueAt(selectedRow, 1);
+            ProcessInfo selected = processTableModel.getProcess(processTable.convertRowIndexToModel(selectedRow));
+            String processName = selected.imageName;
+            String pid = selected.pid;
 
             int result = JOptionPane.showConfirmDialog(
                 this,
@@ -808,7 +878,7 @@ public class TaskMgr extends JFrame {
 
                         // 刷新进程列表
                         SwingUtilities.invokeLater(() -> {
-                            loadRealProcessDataAsync();
+                            refreshProcesses();
                             JOptionPane.showMessageDialog(this, "进程已结束。", "任务管理器", JOptionPane.INFORMATION_MESSAGE);
                         });
 
@@ -822,6 +892,65 @@ public class TaskMgr extends JFrame {
         }
     }
 
+    // 先记下所有后代再结束，避免根进程退出后子进程被过继而找不到
+    private void endSelectedProcessTree() {
+        int selectedRow = processTable.getSelectedRow();
+        if (selectedRow < 0) return;
+        ProcessInfo selected = processTableModel.getProcess(processTable.convertRowIndexToModel(selectedRow));
+
+        ProcessHandle root;
+        List<ProcessHandle> descendants;
+        try {
+            root = ProcessHandle.of(Long.parseLong(selected.pid)).orElse(null);
+            descendants = root != null ? root.descendants().collect(Collectors.toList()) : null;
+        } catch (NumberFormatException | SecurityException | UnsupportedOperationException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "无法获取进程树: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (root == null) {
+            JOptionPane.showMessageDialog(this, "进程已退出。", "任务管理器", JOptionPane.INFORMATION_MESSAGE);
+            refreshProcesses();
+            return;
+        }
+
+        int result = JOptionPane.showConfirmDialog(
+            this,
+            "您确定要结束进程 \"" + selected.imageName + "\" (PID: " + selected.pid + ") 及其 "
+                + descendants.size() + " 个子进程吗？",
+            "任务管理器警告",
+            JOptionPane.YES_NO_OPTION,
+            JOptionPane.WARNING_MESSAGE
+        );
+        if (result != JOptionPane.YES_OPTION) return;
+
+        executor.submit(() -> {
+            // 先结束根进程，防止它在结束子进程期间继续创建新的子进程
+            List<ProcessHandle> targets = new ArrayList<>(descendants.size() + 1);
+            targets.add(root);
+            targets.addAll(descendants);
+            List<String> failed = new ArrayList<>();
+            for (ProcessHandle handle : targets) {
+                try {
+                    if (handle.isAlive() && !handle.destroyForcibly()) {
+                        failed.add(Long.toString(handle.pid()));
+                    }
+                } catch (SecurityException | IllegalStateException e) {
+                    failed.add(handle.pid() + " (" + e.getMessage() + ")");
+                }
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                refreshProcesses();
+                if (failed.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, "进程树已结束。", "任务管理器", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "以下进程无法结束: " + String.join(", ", failed), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        });
+    }
+
     private void showNewTaskDialog() {
         String program = JOptionPane.showInputDialog(this, "键入程序、文件夹、文档或 Internet 资源的名称，Javaows 将为您打开它。", "新建任务", JOptionPane.PLAIN_MESSAGE);
         if (program != null && !program.trim().isEmpty()) {
@@ -832,7 +961,7 @@ public class TaskMgr extends JFrame {
 
                     // 延迟刷新进程列表
                     Thread.sleep(2000);
-                    SwingUtilities.invokeLater(() -> loadRealProcessDataAsync());
+                    SwingUtilities.invokeLater(() -> refreshProcesses());
 
                 } catch (Exception e) {
                     SwingUtilities.invokeLater(() -> {
@@ -847,43 +976,10 @@ public class TaskMgr extends JFrame {
         String[] options = {"高(1秒)", "正常(3秒)", "低(5秒)", "暂停"};
         int choice = JOptionPane.showOptionDialog(this, "选择更新速度:", "更新速度", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
 
+        // 暂停时仍可通过“刷新”手动采样一次
+        long[] intervals = {1000, 3000, 5000, 0};
         if (choice >= 0) {
-            if (updateTimer != null) {
-                updateTimer.stop();
-            }
-
-            switch (choice) {
-                case 0:
-                    updateTimer = new Timer(1000, e -> {
-                        updatePerformanceData();
-                        if (tabbedPane.getSelectedIndex() == 0 && !isLoading) {
-                            loadRealProcessDataAsync();
-                        }
-                    });
-                    updateTimer.start();
-                    break;
-                case 1:
-                    updateTimer = new Timer(3000, e -> {
-                        updatePerformanceData();
-                        if (tabbedPane.getSelectedIndex() == 0 && !isLoading) {
-                            loadRealProcessDataAsync();
-                        }
-                    });
-                    updateTimer.start();
-                    break;
-                case 2:
-                    updateTimer = new Timer(5000, e -> {
-                        updatePerformanceData();
-                        if (tabbedPane.getSelectedIndex() == 0 && !isLoading) {
-                            loadRealProcessDataAsync();
-                        }
-                    });
-                    updateTimer.start();
-                    break;
-                case 3:
-                    // 暂停
-                    break;
-            }
+            collector.setProcessInterval(intervals[choice]);
         }
     }
 
@@ -902,16 +998,42 @@ public class TaskMgr extends JFrame {
     }
 
     private void refreshProcesses() {
-        if (!isLoading) {
-            loadRealProcessDataAsync();
+        collector.requestRefresh();
+    }
+
+    // 在本机端口上导出与界面相同的指标，返回导出是否处于开启状态
+    private boolean setExporting(boolean enabled) {
+        if (!enabled) {
+            if (exporter != null) {
+                exporter.stop();
+                exporter = null;
+            }
+            return false;
+        }
+        if (exporter != null) return true;
+        try {
+            exporter = new MetricsExporter(collector, InetAddress.getLoopbackAddress(), MetricsExporter.DEFAULT_PORT);
+            exporter.start();
+            statusLabel.setText("指标导出: http://127.0.0.1:" + exporter.getPort() + "/metrics");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            exporter = null;
+            JOptionPane.showMessageDialog(this, "无法开启指标导出: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return false;
         }
     }
 
     // 清理资源
     private void cleanup() {
-        if (updateTimer != null) {
-            updateTimer.stop();
+        if (closed) return;
+        closed = true;
+        if (uiTimer != null) {
+            uiTimer.stop();
         }
+        setExporting(false);
+        collector.close();
+        profilePanel.deleteRecording();
         if (executor != null && !executor.isShutdown()) {
             executor.shutdown();
             try {
@@ -925,8 +1047,10 @@ public class TaskMgr extends JFrame {
     }
 
     public static void main(String[] args) {
+        EdtWatchdog.install();
         SwingUtilities.invokeLater(() -> {
             TaskMgr taskManager = new TaskMgr();
+            taskManager.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
             taskManager.setVisible(true);
         });
     }
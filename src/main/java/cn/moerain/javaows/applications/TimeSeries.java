@@ -0,0 +1,113 @@
+package cn.moerain.javaows.applications;
+
+// 定长环形缓冲区时间序列：数值和时间戳都存放在基本类型数组中，写入时不装箱、不分配。
+// 每个序列同时保存多个分辨率，较粗的分辨率由细样本按时间桶求平均降采样得到。
+// 写入和读取可以在不同线程，方法都是同步的
+class TimeSeries {
+    static final int FINE = 0;
+    static final int COARSE = 1;
+
+    // 默认：1 秒保留 10 分钟，10 秒保留 24 小时
+    static final long FINE_STEP_MILLIS = 1000;
+    static final long COARSE_STEP_MILLIS = 10000;
+    static final int DEFAULT_FINE_CAPACITY = 600;
+    static final int DEFAULT_COARSE_CAPACITY = 8640;
+
+    private static class Ring {
+        final long stepMillis;
+        final double[] values;
+        final long[] times;
+        // 已写入的样本总数，序号 total-1 为最新样本
+        long total;
+
+        // 降采样累加器
+        long bucket = -1;
+        double sum;
+        int count;
+
+        Ring(long stepMillis, int capacity) {
+            this.stepMillis = stepMillis;
+            this.values = new double[capacity];
+            this.times = new long[capacity];
+        }
+
+        void append(long time, double value) {
+            int index = (int) (total % values.length);
+            values[index] = value;
+            times[index] = time;
+            total++;
+        }
+    }
+
+    private final Ring[] rings;
+
+    TimeSeries() {
+        this(DEFAULT_FINE_CAPACITY, DEFAULT_COARSE_CAPACITY);
+    }
+
+    TimeSeries(int fineCapacity, int coarseCapacity) {
+        rings = new Ring[]{
+            new Ring(FINE_STEP_MILLIS, fineCapacity),
+            new Ring(COARSE_STEP_MILLIS, coarseCapacity)
+        };
+    }
+
+    synchronized void add(long timeMillis, double value) {
+        rings[FINE].append(timeMillis, value);
+
+        for (int r = FINE + 1; r < rings.length; r++) {
+            Ring ring = rings[r];
+            long bucket = timeMillis / ring.stepMillis;
+            // 进入新的时间桶时写出上一个桶的平均值
+            if (bucket != ring.bucket && ring.count > 0) {
+                ring.append(ring.bucket * ring.stepMillis, ring.sum / ring.count);
+                ring.sum = 0;
+                ring.count = 0;
+            }
+            ring.bucket = bucket;
+            ring.sum += value;
+            ring.count++;
+        }
+    }
+
+    synchronized long getTotal(int resolution) {
+        return rings[resolution].total;
+    }
+
+    int getCapacity(int resolution) {
+        return rings[resolution].values.length;
+    }
+
+    // 最早仍保留的样本序号
+    synchronized long getFirst(int resolution) {
+        Ring ring = rings[resolution];
+        return Math.max(0, ring.total - ring.values.length);
+    }
+
+    // sequence 必须在 [getFirst, getTotal) 之内
+    synchronized double getValue(int resolution, long sequence) {
+        Ring ring = rings[resolution];
+        return ring.values[(int) (sequence % ring.values.length)];
+    }
+
+    synchronized long getTime(int resolution, long sequence) {
+        Ring ring = rings[resolution];
+        return ring.times[(int) (sequence % ring.times.length)];
+    }
+
+    // 最新样本，没有样本时返回 NaN
+    synchronized double getLatest() {
+        Ring ring = rings[FINE];
+        return ring.total > 0 ? ring.values[(int) ((ring.total - 1) % ring.values.length)] : Double.NaN;
+    }
+
+    // 最近 count 个样本中的最大值
+    synchronized double getMax(int resolution, int count) {
+        Ring ring = rings[resolution];
+        double max = 0;
+        for (long s = Math.max(getFirst(resolution), ring.total - count); s < ring.total; s++) {
+            max = Math.max(max, ring.values[(int) (s % ring.values.length)]);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,188 @@
+package cn.moerain.javaows.applications;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.DoubleFunction;
+
+// 滚动折线图：曲线绘制在一张环形使用的缓冲图像上，每来一个新样本只绘制最新的一列，
+// 绘制时把图像分成两段拼接显示；只有尺寸、分辨率、数据源或纵轴范围变化时才整体重绘
+class TimeSeriesChart extends JComponent {
+    private static final int STEP = 2;
+    private static final int GRID_LINES = 4;
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color GRID_COLOR = new Color(225, 232, 240);
+
+    private final String title;
+    private final Color color;
+    private final DoubleFunction<String> formatter;
+    private final boolean autoScale;
+    private TimeSeries series;
+    private int resolution = TimeSeries.FINE;
+    private double maxValue;
+
+    private BufferedImage image;
+    private int columns;
+    private long drawnTotal;
+
+    // maxValue <= 0 时纵轴按数据自动缩放
+    TimeSeriesChart(String title, Color color, double maxValue, DoubleFunction<String> formatter) {
+        this.title = title;
+        this.color = color;
+        this.maxValue = maxValue;
+        this.autoScale = maxValue <= 0;
+        this.formatter = formatter;
+        setPreferredSize(new Dimension(260, 110));
+        setBorder(BorderFactory.createLoweredBevelBorder());
+    }
+
+    void setSeries(TimeSeries series) {
+        this.series = series;
+        invalidateImage();
+    }
+
+    TimeSeries getSeries() {
+        return series;
+    }
+
+    void setResolution(int resolution) {
+        this.resolution = resolution;
+        invalidateImage();
+    }
+
+    void setMaxValue(double maxValue) {
+        if (maxValue != this.maxValue) {
+            this.maxValue = maxValue;
+            invalidateImage();
+        }
+    }
+
+    // EDT：序列有新样本后调用，只绘制尚未绘制的列
+    void update() {
+        if (image != null && series != null) {
+            long total = series.getTotal(resolution);
+            long start = Math.max(drawnTotal, Math.max(series.getFirst(resolution), total - columns));
+            if (autoScale) {
+                for (long s = start; s < total; s++) {
+                    if (series.getValue(resolution, s) > maxValue) {
+                        invalidateImage();
+                        return;
+                    }
+                }
+            }
+            Graphics2D g2d = image.createGraphics();
+            prepare(g2d);
+            for (long s = start; s < total; s++) {
+                drawColumn(g2d, s);
+            }
+            g2d.dispose();
+            drawnTotal = total;
+        }
+        repaint();
+    }
+
+    private void invalidateImage() {
+        image = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+        if (width <= STEP || height <= 0) return;
+
+        if (image == null || image.getWidth() != width / STEP * STEP || image.getHeight() != height) {
+            redraw(width, height);
+        }
+
+        // 环形图像中最新一列之后的部分是最早的数据，放在左边
+        int split = series != null && drawnTotal > 0 ? (int) ((drawnTotal - 1) % columns + 1) * STEP : 0;
+        int imageWidth = image.getWidth();
+        int x = insets.left + width - imageWidth;
+        g.setColor(BACKGROUND);
+        g.fillRect(insets.left, insets.top, width - imageWidth, height);
+        g.drawImage(image, x, insets.top, x + imageWidth - split, insets.top + height,
+            split, 0, imageWidth, height, null);
+        g.drawImage(image, x + imageWidth - split, insets.top, x + imageWidth, insets.top + height,
+            0, 0, split, height, null);
+
+        // 标题和当前值每次绘制，不写入缓冲图像
+        g.setColor(Color.BLACK);
+        g.setFont(getFont() != null ? getFont().deriveFont(Font.PLAIN, 11f) : new Font("SansSerif", Font.PLAIN, 11));
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(title, insets.left + 4, insets.top + metrics.getAscent() + 2);
+        double latest = series != null ? series.getLatest() : Double.NaN;
+        if (!Double.isNaN(latest)) {
+            String text = formatter.apply(latest);
+            g.drawString(text, insets.left + width - metrics.stringWidth(text) - 4, insets.top + metrics.getAscent() + 2);
+        }
+        if (autoScale && maxValue > 0) {
+            g.setColor(Color.GRAY);
+            g.drawString(formatter.apply(maxValue), insets.left + 4, insets.top + metrics.getAscent() * 2 + 4);
+        }
+    }
+
+    private void redraw(int width, int height) {
+        columns = width / STEP;
+        image = new BufferedImage(columns * STEP, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(0, 0, image.getWidth(), height);
+
+        drawnTotal = 0;
+        if (series != null) {
+            long total = series.getTotal(resolution);
+            long start = Math.max(series.getFirst(resolution), total - columns);
+            if (autoScale) {
+                maxValue = niceCeiling(series.getMax(resolution, columns));
+            }
+            prepare(g2d);
+            for (long s = start; s < total; s++) {
+                drawColumn(g2d, s);
+            }
+            drawnTotal = total;
+        }
+        g2d.dispose();
+    }
+
+    private void prepare(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setStroke(new BasicStroke(1.5f));
+    }
+
+    // 第 sequence 个样本占据的一列：从上一个样本的值连线到当前值
+    private void drawColumn(Graphics2D g2d, long sequence) {
+        int height = image.getHeight();
+        int x = (int) (sequence % columns) * STEP;
+
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(x, 0, STEP, height);
+        g2d.setColor(GRID_COLOR);
+        for (int i = 1; i < GRID_LINES; i++) {
+            int y = height * i / GRID_LINES;
+            g2d.drawLine(x, y, x + STEP - 1, y);
+        }
+
+        double value = series.getValue(resolution, sequence);
+        double previous = sequence > series.getFirst(resolution) ? series.getValue(resolution, sequence - 1) : value;
+        g2d.setColor(color);
+        g2d.drawLine(x, toY(previous, height), x + STEP, toY(value, height));
+    }
+
+    private int toY(double value, int height) {
+        double ratio = maxValue > 0 ? Math.min(1, Math.max(0, value / maxValue)) : 0;
+        return height - 1 - (int) Math.round(ratio * (height - 2));
+    }
+
+    // 把自动缩放的上限取整为 1/2/5 × 10^n
+    private static double niceCeiling(double value) {
+        if (value <= 0) return 1;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(value)));
+        for (double factor : new double[]{1, 2, 5, 10}) {
+            if (value <= factor * magnitude) return factor * magnitude;
+        }
+        return 10 * magnitude;
+    }
+}
@@ -97,7 +97,7 @@ public class VersionViewer extends JFrame {
                 statusLabel.setText("状态: 错误 - " + e.getMessage());
                 JOptionPane.showMessageDialog(this, "无法加载版本信息，请检查链接的合法性或稍后重试。\n链接: " , "错误", JOptionPane.ERROR_MESSAGE);
             }
-        }).start();
+        }, "VersionViewer-Loader").start();
     }
 
     private String getTypeDescription(String type) {
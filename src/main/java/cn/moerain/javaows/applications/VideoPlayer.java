@@ -1,12 +1,12 @@
 package cn.moerain.javaows.applications;
 
+import cn.moerain.javaows.misc.FileTypeRegistry;
 import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
 import uk.co.caprica.vlcj.player.component.EmbeddedMediaPlayerComponent;
 
 import javax.swing.*;
-import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
@@ -429,9 +429,7 @@ public class VideoPlayer extends JFrame {
 
     private void addVideos() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(new FileNameExtensionFilter("视频文件",
-            "mp4", "avi", "mkv", "mov", "wmv", "flv", "webm", "m4v", "3gp",
-            "ts", "mpg", "mpeg", "asf", "rm", "rmvb"));
+        fileChooser.setFileFilter(FileTypeRegistry.fileFilter("视频文件", FileTypeRegistry.VIDEO_PLAYER));
         fileChooser.setMultiSelectionEnabled(true);
 
         int result = fileChooser.showOpenDialog(this);
@@ -451,6 +449,10 @@ public class VideoPlayer extends JFrame {
     }
 
     private String getFileFormat(File file) {
+        FileTypeRegistry.FileType type = FileTypeRegistry.lookup(file.getName());
+        if (type != FileTypeRegistry.UNKNOWN) {
+            return type.getFormatName();
+        }
         String name = file.getName().toLowerCase();
         int lastDot = name.lastIndexOf('.');
         if (lastDot > 0) {
@@ -0,0 +1,742 @@
+package cn.moerain.javaows.misc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Parallel RFC 4180 CSV parser for large files.
+ *
+ * The file is cut into chunks of about 8 MB. A first
+ * parallel pass counts quote characters per chunk; every quote toggles the
+ * quoted state, so the running parity tells whether a chunk starts inside a
+ * quoted field and each chunk is moved to the first line break outside quotes.
+ * A second parallel pass parses the chunks into columnar {@link Block}s, which
+ * are handed to the consumer in file order; at most four chunks are read or
+ * parsed ahead of the consumer, whatever the core count. Quoted fields may
+ * contain commas, doubled quotes and line breaks. If a chunk turns out not to start on a
+ * record boundary (a stray quote inside an unquoted field breaks the parity
+ * rule), that chunk is parsed again from the real boundary. Chunks are read
+ * into heap buffers rather than memory-mapped, because a mapping stays alive
+ * until it is garbage collected and on Windows keeps the file from being
+ * replaced, e.g. when the same CSV is saved again right after opening it.
+ *
+ * With typing enabled every field is classified while parsing: decimal
+ * numbers (no leading zeros, at most 15 significant digits), dates written as
+ * yyyy-MM-dd or yyyy-MM-dd HH:mm:ss, and everything else as text. Numbers and
+ * dates are parsed straight from the bytes; only text fields become Strings.
+ * Without typing every non-empty field is text.
+ *
+ * The encoding is UTF-8 when the data starts with a UTF-8 BOM or its first
+ * megabyte is valid UTF-8, and GBK otherwise. Both keep ASCII bytes
+ * unambiguous, so records are split on raw bytes before decoding.
+ *
+ * Usage:
+ *   new CsvParser(true).parse(path, block -> {
+ *       for (int column = 0; column < block.getColumnCount(); column++) { ... block.getType(row, column) ... }
+ *   });
+ *   CsvParser.Block rows = new CsvParser(false).parse(bytes);   // small in-memory input
+ */
+public final class CsvParser {
+    public static final int EMPTY = 0;
+    public static final int NUMBER = 1;
+    public static final int TEXT = 2;
+    public static final int DATE = 3;
+
+    private static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+    // 块之后额外读入的长度，最后一条记录可以越过块尾
+    private static final int DEFAULT_WINDOW_SLACK = 1 << 20;
+    private static final int MAX_WINDOW = 1 << 30;
+    // 已读入或已解析、尚未交给 consumer 的块数上限，也是解析线程数的上限
+    private static final int MAX_PENDING_CHUNKS = 4;
+    private static final int SAMPLE_BYTES = 1 << 20;
+    private static final int MAX_SIGNIFICANT_DIGITS = 15;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // 文本去重缓存：每列的槽数、参与缓存的最大字节数，以及前若干次查找命中太少时停用
+    private static final int CACHE_SLOTS = 1024;
+    private static final int CACHE_MAX_LENGTH = 32;
+    private static final int CACHE_PROBE_LOOKUPS = 4096;
+    private static final Charset GBK = Charset.forName("GBK");
+
+    // 按 8 字节一组查找分隔符用的常量
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long COMMAS = ',' * ONES;
+    private static final long QUOTES = '"' * ONES;
+    private static final long LINE_FEEDS = '\n' * ONES;
+    private static final long CARRIAGE_RETURNS = '\r' * ONES;
+
+    // 10^0 .. 10^22 都能用 double 精确表示
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Records of one chunk stored by column. Row indices are relative to the
+     * chunk; blocks arrive in file order, so a consumer adds up row counts.
+     */
+    public static final class Block {
+        private final long start;
+        private final long limit;
+        private long end;
+        private int rows;
+        private int columns;
+        private int capacity = 1024;
+        private byte[][] types = new byte[8][];
+        private long[][] values = new long[8][];
+        private String[][] texts = new String[8][];
+
+        Block(long start, long limit) {
+            this.start = start;
+            this.limit = limit;
+        }
+
+        public int getRowCount() {
+            return rows;
+        }
+
+        /** File offset just past the last record of this block. */
+        public long getEnd() {
+            return end;
+        }
+
+        /** Number of columns of the widest record in this block. */
+        public int getColumnCount() {
+            return columns;
+        }
+
+        public int getType(int row, int column) {
+            byte[] columnTypes = column < columns ? types[column] : null;
+            return columnTypes != null ? columnTypes[row] : EMPTY;
+        }
+
+        /** The value of a {@link #NUMBER} field. */
+        public double getNumber(int row, int column) {
+            return Double.longBitsToDouble(values[column][row]);
+        }
+
+        /** The value of a {@link #DATE} field as local-time milliseconds, counted as if UTC. */
+        public long getDate(int row, int column) {
+            return values[column][row];
+        }
+
+        /** The value of a {@link #TEXT} field, or {@code null} for other types. */
+        public String getText(int row, int column) {
+            String[] columnTexts = column < columns ? texts[column] : null;
+            return columnTexts != null ? columnTexts[row] : null;
+        }
+
+        int addRow() {
+            if (rows == capacity) {
+                capacity *= 2;
+                for (int c = 0; c < columns; c++) {
+                    if (types[c] != null) {
+                        types[c] = Arrays.copyOf(types[c], capacity);
+                        values[c] = Arrays.copyOf(values[c], capacity);
+                    }
+                    if (texts[c] != null) {
+                        texts[c] = Arrays.copyOf(texts[c], capacity);
+                    }
+                }
+            }
+            return rows++;
+        }
+
+        // 丢弃解析到一半的最后一行
+        void removeLastRow() {
+            rows--;
+            for (int c = 0; c < columns; c++) {
+                if (types[c] != null) types[c][rows] = EMPTY;
+                if (texts[c] != null) texts[c][rows] = null;
+            }
+        }
+
+        void set(int row, int column, int type, long value, String text) {
+            if (column >= columns) {
+                if (column >= types.length) {
+                    int length = Math.max(column + 1, types.length * 2);
+                    types = Arrays.copyOf(types, length);
+                    values = Arrays.copyOf(values, length);
+                    texts = Arrays.copyOf(texts, length);
+                }
+                columns = column + 1;
+            }
+            if (types[column] == null) {
+                types[column] = new byte[capacity];
+                values[column] = new long[capacity];
+            }
+            types[column][row] = (byte) type;
+            if (text != null) {
+                if (texts[column] == null) {
+                    texts[column] = new String[capacity];
+                }
+                texts[column][row] = text;
+            } else {
+                values[column][row] = value;
+            }
+        }
+    }
+
+    private final boolean typed;
+    private final int chunkBytes;
+    private final int windowSlack;
+
+    public CsvParser(boolean typed) {
+        this(typed, DEFAULT_CHUNK_BYTES, DEFAULT_WINDOW_SLACK);
+    }
+
+    // 测试用：很小的块和窗口可以让块边界、窗口扩大等情况在小文件上出现
+    CsvParser(boolean typed, int chunkBytes, int windowSlack) {
+        this.typed = typed;
+        this.chunkBytes = chunkBytes;
+        this.windowSlack = windowSlack;
+    }
+
+    /** Parses an in-memory CSV document into a single block. */
+    public Block parse(byte[] data) {
+        int start = hasBom(data) ? 3 : 0;
+        Charset charset = detectCharset(data, start, Math.min(data.length, SAMPLE_BYTES));
+        Block block = new Block(start, data.length);
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        block.end = new Tokenizer(charset, block).parseRecords(buffer, start, data.length, true);
+        return block;
+    }
+
+    /**
+     * Parses a file with all available processors. {@code consumer} is called
+     * on the calling thread, once per chunk, in file order.
+     */
+    public void parse(Path file, Consumer<Block> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] sample = new byte[(int) Math.min(size, SAMPLE_BYTES)];
+            read(channel, 0, sample.length).get(sample);
+            long start = hasBom(sample) ? 3 : 0;
+            Charset charset = detectCharset(sample, (int) start, sample.length);
+
+            if (size - start <= chunkBytes) {
+                consumer.accept(parseRange(channel, size, start, size, charset));
+                return;
+            }
+
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), MAX_PENDING_CHUNKS);
+            ExecutorService pool = Executors.newFixedThreadPool(threads, new NamedThreadFactory("Csv-Parser", true));
+            try {
+                long[] bounds = findBoundaries(channel, size, start, pool);
+                int chunks = bounds.length - 1;
+                // 按顺序交给 consumer，同时在途的块数固定，内存占用不随核数增长
+                Deque<Future<Block>> pending = new ArrayDeque<>();
+                int next = 0;
+                while (next < chunks && pending.size() < MAX_PENDING_CHUNKS) {
+                    pending.add(submitRange(pool, channel, size, bounds[next], bounds[++next], charset));
+                }
+                long expected = start;
+                while (!pending.isEmpty()) {
+                    Block block = await(pending.poll());
+                    if (next < chunks) {
+                        pending.add(submitRange(pool, channel, size, bounds[next], bounds[++next], charset));
+                    }
+                    if (block.start != expected) {
+                        // 前一块的最后一条记录越过了这一块的起点，从实际边界重新解析
+                        if (expected >= block.limit) continue;
+                        block = parseRange(channel, size, expected, block.limit, charset);
+                    }
+                    expected = block.end;
+                    consumer.accept(block);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private Future<Block> submitRange(ExecutorService pool, FileChannel channel, long size,
+                                      long from, long limit, Charset charset) {
+        return pool.submit(() -> parseRange(channel, size, from, limit, charset));
+    }
+
+    // 第一遍：并行统计每个块里的引号数，按奇偶性确定块起点是否在引号内，再把起点移到下一个引号外的换行之后
+    private long[] findBoundaries(FileChannel channel, long size, long start, ExecutorService pool)
+            throws IOException {
+        int chunks = (int) ((size - start + chunkBytes - 1) / chunkBytes);
+        List<Future<Long>> counts = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long from = start + (long) i * chunkBytes;
+            long to = Math.min(size, from + chunkBytes);
+            counts.add(pool.submit(countQuotes(channel, from, to)));
+        }
+
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = size;
+        boolean inQuotes = false;
+        for (int i = 1; i < chunks; i++) {
+            inQuotes ^= (await(counts.get(i - 1)) & 1) != 0;
+            long nominal = start + (long) i * chunkBytes;
+            bounds[i] = Math.max(bounds[i - 1], nextRecordStart(channel, size, nominal, inQuotes));
+        }
+        return bounds;
+    }
+
+    private static Callable<Long> countQuotes(FileChannel channel, long from, long to) {
+        return () -> {
+            ByteBuffer buffer = read(channel, from, (int) (to - from));
+            long quotes = 0;
+            int n = buffer.limit();
+            int i = 0;
+            for (; i + 8 <= n; i += 8) {
+                quotes += Long.bitCount(zeroBytes(buffer.getLong(i) ^ QUOTES));
+            }
+            for (; i < n; i++) {
+                if (buffer.get(i) == '"') quotes++;
+            }
+            return quotes;
+        };
+    }
+
+    private long nextRecordStart(FileChannel channel, long size, long from, boolean inQuotes) throws IOException {
+        long position = from;
+        while (position < size) {
+            int length = (int) Math.min(size - position, windowSlack);
+            ByteBuffer buffer = read(channel, position, length);
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    // 读入 [position, position + length) 到小端序的堆内缓冲区
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("CSV 文件在读取期间被截断");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV 解析被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // 解析起点在 [from, limit) 内的全部记录，最后一条记录可以越过 limit
+    private Block parseRange(FileChannel channel, long size, long from, long limit, Charset charset) throws IOException {
+        Block block = new Block(from, limit);
+        Tokenizer tokenizer = new Tokenizer(charset, block);
+        long position = from;
+        long slack = windowSlack;
+        while (position < limit) {
+            long windowEnd = Math.min(size, Math.min(limit + slack, position + MAX_WINDOW));
+            ByteBuffer buffer = read(channel, position, (int) (windowEnd - position));
+            int recordLimit = (int) Math.min(limit - position, buffer.limit());
+            int consumed = tokenizer.parseRecords(buffer, 0, recordLimit, windowEnd == size);
+            if (consumed == 0) {
+                // 一条记录比窗口还长，扩大窗口重试
+                if (windowEnd - position >= MAX_WINDOW) {
+                    throw new IOException("CSV 记录过长，位置 " + position);
+                }
+                slack *= 2;
+                continue;
+            }
+            position += consumed;
+        }
+        block.end = position;
+        return block;
+    }
+
+    // RFC 4180 状态机：每个块一个实例，字段内容复制到 scratch 后再分类和解码
+    private final class Tokenizer {
+        private final Charset charset;
+        private final Block block;
+        private byte[] scratch = new byte[256];
+        // 按列的直接映射缓存：城市、状态这类重复的短文本复用同一个 String
+        private byte[][][] cachedBytes = new byte[8][][];
+        private String[][] cachedTexts = new String[8][];
+        private int[] lookups = new int[8];
+        private int[] hits = new int[8];
+
+        Tokenizer(Charset charset, Block block) {
+            this.charset = charset;
+            this.block = block;
+        }
+
+        // 解析起点在 [from, recordLimit) 内的完整记录，返回解析结束的位置；
+        // 不在文件末尾时，缓冲区末尾不完整的记录留给下一个窗口
+        int parseRecords(ByteBuffer buffer, int from, int recordLimit, boolean atEof) {
+            int position = from;
+            while (position < recordLimit) {
+                int next = parseRecord(buffer, position, atEof);
+                if (next < 0) break;
+                position = next;
+            }
+            return position;
+        }
+
+        // 返回下一条记录的起点，记录不完整时返回 -1
+        private int parseRecord(ByteBuffer buffer, int position, boolean atEof) {
+            int n = buffer.limit();
+            int row = block.addRow();
+            int column = 0;
+            int i = position;
+            while (true) {
+                int length = 0;
+                if (i < n && buffer.get(i) == '"') {
+                    // 引号字段：两个引号表示一个引号，可以包含逗号和换行
+                    i++;
+                    while (true) {
+                        int quote = nextQuote(buffer, i, n);
+                        if (quote > i) {
+                            length = append(buffer, i, quote - i, length);
+                        }
+                        i = quote;
+                        if (i >= n) {
+                            if (!atEof) {
+                                block.removeLastRow();
+                                return -1;
+                            }
+                            break;
+                        }
+                        if (i + 1 < n && buffer.get(i + 1) == '"') {
+                            length = append(length, (byte) '"');
+                            i += 2;
+                            continue;
+                        }
+                        if (i + 1 >= n && !atEof) {
+                            block.removeLastRow();
+                            return -1;
+                        }
+                        i++;
+                        break;
+                    }
+                }
+                // 未加引号的字段，或引号之后到分隔符前的多余内容（宽松处理，原样保留）
+                int start = i;
+                i = nextDelimiter(buffer, i, n);
+                if (i > start) {
+                    length = append(buffer, start, i - start, length);
+                }
+
+                if (i >= n) {
+                    if (!atEof) {
+                        block.removeLastRow();
+                        return -1;
+                    }
+                    store(row, column, length);
+                    return n;
+                }
+                byte b = buffer.get(i);
+                store(row, column, length);
+                if (b == ',') {
+                    column++;
+                    i++;
+                    continue;
+                }
+                if (b == '\r') {
+                    if (i + 1 < n) {
+                        return buffer.get(i + 1) == '\n' ? i + 2 : i + 1;
+                    }
+                    if (!atEof) {
+                        block.removeLastRow();
+                        return -1;
+                    }
+                    return n;
+                }
+                return i + 1;
+            }
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private int append(ByteBuffer buffer, int from, int count, int length) {
+            if (length + count > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(length + count, scratch.length * 2));
+            }
+            buffer.get(from, scratch, length, count);
+            return length + count;
+        }
+
+        private void store(int row, int column, int length) {
+            if (length == 0) return;
+            if (typed) {
+                long number = parseNumber(scratch, length);
+                if (number != NOT_A_NUMBER) {
+                    block.set(row, column, NUMBER, number, null);
+                    return;
+                }
+                long date = parseDate(scratch, length);
+                if (date != Long.MIN_VALUE) {
+                    block.set(row, column, DATE, date, null);
+                    return;
+                }
+            }
+            block.set(row, column, TEXT, 0, text(column, length));
+        }
+
+        private String text(int column, int length) {
+            if (length > CACHE_MAX_LENGTH) {
+                return new String(scratch, 0, length, charset);
+            }
+            if (column >= lookups.length) {
+                int size = Math.max(column + 1, lookups.length * 2);
+                cachedBytes = Arrays.copyOf(cachedBytes, size);
+                cachedTexts = Arrays.copyOf(cachedTexts, size);
+                lookups = Arrays.copyOf(lookups, size);
+                hits = Arrays.copyOf(hits, size);
+            }
+            if (lookups[column] == CACHE_PROBE_LOOKUPS && hits[column] < CACHE_PROBE_LOOKUPS / 4) {
+                // 基本不重复的列不再缓存
+                cachedBytes[column] = null;
+                cachedTexts[column] = null;
+                return new String(scratch, 0, length, charset);
+            }
+            if (cachedBytes[column] == null) {
+                cachedBytes[column] = new byte[CACHE_SLOTS][];
+                cachedTexts[column] = new String[CACHE_SLOTS];
+            }
+            if (lookups[column] < CACHE_PROBE_LOOKUPS) lookups[column]++;
+
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + scratch[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SLOTS - 1);
+            byte[] key = cachedBytes[column][slot];
+            if (key != null && Arrays.equals(key, 0, key.length, scratch, 0, length)) {
+                hits[column]++;
+                return cachedTexts[column][slot];
+            }
+            String text = new String(scratch, 0, length, charset);
+            cachedBytes[column][slot] = Arrays.copyOf(scratch, length);
+            cachedTexts[column][slot] = text;
+            return text;
+        }
+    }
+
+    // 每个等于 0 的字节对应位置的最高位为 1，其余为 0
+    private static long zeroBytes(long word) {
+        long t = (word & LOWS) + LOWS;
+        return ~(t | word | LOWS);
+    }
+
+    // 从 i 开始找下一个逗号、换行或回车，找不到时返回 n。缓冲区为小端序，最低位的匹配就是最靠前的字节
+    private static int nextDelimiter(ByteBuffer buffer, int i, int n) {
+        for (; i + 8 <= n; i += 8) {
+            long word = buffer.getLong(i);
+            long found = zeroBytes(word ^ COMMAS) | zeroBytes(word ^ LINE_FEEDS) | zeroBytes(word ^ CARRIAGE_RETURNS);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < n; i++) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '\n' || b == '\r') return i;
+        }
+        return n;
+    }
+
+    private static int nextQuote(ByteBuffer buffer, int i, int n) {
+        for (; i + 8 <= n; i += 8) {
+            long found = zeroBytes(buffer.getLong(i) ^ QUOTES);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < n; i++) {
+            if (buffer.get(i) == '"') return i;
+        }
+        return n;
+    }
+
+    // NaN 的一种位模式，parseNumber 不会产生它
+    private static final long NOT_A_NUMBER = 0x7ff8dead0000beefL;
+
+    // 按 SheetModel.put 的规则识别十进制数字，返回 double 的位模式：可选负号、数字、小数点、最多三位的指数；
+    // 带前导零的整数（如 007）和超过 15 位有效数字的数字串不算数字。
+    // 没有指数且小数位不超过 22 位时尾数和 10 的幂都能精确表示，相除即得正确舍入的结果
+    private static long parseNumber(byte[] text, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (text[0] == '-') {
+            negative = true;
+            i++;
+        }
+        int intStart = i;
+        long mantissa = 0;
+        int significant = 0;
+        while (i < length && isDigit(text[i])) {
+            mantissa = mantissa * 10 + (text[i] - '0');
+            if (mantissa != 0) significant++;
+            i++;
+        }
+        int intDigits = i - intStart;
+        if (intDigits > 1 && text[intStart] == '0') return NOT_A_NUMBER;
+
+        int fractionDigits = 0;
+        if (i < length && text[i] == '.') {
+            i++;
+            int fractionStart = i;
+            while (i < length && isDigit(text[i])) {
+                mantissa = mantissa * 10 + (text[i] - '0');
+                if (mantissa != 0) significant++;
+                i++;
+            }
+            fractionDigits = i - fractionStart;
+            if (fractionDigits == 0) return NOT_A_NUMBER;
+        }
+        if (intDigits + fractionDigits == 0 || significant > MAX_SIGNIFICANT_DIGITS) return NOT_A_NUMBER;
+
+        boolean exponent = false;
+        if (i < length && (text[i] == 'e' || text[i] == 'E')) {
+            exponent = true;
+            i++;
+            if (i < length && (text[i] == '-' || text[i] == '+')) i++;
+            int exponentStart = i;
+            while (i < length && isDigit(text[i])) i++;
+            if (i == exponentStart || i - exponentStart > 3) return NOT_A_NUMBER;
+        }
+        if (i != length) return NOT_A_NUMBER;
+
+        double value;
+        if (!exponent && fractionDigits < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[fractionDigits];
+            if (negative) value = -value;
+        } else {
+            value = Double.parseDouble(new String(text, 0, length, StandardCharsets.ISO_8859_1));
+            if (!Double.isFinite(value)) return NOT_A_NUMBER;
+        }
+        return Double.doubleToRawLongBits(value);
+    }
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // yyyy-MM-dd 或 yyyy-MM-dd HH:mm:ss，返回按 UTC 计算的本地时间毫秒数，不是日期时返回 Long.MIN_VALUE
+    private static long parseDate(byte[] text, int length) {
+        if (length != 10 && length != 19) return Long.MIN_VALUE;
+        if (text[4] != '-' || text[7] != '-') return Long.MIN_VALUE;
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (length == 19) {
+            if (text[10] != ' ' || text[13] != ':' || text[16] != ':') return Long.MIN_VALUE;
+            hour = digits(text, 11, 2);
+            minute = digits(text, 14, 2);
+            second = digits(text, 17, 2);
+        }
+        if ((year | month | day | hour | minute | second) < 0) return Long.MIN_VALUE;
+        if (month < 1 || month > 12 || day < 1 || hour > 23 || minute > 59 || second > 59) return Long.MIN_VALUE;
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        int monthDays = month == 2 && leap ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > monthDays) return Long.MIN_VALUE;
+        return epochDay(year, month, day) * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000;
+    }
+
+    // 公历日期到 1970-01-01 的天数
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int digits(byte[] text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            if (!isDigit(text[i])) return -1;
+            value = value * 10 + (text[i] - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean hasBom(byte[] data) {
+        return data.length >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF;
+    }
+
+    /**
+     * Returns UTF-8 if {@code data[from, to)} is valid UTF-8 (a sequence cut
+     * off at {@code to} is allowed), otherwise GBK.
+     */
+    public static Charset detectCharset(byte[] data, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int b = data[i] & 0xFF;
+            int continuation;
+            if (b < 0x80) {
+                i++;
+                continue;
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return GBK;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= to) return StandardCharsets.UTF_8;
+                if ((data[i + k] & 0xC0) != 0x80) return GBK;
+            }
+            i += continuation + 1;
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
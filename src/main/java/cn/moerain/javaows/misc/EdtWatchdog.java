@@ -0,0 +1,258 @@
+package cn.moerain.javaows.misc;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.InvocationEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event dispatch thread watchdog.
+ *
+ * Pushes an {@link EventQueue} subclass that timestamps every dispatch and
+ * records the dispatch time into {@link LatencyHistogram}s: one since start and
+ * one per second for the last {@value #WINDOW_SECONDS} seconds. A daemon thread
+ * polls the EDT; when a single dispatch runs longer than the stall threshold it
+ * captures the EDT stack once, so the culprit is visible even while the UI is
+ * still frozen.
+ *
+ * Usage:
+ *   EdtWatchdog.install();                      // once, at startup
+ *   EdtWatchdog watchdog = EdtWatchdog.get();   // null if not installed
+ *   long p99 = watchdog.getRecentHistogram().getValueAtPercentile(99);
+ */
+public final class EdtWatchdog {
+    public static final long DEFAULT_STALL_THRESHOLD_MILLIS = 200;
+    public static final int WINDOW_SECONDS = 10;
+    private static final int MAX_STALLS = 50;
+
+    /** A dispatch that exceeded the stall threshold. */
+    public static final class Stall {
+        public final long timeMillis;
+        public final String event;
+        public final StackTraceElement[] stack;
+        final long startNanos;
+        // 卡顿结束前为 -1
+        volatile long durationNanos = -1;
+
+        Stall(long timeMillis, String event, StackTraceElement[] stack, long startNanos) {
+            this.timeMillis = timeMillis;
+            this.event = event;
+            this.stack = stack;
+            this.startNanos = startNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+    }
+
+    // 记录每次派发的耗时，派发过程中不分配对象。
+    // 模态对话框等嵌套的事件循环中，外层事件的耗时包含等待用户的时间，不计入
+    private final class MonitoredEventQueue extends EventQueue {
+        private int depth;
+        private boolean nested;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            long start = System.nanoTime();
+            if (depth > 0) nested = true;
+            depth++;
+            AWTEvent outerEvent = dispatchingEvent;
+            dispatchThread = Thread.currentThread();
+            dispatchingEvent = event;
+            dispatchStart = start;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long end = System.nanoTime();
+                long duration = end - start;
+                depth--;
+                boolean counted = depth > 0 || !nested;
+                if (depth == 0) nested = false;
+
+                Stall stall = capturedStall;
+                if (stall != null && stall.startNanos == start) stall.durationNanos = duration;
+                // 外层派发从嵌套循环返回后重新计时，避免把嵌套期间算作卡顿
+                dispatchingEvent = depth > 0 ? outerEvent : null;
+                dispatchStart = depth > 0 ? end : 0;
+
+                if (counted) {
+                    total.record(duration);
+                    window.record(duration);
+                    if (duration >= stallThresholdNanos) stallCount++;
+                    long when = whenOf(event);
+                    if (when > 0) response.record(Math.max(0, System.currentTimeMillis() - when) * 1_000_000);
+                }
+            }
+        }
+    }
+
+    private static EdtWatchdog installed;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram[] windows = new LatencyHistogram[WINDOW_SECONDS];
+    private volatile LatencyHistogram window = new LatencyHistogram();
+    private int windowIndex;
+    private volatile long stallThresholdNanos = DEFAULT_STALL_THRESHOLD_MILLIS * 1_000_000;
+    private volatile long stallCount;
+    private final LatencyHistogram response = new LatencyHistogram();
+
+    // 当前派发，由 EDT 写入、看门狗线程读取；dispatchStart 为 0 表示空闲
+    private volatile long dispatchStart;
+    private volatile AWTEvent dispatchingEvent;
+    private volatile Thread dispatchThread;
+    private volatile Stall capturedStall;
+    private final List<Stall> stalls = new ArrayList<>();
+
+    private EdtWatchdog() {
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Installs the watchdog on the system event queue; later calls return the same instance. */
+    public static synchronized EdtWatchdog install() {
+        if (installed == null) {
+            EdtWatchdog watchdog = new EdtWatchdog();
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog.new MonitoredEventQueue());
+            Thread thread = new Thread(watchdog::watchLoop, "EDT-Watchdog");
+            thread.setDaemon(true);
+            thread.start();
+            installed = watchdog;
+        }
+        return installed;
+    }
+
+    public static synchronized EdtWatchdog get() {
+        return installed;
+    }
+
+    public long getStallThresholdMillis() {
+        return stallThresholdNanos / 1_000_000;
+    }
+
+    public void setStallThresholdMillis(long millis) {
+        stallThresholdNanos = Math.max(1, millis) * 1_000_000;
+    }
+
+    /** Dispatch times since the watchdog was installed. */
+    public LatencyHistogram getTotalHistogram() {
+        return total;
+    }
+
+    /** Dispatch times over the last {@code seconds} complete seconds (at most {@value #WINDOW_SECONDS}). */
+    public LatencyHistogram getRecentHistogram(int seconds) {
+        LatencyHistogram merged = new LatencyHistogram();
+        synchronized (windows) {
+            int count = Math.max(1, Math.min(seconds, WINDOW_SECONDS));
+            for (int i = 0; i < count; i++) {
+                merged.add(windows[Math.floorMod(windowIndex - 1 - i, WINDOW_SECONDS)]);
+            }
+        }
+        return merged;
+    }
+
+    public LatencyHistogram getRecentHistogram() {
+        return getRecentHistogram(WINDOW_SECONDS);
+    }
+
+    /** Time from an input event or invokeLater being created until its dispatch finished, in milliseconds precision. */
+    public LatencyHistogram getResponseHistogram() {
+        return response;
+    }
+
+    public long getStallCount() {
+        return stallCount;
+    }
+
+    /** Captured stalls, newest first. */
+    public List<Stall> getRecentStalls() {
+        synchronized (stalls) {
+            List<Stall> copy = new ArrayList<>(stalls);
+            Collections.reverse(copy);
+            return copy;
+        }
+    }
+
+    private void watchLoop() {
+        long nextRotate = System.nanoTime() + 1_000_000_000L;
+        // 已确认在嵌套事件循环中空闲的派发。嵌套循环每派发一个事件都会重新计时，
+        // 所以同一个 dispatchStart 期间不必反复抓取栈
+        long idleStart = 0;
+        while (true) {
+            try {
+                Thread.sleep(Math.max(10, stallThresholdNanos / 4_000_000));
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            long start = dispatchStart;
+            Stall last = capturedStall;
+            if (start != 0 && start != idleStart && (last == null || last.startNanos != start)
+                    && now - start >= stallThresholdNanos) {
+                StackTraceElement[] stack = dispatchThread.getStackTrace();
+                if (isWaitingForEvent(stack)) {
+                    idleStart = start;
+                } else {
+                    Stall stall = new Stall(System.currentTimeMillis(), describe(dispatchingEvent), stack, start);
+                    capturedStall = stall;
+                    synchronized (stalls) {
+                        if (stalls.size() >= MAX_STALLS) stalls.remove(0);
+                        stalls.add(stall);
+                    }
+                }
+            }
+
+            // 每秒把当前窗口放入环形数组，EDT 之后记录到新窗口
+            if (now >= nextRotate) {
+                synchronized (windows) {
+                    windows[windowIndex] = window;
+                    windowIndex = (windowIndex + 1) % WINDOW_SECONDS;
+                    window = new LatencyHistogram();
+                }
+                nextRotate += 1_000_000_000L;
+                if (nextRotate < now) nextRotate = now + 1_000_000_000L;
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        if (event == null) return "?";
+        if (event instanceof InvocationEvent) {
+            // paramString 形如 INVOCATION_DEFAULT,runnable=...,notifier=...
+            String param = event.paramString();
+            int runnable = param.indexOf("runnable=");
+            if (runnable >= 0) {
+                int end = param.indexOf(',', runnable);
+                return "invokeLater " + param.substring(runnable + 9, end > 0 ? end : param.length());
+            }
+            return "invokeLater";
+        }
+        String source = event.getSource() != null ? event.getSource().getClass().getSimpleName() : "?";
+        String kind = event.paramString().split(",", 2)[0];
+        return kind + " → " + source;
+    }
+
+    // 模态对话框的嵌套事件循环空闲时，EDT 停在 getNextEvent 中，不是卡顿
+    private static boolean isWaitingForEvent(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getMethodName().equals("getNextEvent") && frame.getClassName().equals("java.awt.EventQueue")) {
+                return true;
+            }
+            if (frame.getMethodName().equals("dispatchEvent")) break;
+        }
+        return false;
+    }
+
+    // 输入事件和 invokeLater 带有创建时间，可以得到从产生到处理完的响应时间
+    private static long whenOf(AWTEvent event) {
+        if (event instanceof InputEvent) return ((InputEvent) event).getWhen();
+        if (event instanceof InvocationEvent) return ((InvocationEvent) event).getWhen();
+        return 0;
+    }
+}
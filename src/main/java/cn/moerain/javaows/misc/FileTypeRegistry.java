@@ -0,0 +1,268 @@
+package cn.moerain.javaows.misc;
+
+import javax.swing.Icon;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared file type registry: maps file extensions to a type descriptor
+ * (icon pair, display name, category, default opener).
+ *
+ * Lookups hash the extension straight out of the file name, case-insensitively,
+ * and probe a precomputed open-addressing table, so they never allocate.
+ * Registration copies the table and publishes the new one, so it is safe to
+ * extend the registry at runtime while other threads are looking up.
+ *
+ * Usage:
+ *   FileTypeRegistry.FileType type = FileTypeRegistry.lookup("photo.JPG");
+ *   chooser.setFileFilter(FileTypeRegistry.fileFilter("图片文件", FileTypeRegistry.IMAGE_VIEWER));
+ */
+public final class FileTypeRegistry {
+    // 内置的默认打开方式
+    public static final String IMAGE_VIEWER = "照片查看器";
+    public static final String MUSIC_PLAYER = "音乐播放器";
+    public static final String VIDEO_PLAYER = "视频播放器";
+    public static final String NOTEPAD = "记事本";
+    public static final String EXCEL = "表格";
+
+    // 超过该长度的后缀不可能已注册，不必计算哈希
+    private static final int MAX_EXTENSION_LENGTH = 16;
+
+    public enum Category {
+        IMAGE("图像"),
+        AUDIO("音频"),
+        VIDEO("视频"),
+        DOCUMENT("文档"),
+        ARCHIVE("压缩文件"),
+        TEXT("文本文档"),
+        CODE("源文件"),
+        EXECUTABLE("应用程序"),
+        OTHER("文件");
+
+        private final String label;
+
+        Category(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final class FileType {
+        private final String[] extensions;
+        private final Category category;
+        private final String displayName;
+        private final String formatName;
+        private final String opener;
+        private final Icon smallIcon;
+        private final Icon largeIcon;
+
+        public FileType(Category category, String displayName, String opener, String... extensions) {
+            this(extensions, category, displayName, opener, null, null);
+        }
+
+        private FileType(String[] extensions, Category category, String displayName, String opener, Icon smallIcon, Icon largeIcon) {
+            this.extensions = extensions.clone();
+            for (int i = 0; i < this.extensions.length; i++) {
+                this.extensions[i] = this.extensions[i].toLowerCase(Locale.ROOT);
+            }
+            this.category = category;
+            this.displayName = displayName;
+            this.formatName = this.extensions.length > 0 ? this.extensions[0].toUpperCase(Locale.ROOT) : "";
+            this.opener = opener;
+            this.smallIcon = smallIcon;
+            this.largeIcon = largeIcon;
+        }
+
+        // 返回带图标的副本，需要重新 register 才会生效
+        public FileType withIcons(Icon smallIcon, Icon largeIcon) {
+            return new FileType(extensions, category, displayName, opener, smallIcon, largeIcon);
+        }
+
+        public String[] getExtensions() { return extensions.clone(); }
+        public Category getCategory() { return category; }
+        public String getDisplayName() { return displayName; }
+        // 大写的主后缀，例如 "MP3"
+        public String getFormatName() { return formatName; }
+        // 默认打开方式，null 表示交给操作系统
+        public String getOpener() { return opener; }
+        public Icon getSmallIcon() { return smallIcon; }
+        public Icon getLargeIcon() { return largeIcon; }
+    }
+
+    // 未注册的后缀
+    public static final FileType UNKNOWN = new FileType(Category.OTHER, Category.OTHER.getLabel(), null);
+
+    // 开放寻址哈希表，发布后不再修改
+    private static final class Table {
+        final int mask;
+        final char[][] keys;
+        final FileType[] values;
+
+        Table(Collection<Map.Entry<String, FileType>> entries) {
+            int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 4) - 1) << 1;
+            mask = capacity - 1;
+            keys = new char[capacity][];
+            values = new FileType[capacity];
+            for (Map.Entry<String, FileType> entry : entries) {
+                char[] key = entry.getKey().toCharArray();
+                int slot = spread(hash(entry.getKey(), 0, key.length)) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = entry.getValue();
+            }
+        }
+    }
+
+    // 按后缀保存所有注册项，只在持有类锁时修改
+    private static final Map<String, FileType> REGISTERED = new LinkedHashMap<>();
+    private static volatile Table table;
+
+    static {
+        registerBuiltIn(Category.IMAGE, IMAGE_VIEWER, "jpg", "jpeg", "png", "gif", "bmp", "wbmp");
+        registerBuiltIn(Category.IMAGE, null, "ico", "svg", "webp");
+        registerBuiltIn(Category.AUDIO, MUSIC_PLAYER, "mp3", "ogg", "flac", "aac", "m4a", "wma", "wav", "au", "aiff", "opus");
+        registerBuiltIn(Category.VIDEO, VIDEO_PLAYER, "mp4", "avi", "mkv", "mov", "wmv", "flv", "webm", "m4v", "3gp",
+            "ts", "mpg", "mpeg", "asf", "rm", "rmvb");
+        registerBuiltIn(Category.DOCUMENT, null, "doc", "docx", "ppt", "pptx", "pdf");
+        registerBuiltIn(Category.DOCUMENT, EXCEL, "xls", "xlsx", "csv");
+        registerBuiltIn(Category.ARCHIVE, null, "zip", "rar", "7z", "tar", "gz", "bz2");
+        registerBuiltIn(Category.TEXT, NOTEPAD, "txt", "md", "log", "ini", "cfg");
+        registerBuiltIn(Category.CODE, NOTEPAD, "java", "py", "c", "cpp", "h", "js", "html", "css", "xml", "json");
+        registerBuiltIn(Category.EXECUTABLE, null, "exe", "bat", "cmd", "sh", "jar", "msi");
+    }
+
+    private FileTypeRegistry() {
+    }
+
+    private static void registerBuiltIn(Category category, String opener, String... extensions) {
+        List<FileType> types = new ArrayList<>();
+        for (String extension : extensions) {
+            types.add(new FileType(category, extension.toUpperCase(Locale.ROOT) + " " + category.getLabel(), opener, extension));
+        }
+        register(types.toArray(new FileType[0]));
+    }
+
+    /**
+     * Registers (or replaces) the given types for all of their extensions.
+     * Registering a type that is already registered changes nothing.
+     */
+    public static synchronized void register(FileType... types) {
+        boolean changed = false;
+        for (FileType type : types) {
+            for (String extension : type.extensions) {
+                changed |= REGISTERED.put(extension, type) != type;
+            }
+        }
+        if (changed) {
+            table = new Table(new ArrayList<>(REGISTERED.entrySet()));
+        }
+    }
+
+    // 删除 type 的注册项；已被其他类型替换的后缀保持不变
+    static synchronized void unregister(FileType type) {
+        boolean changed = false;
+        for (String extension : type.extensions) {
+            changed |= REGISTERED.remove(extension, type);
+        }
+        if (changed) {
+            table = new Table(new ArrayList<>(REGISTERED.entrySet()));
+        }
+    }
+
+    /**
+     * All registered types, one entry per extension.
+     */
+    public static synchronized List<FileType> all() {
+        return new ArrayList<>(REGISTERED.values());
+    }
+
+    /**
+     * Type for a file name (or path); never null, returns {@link #UNKNOWN}
+     * when the name has no registered extension. Does not allocate.
+     */
+    public static FileType lookup(CharSequence fileName) {
+        int length = fileName.length();
+        // 与 "名称以点开头的文件没有后缀" 的约定一致，因此不检查下标 0
+        for (int i = length - 1; i > 0 && length - i <= MAX_EXTENSION_LENGTH + 1; i--) {
+            char c = fileName.charAt(i);
+            if (c == '.') {
+                return find(fileName, i + 1, length);
+            }
+            if (c == '/' || c == '\\') {
+                break;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Type for a bare extension such as "png" or "PNG". Does not allocate.
+     */
+    public static FileType forExtension(CharSequence extension) {
+        return find(extension, 0, extension.length());
+    }
+
+    public static boolean opensWith(CharSequence fileName, String opener) {
+        return opener.equals(lookup(fileName).opener);
+    }
+
+    /**
+     * File chooser filter for all extensions whose default opener is {@code opener}.
+     */
+    public static FileNameExtensionFilter fileFilter(String description, String opener) {
+        List<String> extensions = new ArrayList<>();
+        for (Map.Entry<String, FileType> entry : snapshot()) {
+            if (opener.equals(entry.getValue().opener)) {
+                extensions.add(entry.getKey());
+            }
+        }
+        return new FileNameExtensionFilter(description, extensions.toArray(new String[0]));
+    }
+
+    private static synchronized List<Map.Entry<String, FileType>> snapshot() {
+        return new ArrayList<>(REGISTERED.entrySet());
+    }
+
+    private static FileType find(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length == 0 || length > MAX_EXTENSION_LENGTH) return UNKNOWN;
+
+        Table current = table;
+        for (int slot = spread(hash(text, start, end)) & current.mask; ; slot = (slot + 1) & current.mask) {
+            char[] key = current.keys[slot];
+            if (key == null) return UNKNOWN;
+            if (key.length == length && regionMatches(key, text, start)) {
+                return current.values[slot];
+            }
+        }
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(text.charAt(i));
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionMatches(char[] key, CharSequence text, int start) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != Character.toLowerCase(text.charAt(start + i))) return false;
+        }
+        return true;
+    }
+}
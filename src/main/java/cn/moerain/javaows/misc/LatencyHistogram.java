@@ -0,0 +1,110 @@
+package cn.moerain.javaows.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR-style latency histogram with log-linear buckets.
+ *
+ * Values below 32 units get one bucket each; above that every power of two
+ * is split into 16 equal sub-buckets, so any recorded value is reported with
+ * at most ~6% error while the whole range from 1 µs to hours fits in a few
+ * hundred counters. Recording is a single atomic increment and never
+ * allocates, so it can be called for every event on the EDT.
+ *
+ * Usage:
+ *   LatencyHistogram histogram = new LatencyHistogram();
+ *   histogram.record(System.nanoTime() - start);
+ *   long p99 = histogram.getValueAtPercentile(99);
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + MAX_EXPONENT * HALF_SUB_BUCKETS;
+    private static final long UNIT_NANOS = 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value / UNIT_NANOS));
+        count.incrementAndGet();
+        sumNanos.addAndGet(value);
+        long max;
+        while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+            // 重试
+        }
+    }
+
+    /** Adds every count of {@code other} to this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count.get());
+        sumNanos.addAndGet(other.sumNanos.get());
+        long otherMax = other.maxNanos.get();
+        long max;
+        while (otherMax > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, otherMax)) {
+            // 重试
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.get();
+        return n > 0 ? (double) sumNanos.get() / n : 0;
+    }
+
+    /** Upper bound of the bucket holding the given percentile (0-100), capped at the recorded maximum. */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(maxNanos.get(), (highestValueOf(i) + 1) * UNIT_NANOS - 1);
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /** Number of recorded values greater than or equal to {@code nanos}, at bucket precision. */
+    public long getCountAtOrAbove(long nanos) {
+        long above = 0;
+        for (int i = indexOf(nanos / UNIT_NANOS); i < BUCKET_COUNT; i++) {
+            above += counts.get(i);
+        }
+        return above;
+    }
+
+    private static int indexOf(long units) {
+        if (units < SUB_BUCKETS) return (int) units;
+        int exponent = 63 - Long.numberOfLeadingZeros(units) - (SUB_BUCKET_BITS - 1);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int subBucket = (int) (units >>> exponent);
+        return SUB_BUCKETS + (exponent - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
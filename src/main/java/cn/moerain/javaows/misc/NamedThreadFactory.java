@@ -0,0 +1,33 @@
+package cn.moerain.javaows.misc;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory that names pool threads after the owning application,
+ * e.g. "Explorer-Thumbnail-1".
+ *
+ * TaskMgr's JVM tab attributes per-thread CPU time and allocated bytes to an
+ * application by the part of the thread name before the first '-'.
+ */
+public final class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final boolean daemon;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public NamedThreadFactory(String prefix) {
+        this(prefix, false);
+    }
+
+    public NamedThreadFactory(String prefix, boolean daemon) {
+        this.prefix = prefix;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(daemon);
+        return thread;
+    }
+}
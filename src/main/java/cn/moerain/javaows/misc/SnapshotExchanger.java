@@ -0,0 +1,29 @@
+package cn.moerain.javaows.misc;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free single-slot hand-off between one producer and one consumer.
+ *
+ * The producer publishes immutable snapshots at its own pace; a new snapshot
+ * replaces one the consumer has not taken yet, so a slow consumer never builds
+ * a backlog and always sees the latest state. Neither side blocks.
+ *
+ * Usage:
+ *   SnapshotExchanger<Snapshot> exchanger = new SnapshotExchanger<>();
+ *   exchanger.publish(snapshot);                  // sampling thread
+ *   Snapshot latest = exchanger.take();           // UI thread, null if nothing new
+ */
+public final class SnapshotExchanger<T> {
+    private final AtomicReference<T> slot = new AtomicReference<>();
+
+    /** Makes {@code snapshot} the latest value, dropping any value not yet taken. */
+    public void publish(T snapshot) {
+        slot.set(snapshot);
+    }
+
+    /** Returns the snapshot published since the last call, or {@code null} if there is none. */
+    public T take() {
+        return slot.getAndSet(null);
+    }
+}
@@ -0,0 +1,161 @@
+package cn.moerain.javaows.office;
+
+import cn.moerain.javaows.misc.CsvParser;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+// 后台读取 CSV：CsvParser 在后台线程多线程解析，解析好的块按文件顺序放入有界队列，
+// 由 EDT 调用 drainTo 按列写入 SheetModel。界面跟不上时解析线程阻塞等待
+class CsvSheetLoader implements SheetLoader {
+    // 每块约 8 MB 的原始数据
+    private static final int QUEUE_BLOCKS = 4;
+    // EDT 每次写入约这么多个单元格后检查时间，和 xlsx 的批大小一致
+    private static final int BATCH_CELLS = 8192;
+
+    private final Path file;
+    private final long totalBytes;
+    private final BlockingQueue<CsvParser.Block> queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+
+    private Thread thread;
+    private volatile long bytesRead;
+    private volatile int rowsRead;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private volatile Exception error;
+
+    // EDT 正在写入的块和下一行，只在 EDT 上访问
+    private CsvParser.Block current;
+    private int currentRow;
+
+    CsvSheetLoader(File file) {
+        this.file = file.toPath();
+        this.totalBytes = file.length();
+    }
+
+    void start() {
+        thread = new Thread(this::run, "Csv-Loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            new CsvParser(true).parse(file, block -> {
+                if (cancelled) throw new CancellationException();
+                try {
+                    queue.put(block);
+                } catch (InterruptedException e) {
+                    throw new CancellationException();
+                }
+                rowsRead += block.getRowCount();
+                bytesRead = block.getEnd();
+            });
+        } catch (CancellationException e) {
+            // 用户取消
+        } catch (Exception e) {
+            if (!cancelled) {
+                error = e;
+            }
+        } finally {
+            finished = true;
+        }
+    }
+
+    @Override
+    public void drainTo(SheetModel model, long budgetMillis) {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+        int oldRows = model.getRowCount();
+        int oldColumns = model.getColumnCount();
+        // 一块可能有几十万行，每次只写入一段，写完一段就检查时间
+        do {
+            if (current == null) {
+                current = queue.poll();
+                currentRow = 0;
+                if (current == null) break;
+            }
+            int rows = Math.max(1, BATCH_CELLS / Math.max(1, current.getColumnCount()));
+            int end = Math.min(current.getRowCount(), currentRow + rows);
+            append(model, current, currentRow, end);
+            currentRow = end;
+            if (currentRow == current.getRowCount()) {
+                current = null;
+            }
+        } while (System.nanoTime() < deadline);
+
+        if (model.getColumnCount() > oldColumns) {
+            model.fireTableStructureChanged();
+        } else if (model.getRowCount() > oldRows) {
+            model.fireTableRowsInserted(oldRows, model.getRowCount() - 1);
+        }
+    }
+
+    // 把块中 [from, to) 行追加到表格末尾
+    private static void append(SheetModel model, CsvParser.Block block, int from, int to) {
+        int offset = model.getRowCount() - from;
+        model.setSize(offset + to, Math.max(model.getColumnCount(), block.getColumnCount()));
+        // 逐列写入，和模型的按列存储一致
+        for (int c = 0; c < block.getColumnCount(); c++) {
+            for (int r = from; r < to; r++) {
+                switch (block.getType(r, c)) {
+                    case CsvParser.NUMBER:
+                        model.setNumber(offset + r, c, block.getNumber(r, c));
+                        break;
+                    case CsvParser.DATE:
+                        model.setDate(offset + r, c, block.getDate(r, c));
+                        break;
+                    case CsvParser.TEXT:
+                        model.setText(offset + r, c, block.getText(r, c));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return finished && queue.isEmpty() && current == null;
+    }
+
+    @Override
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public double getProgress() {
+        return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : -1;
+    }
+
+    @Override
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        queue.clear();
+        current = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        if (thread != null) {
+            try {
+                thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package cn.moerain.javaows.office;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import javax.swing.*;
@@ -11,16 +10,30 @@ import java.awt.Color;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 public class Excel extends JFrame {
-    private DefaultTableModel model;
+    private SheetModel model;
     private JTable table;
     private JFileChooser chooser;
     private String currentFileName = "";
 
+    // 状态栏，后台读取或保存时显示进度
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton cancelButton;
+    private SheetLoader loader;
+    private Timer loadTimer;
+    private WorkbookSaver saver;
+    private Timer saveTimer;
+
     public Excel() {
         super("Javaows Office Excel");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -29,6 +42,7 @@ public class Excel extends JFrame {
         initializeComponents();
         setupMenus();
         setupTable();
+        setupStatusBar();
 
         setLocationRelativeTo(null);
 
@@ -46,17 +60,20 @@ public class Excel extends JFrame {
     }
 
     private void setupTable() {
-        model = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return true;
-            }
-        };
+        model = new SheetModel();
 
         table = new JTable(model);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         table.setGridColor(Color.LIGHT_GRAY);
         table.setShowGrid(true);
+        // 编辑公式单元格时显示公式而不是计算结果
+        table.setDefaultEditor(Object.class, new DefaultCellEditor(new JTextField()) {
+            @Override
+            public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+                String text = model.getEditText(table.convertRowIndexToModel(row), table.convertColumnIndexToModel(column));
+                return super.getTableCellEditorComponent(table, text, isSelected, row, column);
+            }
+        });
 
         // 添加右键菜单
         setupTableContextMenu();
@@ -68,6 +85,60 @@ public class Excel extends JFrame {
         add(scrollPane, BorderLayout.CENTER);
     }
 
+    private void setupStatusBar() {
+        JPanel statusBar = new JPanel(new BorderLayout(5, 0));
+        statusBar.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+
+        statusLabel = new JLabel("就绪");
+        progressBar = new JProgressBar(0, 1000);
+        progressBar.setPreferredSize(new Dimension(200, progressBar.getPreferredSize().height));
+        progressBar.setVisible(false);
+        cancelButton = new JButton("取消");
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(e -> {
+            if (loader != null) {
+                loader.cancel();
+            } else if (saver != null) {
+                saver.cancel();
+            }
+            cancelButton.setEnabled(false);
+        });
+
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        progressPanel.add(progressBar);
+        progressPanel.add(cancelButton);
+
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(progressPanel, BorderLayout.EAST);
+        add(statusBar, BorderLayout.SOUTH);
+
+        loadTimer = new Timer(100, e -> pollLoader());
+        saveTimer = new Timer(100, e -> pollSaver());
+    }
+
+    private void showProgress(String text) {
+        statusLabel.setText(text);
+        progressBar.setValue(0);
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(true);
+        cancelButton.setEnabled(true);
+        cancelButton.setVisible(true);
+    }
+
+    private void hideProgress() {
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+    }
+
+    // 后台读取或保存期间不允许修改表格或切换文件
+    private boolean isBusy() {
+        if (loader != null || saver != null) {
+            statusLabel.setText(loader != null ? "正在读取文件，请稍候或取消" : "正在保存文件，请稍候或取消");
+            return true;
+        }
+        return false;
+    }
+
     private void setupTableContextMenu() {
         JPopupMenu contextMenu = new JPopupMenu();
 
@@ -149,34 +220,17 @@ private JMenuItem newItem(String text, ActionListener l) {
 
     // 新建工作表
     private void createNewSheet() {
-        model.setRowCount(0);
-        model.setColumnCount(0);
-
-        // 创建默认的10列20行
-        for (int i = 0; i < 10; i++) {
-            model.addColumn(getColumnName(i));
-        }
-
-        for (int i = 0; i < 20; i++) {
-            model.addRow(new Object[10]);
-        }
+        if (isBusy()) return;
+        // 创建默认的10列20行，列名 A, B, C... 由 AbstractTableModel 提供
+        model.clearAll(20, 10);
 
         currentFileName = "";
         updateTitle();
     }
 
-    // 获取Excel样式的列名 (A, B, C... AA, AB...)
-    private String getColumnName(int columnIndex) {
-        StringBuilder name = new StringBuilder();
-        while (columnIndex >= 0) {
-            name.insert(0, (char)('A' + (columnIndex % 26)));
-            columnIndex = columnIndex / 26 - 1;
-        }
-        return name.toString();
-    }
-
     // 打开文件
     private void openFile() {
+        if (isBusy()) return;
         if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
         File file = chooser.getSelectedFile();
@@ -184,9 +238,14 @@ private JMenuItem newItem(String text, ActionListener l) {
 
         try {
             if (fileName.endsWith(".csv")) {
+                // 后台读取，完成后在状态栏提示
                 openCsvFile(file);
-            } else if (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) {
-                openExcelFile(file);
+                return;
+            } else if (fileName.endsWith(".xlsx")) {
+                openXlsxFile(file);
+                return;
+            } else if (fileName.endsWith(".xls")) {
+                if (!openExcelFile(file)) return;
             } else {
                 JOptionPane.showMessageDialog(this, "不支持的文件格式！", "错误", JOptionPane.ERROR_MESSAGE);
                 return;
@@ -201,144 +260,185 @@ private JMenuItem newItem(String text, ActionListener l) {
         }
     }
 
-    // 打开CSV文件
-    private void openCsvFile(File file) throws IOException {
-        model.setRowCount(0);
-        model.setColumnCount(0);
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file, java.nio.charset.StandardCharsets.UTF_8))) {
-            String line;
-            boolean firstLine = true;
+    // 打开CSV文件：后台多线程解析，按块写入已分好类型的列
+    private void openCsvFile(File file) {
+        CsvSheetLoader newLoader = new CsvSheetLoader(file);
+        model.clearAll(0, 0);
+        model.setEditable(false);
+        loader = newLoader;
+        currentFileName = file.getAbsolutePath();
+        updateTitle();
 
-            while ((line = br.readLine()) != null) {
-                String[] cells = parseCsvLine(line);
+        showProgress("正在读取 " + file.getName() + "...");
 
-                if (firstLine) {
-                    for (int i = 0; i < cells.length; i++) {
-                        model.addColumn(getColumnName(i));
-                    }
-                    firstLine = false;
-                }
+        newLoader.start();
+        loadTimer.start();
+    }
 
-                // 确保行数据长度与列数匹配
-                Object[] rowData = new Object[model.getColumnCount()];
-                for (int i = 0; i < rowData.length; i++) {
-                    rowData[i] = i < cells.length ? cells[i] : "";
-                }
-                model.addRow(rowData);
-            }
+    // 流式读取 xlsx：后台线程逐批填充表格，前面的行读到即可查看
+    private void openXlsxFile(File file) throws IOException {
+        XlsxSheetLoader newLoader = new XlsxSheetLoader(file);
+        int sheetIndex = chooseSheet(newLoader.getSheetNames());
+        if (sheetIndex < 0) {
+            newLoader.close();
+            return;
         }
+
+        model.clearAll(0, 0);
+        model.setEditable(false);
+        loader = newLoader;
+        currentFileName = file.getAbsolutePath();
+        updateTitle();
+
+        showProgress("正在读取 " + newLoader.getSheetNames().get(sheetIndex) + "...");
+
+        newLoader.start(sheetIndex);
+        loadTimer.start();
     }
 
-    // 解析CSV行，处理引号和逗号
-    private String[] parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder current = new StringBuilder();
+    private void pollLoader() {
+        loader.drainTo(model, 40);
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
+        double progress = loader.getProgress();
+        if (progress >= 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) (progress * 1000));
+        }
+        statusLabel.setText("正在读取... 已读 " + loader.getRowsRead() + " 行");
 
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"');
-                    i++; // 跳过下一个引号
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                result.add(current.toString());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
-            }
+        if (loader.isDone()) {
+            finishLoading();
         }
-        result.add(current.toString());
+    }
 
-        return result.toArray(new String[0]);
+    private void finishLoading() {
+        loadTimer.stop();
+        SheetLoader finished = loader;
+        loader = null;
+        boolean cancelled = !cancelButton.isEnabled();
+        finished.close();
+
+        model.setEditable(true);
+        model.recalculate();
+        hideProgress();
+
+        Exception error = finished.getError();
+        if (error != null) {
+            statusLabel.setText("读取失败");
+            JOptionPane.showMessageDialog(this, "打开文件失败：" + error.getMessage(),
+                                        "错误", JOptionPane.ERROR_MESSAGE);
+            error.printStackTrace();
+        } else if (cancelled) {
+            statusLabel.setText("已取消，保留已读取的 " + model.getRowCount() + " 行");
+        } else {
+            statusLabel.setText("文件打开成功，共 " + model.getRowCount() + " 行");
+        }
     }
 
-    // 打开Excel文件
-    private void openExcelFile(File file) throws IOException {
-        model.setRowCount(0);
-        model.setColumnCount(0);
+    // 工作簿有多个工作表时让用户选择，取消返回 -1
+    private int chooseSheet(List<String> sheetNames) throws IOException {
+        if (sheetNames.isEmpty()) {
+            throw new IOException("工作簿中没有工作表");
+        }
+        if (sheetNames.size() == 1) return 0;
 
-        try (FileInputStream fis = new FileInputStream(file)) {
-            Workbook workbook;
-            if (file.getName().toLowerCase().endsWith(".xlsx")) {
-                workbook = new XSSFWorkbook(fis);
-            } else {
-                workbook = new HSSFWorkbook(fis);
-            }
+        Object choice = JOptionPane.showInputDialog(this, "选择要打开的工作表：", "打开工作表",
+            JOptionPane.QUESTION_MESSAGE, null, sheetNames.toArray(), sheetNames.get(0));
+        return choice != null ? sheetNames.indexOf(choice) : -1;
+    }
 
-            Sheet sheet = workbook.getSheetAt(0); // 读取第一个工作表
+    // 读取 xls，取消选择工作表时返回 false
+    private boolean openExcelFile(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            Workbook workbook = new HSSFWorkbook(fis);
 
-            // 确定最大列数
-            int maxColumns = 0;
-            for (Row row : sheet) {
-                if (row.getLastCellNum() > maxColumns) {
-                    maxColumns = row.getLastCellNum();
-                }
+            List<String> sheetNames = new ArrayList<>();
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                sheetNames.add(workbook.getSheetName(i));
             }
-
-            // 添加列
-            for (int i = 0; i < maxColumns; i++) {
-                model.addColumn(getColumnName(i));
+            int sheetIndex = chooseSheet(sheetNames);
+            if (sheetIndex < 0) {
+                workbook.close();
+                return false;
             }
+            Sheet sheet = workbook.getSheetAt(sheetIndex);
 
-            // 读取数据
+            model.setSize(0, 0);
+
+            // 一次遍历：列数随读取增长，空行和空单元格不写入
             for (Row row : sheet) {
-                Object[] rowData = new Object[maxColumns];
-                for (int i = 0; i < maxColumns; i++) {
-                    Cell cell = row.getCell(i);
-                    rowData[i] = getCellValue(cell);
+                int rowIndex = row.getRowNum();
+                int columnCount = Math.max(model.getColumnCount(), row.getLastCellNum());
+                model.setSize(Math.max(model.getRowCount(), rowIndex + 1), columnCount);
+                for (Cell cell : row) {
+                    putCellValue(rowIndex, cell.getColumnIndex(), cell);
                 }
-                model.addRow(rowData);
             }
 
             workbook.close();
+        } finally {
+            model.recalculate();
+            model.fireTableStructureChanged();
         }
+        return true;
     }
 
-    // 获取单元格值
-    private String getCellValue(Cell cell) {
-        if (cell == null) return "";
-
+    // 按单元格类型写入模型
+    private void putCellValue(int row, int column, Cell cell) {
         switch (cell.getCellType()) {
             case STRING:
-                return cell.getStringCellValue();
+                model.setText(row, column, cell.getStringCellValue());
+                break;
             case NUMERIC:
                 if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
+                    model.setDate(row, column, SheetModel.toLocalMillis(cell.getLocalDateTimeCellValue()));
                 } else {
-                    double numValue = cell.getNumericCellValue();
-                    if (numValue == Math.floor(numValue)) {
-                        return String.valueOf((long) numValue);
-                    } else {
-                        return String.valueOf(numValue);
-                    }
+                    model.setNumber(row, column, cell.getNumericCellValue());
                 }
+                break;
             case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
+                model.setText(row, column, String.valueOf(cell.getBooleanCellValue()));
+                break;
             case FORMULA:
-                return cell.getCellFormula();
+                model.setFormula(row, column, cell.getCellFormula(), cachedResult(cell));
+                break;
             default:
-                return "";
+                break;
+        }
+    }
+
+    // 公式在文件中的缓存结果，重算前先显示它；公式用到未实现的函数时一直显示它
+    private static Object cachedResult(Cell cell) {
+        switch (cell.getCachedFormulaResultType()) {
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return SheetModel.formatDate(SheetModel.toLocalMillis(cell.getLocalDateTimeCellValue()));
+                }
+                return cell.getNumericCellValue();
+            case STRING:
+                return cell.getStringCellValue();
+            case BOOLEAN:
+                return cell.getBooleanCellValue();
+            case ERROR:
+                return FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default:
+                return null;
         }
     }
 
     // 保存文件
     private void saveFile() {
+        if (isBusy()) return;
         if (currentFileName.isEmpty()) {
             saveAsFile();
         } else {
+            File file = new File(currentFileName);
+            if (!currentFileName.toLowerCase().endsWith(".csv")) {
+                saveExcelFile(file);
+                return;
+            }
             try {
-                File file = new File(currentFileName);
-                if (currentFileName.toLowerCase().endsWith(".csv")) {
-                    saveCsvFile(file);
-                } else {
-                    saveExcelFile(file);
-                }
+                saveCsvFile(file);
                 JOptionPane.showMessageDialog(this, "保存成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "保存失败：" + ex.getMessage(),
@@ -349,29 +449,24 @@ private JMenuItem newItem(String text, ActionListener l) {
 
     // 另存为
     private void saveAsFile() {
+        if (isBusy()) return;
         if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
         File file = chooser.getSelectedFile();
         String fileName = file.getName().toLowerCase();
 
-        try {
-            if (fileName.endsWith(".csv")) {
-                saveCsvFile(file);
-            } else if (fileName.endsWith(".xlsx")) {
-                if (!fileName.endsWith(".xlsx")) {
-                    file = new File(file.getAbsolutePath() + ".xlsx");
-                }
-                saveExcelFile(file);
-            } else if (fileName.endsWith(".xls")) {
-                if (!fileName.endsWith(".xls")) {
-                    file = new File(file.getAbsolutePath() + ".xls");
-                }
-                saveExcelFile(file);
-            } else {
+        if (!fileName.endsWith(".csv")) {
+            if (!fileName.endsWith(".xlsx") && !fileName.endsWith(".xls")) {
                 // 默认保存为Excel格式
                 file = new File(file.getAbsolutePath() + ".xlsx");
-                saveExcelFile(file);
             }
+            // 后台保存，成功后再更新当前文件名
+            saveExcelFile(file);
+            return;
+        }
+
+        try {
+            saveCsvFile(file);
 
             currentFileName = file.getAbsolutePath();
             updateTitle();
@@ -382,67 +477,88 @@ private JMenuItem newItem(String text, ActionListener l) {
         }
     }
 
-    // 保存CSV文件
+    // 保存CSV文件：先写入同目录下的临时文件再替换，写入失败时原文件保持不变
     private void saveCsvFile(File file) throws IOException {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file, java.nio.charset.StandardCharsets.UTF_8))) {
-            for (int r = 0; r < model.getRowCount(); r++) {
-                List<String> line = new ArrayList<>();
-                for (int c = 0; c < model.getColumnCount(); c++) {
-                    Object val = model.getValueAt(r, c);
-                    String cellValue = val == null ? "" : val.toString();
-
-                    // 处理包含逗号或引号的字段
-                    if (cellValue.contains(",") || cellValue.contains("\"") || cellValue.contains("\n")) {
-                        cellValue = "\"" + cellValue.replace("\"", "\"\"") + "\"";
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                for (int r = 0; r < model.getRowCount(); r++) {
+                    List<String> line = new ArrayList<>();
+                    for (int c = 0; c < model.getColumnCount(); c++) {
+                        Object val = model.getValueAt(r, c);
+                        String cellValue = val == null ? "" : val.toString();
+
+                        // 处理包含逗号或引号的字段
+                        if (cellValue.contains(",") || cellValue.contains("\"") || cellValue.contains("\n")) {
+                            cellValue = "\"" + cellValue.replace("\"", "\"\"") + "\"";
+                        }
+                        line.add(cellValue);
                     }
-                    line.add(cellValue);
+                    pw.println(String.join(",", line));
                 }
-                pw.println(String.join(",", line));
+                // PrintWriter 不抛出写入错误
+                if (pw.checkError()) {
+                    throw new IOException("写入临时文件失败");
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
             }
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
-    // 保存Excel文件
-    private void saveExcelFile(File file) throws IOException {
-        Workbook workbook;
-        if (file.getName().toLowerCase().endsWith(".xlsx")) {
-            workbook = new XSSFWorkbook();
-        } else {
-            workbook = new HSSFWorkbook();
+    // 保存Excel文件：在后台线程中写入，模型在此期间只读
+    private void saveExcelFile(File file) {
+        if (table.isEditing()) {
+            table.getCellEditor().stopCellEditing();
         }
+        model.setEditable(false);
+        saver = new WorkbookSaver(model, file);
+        showProgress("正在保存 " + file.getName() + "...");
+        saver.start();
+        saveTimer.start();
+    }
 
-        Sheet sheet = workbook.createSheet("Sheet1");
-
-        for (int r = 0; r < model.getRowCount(); r++) {
-            Row row = sheet.createRow(r);
-            for (int c = 0; c < model.getColumnCount(); c++) {
-                Cell cell = row.createCell(c);
-                Object value = model.getValueAt(r, c);
-                if (value != null) {
-                    String stringValue = value.toString();
-                    // 尝试将字符串转换为数字
-                    try {
-                        double numValue = Double.parseDouble(stringValue);
-                        cell.setCellValue(numValue);
-                    } catch (NumberFormatException e) {
-                        cell.setCellValue(stringValue);
-                    }
-                } else {
-                    cell.setCellValue("");
-                }
-            }
+    private void pollSaver() {
+        if (saver.isPackaging()) {
+            progressBar.setIndeterminate(true);
+            statusLabel.setText("正在写入文件...");
+        } else {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) (saver.getProgress() * 1000));
         }
 
-        // 自动调整列宽
-        for (int c = 0; c < model.getColumnCount(); c++) {
-            sheet.autoSizeColumn(c);
+        if (saver.isDone()) {
+            finishSaving();
         }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            workbook.write(fos);
-        }
+    private void finishSaving() {
+        saveTimer.stop();
+        WorkbookSaver finished = saver;
+        saver = null;
+
+        model.setEditable(true);
+        hideProgress();
 
-        workbook.close();
+        Exception error = finished.getError();
+        if (error != null) {
+            statusLabel.setText("保存失败");
+            JOptionPane.showMessageDialog(this, "保存失败：" + error.getMessage(),
+                                        "错误", JOptionPane.ERROR_MESSAGE);
+            error.printStackTrace();
+        } else if (finished.isCancelled()) {
+            statusLabel.setText("已取消保存，文件未修改");
+        } else {
+            currentFileName = finished.getFile().getAbsolutePath();
+            updateTitle();
+            statusLabel.setText("保存成功：" + finished.getFile().getName());
+        }
     }
 
     // 更新窗口标题
@@ -456,62 +572,54 @@ private JMenuItem newItem(String text, ActionListener l) {
 
     // 表格操作方法
     private void addRow() {
-        model.addRow(new Object[model.getColumnCount()]);
+        if (isBusy()) return;
+        model.insertRows(model.getRowCount(), 1);
     }
 
     private void addColumn() {
-        model.addColumn(getColumnName(model.getColumnCount()));
+        if (isBusy()) return;
+        model.insertColumn(model.getColumnCount());
     }
 
     private void insertRow() {
+        if (isBusy()) return;
         int selectedRow = table.getSelectedRow();
         if (selectedRow >= 0) {
-            model.insertRow(selectedRow, new Object[model.getColumnCount()]);
+            model.insertRows(selectedRow, 1);
         } else {
             addRow();
         }
     }
 
     private void deleteRow() {
+        if (isBusy()) return;
         int selectedRow = table.getSelectedRow();
         if (selectedRow >= 0) {
-            model.removeRow(selectedRow);
+            model.removeRows(selectedRow, 1);
         }
     }
 
+    // 按列存储，插入和删除列只增删一个列对象，不必逐格移动数据
     private void insertColumn() {
+        if (isBusy()) return;
         int selectedCol = table.getSelectedColumn();
         if (selectedCol >= 0) {
-            model.addColumn(getColumnName(model.getColumnCount()));
-            // 移动列数据
-            for (int r = 0; r < model.getRowCount(); r++) {
-                for (int c = model.getColumnCount() - 1; c > selectedCol; c--) {
-                    model.setValueAt(model.getValueAt(r, c - 1), r, c);
-                }
-                model.setValueAt("", r, selectedCol);
-            }
+            model.insertColumn(selectedCol);
         } else {
             addColumn();
         }
     }
 
     private void deleteColumn() {
+        if (isBusy()) return;
         int selectedCol = table.getSelectedColumn();
         if (selectedCol >= 0 && model.getColumnCount() > 1) {
-            // 移动数据
-            for (int r = 0; r < model.getRowCount(); r++) {
-                for (int c = selectedCol; c < model.getColumnCount() - 1; c++) {
-                    model.setValueAt(model.getValueAt(r, c + 1), r, c);
-                }
-            }
-            // 删除最后一列
-            TableColumnModel columnModel = table.getColumnModel();
-            columnModel.removeColumn(columnModel.getColumn(model.getColumnCount() - 1));
-            model.setColumnCount(model.getColumnCount() - 1);
+            model.removeColumn(selectedCol);
         }
     }
 
     private void clearAll() {
+        if (isBusy()) return;
         int option = JOptionPane.showConfirmDialog(this,
             "确定要清空所有数据吗？", "确认",
             JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
@@ -0,0 +1,1089 @@
+package cn.moerain.javaows.office;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 编译后的单元格公式：A1 格式的公式文本解析成不可变的语法树，可以求值、还原成公式文本，
+// 并在插入/删除行列或复制公式时调整其中的引用。
+// 支持数字、文本、TRUE/FALSE、错误值、单元格和区域引用（含 A:B 整列）、+ - * / ^ & % 和比较运算，
+// 以及 SUM、AVERAGE、MIN、MAX、COUNT、IF、VLOOKUP；其他函数可以解析，求值结果为 #NAME?。
+// 求值只读取 Context，多个线程可以同时对不同公式求值
+final class Formula {
+    // 空单元格：参与运算时视为 0 或空文本
+    static final Object BLANK = new Object() {
+        @Override
+        public String toString() {
+            return "";
+        }
+    };
+
+    enum ErrorValue {
+        DIV0("#DIV/0!"),
+        VALUE("#VALUE!"),
+        REF("#REF!"),
+        NAME("#NAME?"),
+        NUM("#NUM!"),
+        NA("#N/A"),
+        // 循环引用
+        CIRC("#CIRC!");
+
+        final String text;
+
+        ErrorValue(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    // 求值时读取单元格，值为 Double、String、Boolean、ErrorValue 或 BLANK
+    interface Context {
+        int getRowCount();
+
+        int getColumnCount();
+
+        Object getValue(int row, int column);
+
+        // VLOOKUP 精确查找用的索引：区域第一列中每个值第一次出现的行，键见 lookupKey；返回 null 时逐行查找
+        Map<Object, Integer> getLookupIndex(int firstRow, int lastRow, int column);
+    }
+
+    // 公式引用的单元格或区域，单个单元格时首尾相同
+    interface ReferenceVisitor {
+        void visit(int firstRow, int lastRow, int firstColumn, int lastColumn);
+    }
+
+    static final int MAX_ROWS = 1 << 20;
+    static final int MAX_COLUMNS = 1 << 14;
+    // 区域超过这么多行时 VLOOKUP 精确查找使用索引
+    private static final int INDEXED_LOOKUP_ROWS = 64;
+
+    private final Node root;
+
+    private Formula(Node root) {
+        this.root = root;
+    }
+
+    // source 不含开头的等号
+    static Formula parse(String source) throws ParseException {
+        return new Formula(new Parser(source).parse());
+    }
+
+    // 结果为 Double、String、Boolean 或 ErrorValue
+    Object evaluate(Context context) {
+        Object value = root.eval(context);
+        return value == BLANK ? (Object) 0.0 : value;
+    }
+
+    // 用到的函数都能求值
+    boolean isSupported() {
+        return root.supported();
+    }
+
+    void forEachReference(ReferenceVisitor visitor) {
+        root.references(visitor);
+    }
+
+    // 复制到相对位置 (rows, columns) 之外的单元格：相对引用随之移动，绝对引用不变
+    Formula offset(int rows, int columns) {
+        return new Formula(root.map(new Mapper() {
+            @Override
+            Node ref(Ref ref) {
+                int row = ref.absoluteRow ? ref.row : ref.row + rows;
+                int column = ref.absoluteColumn ? ref.column : ref.column + columns;
+                if (!inSheet(row, column)) return new Literal(ErrorValue.REF);
+                return new Ref(row, column, ref.absoluteRow, ref.absoluteColumn);
+            }
+
+            @Override
+            Node area(Area area) {
+                int firstRow = area.wholeColumns || area.absoluteFirstRow ? area.firstRow : area.firstRow + rows;
+                int lastRow = area.wholeColumns || area.absoluteLastRow ? area.lastRow : area.lastRow + rows;
+                int firstColumn = area.absoluteFirstColumn ? area.firstColumn : area.firstColumn + columns;
+                int lastColumn = area.absoluteLastColumn ? area.lastColumn : area.lastColumn + columns;
+                if (!inSheet(firstRow, firstColumn) || !inSheet(lastRow, lastColumn)) return new Literal(ErrorValue.REF);
+                return area.with(firstRow, lastRow, firstColumn, lastColumn);
+            }
+        }));
+    }
+
+    // 在 at 处插入 count 行（count 为负时删除 -count 行）后调整引用，被删除的引用变为 #REF!
+    Formula shiftRows(int at, int count) {
+        return new Formula(root.map(new Mapper() {
+            @Override
+            Node ref(Ref ref) {
+                int row = shift(ref.row, at, count);
+                return row < 0 ? new Literal(ErrorValue.REF) : new Ref(row, ref.column, ref.absoluteRow, ref.absoluteColumn);
+            }
+
+            @Override
+            Node area(Area area) {
+                if (area.wholeColumns) return area;
+                int[] range = shiftRange(area.firstRow, area.lastRow, at, count);
+                return range == null ? new Literal(ErrorValue.REF) : area.with(range[0], range[1], area.firstColumn, area.lastColumn);
+            }
+        }));
+    }
+
+    Formula shiftColumns(int at, int count) {
+        return new Formula(root.map(new Mapper() {
+            @Override
+            Node ref(Ref ref) {
+                int column = shift(ref.column, at, count);
+                return column < 0 ? new Literal(ErrorValue.REF) : new Ref(ref.row, column, ref.absoluteRow, ref.absoluteColumn);
+            }
+
+            @Override
+            Node area(Area area) {
+                int[] range = shiftRange(area.firstColumn, area.lastColumn, at, count);
+                return range == null ? new Literal(ErrorValue.REF) : area.with(area.firstRow, area.lastRow, range[0], range[1]);
+            }
+        }));
+    }
+
+    private static int shift(int index, int at, int count) {
+        if (index < at) return index;
+        if (count >= 0) return index + count;
+        return index < at - count ? -1 : index + count;
+    }
+
+    // 区域在插入处之后的一端随之移动，插入在区域中间时区域变大；删除时区域缩小，全部删除返回 null
+    private static int[] shiftRange(int first, int last, int at, int count) {
+        if (count >= 0) {
+            return new int[] {first >= at ? first + count : first, last >= at ? last + count : last};
+        }
+        int end = at - count;
+        int newFirst = first < at ? first : (first >= end ? first + count : at);
+        int newLast = last < at ? last : (last >= end ? last + count : at - 1);
+        return newLast < newFirst ? null : new int[] {newFirst, newLast};
+    }
+
+    private static boolean inSheet(int row, int column) {
+        return row >= 0 && row < MAX_ROWS && column >= 0 && column < MAX_COLUMNS;
+    }
+
+    // 公式文本，不含开头的等号
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        root.print(out);
+        return out.toString();
+    }
+
+    // ---------- 值转换 ----------
+
+    static Object toNumber(Object value) {
+        if (value instanceof Double || value instanceof ErrorValue) return value;
+        if (value == BLANK) return 0.0;
+        if (value instanceof Boolean) return (Boolean) value ? 1.0 : 0.0;
+        String text = ((String) value).trim();
+        if (SheetModel.isNumber(text)) return Double.parseDouble(text);
+        return ErrorValue.VALUE;
+    }
+
+    static Object toText(Object value) {
+        if (value instanceof String || value instanceof ErrorValue) return value;
+        if (value == BLANK) return "";
+        if (value instanceof Boolean) return (Boolean) value ? "TRUE" : "FALSE";
+        return SheetModel.formatNumber((Double) value);
+    }
+
+    static Object toBoolean(Object value) {
+        if (value instanceof Boolean || value instanceof ErrorValue) return value;
+        if (value == BLANK) return Boolean.FALSE;
+        if (value instanceof Double) return (Double) value != 0;
+        String text = (String) value;
+        if (text.equalsIgnoreCase("TRUE")) return Boolean.TRUE;
+        if (text.equalsIgnoreCase("FALSE")) return Boolean.FALSE;
+        return ErrorValue.VALUE;
+    }
+
+    // 显示文本
+    static String display(Object value) {
+        if (value instanceof Double) return SheetModel.formatNumber((Double) value);
+        if (value instanceof Boolean) return (Boolean) value ? "TRUE" : "FALSE";
+        return value == null ? "" : value.toString();
+    }
+
+    // 比较顺序同 Excel：数字 < 文本 < 逻辑值，文本不区分大小写；空单元格按另一边的类型视为 0、"" 或 FALSE
+    static int compare(Object left, Object right) {
+        if (left == BLANK) left = blankAs(right);
+        if (right == BLANK) right = blankAs(left);
+        int leftRank = rank(left);
+        int rightRank = rank(right);
+        if (leftRank != rightRank) return Integer.compare(leftRank, rightRank);
+        if (left instanceof Double) return Double.compare((Double) left, (Double) right);
+        if (left instanceof String) return ((String) left).compareToIgnoreCase((String) right);
+        return Boolean.compare((Boolean) left, (Boolean) right);
+    }
+
+    private static Object blankAs(Object other) {
+        if (other instanceof String) return "";
+        if (other instanceof Boolean) return Boolean.FALSE;
+        return 0.0;
+    }
+
+    private static int rank(Object value) {
+        if (value instanceof Double) return 0;
+        if (value instanceof String) return 1;
+        return 2;
+    }
+
+    // 精确查找的键：文本不区分大小写，-0 与 0 相同；空单元格和错误值不参与查找
+    static Object lookupKey(Object value) {
+        if (value instanceof Double) return (Double) value == 0 ? (Object) 0.0 : value;
+        if (value instanceof String) return ((String) value).toLowerCase(Locale.ROOT);
+        if (value instanceof Boolean) return value;
+        return null;
+    }
+
+    // ---------- 语法树 ----------
+
+    private abstract static class Node {
+        abstract Object eval(Context context);
+
+        abstract void print(StringBuilder out);
+
+        Node map(Mapper mapper) {
+            return this;
+        }
+
+        void references(ReferenceVisitor visitor) {
+        }
+
+        boolean supported() {
+            return true;
+        }
+    }
+
+    // 替换语法树中的引用
+    private abstract static class Mapper {
+        abstract Node ref(Ref ref);
+
+        abstract Node area(Area area);
+    }
+
+    private static final class Literal extends Node {
+        final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object eval(Context context) {
+            return value;
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            if (value instanceof String) {
+                out.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(display(value));
+            }
+        }
+    }
+
+    private static final class Ref extends Node {
+        final int row;
+        final int column;
+        final boolean absoluteRow;
+        final boolean absoluteColumn;
+
+        Ref(int row, int column, boolean absoluteRow, boolean absoluteColumn) {
+            this.row = row;
+            this.column = column;
+            this.absoluteRow = absoluteRow;
+            this.absoluteColumn = absoluteColumn;
+        }
+
+        @Override
+        Object eval(Context context) {
+            if (row >= context.getRowCount() || column >= context.getColumnCount()) return BLANK;
+            return context.getValue(row, column);
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            printColumn(out, column, absoluteColumn);
+            printRow(out, row, absoluteRow);
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            return mapper.ref(this);
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            visitor.visit(row, row, column, column);
+        }
+    }
+
+    private static final class Area extends Node {
+        final int firstRow;
+        final int lastRow;
+        final int firstColumn;
+        final int lastColumn;
+        final boolean absoluteFirstRow;
+        final boolean absoluteLastRow;
+        final boolean absoluteFirstColumn;
+        final boolean absoluteLastColumn;
+        // A:B 形式的整列
+        final boolean wholeColumns;
+
+        Area(int firstRow, int lastRow, int firstColumn, int lastColumn,
+             boolean absoluteFirstRow, boolean absoluteLastRow,
+             boolean absoluteFirstColumn, boolean absoluteLastColumn, boolean wholeColumns) {
+            // 统一为左上到右下
+            this.firstRow = Math.min(firstRow, lastRow);
+            this.lastRow = Math.max(firstRow, lastRow);
+            this.firstColumn = Math.min(firstColumn, lastColumn);
+            this.lastColumn = Math.max(firstColumn, lastColumn);
+            this.absoluteFirstRow = absoluteFirstRow;
+            this.absoluteLastRow = absoluteLastRow;
+            this.absoluteFirstColumn = absoluteFirstColumn;
+            this.absoluteLastColumn = absoluteLastColumn;
+            this.wholeColumns = wholeColumns;
+        }
+
+        Area with(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+            return new Area(firstRow, lastRow, firstColumn, lastColumn, absoluteFirstRow, absoluteLastRow,
+                absoluteFirstColumn, absoluteLastColumn, wholeColumns);
+        }
+
+        // 区域不能直接作为值
+        @Override
+        Object eval(Context context) {
+            return ErrorValue.VALUE;
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            printColumn(out, firstColumn, absoluteFirstColumn);
+            if (!wholeColumns) printRow(out, firstRow, absoluteFirstRow);
+            out.append(':');
+            printColumn(out, lastColumn, absoluteLastColumn);
+            if (!wholeColumns) printRow(out, lastRow, absoluteLastRow);
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            return mapper.area(this);
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            visitor.visit(firstRow, lastRow, firstColumn, lastColumn);
+        }
+    }
+
+    private static final class Paren extends Node {
+        final Node inner;
+
+        Paren(Node inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        Object eval(Context context) {
+            return inner.eval(context);
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            out.append('(');
+            inner.print(out);
+            out.append(')');
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            return new Paren(inner.map(mapper));
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            inner.references(visitor);
+        }
+
+        @Override
+        boolean supported() {
+            return inner.supported();
+        }
+    }
+
+    // 正负号和百分号
+    private static final class Unary extends Node {
+        final char operator;
+        final Node operand;
+
+        Unary(char operator, Node operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(Context context) {
+            Object value = toNumber(operand.eval(context));
+            if (value instanceof ErrorValue) return value;
+            double number = (Double) value;
+            switch (operator) {
+                case '-':
+                    return -number;
+                case '%':
+                    return number / 100;
+                default:
+                    return number;
+            }
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            if (operator == '%') {
+                operand.print(out);
+                out.append('%');
+            } else {
+                out.append(operator);
+                operand.print(out);
+            }
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            return new Unary(operator, operand.map(mapper));
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            operand.references(visitor);
+        }
+
+        @Override
+        boolean supported() {
+            return operand.supported();
+        }
+    }
+
+    private static final class Binary extends Node {
+        final String operator;
+        final Node left;
+        final Node right;
+
+        Binary(String operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(Context context) {
+            Object a = left.eval(context);
+            Object b = right.eval(context);
+            if (a instanceof ErrorValue) return a;
+            if (b instanceof ErrorValue) return b;
+
+            switch (operator) {
+                case "&":
+                    return (String) toText(a) + toText(b);
+                case "=":
+                    return compare(a, b) == 0;
+                case "<>":
+                    return compare(a, b) != 0;
+                case "<":
+                    return compare(a, b) < 0;
+                case ">":
+                    return compare(a, b) > 0;
+                case "<=":
+                    return compare(a, b) <= 0;
+                case ">=":
+                    return compare(a, b) >= 0;
+                default:
+                    break;
+            }
+
+            a = toNumber(a);
+            if (a instanceof ErrorValue) return a;
+            b = toNumber(b);
+            if (b instanceof ErrorValue) return b;
+            double x = (Double) a;
+            double y = (Double) b;
+            double result;
+            switch (operator) {
+                case "+":
+                    result = x + y;
+                    break;
+                case "-":
+                    result = x - y;
+                    break;
+                case "*":
+                    result = x * y;
+                    break;
+                case "/":
+                    if (y == 0) return ErrorValue.DIV0;
+                    result = x / y;
+                    break;
+                default:
+                    result = Math.pow(x, y);
+                    break;
+            }
+            return Double.isFinite(result) ? (Object) result : ErrorValue.NUM;
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            left.print(out);
+            out.append(operator);
+            right.print(out);
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            return new Binary(operator, left.map(mapper), right.map(mapper));
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            left.references(visitor);
+            right.references(visitor);
+        }
+
+        @Override
+        boolean supported() {
+            return left.supported() && right.supported();
+        }
+    }
+
+    private static final class Call extends Node {
+        final String name;
+        final Node[] args;
+
+        Call(String name, Node[] args) {
+            this.name = name;
+            this.args = args;
+        }
+
+        @Override
+        Object eval(Context context) {
+            switch (name) {
+                case "SUM":
+                case "AVERAGE":
+                case "MIN":
+                case "MAX":
+                case "COUNT":
+                    return aggregate(context);
+                case "IF":
+                    return condition(context);
+                case "VLOOKUP":
+                    return vlookup(context);
+                default:
+                    return ErrorValue.NAME;
+            }
+        }
+
+        // 区域中只统计数字，文本、逻辑值和空单元格忽略；直接给出的参数按数字转换
+        private Object aggregate(Context context) {
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int count = 0;
+            for (Node arg : args) {
+                if (arg instanceof Area || arg instanceof Ref) {
+                    int[] bounds = bounds(arg, context);
+                    for (int column = bounds[2]; column <= bounds[3]; column++) {
+                        for (int row = bounds[0]; row <= bounds[1]; row++) {
+                            Object value = context.getValue(row, column);
+                            if (value instanceof Double) {
+                                double number = (Double) value;
+                                sum += number;
+                                min = Math.min(min, number);
+                                max = Math.max(max, number);
+                                count++;
+                            } else if (value instanceof ErrorValue) {
+                                return value;
+                            }
+                        }
+                    }
+                } else {
+                    Object value = arg.eval(context);
+                    if (value instanceof ErrorValue) return value;
+                    if (value == BLANK) continue;
+                    Object number = toNumber(value);
+                    if (number instanceof ErrorValue) {
+                        if (name.equals("COUNT")) continue;
+                        return number;
+                    }
+                    double n = (Double) number;
+                    sum += n;
+                    min = Math.min(min, n);
+                    max = Math.max(max, n);
+                    count++;
+                }
+            }
+            switch (name) {
+                case "SUM":
+                    return sum;
+                case "AVERAGE":
+                    return count == 0 ? (Object) ErrorValue.DIV0 : (Object) (sum / count);
+                case "MIN":
+                    return count == 0 ? 0.0 : min;
+                case "MAX":
+                    return count == 0 ? 0.0 : max;
+                default:
+                    return (double) count;
+            }
+        }
+
+        private Object condition(Context context) {
+            Object test = toBoolean(args[0].eval(context));
+            if (test instanceof ErrorValue) return test;
+            if ((Boolean) test) return args[1].eval(context);
+            return args.length > 2 ? args[2].eval(context) : Boolean.FALSE;
+        }
+
+        // VLOOKUP(值, 区域, 列号, [近似匹配=TRUE])
+        private Object vlookup(Context context) {
+            Object key = args[0].eval(context);
+            if (key instanceof ErrorValue) return key;
+            if (key == BLANK) return ErrorValue.NA;
+            if (!(args[1] instanceof Area || args[1] instanceof Ref)) return ErrorValue.VALUE;
+            Object index = toNumber(args[2].eval(context));
+            if (index instanceof ErrorValue) return index;
+            boolean approximate = true;
+            if (args.length > 3) {
+                Object flag = toBoolean(args[3].eval(context));
+                if (flag instanceof ErrorValue) return flag;
+                approximate = (Boolean) flag;
+            }
+
+            int column = (int) Math.floor((Double) index);
+            if (column < 1) return ErrorValue.VALUE;
+            Node table = args[1];
+            int width = table instanceof Area ? ((Area) table).lastColumn - ((Area) table).firstColumn + 1 : 1;
+            if (column > width) return ErrorValue.REF;
+            int[] bounds = bounds(table, context);
+            if (bounds[1] < bounds[0] || bounds[3] < bounds[2]) return ErrorValue.NA;
+
+            int row = approximate ? approximateMatch(context, bounds, key) : exactMatch(context, bounds, key);
+            if (row < 0) return ErrorValue.NA;
+            if (bounds[2] + column - 1 >= context.getColumnCount()) return 0.0;
+            Object value = context.getValue(row, bounds[2] + column - 1);
+            return value == BLANK ? (Object) 0.0 : value;
+        }
+
+        private static int exactMatch(Context context, int[] bounds, Object key) {
+            Object wanted = lookupKey(key);
+            if (bounds[1] - bounds[0] >= INDEXED_LOOKUP_ROWS) {
+                Map<Object, Integer> index = context.getLookupIndex(bounds[0], bounds[1], bounds[2]);
+                if (index != null) {
+                    Integer row = index.get(wanted);
+                    return row != null ? row : -1;
+                }
+            }
+            for (int row = bounds[0]; row <= bounds[1]; row++) {
+                if (wanted.equals(lookupKey(context.getValue(row, bounds[2])))) return row;
+            }
+            return -1;
+        }
+
+        // 第一列升序排列时找不大于 key 的最后一行；类型不同的值按 Excel 的顺序比较
+        private static int approximateMatch(Context context, int[] bounds, Object key) {
+            int low = bounds[0];
+            int high = bounds[1];
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                Object value = context.getValue(middle, bounds[2]);
+                if (value == BLANK || value instanceof ErrorValue) {
+                    high = middle - 1;
+                } else if (compare(value, key) <= 0) {
+                    if (rank(value) == rank(key)) found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return found;
+        }
+
+        // 区域与表格求交后的 {首行, 末行, 首列, 末列}，可能为空（首大于末）
+        private static int[] bounds(Node node, Context context) {
+            if (node instanceof Ref) {
+                Ref ref = (Ref) node;
+                int lastRow = Math.min(ref.row, context.getRowCount() - 1);
+                int lastColumn = Math.min(ref.column, context.getColumnCount() - 1);
+                return new int[] {ref.row, lastRow, ref.column, lastColumn};
+            }
+            Area area = (Area) node;
+            return new int[] {area.firstRow, Math.min(area.lastRow, context.getRowCount() - 1),
+                area.firstColumn, Math.min(area.lastColumn, context.getColumnCount() - 1)};
+        }
+
+        @Override
+        void print(StringBuilder out) {
+            out.append(name).append('(');
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) out.append(',');
+                args[i].print(out);
+            }
+            out.append(')');
+        }
+
+        @Override
+        Node map(Mapper mapper) {
+            Node[] mapped = new Node[args.length];
+            for (int i = 0; i < args.length; i++) {
+                mapped[i] = args[i].map(mapper);
+            }
+            return new Call(name, mapped);
+        }
+
+        @Override
+        void references(ReferenceVisitor visitor) {
+            for (Node arg : args) {
+                arg.references(visitor);
+            }
+        }
+
+        @Override
+        boolean supported() {
+            if (arity(name) == null) return false;
+            for (Node arg : args) {
+                if (!arg.supported()) return false;
+            }
+            return true;
+        }
+    }
+
+    // 已实现函数的参数个数范围，未实现的返回 null
+    private static int[] arity(String name) {
+        switch (name) {
+            case "SUM":
+            case "AVERAGE":
+            case "MIN":
+            case "MAX":
+            case "COUNT":
+                return new int[] {1, 255};
+            case "IF":
+                return new int[] {2, 3};
+            case "VLOOKUP":
+                return new int[] {3, 4};
+            default:
+                return null;
+        }
+    }
+
+    private static void printColumn(StringBuilder out, int column, boolean absolute) {
+        if (absolute) out.append('$');
+        out.append(SheetModel.columnName(column));
+    }
+
+    private static void printRow(StringBuilder out, int row, boolean absolute) {
+        if (absolute) out.append('$');
+        out.append(row + 1);
+    }
+
+    // ---------- 解析 ----------
+
+    // 递归下降，优先级从低到高：比较、&、加减、乘除、乘方、正负号、百分号
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Node parse() throws ParseException {
+            Node node = comparison();
+            skipSpaces();
+            if (pos < text.length()) throw error("多余的内容");
+            return node;
+        }
+
+        private Node comparison() throws ParseException {
+            Node node = concat();
+            while (true) {
+                skipSpaces();
+                String operator = null;
+                for (String candidate : new String[] {"<=", ">=", "<>", "<", ">", "="}) {
+                    if (text.startsWith(candidate, pos)) {
+                        operator = candidate;
+                        break;
+                    }
+                }
+                if (operator == null) return node;
+                pos += operator.length();
+                node = new Binary(operator, node, concat());
+            }
+        }
+
+        private Node concat() throws ParseException {
+            Node node = additive();
+            while (accept('&')) {
+                node = new Binary("&", node, additive());
+            }
+            return node;
+        }
+
+        private Node additive() throws ParseException {
+            Node node = term();
+            while (true) {
+                if (accept('+')) {
+                    node = new Binary("+", node, term());
+                } else if (accept('-')) {
+                    node = new Binary("-", node, term());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node term() throws ParseException {
+            Node node = power();
+            while (true) {
+                if (accept('*')) {
+                    node = new Binary("*", node, power());
+                } else if (accept('/')) {
+                    node = new Binary("/", node, power());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        // Excel 中乘方左结合，且负号优先于乘方：-2^2 = 4
+        private Node power() throws ParseException {
+            Node node = unary();
+            while (accept('^')) {
+                node = new Binary("^", node, unary());
+            }
+            return node;
+        }
+
+        private Node unary() throws ParseException {
+            if (accept('-')) return new Unary('-', unary());
+            if (accept('+')) return new Unary('+', unary());
+            Node node = primary();
+            while (accept('%')) {
+                node = new Unary('%', node);
+            }
+            return node;
+        }
+
+        private Node primary() throws ParseException {
+            skipSpaces();
+            if (pos >= text.length()) throw error("公式不完整");
+            char c = text.charAt(pos);
+            if (c == '(') {
+                pos++;
+                Node inner = comparison();
+                expect(')');
+                return new Paren(inner);
+            }
+            if (c == '"') return string();
+            if (isDigit(c) || c == '.') return number();
+            if (c == '#') return errorLiteral();
+            if (Character.isLetter(c) || c == '$' || c == '_') return name();
+            throw error("无法识别的字符 '" + c + "'");
+        }
+
+        private Node string() throws ParseException {
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (true) {
+                if (pos >= text.length()) throw error("缺少结束引号");
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    if (pos < text.length() && text.charAt(pos) == '"') {
+                        value.append('"');
+                        pos++;
+                    } else {
+                        return new Literal(value.toString());
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+        }
+
+        private Node number() throws ParseException {
+            int start = pos;
+            while (pos < text.length() && isDigit(text.charAt(pos))) pos++;
+            if (pos < text.length() && text.charAt(pos) == '.') {
+                pos++;
+                while (pos < text.length() && isDigit(text.charAt(pos))) pos++;
+            }
+            if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                int mark = pos++;
+                if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) pos++;
+                int digits = pos;
+                while (pos < text.length() && isDigit(text.charAt(pos))) pos++;
+                if (pos == digits) pos = mark;
+            }
+            try {
+                return new Literal(Double.parseDouble(text.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("无效的数字");
+            }
+        }
+
+        private Node errorLiteral() throws ParseException {
+            for (ErrorValue error : ErrorValue.values()) {
+                if (text.regionMatches(true, pos, error.text, 0, error.text.length())) {
+                    pos += error.text.length();
+                    return new Literal(error);
+                }
+            }
+            throw error("无效的错误值");
+        }
+
+        // 函数调用、TRUE/FALSE、单元格引用 A1、区域 A1:B2 或整列 A:B
+        private Node name() throws ParseException {
+            int start = pos;
+            while (pos < text.length() && isNameChar(text.charAt(pos))) pos++;
+            String word = text.substring(start, pos);
+
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == '!') {
+                throw error("不支持引用其他工作表");
+            }
+            if (pos < text.length() && text.charAt(pos) == '(' && word.indexOf('$') < 0) {
+                pos++;
+                return call(word.toUpperCase(Locale.ROOT));
+            }
+            if (word.equalsIgnoreCase("TRUE")) return new Literal(Boolean.TRUE);
+            if (word.equalsIgnoreCase("FALSE")) return new Literal(Boolean.FALSE);
+
+            int[] first = cell(word);
+            if (first != null) {
+                if (!accept(':')) {
+                    return new Ref(first[0], first[1], first[2] != 0, first[3] != 0);
+                }
+                int[] last = cell(nextWord());
+                if (last == null) throw error("无效的区域");
+                return new Area(first[0], last[0], first[1], last[1],
+                    first[2] != 0, last[2] != 0, first[3] != 0, last[3] != 0, false);
+            }
+            int[] firstColumn = column(word);
+            if (firstColumn != null && accept(':')) {
+                int[] lastColumn = column(nextWord());
+                if (lastColumn == null) throw error("无效的整列区域");
+                return new Area(0, MAX_ROWS - 1, firstColumn[0], lastColumn[0],
+                    false, false, firstColumn[1] != 0, lastColumn[1] != 0, true);
+            }
+            throw error("无法识别的名称 " + word);
+        }
+
+        private Node call(String name) throws ParseException {
+            List<Node> args = new ArrayList<>();
+            skipSpaces();
+            if (!accept(')')) {
+                do {
+                    args.add(comparison());
+                } while (accept(','));
+                expect(')');
+            }
+            int[] arity = arity(name);
+            if (arity != null && (args.size() < arity[0] || args.size() > arity[1])) {
+                throw error(name + " 的参数个数不正确");
+            }
+            return new Call(name, args.toArray(new Node[0]));
+        }
+
+        private String nextWord() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && isNameChar(text.charAt(pos))) pos++;
+            return text.substring(start, pos);
+        }
+
+        // "$A$1" -> {行, 列, 行绝对, 列绝对}，不是单元格引用时返回 null
+        private static int[] cell(String word) {
+            int i = 0;
+            int absoluteColumn = 0;
+            if (i < word.length() && word.charAt(i) == '$') {
+                absoluteColumn = 1;
+                i++;
+            }
+            int letters = i;
+            int column = 0;
+            while (i < word.length() && isLetter(word.charAt(i))) {
+                column = column * 26 + (Character.toUpperCase(word.charAt(i)) - 'A' + 1);
+                i++;
+            }
+            if (i == letters || i - letters > 3) return null;
+            int absoluteRow = 0;
+            if (i < word.length() && word.charAt(i) == '$') {
+                absoluteRow = 1;
+                i++;
+            }
+            int digits = i;
+            int row = 0;
+            while (i < word.length() && isDigit(word.charAt(i)) && row <= MAX_ROWS) {
+                row = row * 10 + (word.charAt(i) - '0');
+                i++;
+            }
+            if (i == digits || i != word.length() || row < 1 || row > MAX_ROWS || column > MAX_COLUMNS) return null;
+            return new int[] {row - 1, column - 1, absoluteRow, absoluteColumn};
+        }
+
+        // "$A" -> {列, 列绝对}
+        private static int[] column(String word) {
+            int i = 0;
+            int absolute = 0;
+            if (i < word.length() && word.charAt(i) == '$') {
+                absolute = 1;
+                i++;
+            }
+            int letters = i;
+            int column = 0;
+            while (i < word.length() && isLetter(word.charAt(i))) {
+                column = column * 26 + (Character.toUpperCase(word.charAt(i)) - 'A' + 1);
+                i++;
+            }
+            if (i == letters || i - letters > 3 || i != word.length() || column > MAX_COLUMNS) return null;
+            return new int[] {column - 1, absolute};
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws ParseException {
+            if (!accept(c)) throw error("缺少 '" + c + "'");
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private ParseException error(String message) {
+            return new ParseException(message + "（位置 " + (pos + 1) + "）", pos);
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '$' || c == '_' || c == '.';
+        }
+
+        private static boolean isLetter(char c) {
+            return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package cn.moerain.javaows.office;
+
+import cn.moerain.javaows.misc.NamedThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// SheetModel 中公式单元格的计算：保存每个公式的编译结果和计算值，维护依赖图并增量重算。
+// 单元格被修改时只记下位置，recalculate 时才按反向索引（被引用单元格 -> 引用它的公式）
+// 找出受影响的公式并标记为脏，再按拓扑顺序逐层计算：同一层的公式互不依赖，
+// 层足够大时分给多个线程并行计算。修改过多时直接全部重算，批量加载不必逐格维护依赖。
+// 只在事件分发线程中调用
+class FormulaEngine implements Formula.Context {
+    // 记录的修改位置超过这么多时改为全部重算
+    private static final int MAX_PENDING_CHANGES = 4096;
+    // 一层至少这么多公式才并行计算
+    private static final int PARALLEL_THRESHOLD = 2048;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // 日期换算为 Excel 序列号：1970-01-01 为 25569
+    private static final double EPOCH_SERIAL = 25569;
+    private static final double MILLIS_PER_DAY = 86_400_000.0;
+    // 行号不超过 2^20，依赖索引分 21 层
+    private static final int LEVELS = Integer.numberOfTrailingZeros(Formula.MAX_ROWS) + 1;
+
+    private static ExecutorService pool;
+
+    // 一个公式单元格
+    private static final class Cell {
+        int row;
+        int column;
+        // 无法解析时为 null，此时只保留 source 和加载时的缓存结果
+        Formula formula;
+        String source;
+        // 为 false 时不重算，一直显示加载时的缓存结果（如用到了未实现的函数）
+        boolean evaluable;
+        // Double、String、Boolean 或 Formula.ErrorValue，尚未计算时为 null
+        volatile Object value;
+        // 拓扑排序时未计算的前驱个数
+        int waiting;
+    }
+
+    private final SheetModel model;
+    // 以编号为下标，空位为已删除的公式；编号保存在模型的单元格里
+    private final List<Cell> cells = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private int count;
+
+    private final BitSet dirty = new BitSet();
+    // 修改过的单元格 {行, 列}，它们的下游公式在重算时才标记
+    private final List<int[]> changes = new ArrayList<>();
+    private boolean allDirty;
+
+    // 反向索引（被引用单元格 -> 引用它的公式）。每列的行号按线段树拆分：第 level 层的第 block 块
+    // 覆盖 [block << level, (block + 1) << level) 行，引用区域在每列拆成至多 2 * LEVELS 个对齐的块，
+    // 单个单元格就是第 0 层的一块。查一个单元格时每层只看它所在的那一块
+    private final Map<Long, int[]> dependents = new HashMap<>();
+    // 每列各层的条目数，查找时跳过空层
+    private final Map<Integer, int[]> levelCounts = new HashMap<>();
+    // 公式增删时就地更新；结构修改后整体重建
+    private boolean indexStale = true;
+    private int indexedColumns;
+    // 有区域引用因超出已有列而被截断，列数增加后要重建
+    private boolean indexClamped;
+
+    // 一次重算内 VLOOKUP 精确查找用的索引
+    private final Map<String, Map<Object, Integer>> lookupIndexes = new ConcurrentHashMap<>();
+
+    FormulaEngine(SheetModel model) {
+        this.model = model;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    // 添加公式单元格并返回编号。formula 为 null 或用到未实现的函数时，有缓存结果就一直显示缓存结果
+    int add(int row, int column, String source, Formula formula, Object cached) {
+        Cell cell = new Cell();
+        cell.row = row;
+        cell.column = column;
+        cell.formula = formula;
+        cell.source = formula != null ? formula.toString() : source;
+        cell.evaluable = formula != null && (formula.isSupported() || cached == null);
+        cell.value = cell.evaluable || cached != null ? cached : Formula.ErrorValue.NAME;
+
+        int id;
+        if (freeIds.isEmpty()) {
+            id = cells.size();
+            cells.add(cell);
+        } else {
+            id = freeIds.pop();
+            cells.set(id, cell);
+        }
+        count++;
+        index(id, true);
+        if (cell.evaluable) {
+            dirty.set(id);
+        }
+        cellChanged(row, column);
+        return id;
+    }
+
+    void remove(int id) {
+        Cell cell = cells.get(id);
+        index(id, false);
+        cells.set(id, null);
+        freeIds.push(id);
+        count--;
+        dirty.clear(id);
+        cellChanged(cell.row, cell.column);
+    }
+
+    String getSource(int id) {
+        return cells.get(id).source;
+    }
+
+    Object getResult(int id) {
+        return cells.get(id).value;
+    }
+
+    // 单元格的值变了，引用它的公式需要重算
+    void cellChanged(int row, int column) {
+        if (count == 0 || allDirty) return;
+        if (changes.size() >= MAX_PENDING_CHANGES) {
+            allDirty = true;
+            changes.clear();
+        } else {
+            changes.add(new int[] {row, column});
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        freeIds.clear();
+        count = 0;
+        dirty.clear();
+        changes.clear();
+        allDirty = false;
+        indexStale = true;
+    }
+
+    // ---------- 结构修改：移动公式单元格并调整引用，之后全部重算 ----------
+
+    void insertRows(int at, int rows) {
+        shift(true, at, rows);
+    }
+
+    void removeRows(int at, int rows) {
+        shift(true, at, -rows);
+    }
+
+    void insertColumns(int at, int columns) {
+        shift(false, at, columns);
+    }
+
+    void removeColumns(int at, int columns) {
+        shift(false, at, -columns);
+    }
+
+    private void shift(boolean rows, int at, int distance) {
+        if (count == 0) return;
+        for (int id = 0; id < cells.size(); id++) {
+            Cell cell = cells.get(id);
+            if (cell == null) continue;
+            int position = rows ? cell.row : cell.column;
+            if (distance < 0 && position >= at && position < at - distance) {
+                // 公式所在的行或列被删除
+                cells.set(id, null);
+                freeIds.push(id);
+                count--;
+                continue;
+            }
+            if (position >= at) {
+                if (rows) {
+                    cell.row += distance;
+                } else {
+                    cell.column += distance;
+                }
+            }
+            if (cell.formula != null) {
+                cell.formula = rows ? cell.formula.shiftRows(at, distance) : cell.formula.shiftColumns(at, distance);
+                cell.source = cell.formula.toString();
+            }
+        }
+        markAllDirty();
+    }
+
+    // 删除 rows 行、columns 列之外的公式
+    void truncate(int rows, int columns) {
+        if (count == 0) return;
+        for (int id = 0; id < cells.size(); id++) {
+            Cell cell = cells.get(id);
+            if (cell != null && (cell.row >= rows || cell.column >= columns)) {
+                cells.set(id, null);
+                freeIds.push(id);
+                count--;
+            }
+        }
+        markAllDirty();
+    }
+
+    private void markAllDirty() {
+        indexStale = true;
+        allDirty = count > 0;
+        changes.clear();
+    }
+
+    // ---------- 重算 ----------
+
+    // 计算所有脏公式，返回重算过的行范围 {首行, 末行}，没有重算时返回 null
+    int[] recalculate() {
+        if (count == 0) {
+            changes.clear();
+            allDirty = false;
+            return null;
+        }
+        if (allDirty) {
+            for (int id = 0; id < cells.size(); id++) {
+                Cell cell = cells.get(id);
+                if (cell != null && cell.evaluable) dirty.set(id);
+            }
+            allDirty = false;
+            changes.clear();
+        } else if (!changes.isEmpty()) {
+            propagate();
+        }
+        if (dirty.isEmpty()) return null;
+
+        ensureIndex();
+        lookupIndexes.clear();
+        int[] range = {Integer.MAX_VALUE, -1};
+
+        // 拓扑排序：先统计每个脏公式依赖的脏公式个数
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            cells.get(id).waiting = 0;
+        }
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            Cell cell = cells.get(id);
+            forEachDependent(cell.row, cell.column, dependent -> {
+                if (dirty.get(dependent)) cells.get(dependent).waiting++;
+            });
+        }
+        int[] level = new int[16];
+        int size = 0;
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            if (cells.get(id).waiting == 0) {
+                if (size == level.length) level = Arrays.copyOf(level, size * 2);
+                level[size++] = id;
+            }
+        }
+
+        // 逐层计算，一层算完后解除下一层的依赖
+        while (size > 0) {
+            evaluate(level, size);
+            int[][] next = {new int[16]};
+            int[] nextSize = {0};
+            for (int i = 0; i < size; i++) {
+                Cell cell = cells.get(level[i]);
+                dirty.clear(level[i]);
+                range[0] = Math.min(range[0], cell.row);
+                range[1] = Math.max(range[1], cell.row);
+                forEachDependent(cell.row, cell.column, dependent -> {
+                    if (dirty.get(dependent) && --cells.get(dependent).waiting == 0) {
+                        if (nextSize[0] == next[0].length) next[0] = Arrays.copyOf(next[0], nextSize[0] * 2);
+                        next[0][nextSize[0]++] = dependent;
+                    }
+                });
+            }
+            level = next[0];
+            size = nextSize[0];
+        }
+
+        // 剩下的公式在循环引用上或依赖循环引用
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            Cell cell = cells.get(id);
+            cell.value = Formula.ErrorValue.CIRC;
+            range[0] = Math.min(range[0], cell.row);
+            range[1] = Math.max(range[1], cell.row);
+        }
+        dirty.clear();
+        lookupIndexes.clear();
+        return range[1] >= 0 ? range : null;
+    }
+
+    // 从修改过的单元格出发，把下游公式全部标记为脏
+    private void propagate() {
+        ensureIndex();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        IntConsumer mark = id -> {
+            if (!dirty.get(id) && cells.get(id).evaluable) {
+                dirty.set(id);
+                queue.add(id);
+            }
+        };
+        for (int[] change : changes) {
+            forEachDependent(change[0], change[1], mark);
+        }
+        changes.clear();
+        while (!queue.isEmpty()) {
+            Cell cell = cells.get(queue.poll());
+            forEachDependent(cell.row, cell.column, mark);
+        }
+    }
+
+    private void evaluate(int[] level, int size) {
+        if (size < PARALLEL_THRESHOLD || THREADS < 2) {
+            for (int i = 0; i < size; i++) {
+                Cell cell = cells.get(level[i]);
+                cell.value = cell.formula.evaluate(this);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int slice = (size + THREADS - 1) / THREADS;
+        for (int start = 0; start < size; start += slice) {
+            int from = start;
+            int to = Math.min(size, start + slice);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    Cell cell = cells.get(level[i]);
+                    cell.value = cell.formula.evaluate(this);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : pool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("公式计算失败", e.getCause());
+        }
+    }
+
+    private static synchronized ExecutorService pool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(THREADS, new NamedThreadFactory("Excel-Recalc", true));
+        }
+        return pool;
+    }
+
+    // ---------- 依赖索引 ----------
+
+    private interface IntConsumer {
+        void accept(int value);
+    }
+
+    private void forEachDependent(int row, int column, IntConsumer action) {
+        int[] counts = levelCounts.get(column);
+        if (counts == null) return;
+        for (int level = 0; level < LEVELS; level++) {
+            if (counts[level] == 0) continue;
+            int[] ids = dependents.get(key(column, level, row >> level));
+            if (ids == null) continue;
+            // 第 0 个元素是个数
+            for (int i = 1; i <= ids[0]; i++) {
+                action.accept(ids[i]);
+            }
+        }
+    }
+
+    // 结构修改后或截断过的区域所在的列数增加后重建
+    private void ensureIndex() {
+        int columns = model.getColumnCount();
+        if (!indexStale && (indexedColumns >= columns || !indexClamped)) {
+            indexedColumns = Math.max(indexedColumns, columns);
+            return;
+        }
+        dependents.clear();
+        levelCounts.clear();
+        indexStale = false;
+        indexedColumns = columns;
+        indexClamped = false;
+        for (int id = 0; id < cells.size(); id++) {
+            if (cells.get(id) != null) index(id, true);
+        }
+    }
+
+    // 把公式的引用加入索引或从索引中去掉；索引待重建时不必维护
+    private void index(int id, boolean add) {
+        Formula formula = cells.get(id).formula;
+        if (indexStale || formula == null) return;
+        formula.forEachReference((firstRow, lastRow, firstColumn, lastColumn) -> {
+            // 整列引用可能很宽，只索引表格中已有的列
+            int last = lastColumn;
+            if (last >= indexedColumns && firstColumn != lastColumn) {
+                last = indexedColumns - 1;
+                indexClamped = true;
+            }
+            for (int column = firstColumn; column <= last; column++) {
+                // 把 [firstRow, lastRow] 拆成对齐的块，每次取从 row 开始的最大一块
+                for (int row = firstRow; row <= lastRow; ) {
+                    int level = Math.min(Integer.numberOfTrailingZeros(row), LEVELS - 1);
+                    while (row + (1 << level) - 1 > lastRow) level--;
+                    if (add) {
+                        addDependent(column, level, row >> level, id);
+                    } else {
+                        removeDependent(column, level, row >> level, id);
+                    }
+                    row += 1 << level;
+                }
+            }
+        });
+    }
+
+    private void addDependent(int column, int level, int block, int id) {
+        long key = key(column, level, block);
+        int[] ids = dependents.get(key);
+        if (ids == null) {
+            ids = new int[3];
+            dependents.put(key, ids);
+        } else if (ids[0] + 1 == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            dependents.put(key, ids);
+        }
+        ids[++ids[0]] = id;
+        levelCounts.computeIfAbsent(column, k -> new int[LEVELS])[level]++;
+    }
+
+    private void removeDependent(int column, int level, int block, int id) {
+        long key = key(column, level, block);
+        int[] ids = dependents.get(key);
+        if (ids == null) return;
+        for (int i = 1; i <= ids[0]; i++) {
+            if (ids[i] != id) continue;
+            ids[i] = ids[ids[0]--];
+            if (ids[0] == 0) dependents.remove(key);
+            levelCounts.get(column)[level]--;
+            return;
+        }
+    }
+
+    private static long key(int column, int level, int block) {
+        return (long) (column * LEVELS + level) << 32 | block;
+    }
+
+    // ---------- Formula.Context ----------
+
+    @Override
+    public int getRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return model.getColumnCount();
+    }
+
+    // 日期按 Excel 序列号参与计算
+    @Override
+    public Object getValue(int row, int column) {
+        switch (model.getCellType(row, column)) {
+            case SheetModel.NUMBER:
+                return model.getNumber(row, column);
+            case SheetModel.TEXT:
+                return model.getText(row, column);
+            case SheetModel.DATE:
+                return model.getDate(row, column) / MILLIS_PER_DAY + EPOCH_SERIAL;
+            case SheetModel.FORMULA:
+                Object value = cells.get(model.getFormulaId(row, column)).value;
+                return value != null ? value : Formula.BLANK;
+            default:
+                return Formula.BLANK;
+        }
+    }
+
+    @Override
+    public Map<Object, Integer> getLookupIndex(int firstRow, int lastRow, int column) {
+        return lookupIndexes.computeIfAbsent(firstRow + ":" + lastRow + ":" + column, k -> {
+            Map<Object, Integer> index = new HashMap<>();
+            for (int row = firstRow; row <= lastRow; row++) {
+                Object key = Formula.lookupKey(getValue(row, column));
+                if (key != null) index.putIfAbsent(key, row);
+            }
+            return index;
+        });
+    }
+}
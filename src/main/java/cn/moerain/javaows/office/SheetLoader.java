@@ -0,0 +1,22 @@
+package cn.moerain.javaows.office;
+
+// 在后台读取一个工作表的加载器。解析在后台线程进行，Excel 的定时器在 EDT 上调用 drainTo 把结果写入模型
+interface SheetLoader extends AutoCloseable {
+    // 在 EDT 上调用：把已解析的内容写入模型，最多占用 budgetMillis 毫秒，并发出对应的表格事件
+    void drainTo(SheetModel model, long budgetMillis);
+
+    // 解析结束且已全部写入模型
+    boolean isDone();
+
+    int getRowsRead();
+
+    // 0 到 1，总大小未知时返回 -1
+    double getProgress();
+
+    Exception getError();
+
+    void cancel();
+
+    @Override
+    void close();
+}
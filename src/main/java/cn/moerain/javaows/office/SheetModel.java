@@ -0,0 +1,666 @@
+package cn.moerain.javaows.office;
+
+import javax.swing.table.AbstractTableModel;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 按列存储的工作表模型：每列按 CHUNK_SIZE 行分块，块内按实际出现的类型选择存储方式——
+// 数字为 double[] 加非空位图，文本为列内字典的 int 编号，日期为 long（本地时间的毫秒数），
+// 公式为 FormulaEngine 中的编号，一个块里混有多种类型时改为每格一个类型字节加 long 原始值。全空的块不分配。
+// getValueAt 返回显示文本；读写类型化数据用 getCellType / getNumber / getText / getDate / getFormula。
+// put / setSize 供加载器批量写入，不发出表格事件，写完后由调用方调用 recalculate 并通知表格
+class SheetModel extends AbstractTableModel {
+    static final int EMPTY = 0;
+    static final int NUMBER = 1;
+    static final int TEXT = 2;
+    static final int DATE = 3;
+    static final int FORMULA = 4;
+    // 块的存储方式，单元格不会是这个类型
+    private static final int MIXED = 5;
+
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // 超过 15 位有效数字的数字串（身份证号、订单号等）按文本保存，避免丢失精度
+    private static final int MAX_SIGNIFICANT_DIGITS = 15;
+    private static final MathContext SIGNIFICANT = new MathContext(MAX_SIGNIFICANT_DIGITS);
+
+    // 一个列块
+    private static final class Chunk {
+        final int kind;
+        // NUMBER、DATE、FORMULA 的非空位图
+        long[] present;
+        double[] numbers;
+        // DATE 的毫秒数；FORMULA 的公式编号；MIXED 的原始值（数字的位模式、日期毫秒、字典编号或公式编号）
+        long[] longs;
+        // TEXT 的字典编号，-1 表示空
+        int[] codes;
+        // MIXED 每格的类型
+        byte[] types;
+        // 非空单元格数，为 0 时整块释放
+        int count;
+
+        Chunk(int kind) {
+            this.kind = kind;
+            switch (kind) {
+                case NUMBER:
+                    present = new long[CHUNK_SIZE / 64];
+                    numbers = new double[CHUNK_SIZE];
+                    break;
+                case DATE:
+                case FORMULA:
+                    present = new long[CHUNK_SIZE / 64];
+                    longs = new long[CHUNK_SIZE];
+                    break;
+                case TEXT:
+                    codes = new int[CHUNK_SIZE];
+                    Arrays.fill(codes, -1);
+                    break;
+                default:
+                    types = new byte[CHUNK_SIZE];
+                    longs = new long[CHUNK_SIZE];
+                    break;
+            }
+        }
+
+        int type(int i) {
+            switch (kind) {
+                case NUMBER:
+                case DATE:
+                case FORMULA:
+                    return (present[i >>> 6] & (1L << i)) != 0 ? kind : EMPTY;
+                case TEXT:
+                    return codes[i] >= 0 ? TEXT : EMPTY;
+                default:
+                    return types[i];
+            }
+        }
+
+        // 按类型取原始值：数字的位模式、日期毫秒、字典编号或公式编号
+        long raw(int i) {
+            switch (kind) {
+                case NUMBER:
+                    return Double.doubleToRawLongBits(numbers[i]);
+                case TEXT:
+                    return codes[i];
+                default:
+                    return longs[i];
+            }
+        }
+
+        void set(int i, int type, long raw) {
+            if (type(i) == EMPTY) count++;
+            switch (kind) {
+                case NUMBER:
+                    present[i >>> 6] |= 1L << i;
+                    numbers[i] = Double.longBitsToDouble(raw);
+                    break;
+                case DATE:
+                case FORMULA:
+                    present[i >>> 6] |= 1L << i;
+                    longs[i] = raw;
+                    break;
+                case TEXT:
+                    codes[i] = (int) raw;
+                    break;
+                default:
+                    types[i] = (byte) type;
+                    longs[i] = raw;
+                    break;
+            }
+        }
+
+        // 块中数组占用的字节数，不含对象头
+        long arrayBytes() {
+            long bytes = 0;
+            if (present != null) bytes += present.length * 8L;
+            if (numbers != null) bytes += numbers.length * 8L;
+            if (longs != null) bytes += longs.length * 8L;
+            if (codes != null) bytes += codes.length * 4L;
+            if (types != null) bytes += types.length;
+            return bytes;
+        }
+
+        void clear(int i) {
+            if (type(i) == EMPTY) return;
+            count--;
+            switch (kind) {
+                case NUMBER:
+                case DATE:
+                case FORMULA:
+                    present[i >>> 6] &= ~(1L << i);
+                    break;
+                case TEXT:
+                    codes[i] = -1;
+                    break;
+                default:
+                    types[i] = EMPTY;
+                    break;
+            }
+        }
+    }
+
+    // 一列：块列表和该列的文本字典
+    private static final class Column {
+        final List<Chunk> chunks = new ArrayList<>();
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> codes = new HashMap<>();
+
+        Chunk chunk(int row) {
+            int index = row >>> CHUNK_BITS;
+            return index < chunks.size() ? chunks.get(index) : null;
+        }
+
+        int type(int row) {
+            Chunk chunk = chunk(row);
+            return chunk != null ? chunk.type(row & CHUNK_MASK) : EMPTY;
+        }
+
+        long raw(int row) {
+            return chunk(row).raw(row & CHUNK_MASK);
+        }
+
+        int encode(String text) {
+            Integer code = codes.get(text);
+            if (code == null) {
+                code = strings.size();
+                strings.add(text);
+                codes.put(text, code);
+            }
+            return code;
+        }
+
+        void set(int row, int type, long raw) {
+            if (type == EMPTY) {
+                clear(row);
+                return;
+            }
+            int index = row >>> CHUNK_BITS;
+            int i = row & CHUNK_MASK;
+            while (chunks.size() <= index) {
+                chunks.add(null);
+            }
+            Chunk chunk = chunks.get(index);
+            if (chunk == null || (chunk.kind != type && chunk.kind != MIXED && chunk.count == (chunk.type(i) != EMPTY ? 1 : 0))) {
+                // 空块或只有这一格的块直接按新类型建块
+                chunk = new Chunk(type);
+                chunks.set(index, chunk);
+            } else if (chunk.kind != type && chunk.kind != MIXED) {
+                chunk = toMixed(chunk);
+                chunks.set(index, chunk);
+            }
+            chunk.set(i, type, raw);
+        }
+
+        void clear(int row) {
+            int index = row >>> CHUNK_BITS;
+            Chunk chunk = chunk(row);
+            if (chunk == null) return;
+            chunk.clear(row & CHUNK_MASK);
+            if (chunk.count == 0) {
+                chunks.set(index, null);
+            }
+        }
+
+        private static Chunk toMixed(Chunk typed) {
+            Chunk mixed = new Chunk(MIXED);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                int type = typed.type(i);
+                if (type != EMPTY) mixed.set(i, type, typed.raw(i));
+            }
+            return mixed;
+        }
+
+        // 把 [from, end) 的单元格移动 distance 行，distance 为正时向下
+        void shift(int from, int end, int distance) {
+            if (distance > 0) {
+                for (int row = end - 1; row >= from; row--) {
+                    move(row, row + distance);
+                }
+            } else {
+                for (int row = from; row < end; row++) {
+                    move(row, row + distance);
+                }
+            }
+        }
+
+        private void move(int from, int to) {
+            int type = type(from);
+            if (type == EMPTY) {
+                clear(to);
+            } else {
+                set(to, type, raw(from));
+                clear(from);
+            }
+        }
+
+        // 删除 row 及之后的全部单元格
+        void truncate(int row) {
+            int keep = (row + CHUNK_MASK) >>> CHUNK_BITS;
+            while (chunks.size() > keep) {
+                chunks.remove(chunks.size() - 1);
+            }
+            for (int r = row; r < keep << CHUNK_BITS; r++) {
+                clear(r);
+            }
+        }
+    }
+
+    private final List<Column> columns = new ArrayList<>();
+    private final FormulaEngine formulas = new FormulaEngine(this);
+    private int rowCount;
+    // 后台加载期间为 false
+    private boolean editable = true;
+
+    SheetModel() {
+    }
+
+    SheetModel(int rows, int columnCount) {
+        setSize(rows, columnCount);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    // 单元格数组占用的字节数，不含文本字典和对象头；用于检查存储方式
+    long getCellArrayBytes() {
+        long bytes = 0;
+        for (Column column : columns) {
+            for (Chunk chunk : column.chunks) {
+                if (chunk != null) bytes += chunk.arrayBytes();
+            }
+        }
+        return bytes;
+    }
+
+    // 列的文本字典中不同文本的个数
+    int getDictionarySize(int column) {
+        return columns.get(column).strings.size();
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return editable;
+    }
+
+    void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    // 显示和编辑用的文本，空单元格返回 null
+    @Override
+    public Object getValueAt(int row, int column) {
+        return getDisplayText(row, column);
+    }
+
+    // 编辑器提交的文本按内容推断类型，随后重算受影响的公式
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        put(row, column, value != null ? value.toString() : null);
+        fireTableCellUpdated(row, column);
+        recalculate();
+    }
+
+    // 编辑器中显示的文本：公式单元格为 "=" 加公式，其他同 getDisplayText
+    String getEditText(int row, int column) {
+        if (getCellType(row, column) == FORMULA) {
+            return "=" + getFormula(row, column);
+        }
+        return getDisplayText(row, column);
+    }
+
+    int getCellType(int row, int column) {
+        return columns.get(column).type(row);
+    }
+
+    double getNumber(int row, int column) {
+        Column col = columns.get(column);
+        return col.type(row) == NUMBER ? Double.longBitsToDouble(col.raw(row)) : Double.NaN;
+    }
+
+    String getText(int row, int column) {
+        Column col = columns.get(column);
+        return col.type(row) == TEXT ? col.strings.get((int) col.raw(row)) : null;
+    }
+
+    // 本地时间的毫秒数（按 UTC 换算，不含时区）
+    long getDate(int row, int column) {
+        Column col = columns.get(column);
+        return col.type(row) == DATE ? col.raw(row) : 0;
+    }
+
+    String getDisplayText(int row, int column) {
+        Column col = columns.get(column);
+        switch (col.type(row)) {
+            case NUMBER:
+                return formatNumber(Double.longBitsToDouble(col.raw(row)));
+            case TEXT:
+                return col.strings.get((int) col.raw(row));
+            case DATE:
+                return formatDate(col.raw(row));
+            case FORMULA:
+                return Formula.display(formulas.getResult((int) col.raw(row)));
+            default:
+                return null;
+        }
+    }
+
+    // 公式文本，不含开头的等号；不是公式单元格时返回 null
+    String getFormula(int row, int column) {
+        Column col = columns.get(column);
+        return col.type(row) == FORMULA ? formulas.getSource((int) col.raw(row)) : null;
+    }
+
+    // 公式的计算结果：Double、String、Boolean 或 Formula.ErrorValue，尚未计算时为 null
+    Object getFormulaResult(int row, int column) {
+        Column col = columns.get(column);
+        return col.type(row) == FORMULA ? formulas.getResult((int) col.raw(row)) : null;
+    }
+
+    int getFormulaId(int row, int column) {
+        return (int) columns.get(column).raw(row);
+    }
+
+    // 以下写入方法不发出事件，也不重算公式
+
+    void setNumber(int row, int column, double value) {
+        replacing(row, column);
+        columns.get(column).set(row, NUMBER, Double.doubleToRawLongBits(value));
+    }
+
+    void setText(int row, int column, String text) {
+        replacing(row, column);
+        Column col = columns.get(column);
+        if (text == null || text.isEmpty()) {
+            col.clear(row);
+        } else {
+            col.set(row, TEXT, col.encode(text));
+        }
+    }
+
+    void setDate(int row, int column, long localMillis) {
+        replacing(row, column);
+        columns.get(column).set(row, DATE, localMillis);
+    }
+
+    void clear(int row, int column) {
+        replacing(row, column);
+        columns.get(column).clear(row);
+    }
+
+    // 写入公式，source 不含开头的等号。无法解析时保留原文，显示 cached（加载时的缓存结果，可为 null）
+    void setFormula(int row, int column, String source, Object cached) {
+        Formula formula;
+        try {
+            formula = Formula.parse(source);
+        } catch (ParseException e) {
+            formula = null;
+        }
+        setFormula(row, column, source, formula, cached);
+    }
+
+    private void setFormula(int row, int column, String source, Formula formula, Object cached) {
+        replacing(row, column);
+        columns.get(column).set(row, FORMULA, formulas.add(row, column, source, formula, cached));
+    }
+
+    // 单元格将被覆盖：删除原来的公式，并让引用它的公式在下次重算时更新。没有公式时什么也不做
+    private void replacing(int row, int column) {
+        if (formulas.isEmpty()) return;
+        if (getCellType(row, column) == FORMULA) {
+            formulas.remove(getFormulaId(row, column));
+        } else {
+            formulas.cellChanged(row, column);
+        }
+    }
+
+    // 按文本内容推断类型写入：= 开头的公式、数字、yyyy-MM-dd [HH:mm:ss] 格式的日期，其余为文本
+    void put(int row, int column, String text) {
+        if (text == null || text.isEmpty()) {
+            clear(row, column);
+            return;
+        }
+        if (text.length() > 1 && text.charAt(0) == '=') {
+            try {
+                setFormula(row, column, text.substring(1), Formula.parse(text.substring(1)), null);
+                return;
+            } catch (ParseException e) {
+                // 不是有效的公式，按文本保存
+            }
+        }
+        if (isNumber(text)) {
+            double value = Double.parseDouble(text);
+            if (Double.isFinite(value)) {
+                setNumber(row, column, value);
+                return;
+            }
+        }
+        long date = parseDate(text);
+        if (date != Long.MIN_VALUE) {
+            setDate(row, column, date);
+        } else {
+            setText(row, column, text);
+        }
+    }
+
+    // 计算修改后需要更新的公式，并通知表格这些行已变化
+    void recalculate() {
+        int[] rows = formulas.recalculate();
+        if (rows != null) {
+            fireTableRowsUpdated(rows[0], rows[1]);
+        }
+    }
+
+    // 改变大小，缩小时丢弃多出的单元格
+    void setSize(int rows, int columnCount) {
+        if (rows < rowCount || columnCount < columns.size()) {
+            formulas.truncate(rows, columnCount);
+        }
+        while (columns.size() > columnCount) {
+            columns.remove(columns.size() - 1);
+        }
+        while (columns.size() < columnCount) {
+            columns.add(new Column());
+        }
+        if (rows < rowCount) {
+            for (Column column : columns) {
+                column.truncate(rows);
+            }
+        }
+        rowCount = rows;
+    }
+
+    // 以下结构修改会发出对应的表格事件，公式中的引用随之调整并重算
+
+    void clearAll(int rows, int columnCount) {
+        columns.clear();
+        formulas.clear();
+        rowCount = 0;
+        setSize(rows, columnCount);
+        fireTableStructureChanged();
+    }
+
+    void insertRows(int at, int count) {
+        for (Column column : columns) {
+            column.shift(at, rowCount, count);
+        }
+        rowCount += count;
+        formulas.insertRows(at, count);
+        fireTableRowsInserted(at, at + count - 1);
+        recalculate();
+    }
+
+    void removeRows(int at, int count) {
+        formulas.removeRows(at, count);
+        for (Column column : columns) {
+            column.shift(at + count, rowCount, -count);
+            column.truncate(rowCount - count);
+        }
+        rowCount -= count;
+        fireTableRowsDeleted(at, at + count - 1);
+        recalculate();
+    }
+
+    void insertColumn(int at) {
+        columns.add(at, new Column());
+        formulas.insertColumns(at, 1);
+        fireTableStructureChanged();
+        recalculate();
+    }
+
+    void removeColumn(int at) {
+        formulas.removeColumns(at, 1);
+        columns.remove(at);
+        fireTableStructureChanged();
+        recalculate();
+    }
+
+    // 列号转列名：0 -> A，26 -> AA
+    static String columnName(int column) {
+        StringBuilder name = new StringBuilder();
+        for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+            name.append((char) ('A' + (n - 1) % 26));
+        }
+        return name.reverse().toString();
+    }
+
+    // 整数在 long 能精确表示的范围内不带小数点显示；其余数字同 Excel 保留 15 位有效数字，
+    // 不使用科学计数法。读入时只接受不超过 15 位有效数字的数字，因此保存后内容不变
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        if (!Double.isFinite(value)) {
+            return String.valueOf(value);
+        }
+        return new BigDecimal(value).round(SIGNIFICANT).stripTrailingZeros().toPlainString();
+    }
+
+    static String formatDate(long localMillis) {
+        LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000), 0, ZoneOffset.UTC);
+        StringBuilder text = new StringBuilder(19);
+        appendPadded(text, time.getYear(), 4).append('-');
+        appendPadded(text, time.getMonthValue(), 2).append('-');
+        appendPadded(text, time.getDayOfMonth(), 2);
+        if (time.toLocalTime().toSecondOfDay() != 0) {
+            text.append(' ');
+            appendPadded(text, time.getHour(), 2).append(':');
+            appendPadded(text, time.getMinute(), 2).append(':');
+            appendPadded(text, time.getSecond(), 2);
+        }
+        return text.toString();
+    }
+
+    private static StringBuilder appendPadded(StringBuilder text, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            text.append('0');
+        }
+        return text.append(digits);
+    }
+
+    static long toLocalMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    static LocalDateTime toLocalDateTime(long localMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000),
+            (int) Math.floorMod(localMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // 不抛异常地判断十进制数字：可选负号、数字、小数点、指数。
+    // 带前导零的整数（如 007）和超过 15 位有效数字的数字串保持为文本
+    static boolean isNumber(String text) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && text.charAt(i) == '-') i++;
+        int intStart = i;
+        while (i < length && isDigit(text.charAt(i))) i++;
+        int intDigits = i - intStart;
+        if (intDigits > 1 && text.charAt(intStart) == '0') return false;
+
+        int fractionDigits = 0;
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            int fractionStart = i;
+            while (i < length && isDigit(text.charAt(i))) i++;
+            fractionDigits = i - fractionStart;
+            if (fractionDigits == 0) return false;
+        }
+        if (intDigits + fractionDigits == 0) return false;
+
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) i++;
+            int exponentStart = i;
+            while (i < length && isDigit(text.charAt(i))) i++;
+            if (i == exponentStart || i - exponentStart > 3) return false;
+        }
+        if (i != length) return false;
+
+        // 有效数字不含整数部分的前导零
+        int significant = intDigits + fractionDigits;
+        if (intDigits == 1 && text.charAt(intStart) == '0') {
+            significant--;
+            for (int f = intStart + 2; f < intStart + 2 + fractionDigits && text.charAt(f) == '0'; f++) {
+                significant--;
+            }
+        }
+        return significant <= MAX_SIGNIFICANT_DIGITS;
+    }
+
+    // yyyy-MM-dd 或 yyyy-MM-dd HH:mm:ss，不是日期时返回 Long.MIN_VALUE
+    static long parseDate(String text) {
+        int length = text.length();
+        if (length != 10 && length != 19) return Long.MIN_VALUE;
+        if (text.charAt(4) != '-' || text.charAt(7) != '-') return Long.MIN_VALUE;
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (length == 19) {
+            if (text.charAt(10) != ' ' || text.charAt(13) != ':' || text.charAt(16) != ':') return Long.MIN_VALUE;
+            hour = digits(text, 11, 2);
+            minute = digits(text, 14, 2);
+            second = digits(text, 17, 2);
+        }
+        if ((year | month | day | hour | minute | second) < 0) return Long.MIN_VALUE;
+        try {
+            return toLocalMillis(LocalDateTime.of(year, month, day, hour, minute, second));
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE; // 如 2023-02-30
+        }
+    }
+
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,231 @@
+package cn.moerain.javaows.office;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// 在后台线程中把 SheetModel 保存为 xlsx 或 xls。
+// xlsx 用 SXSSFWorkbook，内存中只保留最近 ROW_WINDOW 行，其余行写入压缩的临时文件；
+// 单元格类型直接取自模型，列宽按抽样行的文本长度估算，不调用 autoSizeColumn。
+// 公式连同计算结果一起写入，并要求 Excel 打开时重算。
+// 先写到同目录的临时文件，完成后再替换目标文件，取消或失败时原文件不受影响。
+// 保存期间调用方须保证模型不被修改
+class WorkbookSaver {
+    private static final int ROW_WINDOW = 200;
+    // 估算列宽时最多抽取的行数
+    private static final int WIDTH_SAMPLE_ROWS = 1000;
+    private static final int MIN_COLUMN_CHARS = 8;
+    private static final int MAX_COLUMN_CHARS = 80;
+
+    private final SheetModel model;
+    private final File file;
+    private final boolean xlsx;
+
+    private Thread thread;
+    private volatile int rowsWritten;
+    // 单元格已写完，正在生成文件
+    private volatile boolean packaging;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private volatile Exception error;
+
+    WorkbookSaver(SheetModel model, File file) {
+        this.model = model;
+        this.file = file;
+        this.xlsx = !file.getName().toLowerCase().endsWith(".xls");
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void start() {
+        thread = new Thread(this::run, "Excel-Saver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = null;
+        Workbook workbook = null;
+        try {
+            SpreadsheetVersion version = xlsx ? SpreadsheetVersion.EXCEL2007 : SpreadsheetVersion.EXCEL97;
+            if (model.getRowCount() > version.getMaxRows() || model.getColumnCount() > version.getMaxColumns()) {
+                throw new IOException("表格超出 " + (xlsx ? "xlsx" : "xls") + " 格式的限制（最多 "
+                    + version.getMaxRows() + " 行、" + version.getMaxColumns() + " 列）");
+            }
+
+            if (xlsx) {
+                SXSSFWorkbook streaming = new SXSSFWorkbook(ROW_WINDOW);
+                streaming.setCompressTempFiles(true);
+                workbook = streaming;
+            } else {
+                workbook = new HSSFWorkbook();
+            }
+            Sheet sheet = workbook.createSheet("Sheet1");
+            setColumnWidths(sheet);
+            if (writeCells(workbook, sheet)) {
+                workbook.setForceFormulaRecalculation(true);
+            }
+            if (cancelled) return;
+
+            packaging = true;
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                workbook.write(out);
+            }
+            if (cancelled) return;
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (Exception e) {
+            if (!cancelled) {
+                error = e;
+            }
+        } finally {
+            // SXSSFWorkbook.close() 同时删除临时文件
+            if (workbook != null) {
+                try {
+                    workbook.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            finished = true;
+        }
+    }
+
+    // 返回是否写入了公式
+    private boolean writeCells(Workbook workbook, Sheet sheet) {
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+        CellStyle dateTimeStyle = workbook.createCellStyle();
+        dateTimeStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+
+        boolean formulas = false;
+        int rows = model.getRowCount();
+        int columns = model.getColumnCount();
+        for (int r = 0; r < rows; r++) {
+            if (cancelled) return formulas;
+            Row row = null;
+            for (int c = 0; c < columns; c++) {
+                int type = model.getCellType(r, c);
+                if (type == SheetModel.EMPTY) continue;
+                if (row == null) {
+                    row = sheet.createRow(r);
+                }
+                Cell cell = row.createCell(c);
+                switch (type) {
+                    case SheetModel.NUMBER:
+                        cell.setCellValue(model.getNumber(r, c));
+                        break;
+                    case SheetModel.DATE:
+                        long date = model.getDate(r, c);
+                        cell.setCellValue(SheetModel.toLocalDateTime(date));
+                        cell.setCellStyle(Math.floorMod(date, 86_400_000L) == 0 ? dateStyle : dateTimeStyle);
+                        break;
+                    case SheetModel.FORMULA:
+                        writeFormula(cell, model.getFormula(r, c), model.getFormulaResult(r, c));
+                        formulas = true;
+                        break;
+                    default:
+                        cell.setCellValue(model.getText(r, c));
+                        break;
+                }
+            }
+            rowsWritten = r + 1;
+        }
+        return formulas;
+    }
+
+    // 公式和计算结果一起写入，打开文件时不重算也能显示结果；POI 无法解析的公式（xls）只写结果
+    private static void writeFormula(Cell cell, String formula, Object result) {
+        try {
+            cell.setCellFormula(formula);
+        } catch (RuntimeException e) {
+            cell.setBlank();
+        }
+        if (result instanceof Double) {
+            cell.setCellValue((Double) result);
+        } else if (result instanceof Boolean) {
+            cell.setCellValue((Boolean) result);
+        } else if (result instanceof String) {
+            cell.setCellValue((String) result);
+        }
+    }
+
+    // 按均匀抽取的行估算列宽，单位为 1/256 个字符宽
+    private void setColumnWidths(Sheet sheet) {
+        int rows = model.getRowCount();
+        int step = Math.max(1, rows / WIDTH_SAMPLE_ROWS);
+        for (int c = 0; c < model.getColumnCount(); c++) {
+            int chars = MIN_COLUMN_CHARS;
+            for (int r = 0; r < rows; r += step) {
+                String text = model.getDisplayText(r, c);
+                if (text != null) {
+                    chars = Math.max(chars, displayWidth(text));
+                }
+            }
+            sheet.setColumnWidth(c, (Math.min(chars, MAX_COLUMN_CHARS) + 2) * 256);
+        }
+    }
+
+    // 中日韩等全角字符按两个字符宽计算
+    private static int displayWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += text.charAt(i) >= 0x2E80 ? 2 : 1;
+        }
+        return width;
+    }
+
+    boolean isDone() {
+        return finished;
+    }
+
+    boolean isPackaging() {
+        return packaging;
+    }
+
+    // 0 到 1
+    double getProgress() {
+        int rows = model.getRowCount();
+        return rows > 0 ? (double) rowsWritten / rows : 1;
+    }
+
+    Exception getError() {
+        return error;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+}
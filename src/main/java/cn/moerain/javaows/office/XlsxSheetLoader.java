@@ -0,0 +1,641 @@
+package cn.moerain.javaows.office;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// 流式读取 xlsx 的一个工作表：后台线程用 SAX 解析，共享字符串表只读加载，不建立 XSSFWorkbook。
+// 解析出的单元格按批放入有界队列，由 EDT 调用 drainTo 写入 SheetModel，
+// 界面跟不上时解析线程阻塞等待，内存占用不随文件大小增长。
+// 公式单元格同时保留公式文本和文件中的缓存结果，共享公式按主单元格的公式平移引用后展开
+class XlsxSheetLoader implements SheetLoader {
+    private static final int BATCH_CELLS = 8192;
+    private static final int QUEUE_BATCHES = 32;
+    // 1970-01-01 的 Excel 日期序号（1900 日期系统）
+    private static final double EPOCH_SERIAL = 25569;
+    private static final double MILLIS_PER_DAY = 86_400_000d;
+
+    // 一批单元格，按解析顺序排列
+    static final class CellBatch {
+        int size;
+        final int[] rows = new int[BATCH_CELLS];
+        final int[] columns = new int[BATCH_CELLS];
+        final byte[] types = new byte[BATCH_CELLS];
+        final long[] raws = new long[BATCH_CELLS];
+        final String[] texts = new String[BATCH_CELLS];
+        // 公式文本，不是公式时为 null；此时 types 等为缓存结果，没有缓存结果时为 EMPTY
+        final String[] formulas = new String[BATCH_CELLS];
+        int rowCount;
+        int columnCount;
+    }
+
+    // 取消时用来中止 SAX 解析
+    private static final class Cancelled extends RuntimeException {
+        Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final OPCPackage pkg;
+    private final XSSFReader reader;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final BlockingQueue<CellBatch> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+
+    private Thread thread;
+    private volatile long bytesRead;
+    private volatile long totalBytes = -1;
+    private volatile int rowsRead;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private volatile Exception error;
+
+    XlsxSheetLoader(File file) throws IOException {
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (Exception e) {
+            throw new IOException("无法打开文件: " + e.getMessage(), e);
+        }
+        try {
+            reader = new XSSFReader(pkg);
+            // 只读取工作表名称，不解析内容
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                InputStream in = sheets.next();
+                sheetNames.add(sheets.getSheetName());
+                in.close();
+            }
+        } catch (Exception e) {
+            pkg.revert();
+            throw new IOException("无法读取工作簿: " + e.getMessage(), e);
+        }
+    }
+
+    List<String> getSheetNames() {
+        return Collections.unmodifiableList(sheetNames);
+    }
+
+    // 在后台线程中开始解析第 sheetIndex 个工作表
+    void start(int sheetIndex) {
+        thread = new Thread(() -> run(sheetIndex), "Excel-Loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(int sheetIndex) {
+        try {
+            PlainSharedStrings strings = new PlainSharedStrings(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; sheets.hasNext(); i++) {
+                InputStream in = sheets.next();
+                if (i != sheetIndex) {
+                    in.close();
+                    continue;
+                }
+                totalBytes = sheets.getSheetPart().getSize();
+                try (InputStream counted = new CountingInputStream(in)) {
+                    parse(counted, styles, strings);
+                }
+                break;
+            }
+        } catch (Cancelled e) {
+            // 用户取消
+        } catch (Exception e) {
+            if (!cancelled) {
+                error = e;
+            }
+        } finally {
+            finished = true;
+        }
+    }
+
+    private void parse(InputStream in, StylesTable styles, SharedStrings strings)
+            throws IOException, SAXException, javax.xml.parsers.ParserConfigurationException {
+        BatchWriter writer = new BatchWriter();
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new TypedSheetHandler(styles, strings, writer));
+        parser.parse(new InputSource(in));
+        writer.flush();
+    }
+
+    // 共享公式的主单元格
+    private static final class SharedFormula {
+        final Formula formula;
+        final int row;
+        final int column;
+
+        SharedFormula(Formula formula, int row, int column) {
+            this.formula = formula;
+            this.row = row;
+            this.column = column;
+        }
+    }
+
+    // 记录 c 元素的 t 属性，以区分数字和文本；收集 f 元素中的公式文本。
+    // XSSFSheetXMLHandler 输出的是公式的缓存结果，且不展开共享公式
+    private static final class TypedSheetHandler extends XSSFSheetXMLHandler {
+        private final BatchWriter writer;
+        private final StringBuilder formula = new StringBuilder();
+        private final Map<String, SharedFormula> sharedFormulas = new HashMap<>();
+        private boolean inFormula;
+        private String sharedIndex;
+        private String cellReference;
+
+        TypedSheetHandler(StylesTable styles, SharedStrings strings, BatchWriter writer) {
+            super(styles, strings, writer, writer.formatter, false);
+            this.writer = writer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                String type = attributes.getValue("t");
+                writer.numeric = type == null || "n".equals(type);
+                writer.error = "e".equals(type);
+                writer.formatter.captured = false;
+                writer.formula = null;
+                cellReference = attributes.getValue("r");
+            } else if ("f".equals(localName)) {
+                inFormula = true;
+                formula.setLength(0);
+                sharedIndex = "shared".equals(attributes.getValue("t")) ? attributes.getValue("si") : null;
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (inFormula) {
+                formula.append(ch, start, length);
+            }
+            super.characters(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if ("f".equals(localName)) {
+                inFormula = false;
+                writer.formula = formula.length() > 0 ? formula.toString() : null;
+                if (sharedIndex != null) {
+                    writer.formula = sharedFormula(writer.formula);
+                }
+            } else if ("c".equals(localName) && writer.formula != null) {
+                // 没有缓存结果的公式不会触发 cell 回调
+                writer.cell(cellReference, null, null);
+            }
+        }
+
+        // 主单元格带公式文本，其余单元格只有编号，公式由主单元格的公式平移得到；无法解析时只保留缓存结果
+        private String sharedFormula(String text) {
+            int row = cellReference != null ? rowIndex(cellReference) : writer.row;
+            int column = cellReference != null ? columnIndex(cellReference) : writer.nextColumn;
+            if (text != null) {
+                Formula master;
+                try {
+                    master = Formula.parse(text);
+                } catch (ParseException e) {
+                    master = null;
+                }
+                sharedFormulas.put(sharedIndex, new SharedFormula(master, row, column));
+                return text;
+            }
+            SharedFormula master = sharedFormulas.get(sharedIndex);
+            if (master == null || master.formula == null) return null;
+            return master.formula.offset(row - master.row, column - master.column).toString();
+        }
+    }
+
+    // 截获数字单元格的原始值和是否为日期格式，不做格式化
+    private static final class RawFormatter extends DataFormatter {
+        // 判断日期格式要用正则，按格式编号缓存结果
+        private final Map<Integer, Boolean> dateFormats = new HashMap<>();
+        boolean captured;
+        double value;
+        boolean date;
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            captured = true;
+            this.value = value;
+            Boolean dateFormat = dateFormats.get(formatIndex);
+            if (dateFormat == null) {
+                dateFormat = DateUtil.isADateFormat(formatIndex, formatString);
+                dateFormats.put(formatIndex, dateFormat);
+            }
+            date = dateFormat && DateUtil.isValidExcelDate(value);
+            return "";
+        }
+    }
+
+    // 共享字符串表直接用 SAX 读成 String 列表，按编号取值时不再为每个单元格创建 XSSFRichTextString。
+    // 不依赖 uniqueCount 属性（可能缺失或不准），注音（rPh）不计入文本
+    private static final class PlainSharedStrings extends DefaultHandler implements SharedStrings {
+        private final List<String> strings = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int count;
+        private boolean inText;
+        private boolean inPhonetic;
+
+        PlainSharedStrings(OPCPackage pkg) throws IOException, SAXException, javax.xml.parsers.ParserConfigurationException {
+            List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+            if (parts.isEmpty()) return;
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(this);
+            try (InputStream in = parts.get(0).getInputStream()) {
+                parser.parse(new InputSource(in));
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "sst": {
+                    String countText = attributes.getValue("count");
+                    if (countText != null) {
+                        try {
+                            count = Integer.parseInt(countText);
+                        } catch (NumberFormatException e) {
+                            // 保持 0
+                        }
+                    }
+                    break;
+                }
+                case "si":
+                    text.setLength(0);
+                    break;
+                case "t":
+                    inText = !inPhonetic;
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "si":
+                    strings.add(text.toString());
+                    break;
+                case "t":
+                    inText = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) text.append(ch, start, length);
+        }
+
+        @Override
+        public RichTextString getItemAt(int idx) {
+            return new PlainText(strings.get(idx));
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public int getUniqueCount() {
+            return strings.size();
+        }
+    }
+
+    // 只读的纯文本，XSSFSheetXMLHandler 通过 toString 取共享字符串的文本
+    private static final class PlainText implements RichTextString {
+        private final String text;
+
+        PlainText(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String getString() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public int numFormattingRuns() {
+            return 0;
+        }
+
+        @Override
+        public int getIndexOfFormattingRun(int index) {
+            return -1;
+        }
+
+        @Override
+        public void applyFont(int startIndex, int endIndex, short fontIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void applyFont(int startIndex, int endIndex, Font font) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void applyFont(Font font) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void applyFont(short fontIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clearFormatting() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Excel 日期序号转本地时间毫秒数；1900-03-01 之前有闰年错误，交给 DateUtil
+    private static long serialToLocalMillis(double serial) {
+        if (serial < 61) {
+            return SheetModel.toLocalMillis(DateUtil.getLocalDateTime(serial));
+        }
+        return Math.round((serial - EPOCH_SERIAL) * MILLIS_PER_DAY);
+    }
+
+    private final class BatchWriter implements XSSFSheetXMLHandler.SheetContentsHandler {
+        final RawFormatter formatter = new RawFormatter();
+        boolean numeric;
+        // t="e" 的错误值，包括公式的错误结果
+        boolean error;
+        // 当前单元格的公式文本
+        String formula;
+        private CellBatch batch = new CellBatch();
+        int row;
+        int nextColumn;
+
+        @Override
+        public void startRow(int rowNum) {
+            if (cancelled) throw new Cancelled();
+            row = rowNum;
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            rowsRead = rowNum + 1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+            nextColumn = column + 1;
+
+            CellBatch b = batch;
+            int i = b.size;
+            b.formulas[i] = formula;
+            formula = null;
+            if (formatter.captured) {
+                // 数字或公式的数字结果
+                if (formatter.date) {
+                    b.types[i] = SheetModel.DATE;
+                    b.raws[i] = serialToLocalMillis(formatter.value);
+                } else {
+                    b.types[i] = SheetModel.NUMBER;
+                    b.raws[i] = Double.doubleToRawLongBits(formatter.value);
+                }
+            } else if (numeric && formattedValue != null && !formattedValue.isEmpty()) {
+                // 没有样式表时数字按原文给出
+                try {
+                    b.types[i] = SheetModel.NUMBER;
+                    b.raws[i] = Double.doubleToRawLongBits(Double.parseDouble(formattedValue));
+                } catch (NumberFormatException e) {
+                    b.types[i] = SheetModel.TEXT;
+                    b.texts[i] = formattedValue;
+                }
+            } else if (formattedValue != null && !formattedValue.isEmpty()) {
+                b.types[i] = SheetModel.TEXT;
+                // XSSFSheetXMLHandler 给错误值加了前缀
+                b.texts[i] = error && formattedValue.startsWith("ERROR:") ? formattedValue.substring(6) : formattedValue;
+            } else if (b.formulas[i] != null) {
+                b.types[i] = SheetModel.EMPTY;
+            } else {
+                return;
+            }
+            b.rows[i] = row;
+            b.columns[i] = column;
+            b.rowCount = Math.max(b.rowCount, row + 1);
+            b.columnCount = Math.max(b.columnCount, column + 1);
+            b.size = i + 1;
+            if (b.size == BATCH_CELLS) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.size == 0) return;
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Cancelled();
+            }
+            batch = new CellBatch();
+        }
+    }
+
+    // "AB12" -> 27
+    private static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') break;
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    // "AB12" -> 11
+    private static int rowIndex(String reference) {
+        int row = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c >= '0' && c <= '9') row = row * 10 + (c - '0');
+        }
+        return row - 1;
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) bytesRead = ++count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) bytesRead = count += n;
+            return n;
+        }
+    }
+
+    @Override
+    public void drainTo(SheetModel model, long budgetMillis) {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+        int oldRows = model.getRowCount();
+        int oldColumns = model.getColumnCount();
+        int firstRow = Integer.MAX_VALUE;
+        CellBatch batch;
+        while ((batch = queue.poll()) != null) {
+            model.setSize(Math.max(model.getRowCount(), batch.rowCount),
+                Math.max(model.getColumnCount(), batch.columnCount));
+            for (int i = 0; i < batch.size; i++) {
+                int row = batch.rows[i];
+                int column = batch.columns[i];
+                if (batch.formulas[i] != null) {
+                    model.setFormula(row, column, batch.formulas[i], cachedResult(batch, i));
+                    continue;
+                }
+                switch (batch.types[i]) {
+                    case SheetModel.NUMBER:
+                        model.setNumber(row, column, Double.longBitsToDouble(batch.raws[i]));
+                        break;
+                    case SheetModel.DATE:
+                        model.setDate(row, column, batch.raws[i]);
+                        break;
+                    default:
+                        model.setText(row, column, batch.texts[i]);
+                        break;
+                }
+            }
+            if (batch.size > 0) {
+                firstRow = Math.min(firstRow, batch.rows[0]);
+            }
+            if (System.nanoTime() > deadline) break;
+        }
+
+        if (model.getColumnCount() > oldColumns) {
+            model.fireTableStructureChanged();
+            return;
+        }
+        // 上一批结束时可能只写了一行的一部分
+        if (firstRow < oldRows) {
+            model.fireTableRowsUpdated(firstRow, oldRows - 1);
+        }
+        if (model.getRowCount() > oldRows) {
+            model.fireTableRowsInserted(oldRows, model.getRowCount() - 1);
+        }
+    }
+
+    // 公式在文件中的缓存结果，日期按显示文本保存
+    private static Object cachedResult(CellBatch batch, int i) {
+        switch (batch.types[i]) {
+            case SheetModel.NUMBER:
+                return Double.longBitsToDouble(batch.raws[i]);
+            case SheetModel.DATE:
+                return SheetModel.formatDate(batch.raws[i]);
+            case SheetModel.TEXT:
+                return batch.texts[i];
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return finished && queue.isEmpty();
+    }
+
+    @Override
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public double getProgress() {
+        long total = totalBytes;
+        return total > 0 ? Math.min(1.0, (double) bytesRead / total) : -1;
+    }
+
+    @Override
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        queue.clear();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        if (thread != null) {
+            try {
+                thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 只读打开，不写回
+        pkg.revert();
+    }
+}
@@ -226,7 +226,7 @@ public class CMD extends JFrame {
 
                     SwingUtilities.invokeLater(() ->
                         output.append("\n[进程已结束]\n"));
-                }).start();
+                }, "CMD-Output").start();
 
                 /* 发送输入（UTF-8） */
                 OutputStream os = proc[0].getOutputStream();
@@ -260,7 +260,7 @@ public class CMD extends JFrame {
                                 "错误",
                                 JOptionPane.ERROR_MESSAGE));
             }
-        }).start();
+        }, "CMD-Shell").start();
     }
 
     /* ---------- 工具 ---------- */
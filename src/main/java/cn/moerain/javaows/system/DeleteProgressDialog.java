@@ -0,0 +1,66 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.*;
+import java.awt.*;
+
+// 删除进度窗口：超过半秒仍未完成时才显示，避免删除少量文件时闪烁
+class DeleteProgressDialog extends JDialog {
+    private static final int REFRESH_MILLIS = 200;
+    private static final long SHOW_DELAY_MILLIS = 500;
+
+    private final FileDeleteEngine engine;
+    private final JLabel countLabel = new JLabel(" ");
+    private final JButton cancelButton = new JButton("取消");
+    private final Timer refreshTimer;
+    private final long startMillis = System.currentTimeMillis();
+
+    DeleteProgressDialog(Frame owner, FileDeleteEngine engine) {
+        super(owner, engine.isTrash() ? "正在移到回收站" : "正在删除", false);
+        this.engine = engine;
+
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(countLabel);
+        panel.add(progressBar);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        cancelButton.addActionListener(e -> {
+            engine.cancel();
+            cancelButton.setEnabled(false);
+            countLabel.setText("正在取消...");
+        });
+        buttonPanel.add(cancelButton);
+
+        setLayout(new BorderLayout());
+        add(panel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        setSize(360, 140);
+        setLocationRelativeTo(owner);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        if (engine.isFinished()) {
+            refreshTimer.stop();
+            dispose();
+            return;
+        }
+        if (engine.isCancelled()) return;
+
+        if (engine.isTrash()) {
+            countLabel.setText(String.format("已移到回收站 %d / %d 个项目", engine.getRemovedFiles(), engine.getTargets().size()));
+        } else {
+            countLabel.setText(String.format("已删除 %d 个文件, %s",
+                engine.getRemovedFiles(), DirectoryEntry.formatFileSize(engine.getRemovedBytes())));
+        }
+        if (!isVisible() && System.currentTimeMillis() - startMillis >= SHOW_DELAY_MILLIS) {
+            setVisible(true);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package cn.moerain.javaows.system;
+
+import cn.moerain.javaows.misc.FileTypeRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// 目录项：列表加载时用一次 Files.readAttributes 生成属性快照，
+// 排序、图标、类型和表格/图标视图都只读快照，不再重复 stat
+class DirectoryEntry {
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Path path;
+    private final String name;
+    private final BasicFileAttributes attributes;
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+
+    // 显示文本按需生成，只有滚动到可见区域的行才会分配字符串
+    private String typeName;
+    private String sizeText;
+    private String modifiedText;
+
+    DirectoryEntry(Path path, BasicFileAttributes attributes) {
+        this.path = path;
+        Path fileName = path.getFileName();
+        this.name = fileName != null ? fileName.toString() : path.toString();
+        this.attributes = attributes;
+        this.directory = attributes != null && attributes.isDirectory();
+        this.size = attributes != null ? attributes.size() : 0;
+        this.lastModified = attributes != null ? attributes.lastModifiedTime().toMillis() : 0;
+    }
+
+    // 按目录所在文件系统选择一次调用能拿到的最完整的属性类型
+    static Class<? extends BasicFileAttributes> attributesTypeFor(Path directory) {
+        try {
+            FileStore store = Files.getFileStore(directory);
+            if (store.supportsFileAttributeView(PosixFileAttributeView.class)) {
+                return PosixFileAttributes.class;
+            }
+            if (store.supportsFileAttributeView(DosFileAttributeView.class)) {
+                return DosFileAttributes.class;
+            }
+        } catch (IOException | SecurityException e) {
+            // 无法确定文件系统类型时使用基本属性
+        }
+        return BasicFileAttributes.class;
+    }
+
+    static DirectoryEntry read(Path path, Class<? extends BasicFileAttributes> type, StatCounter counter) {
+        try {
+            counter.increment();
+            return new DirectoryEntry(path, Files.readAttributes(path, type));
+        } catch (IOException e) {
+            // 失效的符号链接等：退回读取链接本身的属性
+            try {
+                counter.increment();
+                return new DirectoryEntry(path, Files.readAttributes(path, type, LinkOption.NOFOLLOW_LINKS));
+            } catch (IOException | UnsupportedOperationException ex) {
+                return new DirectoryEntry(path, null);
+            }
+        } catch (UnsupportedOperationException e) {
+            return new DirectoryEntry(path, null);
+        }
+    }
+
+    static DirectoryEntry read(Path path) {
+        return read(path, attributesTypeFor(path), new StatCounter());
+    }
+
+    Path getPath() { return path; }
+    File getFile() { return path.toFile(); }
+    String getName() { return name; }
+    boolean isDirectory() { return directory; }
+    long getSize() { return size; }
+    long getLastModified() { return lastModified; }
+
+    // 读取属性失败（文件已不存在）时为 false
+    boolean exists() {
+        return attributes != null;
+    }
+
+    boolean isHidden() {
+        if (attributes instanceof DosFileAttributes) {
+            return ((DosFileAttributes) attributes).isHidden();
+        }
+        return name.startsWith(".");
+    }
+
+    boolean isSymbolicLink() {
+        return attributes != null && attributes.isSymbolicLink();
+    }
+
+    // 仅在支持POSIX属性的文件系统上有值
+    String getPermissionsText() {
+        if (attributes instanceof PosixFileAttributes) {
+            return PosixFilePermissions.toString(((PosixFileAttributes) attributes).permissions());
+        }
+        return null;
+    }
+
+    String getOwnerName() {
+        if (attributes instanceof PosixFileAttributes) {
+            PosixFileAttributes posix = (PosixFileAttributes) attributes;
+            return posix.owner().getName() + ":" + posix.group().getName();
+        }
+        return null;
+    }
+
+    String getExtension() {
+        int lastDotIndex = name.lastIndexOf('.');
+        return lastDotIndex > 0 ? name.substring(lastDotIndex + 1) : "";
+    }
+
+    String getTypeName() {
+        if (typeName == null) {
+            if (directory) {
+                typeName = "文件夹";
+            } else {
+                FileTypeRegistry.FileType type = FileTypeRegistry.lookup(name);
+                if (type != FileTypeRegistry.UNKNOWN) {
+                    typeName = type.getDisplayName();
+                } else {
+                    String extension = getExtension();
+                    typeName = extension.isEmpty() ? "文件" : extension.toUpperCase() + " 文件";
+                }
+            }
+        }
+        return typeName;
+    }
+
+    String getSizeText() {
+        if (sizeText == null) {
+            sizeText = directory ? "" : formatFileSize(size);
+        }
+        return sizeText;
+    }
+
+    String getModifiedText() {
+        if (modifiedText == null) {
+            modifiedText = DATE_FORMAT.format(Instant.ofEpochMilli(lastModified));
+        }
+        return modifiedText;
+    }
+
+    static String formatFileSize(long size) {
+        if (size < 1024) return size + " B";
+        if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
+        if (size < 1024 * 1024 * 1024) return String.format("%.1f MB", size / (1024.0 * 1024.0));
+        return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+    }
+
+    // 排序：文件夹在前，然后按名称排序；区分大小写的文件系统上 a.txt 和 A.txt 可以同时存在，按大小写区分先后
+    static int compare(DirectoryEntry e1, DirectoryEntry e2) {
+        if (e1.directory && !e2.directory) return -1;
+        if (!e1.directory && e2.directory) return 1;
+        int result = e1.name.compareToIgnoreCase(e2.name);
+        return result != 0 ? result : e1.name.compareTo(e2.name);
+    }
+
+    @Override
+    public String toString() { return name; }
+
+    // stat 调用计数，显示在状态栏
+    static class StatCounter {
+        private int count;
+
+        void increment() { count++; }
+        int get() { return count; }
+    }
+}
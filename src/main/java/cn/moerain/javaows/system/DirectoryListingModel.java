@@ -0,0 +1,273 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.ListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.table.AbstractTableModel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 虚拟化目录模型：表格视图和图标视图共用同一份数据
+// 单元格文本在 getValueAt 时才生成，每批数据只触发一次区间插入事件
+class DirectoryListingModel extends AbstractTableModel implements ListModel<DirectoryEntry> {
+    private static final String[] COLUMN_NAMES = {"名称", "类型", "大小", "修改时间"};
+
+    // 一批变化超过该数量时直接整体重排，只触发一次数据变化事件
+    private static final int BULK_CHANGE_THRESHOLD = 64;
+
+    private ArrayList<DirectoryEntry> entries = new ArrayList<>();
+    private final Map<Path, DirectoryEntry> entriesByPath = new HashMap<>();
+
+    // 加载完成并排好序后才能应用增量更新
+    private boolean loaded;
+
+    // 每次重新加载递增，过期加载任务提交的数据会被丢弃
+    private int generation;
+
+    // 已计算出的文件夹大小
+    private final Map<Path, Long> folderSizes = new HashMap<>();
+
+    // 必须在EDT中调用
+    int beginLoad() {
+        generation++;
+        loaded = false;
+        int oldSize = entries.size();
+        entries = new ArrayList<>();
+        entriesByPath.clear();
+        folderSizes.clear();
+        if (oldSize > 0) {
+            fireTableRowsDeleted(0, oldSize - 1);
+            fireListEvent(ListDataEvent.INTERVAL_REMOVED, 0, oldSize - 1);
+        }
+        return generation;
+    }
+
+    boolean isCurrent(int loadGeneration) {
+        return loadGeneration == generation;
+    }
+
+    // 追加一批目录项，整批只触发一次事件
+    void appendBatch(int loadGeneration, List<DirectoryEntry> batch) {
+        if (!isCurrent(loadGeneration) || batch.isEmpty()) return;
+
+        int first = entries.size();
+        entries.addAll(batch);
+        for (DirectoryEntry entry : batch) {
+            entriesByPath.put(entry.getPath(), entry);
+        }
+        int last = entries.size() - 1;
+        fireTableRowsInserted(first, last);
+        fireListEvent(ListDataEvent.INTERVAL_ADDED, first, last);
+    }
+
+    // 加载完成后用排好序的完整列表替换
+    void replaceAll(int loadGeneration, ArrayList<DirectoryEntry> sorted) {
+        if (!isCurrent(loadGeneration)) return;
+
+        int oldSize = entries.size();
+        entries = sorted;
+        entriesByPath.clear();
+        for (DirectoryEntry entry : sorted) {
+            entriesByPath.put(entry.getPath(), entry);
+        }
+        loaded = true;
+        fireTableDataChanged();
+        if (oldSize > 0) {
+            fireListEvent(ListDataEvent.INTERVAL_REMOVED, 0, oldSize - 1);
+        }
+        if (!sorted.isEmpty()) {
+            fireListEvent(ListDataEvent.INTERVAL_ADDED, 0, sorted.size() - 1);
+        }
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    // 应用监视到的增量变化：少量变化逐行触发事件以保留选择，大量变化整体重排
+    void applyChanges(Collection<DirectoryEntry> upserts, Collection<Path> removals) {
+        if (!loaded) return;
+
+        if (upserts.size() + removals.size() > BULK_CHANGE_THRESHOLD) {
+            applyBulkChanges(upserts, removals);
+            return;
+        }
+
+        for (Path path : removals) {
+            removeEntry(path);
+        }
+        for (DirectoryEntry entry : upserts) {
+            DirectoryEntry existing = entriesByPath.get(entry.getPath());
+            if (existing != null && existing.isDirectory() == entry.isDirectory() && !entry.isHidden()) {
+                // 排序位置不变，原地替换
+                int index = indexOf(existing);
+                entries.set(index, entry);
+                entriesByPath.put(entry.getPath(), entry);
+                fireTableRowsUpdated(index, index);
+                fireListEvent(ListDataEvent.CONTENTS_CHANGED, index, index);
+                continue;
+            }
+
+            removeEntry(entry.getPath());
+            if (entry.isHidden()) continue;
+
+            int index = -Collections.binarySearch(entries, entry, DirectoryEntry::compare) - 1;
+            if (index < 0) continue;
+            entries.add(index, entry);
+            entriesByPath.put(entry.getPath(), entry);
+            fireTableRowsInserted(index, index);
+            fireListEvent(ListDataEvent.INTERVAL_ADDED, index, index);
+        }
+    }
+
+    private void applyBulkChanges(Collection<DirectoryEntry> upserts, Collection<Path> removals) {
+        for (Path path : removals) {
+            entriesByPath.remove(path);
+        }
+        for (DirectoryEntry entry : upserts) {
+            if (entry.isHidden()) {
+                entriesByPath.remove(entry.getPath());
+            } else {
+                entriesByPath.put(entry.getPath(), entry);
+            }
+        }
+
+        int oldSize = entries.size();
+        ArrayList<DirectoryEntry> rebuilt = new ArrayList<>(entriesByPath.values());
+        rebuilt.sort(DirectoryEntry::compare);
+        entries = rebuilt;
+        fireTableDataChanged();
+        if (oldSize > 0) {
+            fireListEvent(ListDataEvent.INTERVAL_REMOVED, 0, oldSize - 1);
+        }
+        if (!rebuilt.isEmpty()) {
+            fireListEvent(ListDataEvent.INTERVAL_ADDED, 0, rebuilt.size() - 1);
+        }
+    }
+
+    private void removeEntry(Path path) {
+        DirectoryEntry existing = entriesByPath.remove(path);
+        if (existing == null) return;
+
+        int index = indexOf(existing);
+        if (index >= 0) {
+            entries.remove(index);
+            fireTableRowsDeleted(index, index);
+            fireListEvent(ListDataEvent.INTERVAL_REMOVED, index, index);
+        }
+    }
+
+    private int indexOf(DirectoryEntry entry) {
+        int index = Collections.binarySearch(entries, entry, DirectoryEntry::compare);
+        if (index >= 0 && entries.get(index) == entry) return index;
+        // 正常情况下二分查找即可命中，找不到时退回线性查找
+        return entries.indexOf(entry);
+    }
+
+    // 文件夹大小计算完成时逐行更新
+    void setFolderSize(Path directory, long bytes) {
+        folderSizes.put(directory, bytes);
+        DirectoryEntry entry = entriesByPath.get(directory);
+        if (entry == null) return;
+
+        int index = indexOf(entry);
+        if (index >= 0) {
+            fireTableCellUpdated(index, 2);
+        }
+    }
+
+    Long getFolderSize(Path directory) {
+        return folderSizes.get(directory);
+    }
+
+    DirectoryEntry getEntry(int index) {
+        return entries.get(index);
+    }
+
+    // ---- TableModel ----
+
+    @Override
+    public int getRowCount() {
+        return entries.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == 0) return Object.class;
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        DirectoryEntry entry = entries.get(row);
+        switch (column) {
+            case 0: return entry;
+            case 1: return entry.getTypeName();
+            case 2:
+                if (entry.isDirectory()) {
+                    Long folderSize = folderSizes.get(entry.getPath());
+                    return folderSize != null ? DirectoryEntry.formatFileSize(folderSize) : "";
+                }
+                return entry.getSizeText();
+            case 3: return entry.getModifiedText();
+            default: return null;
+        }
+    }
+
+    // ---- ListModel ----
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public DirectoryEntry getElementAt(int index) {
+        return entries.get(index);
+    }
+
+    @Override
+    public void addListDataListener(ListDataListener l) {
+        listenerList.add(ListDataListener.class, l);
+    }
+
+    @Override
+    public void removeListDataListener(ListDataListener l) {
+        listenerList.remove(ListDataListener.class, l);
+    }
+
+    private void fireListEvent(int type, int index0, int index1) {
+        Object[] listeners = listenerList.getListenerList();
+        ListDataEvent event = null;
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == ListDataListener.class) {
+                if (event == null) {
+                    event = new ListDataEvent(this, type, index0, index1);
+                }
+                ListDataListener listener = (ListDataListener) listeners[i + 1];
+                if (type == ListDataEvent.INTERVAL_ADDED) {
+                    listener.intervalAdded(event);
+                } else if (type == ListDataEvent.INTERVAL_REMOVED) {
+                    listener.intervalRemoved(event);
+                } else {
+                    listener.contentsChanged(event);
+                }
+            }
+        }
+    }
+}
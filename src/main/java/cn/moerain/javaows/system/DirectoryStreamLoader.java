@@ -0,0 +1,106 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 流式目录加载：边遍历边分批提交到 DirectoryListingModel，
+// 第一屏很快出现，全部读完后在后台线程排序再整体替换
+class DirectoryStreamLoader implements Runnable {
+    // 第一批尽量小，让第一屏尽快出现
+    private static final int FIRST_BATCH_SIZE = 128;
+    private static final int BATCH_SIZE = 4096;
+    private static final long BATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    interface Listener {
+        // 以下回调均在EDT中执行
+        void onProgress(int loaded);
+        void onComplete(int total, int statCalls);
+        void onError(String message);
+    }
+
+    private final Path directory;
+    private final DirectoryListingModel model;
+    private final int generation;
+    private final Listener listener;
+    private volatile boolean cancelled;
+
+    DirectoryStreamLoader(Path directory, DirectoryListingModel model, int generation, Listener listener) {
+        this.directory = directory;
+        this.model = model;
+        this.generation = generation;
+        this.listener = listener;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+        ArrayList<DirectoryEntry> all = new ArrayList<>();
+        List<DirectoryEntry> batch = new ArrayList<>(FIRST_BATCH_SIZE);
+        int batchLimit = FIRST_BATCH_SIZE;
+        long lastFlush = System.nanoTime();
+        DirectoryEntry.StatCounter statCounter = new DirectoryEntry.StatCounter();
+        Class<? extends BasicFileAttributes> attributesType = DirectoryEntry.attributesTypeFor(directory);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (cancelled) return;
+
+                // 每个条目只读取一次属性
+                DirectoryEntry entry = DirectoryEntry.read(path, attributesType, statCounter);
+                if (entry.isHidden()) continue;
+
+                all.add(entry);
+                batch.add(entry);
+
+                if (batch.size() >= batchLimit || System.nanoTime() - lastFlush >= BATCH_INTERVAL_NANOS) {
+                    publish(batch, all.size());
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    batchLimit = BATCH_SIZE;
+                    lastFlush = System.nanoTime();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            if (!cancelled) {
+                SwingUtilities.invokeLater(() -> {
+                    if (model.isCurrent(generation)) {
+                        listener.onError(e.getMessage());
+                    }
+                });
+            }
+            return;
+        }
+
+        if (cancelled) return;
+
+        // 排序：文件夹在前，然后按名称排序（在后台线程完成，不占用EDT）
+        all.sort(DirectoryEntry::compare);
+
+        int statCalls = statCounter.get();
+        SwingUtilities.invokeLater(() -> {
+            model.replaceAll(generation, all);
+            if (model.isCurrent(generation)) {
+                listener.onComplete(all.size(), statCalls);
+            }
+        });
+    }
+
+    private void publish(List<DirectoryEntry> batch, int loaded) {
+        SwingUtilities.invokeLater(() -> {
+            model.appendBatch(generation, batch);
+            if (model.isCurrent(generation)) {
+                listener.onProgress(loaded);
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// 基于 WatchService 的目录监视：把一帧（约16毫秒）内收到的所有事件合并成一批，
+// 在后台线程读取变化条目的属性后，一次性交给EDT应用增量更新
+class DirectoryWatcher {
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    // 一批变化中某个目录的增量
+    static class DirectoryChange {
+        final Path directory;
+        final List<DirectoryEntry> upserts = new ArrayList<>();
+        final List<Path> removals = new ArrayList<>();
+        // 事件丢失（OVERFLOW）时需要完整重新加载
+        boolean overflow;
+
+        DirectoryChange(Path directory) {
+            this.directory = directory;
+        }
+    }
+
+    interface Listener {
+        // 在EDT中调用，每帧最多一次
+        void onChanges(List<DirectoryChange> changes);
+    }
+
+    private static class Registration {
+        final WatchKey key;
+        final Class<? extends BasicFileAttributes> attributesType;
+        int references = 1;
+
+        Registration(WatchKey key, Class<? extends BasicFileAttributes> attributesType) {
+            this.key = key;
+            this.attributesType = attributesType;
+        }
+    }
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final Map<Path, Registration> registrations = new HashMap<>();
+    private final Thread watchThread;
+
+    DirectoryWatcher(Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        this.watchThread = new Thread(this::watchLoop, "Explorer-DirectoryWatcher");
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    // 同一目录可以被多处（当前目录、展开的树节点）引用，引用计数归零时才取消监视
+    synchronized void watch(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        Registration registration = registrations.get(dir);
+        if (registration != null) {
+            registration.references++;
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            registrations.put(dir, new Registration(key, DirectoryEntry.attributesTypeFor(dir)));
+        } catch (IOException | UnsupportedOperationException e) {
+            // 无法监视的目录（例如部分网络文件系统）只能手动刷新
+        }
+    }
+
+    synchronized void unwatch(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        Registration registration = registrations.get(dir);
+        if (registration != null && --registration.references <= 0) {
+            registration.key.cancel();
+            registrations.remove(dir);
+        }
+    }
+
+    private synchronized Class<? extends BasicFileAttributes> attributesTypeOf(Path dir) {
+        Registration registration = registrations.get(dir);
+        return registration != null ? registration.attributesType : null;
+    }
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+
+                // 收集一帧之内的所有事件，同一条目的多次变化只保留一次
+                Map<Path, Set<Path>> pending = new LinkedHashMap<>();
+                Set<Path> overflowed = new LinkedHashSet<>();
+                collect(key, pending, overflowed);
+
+                long deadline = System.nanoTime() + FRAME_NANOS;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key == null) break;
+                    collect(key, pending, overflowed);
+                }
+
+                List<DirectoryChange> changes = resolve(pending, overflowed);
+                if (!changes.isEmpty()) {
+                    SwingUtilities.invokeLater(() -> listener.onChanges(changes));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 监视服务已关闭
+        }
+    }
+
+    private void collect(WatchKey key, Map<Path, Set<Path>> pending, Set<Path> overflowed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(dir);
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            pending.computeIfAbsent(dir, d -> new LinkedHashSet<>()).add(child);
+        }
+        key.reset();
+    }
+
+    // 事件类型并不可靠（创建后立即删除等），因此以当前磁盘状态为准重新读取属性
+    private List<DirectoryChange> resolve(Map<Path, Set<Path>> pending, Set<Path> overflowed) {
+        List<DirectoryChange> changes = new ArrayList<>();
+        DirectoryEntry.StatCounter statCounter = new DirectoryEntry.StatCounter();
+
+        for (Path dir : overflowed) {
+            DirectoryChange change = new DirectoryChange(dir);
+            change.overflow = true;
+            changes.add(change);
+        }
+
+        for (Map.Entry<Path, Set<Path>> item : pending.entrySet()) {
+            Path dir = item.getKey();
+            if (overflowed.contains(dir)) continue;
+
+            Class<? extends BasicFileAttributes> attributesType = attributesTypeOf(dir);
+            if (attributesType == null) continue; // 已取消监视
+
+            DirectoryChange change = new DirectoryChange(dir);
+            for (Path child : item.getValue()) {
+                DirectoryEntry entry = DirectoryEntry.read(child, attributesType, statCounter);
+                if (entry.exists()) {
+                    change.upserts.add(entry);
+                } else {
+                    change.removals.add(child);
+                }
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,227 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// 磁盘占用图：用 squarified treemap 算法把当前目录的各项按大小铺满整个区域，
+// 尽量让每个矩形接近正方形；文件夹大小陆续算出时实时重排
+class DiskUsageTreemap extends JComponent {
+    private static final Color FILE_COLOR = new Color(200, 200, 200);
+    private static final Color[] FOLDER_COLORS = {
+        new Color(100, 149, 237), new Color(60, 179, 113), new Color(238, 180, 34),
+        new Color(205, 92, 92), new Color(147, 112, 219), new Color(64, 180, 200)
+    };
+
+    private static class Item {
+        final Path path;
+        final String name;
+        final boolean directory;
+        long size;
+
+        Item(Path path, String name, boolean directory, long size) {
+            this.path = path;
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+        }
+    }
+
+    private final List<Item> items = new ArrayList<>();
+    private final Map<Path, Item> itemsByPath = new HashMap<>();
+    private Rectangle2D[] rectangles = new Rectangle2D[0];
+    private List<Item> laidOut = new ArrayList<>();
+    private boolean layoutDirty = true;
+    private Dimension layoutSize;
+
+    DiskUsageTreemap(Consumer<Path> openDirectory) {
+        setPreferredSize(new Dimension(800, 600));
+        setToolTipText("");
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    Item item = itemAt(e.getPoint());
+                    if (item != null && item.directory) {
+                        openDirectory.accept(item.path);
+                    }
+                }
+            }
+        });
+    }
+
+    // 文件夹的大小未知时传入 -1，等计算完成后再用 setItemSize 更新
+    void setEntries(List<DirectoryEntry> entries) {
+        items.clear();
+        itemsByPath.clear();
+        for (DirectoryEntry entry : entries) {
+            Item item = new Item(entry.getPath(), entry.getName(), entry.isDirectory(), entry.isDirectory() ? -1 : entry.getSize());
+            items.add(item);
+            itemsByPath.put(item.path, item);
+        }
+        invalidateLayout();
+    }
+
+    void setItemSize(Path path, long size) {
+        Item item = itemsByPath.get(path);
+        if (item != null) {
+            item.size = size;
+            invalidateLayout();
+        }
+    }
+
+    int getPendingCount() {
+        int pending = 0;
+        for (Item item : items) {
+            if (item.size < 0) pending++;
+        }
+        return pending;
+    }
+
+    long getTotalSize() {
+        long total = 0;
+        for (Item item : items) {
+            if (item.size > 0) total += item.size;
+        }
+        return total;
+    }
+
+    private void invalidateLayout() {
+        layoutDirty = true;
+        repaint();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        Item item = itemAt(e.getPoint());
+        if (item == null) return null;
+        long total = getTotalSize();
+        return String.format("%s - %s (%.1f%%)", item.name, DirectoryEntry.formatFileSize(item.size),
+            total > 0 ? item.size * 100.0 / total : 0);
+    }
+
+    private Item itemAt(Point point) {
+        for (int i = 0; i < rectangles.length; i++) {
+            if (rectangles[i].contains(point)) return laidOut.get(i);
+        }
+        return null;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (layoutDirty || !getSize().equals(layoutSize)) {
+            layout(getWidth(), getHeight());
+        }
+
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setColor(getBackground() != null ? getBackground() : Color.WHITE);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+
+        FontMetrics metrics = g2d.getFontMetrics();
+        for (int i = 0; i < rectangles.length; i++) {
+            Item item = laidOut.get(i);
+            Rectangle r = rectangles[i].getBounds();
+            g2d.setColor(item.directory ? FOLDER_COLORS[Math.floorMod(item.name.hashCode(), FOLDER_COLORS.length)] : FILE_COLOR);
+            g2d.fillRect(r.x, r.y, r.width, r.height);
+            g2d.setColor(Color.DARK_GRAY);
+            g2d.drawRect(r.x, r.y, r.width, r.height);
+
+            // 放得下时显示名称和大小
+            int lineHeight = metrics.getHeight();
+            if (r.width > 40 && r.height > lineHeight * 2 + 4) {
+                Shape oldClip = g2d.getClip();
+                g2d.clipRect(r.x + 2, r.y + 2, r.width - 4, r.height - 4);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString(item.name, r.x + 4, r.y + 2 + metrics.getAscent());
+                g2d.drawString(DirectoryEntry.formatFileSize(item.size), r.x + 4, r.y + 2 + lineHeight + metrics.getAscent());
+                g2d.setClip(oldClip);
+            }
+        }
+        g2d.dispose();
+    }
+
+    // ---- squarified 布局 ----
+
+    private void layout(int width, int height) {
+        layoutDirty = false;
+        layoutSize = getSize();
+
+        List<Item> sorted = new ArrayList<>();
+        for (Item item : items) {
+            if (item.size > 0) sorted.add(item);
+        }
+        sorted.sort((a, b) -> Long.compare(b.size, a.size));
+        laidOut = sorted;
+        rectangles = new Rectangle2D[sorted.size()];
+
+        long total = 0;
+        for (Item item : sorted) total += item.size;
+        if (total == 0 || width <= 0 || height <= 0) return;
+
+        double[] areas = new double[sorted.size()];
+        double scale = (double) width * height / total;
+        for (int i = 0; i < areas.length; i++) {
+            areas[i] = sorted.get(i).size * scale;
+        }
+
+        double x = 0, y = 0, w = width, h = height;
+        int start = 0;
+        while (start < areas.length) {
+            double side = Math.min(w, h);
+
+            // 逐个加入当前行，直到最差长宽比开始变差
+            int end = start + 1;
+            double rowArea = areas[start];
+            double worst = worstRatio(areas, start, end, rowArea, side);
+            while (end < areas.length) {
+                double nextWorst = worstRatio(areas, start, end + 1, rowArea + areas[end], side);
+                if (nextWorst > worst) break;
+                rowArea += areas[end];
+                worst = nextWorst;
+                end++;
+            }
+
+            // 沿短边排列这一行
+            if (w >= h) {
+                double thickness = rowArea / h;
+                double offset = y;
+                for (int i = start; i < end; i++) {
+                    double length = areas[i] / thickness;
+                    rectangles[i] = new Rectangle2D.Double(x, offset, thickness, length);
+                    offset += length;
+                }
+                x += thickness;
+                w -= thickness;
+            } else {
+                double thickness = rowArea / w;
+                double offset = x;
+                for (int i = start; i < end; i++) {
+                    double length = areas[i] / thickness;
+                    rectangles[i] = new Rectangle2D.Double(offset, y, length, thickness);
+                    offset += length;
+                }
+                y += thickness;
+                h -= thickness;
+            }
+            start = end;
+        }
+    }
+
+    // 一行矩形中最差的长宽比
+    private static double worstRatio(double[] areas, int start, int end, double rowArea, double side) {
+        double max = areas[start];
+        double min = areas[end - 1];
+        double sideSquared = side * side;
+        double rowSquared = rowArea * rowArea;
+        return Math.max(sideSquared * max / rowSquared, rowSquared / (sideSquared * min));
+    }
+}
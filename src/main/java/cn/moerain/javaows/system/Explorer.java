@@ -1,10 +1,10 @@
 package cn.moerain.javaows.system;
 
+import cn.moerain.javaows.misc.FileTypeRegistry;
+import cn.moerain.javaows.misc.NamedThreadFactory;
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -13,19 +13,18 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
 import java.nio.file.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import javax.swing.Timer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class Explorer extends JFrame {
     private JTree directoryTree;
     private JTable fileTable;
-    private JList<FileItem> fileList;
-    private DefaultTableModel tableModel;
-    private DefaultListModel<FileItem> listModel;
-    private DefaultTreeModel treeModel;
+    private JList<DirectoryEntry> fileList;
+    private DirectoryListingModel listingModel;
+    private LazyDirectoryTreeModel treeModel;
     private JLabel statusLabel;
     private JTextField pathField;
     private JButton backButton;
@@ -40,7 +39,46 @@ public class Explorer extends JFrame {
     private Stack<String> backHistory = new Stack<>();
     private Stack<String> forwardHistory = new Stack<>();
     private String currentPath;
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Explorer-Loader"));
+    private DirectoryStreamLoader currentLoader;
+
+    // 目录监视：当前目录和展开的树节点
+    private DirectoryWatcher directoryWatcher;
+    private Path watchedCurrentDirectory;
+    private Map<Path, LazyDirectoryTreeModel.DirectoryTreeNode> watchedTreeNodes = new HashMap<>();
+    private boolean reloadAfterLoad = false;
+
+    // 文件索引与搜索
+    private static final int SEARCH_RESULT_LIMIT = 1000;
+    private volatile FileIndex fileIndex;
+    private FileIndexer runningIndexer;
+    private ExecutorService searchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Explorer-Search"));
+    private JTextField searchField;
+    private Timer searchTimer;
+    private JDialog searchDialog;
+    private DefaultListModel<String> searchResultModel;
+    private JLabel searchStatusLabel;
+
+    // 图标视图的缩略图
+    private static final int THUMBNAIL_SIZE = 64;
+    private ThumbnailCache thumbnailCache;
+
+    // 文件夹大小与磁盘占用图
+    private FolderSizeCalculator folderSizeCalculator = new FolderSizeCalculator();
+    // 文件类型图标已登记到注册表，只在 EDT 中访问
+    private static boolean fileIconsRegistered;
+    private boolean calculateFolderSizes = false;
+    private int pendingFolderSizes;
+    private JDialog diskUsageDialog;
+    private DiskUsageTreemap diskUsageTreemap;
+    private JLabel diskUsageStatusLabel;
+
+    // 复制/剪切的文件和正在进行的传输
+    private List<Path> clipboardPaths = new ArrayList<>();
+    private boolean clipboardCut = false;
+    private ExecutorService transferExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("Explorer-Transfer"));
+    private List<FileTransferEngine> runningTransfers = new ArrayList<>();
+    private List<FileDeleteEngine> runningDeletes = new ArrayList<>();
 
     // 视图模式：true=列表视图，false=图标视图
     private boolean isListView = true;
@@ -58,8 +96,10 @@ public class Explorer extends JFrame {
         }
 
         initializeFileIcons();
+        initializeDirectoryWatcher();
         setupUI();
         initializeDefaultPath();
+        loadFileIndex();
     }
 
     private void initializeFileIcons() {
@@ -84,6 +124,32 @@ public class Explorer extends JFrame {
         largeFileIcons.put("image", createImageIcon(48, 48));
         largeFileIcons.put("doc", createFileIcon(48, 48, Color.BLUE));
         largeFileIcons.put("zip", createFileIcon(48, 48, Color.MAGENTA));
+
+        // 把图标登记到文件类型注册表，有专用图标的后缀优先，其余按类别。
+        // 注册表是全局的，只在第一个资源管理器窗口创建时登记一次
+        if (fileIconsRegistered) return;
+        fileIconsRegistered = true;
+        List<FileTypeRegistry.FileType> withIcons = new ArrayList<>();
+        for (FileTypeRegistry.FileType type : FileTypeRegistry.all()) {
+            String key = getIconKey(type);
+            if (key != null) {
+                withIcons.add(type.withIcons(fileIcons.get(key), largeFileIcons.get(key)));
+            }
+        }
+        FileTypeRegistry.register(withIcons.toArray(new FileTypeRegistry.FileType[0]));
+    }
+
+    private String getIconKey(FileTypeRegistry.FileType type) {
+        String extension = type.getExtensions()[0];
+        if (fileIcons.containsKey(extension)) {
+            return extension;
+        }
+        switch (type.getCategory()) {
+            case IMAGE: return "image";
+            case DOCUMENT: return "doc";
+            case ARCHIVE: return "zip";
+            default: return null;
+        }
     }
 
     private Icon createColoredIcon(Color color, int width, int height) {
@@ -244,6 +310,13 @@ public class Explorer extends JFrame {
         deleteItem.setAccelerator(KeyStroke.getKeyStroke("DELETE"));
         deleteItem.addActionListener(e -> deleteSelectedItems());
 
+        JMenuItem permanentDeleteItem = new JMenuItem("永久删除");
+        permanentDeleteItem.setAccelerator(KeyStroke.getKeyStroke("shift DELETE"));
+        permanentDeleteItem.addActionListener(e -> deleteSelectedItems(true));
+
+        JMenuItem buildIndexItem = new JMenuItem("建立文件索引...");
+        buildIndexItem.addActionListener(e -> buildFileIndex());
+
         JMenuItem exitItem = new JMenuItem("退出");
         exitItem.addActionListener(e -> System.exit(0));
 
@@ -251,6 +324,9 @@ public class Explorer extends JFrame {
         fileMenu.add(newFileItem);
         fileMenu.addSeparator();
         fileMenu.add(deleteItem);
+        fileMenu.add(permanentDeleteItem);
+        fileMenu.addSeparator();
+        fileMenu.add(buildIndexItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
 
@@ -262,18 +338,28 @@ public class Explorer extends JFrame {
         copyItem.setAccelerator(KeyStroke.getKeyStroke("ctrl C"));
         copyItem.addActionListener(e -> copySelectedItems());
 
+        JMenuItem cutItem = new JMenuItem("剪切");
+        cutItem.setAccelerator(KeyStroke.getKeyStroke("ctrl X"));
+        cutItem.addActionListener(e -> cutSelectedItems());
+
         JMenuItem pasteItem = new JMenuItem("粘贴");
         pasteItem.setAccelerator(KeyStroke.getKeyStroke("ctrl V"));
         pasteItem.addActionListener(e -> pasteItems());
 
+        JMenuItem resumeItem = new JMenuItem("继续未完成的传输...");
+        resumeItem.addActionListener(e -> resumeTransfers());
+
         JMenuItem renameItem = new JMenuItem("重命名");
         renameItem.setAccelerator(KeyStroke.getKeyStroke("F2"));
         renameItem.addActionListener(e -> renameSelectedItem());
 
+        editMenu.add(cutItem);
         editMenu.add(copyItem);
         editMenu.add(pasteItem);
         editMenu.addSeparator();
         editMenu.add(renameItem);
+        editMenu.addSeparator();
+        editMenu.add(resumeItem);
 
         // 查看菜单
         JMenu viewMenu = new JMenu("查看(V)");
@@ -287,14 +373,30 @@ public class Explorer extends JFrame {
 
         JMenuItem refreshItem = new JMenuItem("刷新");
         refreshItem.setAccelerator(KeyStroke.getKeyStroke("F5"));
-        refreshItem.addActionListener(e -> refreshCurrentDirectory());
+        refreshItem.addActionListener(e -> refreshCurrentTree());
 
         JMenuItem propertiesItem = new JMenuItem("属性");
         propertiesItem.addActionListener(e -> showProperties());
 
+        JCheckBoxMenuItem folderSizesItem = new JCheckBoxMenuItem("计算文件夹大小");
+        folderSizesItem.addActionListener(e -> {
+            calculateFolderSizes = folderSizesItem.isSelected();
+            if (calculateFolderSizes) {
+                startFolderSizeCalculation();
+            } else {
+                folderSizeCalculator.cancel();
+            }
+        });
+
+        JMenuItem diskUsageItem = new JMenuItem("磁盘占用图");
+        diskUsageItem.addActionListener(e -> showDiskUsage());
+
         viewMenu.add(listViewItem);
         viewMenu.add(iconViewItem);
         viewMenu.addSeparator();
+        viewMenu.add(folderSizesItem);
+        viewMenu.add(diskUsageItem);
+        viewMenu.addSeparator();
         viewMenu.add(refreshItem);
         viewMenu.addSeparator();
         viewMenu.add(propertiesItem);
@@ -327,7 +429,7 @@ public class Explorer extends JFrame {
 
         refreshButton = new JButton("刷新");
         refreshButton.setToolTipText("刷新");
-        refreshButton.addActionListener(e -> refreshCurrentDirectory());
+        refreshButton.addActionListener(e -> refreshCurrentTree());
 
         // 视图切换按钮
         viewModeButton = new JButton("图标");
@@ -338,6 +440,27 @@ public class Explorer extends JFrame {
         pathField = new JTextField();
         pathField.addActionListener(e -> navigateToPath(pathField.getText()));
 
+        // 搜索框：输入停顿后在索引中查询
+        searchField = new JTextField(15);
+        searchField.setMaximumSize(new Dimension(200, searchField.getPreferredSize().height));
+        searchField.setToolTipText("按名称搜索已索引的文件，支持 * 和 ? 通配符");
+        searchTimer = new Timer(150, e -> searchFileIndex(searchField.getText()));
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+        });
+        searchField.addActionListener(e -> {
+            searchTimer.stop();
+            searchFileIndex(searchField.getText());
+        });
+
         toolBar.add(backButton);
         toolBar.add(forwardButton);
         toolBar.add(upButton);
@@ -347,6 +470,9 @@ public class Explorer extends JFrame {
         toolBar.addSeparator();
         toolBar.add(new JLabel("地址: "));
         toolBar.add(pathField);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("搜索: "));
+        toolBar.add(searchField);
 
         add(toolBar, BorderLayout.NORTH);
     }
@@ -382,6 +508,8 @@ public class Explorer extends JFrame {
         // 创建图标视图
         createFileList();
         JScrollPane listScrollPane = new JScrollPane(fileList);
+        // 滚动后丢弃已经不可见的缩略图请求
+        listScrollPane.getViewport().addChangeListener(e -> retainVisibleThumbnails());
         rightPanel.add(listScrollPane, "ICON");
 
         // 默认显示列表视图
@@ -390,17 +518,15 @@ public class Explorer extends JFrame {
 
     private void createDirectoryTree() {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("计算机");
-        treeModel = new DefaultTreeModel(root);
+        treeModel = new LazyDirectoryTreeModel(root);
         directoryTree = new JTree(treeModel);
         directoryTree.setRootVisible(true);
         directoryTree.setShowsRootHandles(true);
 
-        // 添加系统根目录
+        // 添加系统根目录，子目录在展开时才加载
         File[] roots = File.listRoots();
         for (File rootFile : roots) {
-            DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(rootFile.getAbsolutePath());
-            root.add(rootNode);
-            loadDirectoryIntoTree(rootNode, rootFile, 1);
+            root.add(new LazyDirectoryTreeModel.DirectoryTreeNode(normalize(rootFile.toPath()), rootFile.getAbsolutePath()));
         }
 
         // 展开根节点
@@ -409,12 +535,10 @@ public class Explorer extends JFrame {
         // 添加选择监听器
         directoryTree.addTreeSelectionListener(e -> {
             TreePath path = e.getPath();
-            if (path != null) {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-                if (!node.isRoot()) {
-                    String dirPath = buildPathFromNode(node);
-                    navigateToDirectory(dirPath);
-                }
+            if (path != null && path.getLastPathComponent() instanceof LazyDirectoryTreeModel.DirectoryTreeNode) {
+                LazyDirectoryTreeModel.DirectoryTreeNode node =
+                    (LazyDirectoryTreeModel.DirectoryTreeNode) path.getLastPathComponent();
+                navigateToDirectory(node.getDirectory().toString());
             }
         });
 
@@ -422,93 +546,31 @@ public class Explorer extends JFrame {
         directoryTree.addTreeExpansionListener(new javax.swing.event.TreeExpansionListener() {
             @Override
             public void treeExpanded(javax.swing.event.TreeExpansionEvent event) {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
-                if (!node.isRoot()) {
-                    String dirPath = buildPathFromNode(node);
-                    File dir = new File(dirPath);
-                    if (dir.exists() && dir.isDirectory()) {
-                        loadDirectoryIntoTree(node, dir, 1);
-                    }
+                Object last = event.getPath().getLastPathComponent();
+                if (last instanceof LazyDirectoryTreeModel.DirectoryTreeNode) {
+                    LazyDirectoryTreeModel.DirectoryTreeNode node = (LazyDirectoryTreeModel.DirectoryTreeNode) last;
+                    treeModel.expand(node);
+                    watchTreeNode(node);
                 }
             }
 
             @Override
             public void treeCollapsed(javax.swing.event.TreeExpansionEvent event) {
-                // 可以在这里添加折叠时的处理逻辑
-            }
-        });
-    }
-
-    private void loadDirectoryIntoTree(DefaultMutableTreeNode parentNode, File directory, int depth) {
-        if (depth <= 0) return;
-
-        // 清除现有子节点
-        parentNode.removeAllChildren();
-
-        executor.submit(() -> {
-            try {
-                File[] files = directory.listFiles();
-                if (files != null) {
-                    List<DefaultMutableTreeNode> childNodes = new ArrayList<>();
-
-                    for (File file : files) {
-                        if (file.isDirectory() && !file.isHidden()) {
-                            DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(file.getName());
-                            childNodes.add(childNode);
-
-                            // 递归加载子目录
-                            if (depth > 1) {
-                                loadDirectoryIntoTree(childNode, file, depth - 1);
-                            }
-                        }
-                    }
-
-                    // 在EDT中更新UI
-                    SwingUtilities.invokeLater(() -> {
-                        for (DefaultMutableTreeNode child : childNodes) {
-                            parentNode.add(child);
-                        }
-                        treeModel.nodeStructureChanged(parentNode);
-                    });
+                Object last = event.getPath().getLastPathComponent();
+                if (last instanceof LazyDirectoryTreeModel.DirectoryTreeNode) {
+                    LazyDirectoryTreeModel.DirectoryTreeNode node = (LazyDirectoryTreeModel.DirectoryTreeNode) last;
+                    treeModel.collapse(node);
+                    unwatchTreeNodes(node.getDirectory());
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
         });
     }
 
-    private String buildPathFromNode(DefaultMutableTreeNode node) {
-        StringBuilder path = new StringBuilder();
-        TreePath treePath = new TreePath(node.getPath());
-
-        for (int i = 1; i < treePath.getPathCount(); i++) {
-            DefaultMutableTreeNode pathNode = (DefaultMutableTreeNode) treePath.getPathComponent(i);
-            if (i == 1) {
-                path.append(pathNode.getUserObject().toString());
-            } else {
-                path.append(File.separator).append(pathNode.getUserObject().toString());
-            }
-        }
-
-        return path.toString();
-    }
-
     private void createFileTable() {
-        String[] columnNames = {"名称", "类型", "大小", "修改时间"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-
-            @Override
-            public Class<?> getColumnClass(int column) {
-                if (column == 0) return Object.class;
-                return String.class;
-            }
-        };
+        // 表格视图和图标视图共用同一个虚拟化模型
+        listingModel = new DirectoryListingModel();
 
-        fileTable = new JTable(tableModel);
+        fileTable = new JTable(listingModel);
         fileTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         fileTable.setRowHeight(20);
         fileTable.getTableHeader().setReorderingAllowed(false);
@@ -548,14 +610,19 @@ public class Explorer extends JFrame {
     }
 
     private void createFileList() {
-        listModel = new DefaultListModel<>();
-        fileList = new JList<>(listModel);
+        fileList = new JList<>(listingModel);
         fileList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         fileList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
         fileList.setVisibleRowCount(-1);
         fileList.setCellRenderer(new FileIconCellRenderer());
-        fileList.setFixedCellWidth(80);
-        fileList.setFixedCellHeight(80);
+        fileList.setFixedCellWidth(96);
+        fileList.setFixedCellHeight(96);
+
+        thumbnailCache = new ThumbnailCache(THUMBNAIL_SIZE, path -> {
+            if (!isListView) {
+                fileList.repaint();
+            }
+        });
 
         // 添加双击监听器
         fileList.addMouseListener(new MouseAdapter() {
@@ -607,142 +674,406 @@ public class Explorer extends JFrame {
 
     private void loadDirectoryContents(String path) {
         statusLabel.setText("正在加载...");
-        tableModel.setRowCount(0);
-        listModel.clear();
 
-        executor.submit(() -> {
-            try {
-                File directory = new File(path);
-                if (!directory.exists() || !directory.isDirectory()) {
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("无效的目录: " + path);
-                    });
-                    return;
+        // 取消上一次尚未完成的加载
+        if (currentLoader != null) {
+            currentLoader.cancel();
+        }
+        int generation = listingModel.beginLoad();
+        folderSizeCalculator.cancel();
+
+        reloadAfterLoad = false;
+
+        File directory = new File(path);
+        if (!directory.isDirectory()) {
+            statusLabel.setText("无效的目录: " + path);
+            return;
+        }
+
+        Path directoryPath = normalize(directory.toPath());
+        watchCurrentDirectory(directoryPath);
+        // 离开的目录树分支不再需要加载；已展开但还没加载完的节点折叠起来，否则会一直显示“正在加载...”
+        for (LazyDirectoryTreeModel.DirectoryTreeNode node : treeModel.cancelLoadsOutside(directoryPath)) {
+            directoryTree.collapsePath(new TreePath(node.getPath()));
+        }
+
+        currentLoader = new DirectoryStreamLoader(directoryPath, listingModel, generation,
+            new DirectoryStreamLoader.Listener() {
+                @Override
+                public void onProgress(int loaded) {
+                    statusLabel.setText(String.format("正在加载... %d 个项目", loaded));
                 }
 
-                File[] files = directory.listFiles();
-                if (files == null) {
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("无法访问目录: " + path);
-                    });
-                    return;
+                @Override
+                public void onComplete(int total, int statCalls) {
+                    statusLabel.setText(String.format("就绪 - %d 个项目 | stat 调用: %d 次", total, statCalls));
+                    // 加载期间目录发生了变化，加载完成后再补一次
+                    if (reloadAfterLoad) {
+                        refreshCurrentDirectory();
+                        return;
+                    }
+                    if (diskUsageDialog != null && diskUsageDialog.isVisible()) {
+                        updateDiskUsage();
+                    } else if (calculateFolderSizes) {
+                        startFolderSizeCalculation();
+                    }
                 }
 
-                // 排序：文件夹在前，然后按名称排序
-                Arrays.sort(files, (f1, f2) -> {
-                    if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                    if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                    return f1.getName().compareToIgnoreCase(f2.getName());
-                });
+                @Override
+                public void onError(String message) {
+                    statusLabel.setText("无法访问目录: " + path + (message != null ? " (" + message + ")" : ""));
+                }
+            });
+        executor.submit(currentLoader);
+    }
 
-                List<Object[]> tableRows = new ArrayList<>();
-                List<FileItem> listItems = new ArrayList<>();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // 目录监视方法
+    private void initializeDirectoryWatcher() {
+        try {
+            directoryWatcher = new DirectoryWatcher(this::applyDirectoryChanges);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 不支持监视时只能手动刷新
+            e.printStackTrace();
+        }
+    }
 
-                for (File file : files) {
-                    if (file.isHidden()) continue;
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
 
-                    String name = file.getName();
-                    String type = file.isDirectory() ? "文件夹" : getFileType(file);
-                    String size = file.isDirectory() ? "" : formatFileSize(file.length());
-                    String modifiedTime = dateFormat.format(new Date(file.lastModified()));
+    private void watchCurrentDirectory(Path directory) {
+        if (directoryWatcher == null || directory.equals(watchedCurrentDirectory)) return;
 
-                    // 为表格视图创建数据
-                    Icon smallIcon = getFileIcon(file, false);
-                    FileNameWithIcon nameWithIcon = new FileNameWithIcon(name, smallIcon);
-                    tableRows.add(new Object[]{nameWithIcon, type, size, modifiedTime});
+        if (watchedCurrentDirectory != null) {
+            directoryWatcher.unwatch(watchedCurrentDirectory);
+        }
+        directoryWatcher.watch(directory);
+        watchedCurrentDirectory = directory;
+    }
 
-                    // 为图标视图创建数据
-                    Icon largeIcon = getFileIcon(file, true);
-                    FileItem fileItem = new FileItem(file, name, largeIcon);
-                    listItems.add(fileItem);
-                }
+    private void watchTreeNode(LazyDirectoryTreeModel.DirectoryTreeNode node) {
+        Path dir = node.getDirectory();
+        if (directoryWatcher == null || watchedTreeNodes.containsKey(dir)) return;
 
-                SwingUtilities.invokeLater(() -> {
-                    // 更新表格视图
-                    for (Object[] row : tableRows) {
-                        tableModel.addRow(row);
-                    }
+        directoryWatcher.watch(dir);
+        watchedTreeNodes.put(dir, node);
+    }
 
-                    // 更新图标视图
-                    for (FileItem item : listItems) {
-                        listModel.addElement(item);
-                    }
+    // 折叠节点时同时取消其下所有已展开子节点的监视
+    private void unwatchTreeNodes(Path directory) {
+        if (directoryWatcher == null) return;
 
-                    statusLabel.setText(String.format("就绪 - %d 个项目", tableRows.size()));
-                });
+        Iterator<Path> iterator = watchedTreeNodes.keySet().iterator();
+        while (iterator.hasNext()) {
+            Path dir = iterator.next();
+            if (dir.startsWith(directory)) {
+                directoryWatcher.unwatch(dir);
+                iterator.remove();
+            }
+        }
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    statusLabel.setText("加载失败: " + e.getMessage());
-                });
+    // 每帧最多调用一次，把合并后的变化应用到表格、图标视图和目录树
+    private void applyDirectoryChanges(List<DirectoryWatcher.DirectoryChange> changes) {
+        for (DirectoryWatcher.DirectoryChange change : changes) {
+            if (change.directory.equals(watchedCurrentDirectory)) {
+                if (change.overflow) {
+                    refreshCurrentTree();
+                } else if (!listingModel.isLoaded()) {
+                    reloadAfterLoad = true;
+                } else {
+                    listingModel.applyChanges(change.upserts, change.removals);
+                    statusLabel.setText(String.format("就绪 - %d 个项目", listingModel.getRowCount()));
+                }
             }
-        });
+
+            LazyDirectoryTreeModel.DirectoryTreeNode treeNode = watchedTreeNodes.get(change.directory);
+            if (treeNode != null) {
+                if (change.overflow) {
+                    treeModel.reload(treeNode);
+                } else {
+                    applyTreeChanges(treeNode, change);
+                }
+            }
+        }
     }
 
-    private Icon getFileIcon(File file, boolean large) {
-        Map<String, Icon> icons = large ? largeFileIcons : fileIcons;
+    private void applyTreeChanges(LazyDirectoryTreeModel.DirectoryTreeNode parentNode, DirectoryWatcher.DirectoryChange change) {
+        // 被删除或不再显示的子目录同时取消监视
+        for (Path removed : change.removals) {
+            unwatchTreeNodes(removed);
+        }
+        for (DirectoryEntry entry : change.upserts) {
+            if (!entry.isDirectory() || entry.isHidden()) {
+                unwatchTreeNodes(entry.getPath());
+            }
+        }
+        treeModel.applyChanges(parentNode, change);
+    }
 
-        if (file.isDirectory()) {
-            return icons.get("folder");
+    // 本地的新建、重命名、删除操作直接应用增量，不必等待监视事件，也不再整体重新加载
+    private void applyLocalChanges(File... changedFiles) {
+        if (currentPath == null) return;
+
+        Path directory = normalize(new File(currentPath).toPath());
+        DirectoryWatcher.DirectoryChange change = new DirectoryWatcher.DirectoryChange(directory);
+        for (File file : changedFiles) {
+            DirectoryEntry entry = DirectoryEntry.read(normalize(file.toPath()));
+            if (entry.exists()) {
+                change.upserts.add(entry);
+            } else {
+                change.removals.add(entry.getPath());
+            }
         }
 
-        String extension = getFileExtension(file.getName()).toLowerCase();
-        if (icons.containsKey(extension)) {
-            return icons.get(extension);
+        if (!listingModel.isLoaded()) {
+            refreshCurrentDirectory();
+            return;
+        }
+        listingModel.applyChanges(change.upserts, change.removals);
+        LazyDirectoryTreeModel.DirectoryTreeNode treeNode = watchedTreeNodes.get(directory);
+        if (treeNode != null) {
+            applyTreeChanges(treeNode, change);
         }
+    }
 
-        if (isImageFile(extension)) {
-            return icons.get("image");
+    // 文件索引方法
+    private void loadFileIndex() {
+        searchExecutor.submit(() -> {
+            Path directory = FileIndex.defaultDirectory();
+            Path indexFile = FileIndex.latestFile(directory);
+            if (indexFile == null) return;
+            try {
+                fileIndex = FileIndex.open(indexFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            // 上次运行时仍被映射的旧索引现在可以删除
+            FileIndex.deleteStaleFiles(directory);
+        });
+    }
+
+    private void buildFileIndex() {
+        if (runningIndexer != null) {
+            int result = JOptionPane.showConfirmDialog(this, "正在建立索引，是否取消？", "文件索引", JOptionPane.YES_NO_OPTION);
+            if (result == JOptionPane.YES_OPTION) {
+                runningIndexer.cancel();
+            }
+            return;
         }
 
-        if (isDocumentFile(extension)) {
-            return icons.get("doc");
+        JFileChooser chooser = new JFileChooser(currentPath);
+        chooser.setDialogTitle("选择要建立索引的目录");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setMultiSelectionEnabled(true);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        List<Path> roots = new ArrayList<>();
+        for (File file : chooser.getSelectedFiles()) {
+            roots.add(file.toPath());
         }
+        if (roots.isEmpty()) {
+            roots.add(chooser.getSelectedFile().toPath());
+        }
+
+        FileIndexer indexer = new FileIndexer(roots);
+        runningIndexer = indexer;
+        long startTime = System.currentTimeMillis();
 
-        if (isArchiveFile(extension)) {
-            return icons.get("zip");
+        Timer progressTimer = new Timer(200, e ->
+            statusLabel.setText(String.format("正在建立索引... 已扫描 %d 个项目", indexer.getScannedCount())));
+        progressTimer.start();
+
+        Thread indexThread = new Thread(() -> {
+            try {
+                FileIndex index = indexer.build(FileIndex.defaultDirectory());
+                SwingUtilities.invokeLater(() -> {
+                    progressTimer.stop();
+                    runningIndexer = null;
+                    if (index == null) {
+                        statusLabel.setText("已取消建立索引");
+                        return;
+                    }
+                    fileIndex = index;
+                    // 旧索引不再被引用；在 Windows 上映射释放前删不掉，留到下次启动
+                    searchExecutor.submit(() -> FileIndex.deleteStaleFiles(FileIndex.defaultDirectory()));
+                    statusLabel.setText(String.format("索引完成 - %d 个项目，用时 %.1f 秒",
+                        index.getNodeCount(), (System.currentTimeMillis() - startTime) / 1000.0));
+                });
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    progressTimer.stop();
+                    runningIndexer = null;
+                    statusLabel.setText("建立索引失败: " + e.getMessage());
+                });
+            }
+        }, "Explorer-FileIndexer");
+        indexThread.setDaemon(true);
+        indexThread.start();
+    }
+
+    private void searchFileIndex(String query) {
+        if (query.trim().isEmpty()) return;
+
+        FileIndex index = fileIndex;
+        if (index == null) {
+            statusLabel.setText("尚未建立文件索引，请通过 文件 > 建立文件索引 创建");
+            return;
         }
 
-        return icons.get("file");
+        searchExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<String> results = index.search(query, SEARCH_RESULT_LIMIT);
+            double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+            SwingUtilities.invokeLater(() -> {
+                // 输入已变化时丢弃过期结果
+                if (query.equals(searchField.getText())) {
+                    showSearchResults(query, results, elapsedMillis);
+                }
+            });
+        });
     }
 
-    private String getFileType(File file) {
-        if (file.isDirectory()) {
-            return "文件夹";
+    private void showSearchResults(String query, List<String> results, double elapsedMillis) {
+        if (searchDialog == null) {
+            searchDialog = new JDialog(this, "搜索结果", false);
+            searchDialog.setSize(600, 400);
+            searchDialog.setLocationRelativeTo(this);
+            searchDialog.setLayout(new BorderLayout());
+            // 结果在输入停顿后自动刷新，弹出时不能抢走搜索框的焦点
+            searchDialog.setAutoRequestFocus(false);
+
+            searchResultModel = new DefaultListModel<>();
+            JList<String> resultList = new JList<>(searchResultModel);
+            resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            resultList.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2 && resultList.getSelectedValue() != null) {
+                        navigateToPath(resultList.getSelectedValue());
+                    }
+                }
+            });
+
+            searchStatusLabel = new JLabel();
+            searchStatusLabel.setBorder(BorderFactory.createLoweredBevelBorder());
+
+            searchDialog.add(new JScrollPane(resultList), BorderLayout.CENTER);
+            searchDialog.add(searchStatusLabel, BorderLayout.SOUTH);
         }
 
-        String extension = getFileExtension(file.getName());
-        if (extension.isEmpty()) {
-            return "文件";
+        searchResultModel.clear();
+        searchResultModel.addAll(results);
+        searchStatusLabel.setText(String.format("\"%s\" - %d 个结果%s，用时 %.1f 毫秒", query, results.size(),
+            results.size() >= SEARCH_RESULT_LIMIT ? "（仅显示前 " + SEARCH_RESULT_LIMIT + " 个）" : "", elapsedMillis));
+        if (!searchDialog.isVisible()) {
+            searchDialog.setVisible(true);
         }
+    }
 
-        return extension.toUpperCase() + " 文件";
+    private Icon getFileIcon(DirectoryEntry entry, boolean large) {
+        Map<String, Icon> icons = large ? largeFileIcons : fileIcons;
+
+        if (entry.isDirectory()) {
+            return icons.get("folder");
+        }
+
+        // 注册表查找不分配对象，渲染大目录时每个单元格都会调用
+        FileTypeRegistry.FileType type = FileTypeRegistry.lookup(entry.getName());
+        Icon icon = large ? type.getLargeIcon() : type.getSmallIcon();
+        return icon != null ? icon : icons.get("file");
     }
 
-    private String getFileExtension(String fileName) {
-        int lastDotIndex = fileName.lastIndexOf('.');
-        return lastDotIndex > 0 ? fileName.substring(lastDotIndex + 1) : "";
+    private void retainVisibleThumbnails() {
+        int first = fileList.getFirstVisibleIndex();
+        int last = fileList.getLastVisibleIndex();
+        Set<Path> visible = new HashSet<>();
+        if (first >= 0) {
+            for (int i = first; i <= last && i < listingModel.getSize(); i++) {
+                visible.add(listingModel.getEntry(i).getPath());
+            }
+        }
+        thumbnailCache.retainOnly(visible);
     }
 
-    private boolean isImageFile(String extension) {
-        return Arrays.asList("jpg", "jpeg", "png", "gif", "bmp", "ico", "svg", "webp").contains(extension);
+    // 文件夹大小方法
+    private void startFolderSizeCalculation() {
+        if (!listingModel.isLoaded()) return;
+
+        List<Path> directories = new ArrayList<>();
+        for (int i = 0; i < listingModel.getRowCount(); i++) {
+            DirectoryEntry entry = listingModel.getEntry(i);
+            if (entry.isDirectory()) {
+                directories.add(entry.getPath());
+            }
+        }
+        if (directories.isEmpty()) return;
+
+        pendingFolderSizes = directories.size();
+        statusLabel.setText(String.format("正在计算文件夹大小... 剩余 %d 个", pendingFolderSizes));
+        folderSizeCalculator.calculate(directories, (directory, bytes, files) -> {
+            listingModel.setFolderSize(directory, bytes);
+            if (diskUsageTreemap != null) {
+                diskUsageTreemap.setItemSize(directory, bytes);
+                updateDiskUsageStatus();
+            }
+            if (--pendingFolderSizes > 0) {
+                statusLabel.setText(String.format("正在计算文件夹大小... 剩余 %d 个", pendingFolderSizes));
+            } else {
+                statusLabel.setText(String.format("就绪 - %d 个项目", listingModel.getRowCount()));
+            }
+        });
     }
 
-    private boolean isDocumentFile(String extension) {
-        return Arrays.asList("doc", "docx", "xls", "xlsx", "ppt", "pptx").contains(extension);
+    private void showDiskUsage() {
+        if (diskUsageDialog == null) {
+            diskUsageDialog = new JDialog(this, "磁盘占用", false);
+            diskUsageTreemap = new DiskUsageTreemap(path -> navigateToDirectory(path.toString()));
+            diskUsageStatusLabel = new JLabel(" ");
+            diskUsageStatusLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+            diskUsageDialog.setLayout(new BorderLayout());
+            diskUsageDialog.add(diskUsageTreemap, BorderLayout.CENTER);
+            diskUsageDialog.add(diskUsageStatusLabel, BorderLayout.SOUTH);
+            diskUsageDialog.setSize(800, 600);
+            diskUsageDialog.setLocationRelativeTo(this);
+        }
+        diskUsageDialog.setVisible(true);
+        updateDiskUsage();
     }
 
-    private boolean isArchiveFile(String extension) {
-        return Arrays.asList("zip", "rar", "7z", "tar", "gz", "bz2").contains(extension);
+    // 用当前目录的内容重建磁盘占用图，已经算出的文件夹大小直接使用
+    private void updateDiskUsage() {
+        if (!listingModel.isLoaded()) return;
+
+        List<DirectoryEntry> entries = new ArrayList<>();
+        boolean missingSizes = false;
+        for (int i = 0; i < listingModel.getRowCount(); i++) {
+            entries.add(listingModel.getEntry(i));
+        }
+        diskUsageTreemap.setEntries(entries);
+        for (DirectoryEntry entry : entries) {
+            if (!entry.isDirectory()) continue;
+            Long size = listingModel.getFolderSize(entry.getPath());
+            if (size != null) {
+                diskUsageTreemap.setItemSize(entry.getPath(), size);
+            } else {
+                missingSizes = true;
+            }
+        }
+        diskUsageDialog.setTitle("磁盘占用 - " + currentPath);
+        updateDiskUsageStatus();
+        if (missingSizes) {
+            startFolderSizeCalculation();
+        }
     }
 
-    private String formatFileSize(long size) {
-        if (size < 1024) return size + " B";
-        if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
-        if (size < 1024 * 1024 * 1024) return String.format("%.1f MB", size / (1024.0 * 1024.0));
-        return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+    private void updateDiskUsageStatus() {
+        int pending = diskUsageTreemap.getPendingCount();
+        String total = DirectoryEntry.formatFileSize(diskUsageTreemap.getTotalSize());
+        diskUsageStatusLabel.setText(pending > 0
+            ? String.format("总计 %s，正在计算 %d 个文件夹...", total, pending)
+            : String.format("总计 %s，双击文件夹进入", total));
     }
 
     // 视图切换方法
@@ -759,6 +1090,8 @@ public class Explorer extends JFrame {
         viewModeButton.setText("图标");
         viewModeButton.setToolTipText("切换到图标视图");
         cardLayout.show(rightPanel, "LIST");
+        // 列表视图不显示缩略图
+        thumbnailCache.retainOnly(Collections.emptySet());
     }
 
     private void switchToIconView() {
@@ -822,14 +1155,12 @@ public class Explorer extends JFrame {
     private void openSelectedTableItem() {
         int selectedRow = fileTable.getSelectedRow();
         if (selectedRow >= 0) {
-            FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-            String fileName = nameWithIcon.getName();
-            openFile(fileName);
+            openFile(listingModel.getEntry(selectedRow).getName());
         }
     }
 
     private void openSelectedListItem() {
-        FileItem selectedItem = fileList.getSelectedValue();
+        DirectoryEntry selectedItem = fileList.getSelectedValue();
         if (selectedItem != null) {
             openFile(selectedItem.getName());
         }
@@ -854,7 +1185,7 @@ public class Explorer extends JFrame {
         if (folderName != null && !folderName.trim().isEmpty()) {
             File newFolder = new File(currentPath, folderName.trim());
             if (newFolder.mkdir()) {
-                refreshCurrentDirectory();
+                applyLocalChanges(newFolder);
                 statusLabel.setText("文件夹创建成功: " + folderName);
             } else {
                 JOptionPane.showMessageDialog(this, "无法创建文件夹", "错误", JOptionPane.ERROR_MESSAGE);
@@ -868,7 +1199,7 @@ public class Explorer extends JFrame {
             File newFile = new File(currentPath, fileName.trim());
             try {
                 if (newFile.createNewFile()) {
-                    refreshCurrentDirectory();
+                    applyLocalChanges(newFile);
                     statusLabel.setText("文件创建成功: " + fileName);
                 } else {
                     JOptionPane.showMessageDialog(this, "文件已存在", "错误", JOptionPane.ERROR_MESSAGE);
@@ -880,67 +1211,191 @@ public class Explorer extends JFrame {
     }
 
     private void deleteSelectedItems() {
-        List<String> selectedFiles = new ArrayList<>();
+        deleteSelectedItems(false);
+    }
 
-        if (isListView) {
-            int[] selectedRows = fileTable.getSelectedRows();
-            for (int row : selectedRows) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(row, 0);
-                selectedFiles.add(nameWithIcon.getName());
-            }
+    // permanent 为 false 时默认移到回收站
+    private void deleteSelectedItems(boolean permanent) {
+        List<DirectoryEntry> selected = getSelectedEntries();
+        if (selected.isEmpty()) return;
+
+        String message = selected.size() == 1 ? "确定要删除选定的项目吗？" : "确定要删除选定的 " + selected.size() + " 个项目吗？";
+        boolean trash;
+        if (permanent) {
+            int result = JOptionPane.showConfirmDialog(this, message + "\n此操作无法撤销。", "永久删除",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (result != JOptionPane.YES_OPTION) return;
+            trash = false;
         } else {
-            List<FileItem> selectedItems = fileList.getSelectedValuesList();
-            for (FileItem item : selectedItems) {
-                selectedFiles.add(item.getName());
-            }
+            Object[] options = {"移到回收站", "永久删除", "取消"};
+            int result = JOptionPane.showOptionDialog(this, message, "确认删除", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.WARNING_MESSAGE, null, options, options[0]);
+            if (result != 0 && result != 1) return;
+            trash = result == 0;
         }
 
-        if (selectedFiles.isEmpty()) return;
+        List<Path> targets = new ArrayList<>();
+        for (DirectoryEntry entry : selected) {
+            targets.add(entry.getPath());
+        }
+        startDelete(new FileDeleteEngine(targets, trash, this::onDeleteFinished));
+    }
 
-        String message = selectedFiles.size() == 1 ? "确定要删除选定的项目吗？" : "确定要删除选定的 " + selectedFiles.size() + " 个项目吗？";
-        int result = JOptionPane.showConfirmDialog(this, message, "确认删除", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+    private void startDelete(FileDeleteEngine engine) {
+        runningDeletes.add(engine);
+        new DeleteProgressDialog(this, engine);
+        transferExecutor.submit(engine);
+        statusLabel.setText(engine.isTrash() ? "正在移到回收站..." : "正在删除...");
+    }
 
-        if (result == JOptionPane.YES_OPTION) {
-            for (String fileName : selectedFiles) {
-                File file = new File(currentPath, fileName);
+    private void onDeleteFinished(FileDeleteEngine engine) {
+        runningDeletes.remove(engine);
 
-                try {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                } catch (Exception e) {
-                    JOptionPane.showMessageDialog(this, "删除失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                }
+        // 删除期间可能已经切换了目录，只应用当前目录中的变化
+        if (currentPath != null) {
+            Path directory = normalize(new File(currentPath).toPath());
+            List<File> changed = new ArrayList<>();
+            for (Path target : engine.getTargets()) {
+                if (directory.equals(target.getParent())) changed.add(target.toFile());
+            }
+            if (!changed.isEmpty()) {
+                applyLocalChanges(changed.toArray(new File[0]));
             }
-            refreshCurrentDirectory();
-            statusLabel.setText("删除操作完成");
         }
-    }
 
-    private void deleteDirectory(File directory) throws IOException {
-        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
-                Files.delete(file);
-                return FileVisitResult.CONTINUE;
+        List<String> errors = engine.getErrors();
+        if (engine.isCancelled()) {
+            statusLabel.setText(String.format("删除已取消 - 已删除 %d 个文件", engine.getRemovedFiles()));
+        } else if (!errors.isEmpty()) {
+            statusLabel.setText(String.format("删除完成，%d 个错误", errors.size()));
+            Object[] options = {"重试", "跳过"};
+            int result = JOptionPane.showOptionDialog(this,
+                String.format("%d 个项目删除失败，例如:\n%s", errors.size(), errors.get(0)),
+                "删除失败", JOptionPane.DEFAULT_OPTION, JOptionPane.ERROR_MESSAGE, null, options, options[0]);
+            List<Path> remaining = engine.getRemainingTargets();
+            if (result == 0 && !remaining.isEmpty()) {
+                startDelete(new FileDeleteEngine(remaining, engine.isTrash(), this::onDeleteFinished));
             }
+        } else if (engine.isTrash()) {
+            statusLabel.setText(String.format("已移到回收站 - %d 个项目", engine.getRemovedFiles()));
+        } else {
+            statusLabel.setText(String.format("删除完成 - %d 个文件, %s",
+                engine.getRemovedFiles(), DirectoryEntry.formatFileSize(engine.getRemovedBytes())));
+        }
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                Files.delete(dir);
-                return FileVisitResult.CONTINUE;
+    private List<DirectoryEntry> getSelectedEntries() {
+        List<DirectoryEntry> selected = new ArrayList<>();
+        if (isListView) {
+            for (int row : fileTable.getSelectedRows()) {
+                selected.add(listingModel.getEntry(row));
             }
-        });
+        } else {
+            selected.addAll(fileList.getSelectedValuesList());
+        }
+        return selected;
     }
 
     private void copySelectedItems() {
-        statusLabel.setText("复制功能尚未实现");
+        setClipboard(false);
+    }
+
+    private void cutSelectedItems() {
+        setClipboard(true);
+    }
+
+    private void setClipboard(boolean cut) {
+        List<DirectoryEntry> selected = getSelectedEntries();
+        if (selected.isEmpty()) return;
+
+        clipboardPaths = new ArrayList<>();
+        for (DirectoryEntry entry : selected) {
+            clipboardPaths.add(entry.getPath());
+        }
+        clipboardCut = cut;
+        statusLabel.setText(String.format("已%s %d 个项目", cut ? "剪切" : "复制", clipboardPaths.size()));
     }
 
     private void pasteItems() {
-        statusLabel.setText("粘贴功能尚未实现");
+        if (clipboardPaths.isEmpty() || currentPath == null) return;
+
+        try {
+            FileTransferEngine engine = FileTransferEngine.create(clipboardPaths, new File(currentPath).toPath(),
+                clipboardCut, this::onTransferFinished);
+            // 剪切的文件只能粘贴一次
+            if (clipboardCut) {
+                clipboardPaths = new ArrayList<>();
+                clipboardCut = false;
+            }
+            startTransfer(engine);
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "无法粘贴: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // 继续因取消、出错或程序退出而中断的传输
+    private void resumeTransfers() {
+        List<Path> journals = FileTransferEngine.pendingJournals();
+        if (journals.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "没有未完成的传输", "继续传输", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        int result = JOptionPane.showConfirmDialog(this,
+            String.format("发现 %d 个未完成的传输，是否继续？", journals.size()),
+            "继续传输", JOptionPane.YES_NO_OPTION);
+        if (result != JOptionPane.YES_OPTION) return;
+
+        for (Path journal : journals) {
+            try {
+                startTransfer(FileTransferEngine.resume(journal, this::onTransferFinished));
+            } catch (IOException e) {
+                e.printStackTrace();
+                JOptionPane.showMessageDialog(this, "无法继续传输: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void startTransfer(FileTransferEngine engine) {
+        runningTransfers.add(engine);
+        new TransferProgressDialog(this, engine).setVisible(true);
+        transferExecutor.submit(engine);
+        statusLabel.setText(engine.isMove() ? "正在移动..." : "正在复制...");
+    }
+
+    private void onTransferFinished(FileTransferEngine engine) {
+        runningTransfers.remove(engine);
+
+        // 当前目录中的变化直接应用，不等待监视事件
+        if (currentPath != null) {
+            Path directory = normalize(new File(currentPath).toPath());
+            List<File> changed = new ArrayList<>();
+            for (Path target : engine.getTargets()) {
+                if (directory.equals(target.getParent())) changed.add(target.toFile());
+            }
+            if (engine.isMove()) {
+                for (Path source : engine.getSources()) {
+                    if (directory.equals(source.getParent())) changed.add(source.toFile());
+                }
+            }
+            if (!changed.isEmpty()) {
+                applyLocalChanges(changed.toArray(new File[0]));
+            }
+        }
+
+        List<String> errors = engine.getErrors();
+        if (engine.isCancelled()) {
+            statusLabel.setText("传输已取消，可通过“编辑 > 继续未完成的传输”继续");
+        } else if (!errors.isEmpty()) {
+            statusLabel.setText(String.format("传输完成，%d 个错误", errors.size()));
+            JOptionPane.showMessageDialog(this,
+                String.format("%d 个项目传输失败，例如:\n%s\n\n可通过“编辑 > 继续未完成的传输”重试", errors.size(), errors.get(0)),
+                "错误", JOptionPane.ERROR_MESSAGE);
+        } else {
+            statusLabel.setText(String.format("%s完成 - %d 个文件, %s", engine.isMove() ? "移动" : "复制",
+                engine.getCopiedFiles(), DirectoryEntry.formatFileSize(engine.getCopiedBytes())));
+        }
     }
 
     private void renameSelectedItem() {
@@ -949,11 +1404,10 @@ public class Explorer extends JFrame {
         if (isListView) {
             int selectedRow = fileTable.getSelectedRow();
             if (selectedRow >= 0) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-                fileName = nameWithIcon.getName();
+                fileName = listingModel.getEntry(selectedRow).getName();
             }
         } else {
-            FileItem selectedItem = fileList.getSelectedValue();
+            DirectoryEntry selectedItem = fileList.getSelectedValue();
             if (selectedItem != null) {
                 fileName = selectedItem.getName();
             }
@@ -967,7 +1421,7 @@ public class Explorer extends JFrame {
                 File newFile = new File(currentPath, newName.trim());
 
                 if (oldFile.renameTo(newFile)) {
-                    refreshCurrentDirectory();
+                    applyLocalChanges(oldFile, newFile);
                     statusLabel.setText("重命名成功");
                 } else {
                     JOptionPane.showMessageDialog(this, "重命名失败", "错误", JOptionPane.ERROR_MESSAGE);
@@ -976,6 +1430,15 @@ public class Explorer extends JFrame {
         }
     }
 
+    // 手动刷新或监视事件丢失：当前目录以下的文件夹大小缓存可能已过时（不改变目录修改时间的文件重写），
+    // 只丢弃这一部分，其他目录仍按修改时间判断
+    private void refreshCurrentTree() {
+        if (currentPath != null) {
+            folderSizeCalculator.invalidate(normalize(new File(currentPath).toPath()));
+        }
+        refreshCurrentDirectory();
+    }
+
     private void refreshCurrentDirectory() {
         if (currentPath != null) {
             loadDirectoryContents(currentPath);
@@ -1002,9 +1465,16 @@ public class Explorer extends JFrame {
             }
         });
 
+        JMenuItem cutItem = new JMenuItem("剪切");
+        cutItem.addActionListener(e -> cutSelectedItems());
+
         JMenuItem copyItem = new JMenuItem("复制");
         copyItem.addActionListener(e -> copySelectedItems());
 
+        JMenuItem pasteItem = new JMenuItem("粘贴");
+        pasteItem.setEnabled(!clipboardPaths.isEmpty());
+        pasteItem.addActionListener(e -> pasteItems());
+
         JMenuItem deleteItem = new JMenuItem("删除");
         deleteItem.addActionListener(e -> deleteSelectedItems());
 
@@ -1016,7 +1486,9 @@ public class Explorer extends JFrame {
 
         contextMenu.add(openItem);
         contextMenu.addSeparator();
+        contextMenu.add(cutItem);
         contextMenu.add(copyItem);
+        contextMenu.add(pasteItem);
         contextMenu.add(deleteItem);
         contextMenu.add(renameItem);
         contextMenu.addSeparator();
@@ -1032,11 +1504,10 @@ public class Explorer extends JFrame {
         if (isListView) {
             int selectedRow = fileTable.getSelectedRow();
             if (selectedRow >= 0) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-                fileName = nameWithIcon.getName();
+                fileName = listingModel.getEntry(selectedRow).getName();
             }
         } else {
-            FileItem selectedItem = fileList.getSelectedValue();
+            DirectoryEntry selectedItem = fileList.getSelectedValue();
             if (selectedItem != null) {
                 fileName = selectedItem.getName();
             }
@@ -1044,57 +1515,25 @@ public class Explorer extends JFrame {
 
         if (fileName != null) {
             File file = new File(currentPath, fileName);
+            DirectoryEntry entry = DirectoryEntry.read(file.toPath());
 
             StringBuilder info = new StringBuilder();
-            info.append("名称: ").append(file.getName()).append("\n");
-            info.append("类型: ").append(file.isDirectory() ? "文件夹" : "文件").append("\n");
+            info.append("名称: ").append(entry.getName()).append("\n");
+            info.append("类型: ").append(entry.isDirectory() ? "文件夹" : "文件").append("\n");
             info.append("位置: ").append(file.getParent()).append("\n");
-            info.append("大小: ").append(formatFileSize(file.length())).append("\n");
-            info.append("修改时间: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(file.lastModified()))).append("\n");
+            info.append("大小: ").append(DirectoryEntry.formatFileSize(entry.getSize())).append("\n");
+            info.append("修改时间: ").append(entry.getModifiedText()).append("\n");
+            if (entry.getPermissionsText() != null) {
+                info.append("权限: ").append(entry.getPermissionsText()).append("\n");
+                info.append("所有者: ").append(entry.getOwnerName()).append("\n");
+            }
             info.append("只读: ").append(file.canWrite() ? "否" : "是").append("\n");
-            info.append("隐藏: ").append(file.isHidden() ? "是" : "否");
+            info.append("隐藏: ").append(entry.isHidden() ? "是" : "否");
 
             JOptionPane.showMessageDialog(this, info.toString(), "属性", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
-    // 内部类：文件项
-    private static class FileItem {
-        private File file;
-        private String name;
-        private Icon icon;
-
-        public FileItem(File file, String name, Icon icon) {
-            this.file = file;
-            this.name = name;
-            this.icon = icon;
-        }
-
-        public File getFile() { return file; }
-        public String getName() { return name; }
-        public Icon getIcon() { return icon; }
-
-        @Override
-        public String toString() { return name; }
-    }
-
-    // 内部类：文件名与图标的包装类
-    private static class FileNameWithIcon {
-        private String name;
-        private Icon icon;
-
-        public FileNameWithIcon(String name, Icon icon) {
-            this.name = name;
-            this.icon = icon;
-        }
-
-        public String getName() { return name; }
-        public Icon getIcon() { return icon; }
-
-        @Override
-        public String toString() { return name; }
-    }
-
     // 内部类：表格文件名渲染器
     private class FileNameCellRenderer extends JLabel implements TableCellRenderer {
         public FileNameCellRenderer() {
@@ -1103,10 +1542,10 @@ public class Explorer extends JFrame {
 
         @Override
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-            if (value instanceof FileNameWithIcon) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) value;
-                setText(nameWithIcon.getName());
-                setIcon(nameWithIcon.getIcon());
+            if (value instanceof DirectoryEntry) {
+                DirectoryEntry entry = (DirectoryEntry) value;
+                setText(entry.getName());
+                setIcon(getFileIcon(entry, false));
             } else {
                 setText(value != null ? value.toString() : "");
                 setIcon(null);
@@ -1125,7 +1564,7 @@ public class Explorer extends JFrame {
     }
 
     // 内部类：图标视图渲染器
-    private class FileIconCellRenderer extends JLabel implements ListCellRenderer<FileItem> {
+    private class FileIconCellRenderer extends JLabel implements ListCellRenderer<DirectoryEntry> {
         public FileIconCellRenderer() {
             setOpaque(true);
             setHorizontalAlignment(JLabel.CENTER);
@@ -1135,10 +1574,12 @@ public class Explorer extends JFrame {
         }
 
         @Override
-        public Component getListCellRendererComponent(JList<? extends FileItem> list, FileItem value, int index, boolean isSelected, boolean cellHasFocus) {
+        public Component getListCellRendererComponent(JList<? extends DirectoryEntry> list, DirectoryEntry value, int index, boolean isSelected, boolean cellHasFocus) {
             if (value != null) {
                 setText(value.getName());
-                setIcon(value.getIcon());
+                // 渲染器只会为可见单元格调用，缩略图就绪前先显示普通图标
+                Icon thumbnail = ThumbnailCache.supports(value) ? thumbnailCache.get(value) : null;
+                setIcon(thumbnail != null ? thumbnail : getFileIcon(value, true));
             } else {
                 setText("");
                 setIcon(null);
@@ -1161,6 +1602,32 @@ public class Explorer extends JFrame {
         if (executor != null && !executor.isShutdown()) {
             executor.shutdown();
         }
+        if (searchExecutor != null && !searchExecutor.isShutdown()) {
+            searchExecutor.shutdown();
+        }
+        if (runningIndexer != null) {
+            runningIndexer.cancel();
+        }
+        if (treeModel != null) {
+            treeModel.shutdown();
+        }
+        if (thumbnailCache != null) {
+            thumbnailCache.shutdown();
+        }
+        folderSizeCalculator.shutdown();
+        // 未完成的传输保留日志，下次可以继续
+        for (FileTransferEngine engine : runningTransfers) {
+            engine.cancel();
+        }
+        for (FileDeleteEngine engine : runningDeletes) {
+            engine.cancel();
+        }
+        if (transferExecutor != null && !transferExecutor.isShutdown()) {
+            transferExecutor.shutdown();
+        }
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
     }
 
     @Override
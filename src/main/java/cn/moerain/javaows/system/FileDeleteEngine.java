@@ -0,0 +1,258 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.SwingUtilities;
+import java.awt.Desktop;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 后台删除：永久删除时在 ForkJoinPool 中并行遍历并删除各个子树；
+// 移到回收站时只对每个选中项做一次重命名，不遍历目录树
+class FileDeleteEngine implements Runnable {
+    private static final int MAX_ERRORS = 100;
+    private static final DateTimeFormatter TRASH_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    interface Listener {
+        // 在EDT中调用
+        void onFinished(FileDeleteEngine engine);
+    }
+
+    private final List<Path> targets;
+    private final boolean trash;
+    private final Listener listener;
+
+    private final AtomicLong removedFiles = new AtomicLong();
+    private final AtomicLong removedBytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    FileDeleteEngine(List<Path> targets, boolean trash, Listener listener) {
+        this.targets = targets;
+        this.trash = trash;
+        this.listener = listener;
+    }
+
+    List<Path> getTargets() { return targets; }
+    boolean isTrash() { return trash; }
+    boolean isCancelled() { return cancelled; }
+    boolean isFinished() { return finished; }
+    long getRemovedFiles() { return removedFiles.get(); }
+    long getRemovedBytes() { return removedBytes.get(); }
+    List<String> getErrors() { return new ArrayList<>(errors); }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    // 仍然存在的目标，用于重试
+    List<Path> getRemainingTargets() {
+        List<Path> remaining = new ArrayList<>();
+        for (Path target : targets) {
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                remaining.add(target);
+            }
+        }
+        return remaining;
+    }
+
+    @Override
+    public void run() {
+        ForkJoinPool pool = trash ? null : new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Path target : targets) {
+                if (cancelled) break;
+                try {
+                    if (trash) {
+                        moveToTrash(target);
+                        removedFiles.incrementAndGet();
+                        continue;
+                    }
+
+                    BasicFileAttributes attrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        pool.invoke(new DeleteTask(target));
+                    } else {
+                        deleteFile(target, attrs.size());
+                    }
+                } catch (NoSuchFileException e) {
+                    // 已经被删除
+                } catch (IOException e) {
+                    addError(target, e);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            finished = true;
+            SwingUtilities.invokeLater(() -> listener.onFinished(this));
+        }
+    }
+
+    // ---- 永久删除 ----
+
+    // 文件在遍历时直接删除，子目录拆分为子任务，全部完成后再删除目录本身
+    private class DeleteTask extends RecursiveAction {
+        private final Path directory;
+
+        DeleteTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) return;
+
+            List<DeleteTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (cancelled) return;
+                    try {
+                        BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isDirectory()) {
+                            subtasks.add(new DeleteTask(child));
+                        } else {
+                            deleteFile(child, attrs.size());
+                        }
+                    } catch (NoSuchFileException e) {
+                        // 已经被删除
+                    } catch (IOException e) {
+                        addError(child, e);
+                    }
+                }
+            } catch (IOException e) {
+                addError(directory, e);
+                return;
+            } catch (DirectoryIteratorException e) {
+                // 遍历中途出错（目录被删除或失去权限）
+                addError(directory, e.getCause());
+                return;
+            }
+
+            invokeAll(subtasks);
+            if (cancelled) return;
+
+            try {
+                Files.delete(directory);
+            } catch (DirectoryNotEmptyException e) {
+                // 子项删除失败，错误已经记录
+            } catch (NoSuchFileException e) {
+                // 已经被删除
+            } catch (IOException e) {
+                addError(directory, e);
+            }
+        }
+    }
+
+    private void deleteFile(Path file, long size) throws IOException {
+        Files.delete(file);
+        removedFiles.incrementAndGet();
+        removedBytes.addAndGet(size);
+    }
+
+    private void addError(Path path, IOException e) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(path + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+    }
+
+    // ---- 回收站 ----
+
+    // 系统提供回收站时直接使用；否则按 freedesktop.org 回收站规范重命名到同一文件系统上的回收站目录
+    private void moveToTrash(Path target) throws IOException {
+        if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.MOVE_TO_TRASH)) {
+            if (!Desktop.getDesktop().moveToTrash(target.toFile())) {
+                throw new IOException("无法移到回收站");
+            }
+            return;
+        }
+
+        Path trashDirectory = trashDirectoryFor(target);
+        Path filesDirectory = trashDirectory.resolve("files");
+        Path infoDirectory = trashDirectory.resolve("info");
+        Files.createDirectories(filesDirectory);
+        Files.createDirectories(infoDirectory);
+
+        // 先独占创建 .trashinfo 文件来确定不冲突的名称
+        String baseName = target.getFileName().toString();
+        String name = baseName;
+        Path infoFile;
+        for (int i = 2; ; i++) {
+            infoFile = infoDirectory.resolve(name + ".trashinfo");
+            try (Writer writer = Files.newBufferedWriter(infoFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+                writer.write("[Trash Info]\n");
+                writer.write("Path=" + encodeTrashPath(target.toAbsolutePath().toString()) + "\n");
+                writer.write("DeletionDate=" + LocalDateTime.now().format(TRASH_DATE_FORMAT) + "\n");
+                break;
+            } catch (FileAlreadyExistsException e) {
+                name = baseName + "." + i;
+            }
+        }
+
+        try {
+            Files.move(target, filesDirectory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(infoFile);
+            throw new IOException("无法移到回收站（" + e.getMessage() + "），请使用永久删除", e);
+        }
+    }
+
+    // 与主目录在同一文件系统时使用主目录回收站，否则使用该文件系统顶层的 .Trash-uid
+    private static Path trashDirectoryFor(Path target) throws IOException {
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        Path home = Paths.get(System.getProperty("user.home"));
+        Path homeTrash = (dataHome != null && !dataHome.isEmpty() ? Paths.get(dataHome) : home.resolve(".local").resolve("share")).resolve("Trash");
+
+        FileStore store = Files.getFileStore(target);
+        if (store.equals(Files.getFileStore(home))) {
+            return homeTrash;
+        }
+
+        Path top = target.toAbsolutePath();
+        while (top.getParent() != null && store.equals(Files.getFileStore(top.getParent()))) {
+            top = top.getParent();
+        }
+        try {
+            Object uid = Files.getAttribute(home, "unix:uid");
+            return top.resolve(".Trash-" + uid);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return top.resolve(".Trash");
+        }
+    }
+
+    // .trashinfo 中的路径按 URL 规则转义
+    private static String encodeTrashPath(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "/-_.~".indexOf(c) >= 0) {
+                encoded.append((char) c);
+            } else {
+                encoded.append(String.format("%%%02X", c));
+            }
+        }
+        return encoded.toString();
+    }
+}
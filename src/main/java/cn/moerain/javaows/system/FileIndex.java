@@ -0,0 +1,340 @@
+package cn.moerain.javaows.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 文件名索引：直接在内存映射文件上查询，启动时无需反序列化
+//
+// 文件布局（大端序）：
+//   头部    magic, version, nodeCount, nameCount, trigramCount, postingCount, nameBytesLength, createdMillis
+//   节点    parent[nodeCount]        父节点下标，根节点为 -1
+//           nameRef[nodeCount]       名称下标，最高位表示目录
+//           nextSameName[nodeCount]  同名节点链表
+//   名称    firstNode[nameCount]     同名节点链表头
+//           nameOffset[nameCount+1]  名称在 UTF-8 数据区中的偏移
+//   三元组  keys[trigramCount]       小写名称三元组，升序
+//           offsets[trigramCount+1]  倒排表区间
+//           postings[postingCount]   名称下标，升序
+//   数据区  nameBytes[nameBytesLength]
+//
+// 路径段（名称）在建立索引时去重，节点只保存名称下标和父节点下标，
+// 相当于一棵共享路径段的字典树
+class FileIndex {
+    static final int MAGIC = 0x4A4F5749; // "JOWI"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 7 * 4 + 8;
+    static final int DIRECTORY_FLAG = 0x80000000;
+    private static final Pattern GENERATION_FILE = Pattern.compile("file-index-(\\d{1,18})\\.bin");
+
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int nameCount;
+    private final int trigramCount;
+    private final long createdMillis;
+
+    private final int parentPos;
+    private final int nameRefPos;
+    private final int nextSameNamePos;
+    private final int firstNodePos;
+    private final int nameOffsetPos;
+    private final int trigramKeyPos;
+    private final int trigramOffsetPos;
+    private final int postingPos;
+    private final int nameBytesPos;
+
+    // 名称按需解码并缓存，多线程下重复解码是无害的
+    private final String[] nameCache;
+
+    private FileIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("索引文件格式不正确");
+        }
+        nodeCount = buffer.getInt(8);
+        nameCount = buffer.getInt(12);
+        trigramCount = buffer.getInt(16);
+        int postingCount = buffer.getInt(20);
+        int nameBytesLength = buffer.getInt(24);
+        createdMillis = buffer.getLong(28);
+
+        parentPos = HEADER_SIZE;
+        nameRefPos = parentPos + nodeCount * 4;
+        nextSameNamePos = nameRefPos + nodeCount * 4;
+        firstNodePos = nextSameNamePos + nodeCount * 4;
+        nameOffsetPos = firstNodePos + nameCount * 4;
+        trigramKeyPos = nameOffsetPos + (nameCount + 1) * 4;
+        trigramOffsetPos = trigramKeyPos + trigramCount * 8;
+        postingPos = trigramOffsetPos + (trigramCount + 1) * 4;
+        nameBytesPos = postingPos + postingCount * 4;
+
+        if ((long) nameBytesPos + nameBytesLength > buffer.capacity()) {
+            throw new IOException("索引文件已损坏");
+        }
+        nameCache = new String[nameCount];
+    }
+
+    static FileIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 映射在通道关闭后依然有效
+            return new FileIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".javaows");
+    }
+
+    // 每次重建写入新一代文件 file-index-<代数>.bin，不覆盖仍被映射的旧文件（Windows 上无法替换）
+
+    // 最新一代的索引文件，没有时返回 null
+    static Path latestFile(Path directory) {
+        long generation = latestGeneration(directory);
+        return generation > 0 ? generationFile(directory, generation) : null;
+    }
+
+    static Path nextFile(Path directory) {
+        return generationFile(directory, latestGeneration(directory) + 1);
+    }
+
+    // 删除最新一代之外的索引文件；仍被映射而删不掉的留到下次
+    static void deleteStaleFiles(Path directory) {
+        Path latest = latestFile(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "file-index*.bin")) {
+            for (Path file : stream) {
+                if (file.equals(latest)) continue;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // 映射尚未释放
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long latestGeneration(Path directory) {
+        long latest = 0;
+        if (!Files.isDirectory(directory)) return latest;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "file-index-*.bin")) {
+            for (Path file : stream) {
+                Matcher matcher = GENERATION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    latest = Math.max(latest, Long.parseLong(matcher.group(1)));
+                }
+            }
+        } catch (IOException | DirectoryIteratorException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return latest;
+    }
+
+    private static Path generationFile(Path directory, long generation) {
+        return directory.resolve("file-index-" + generation + ".bin");
+    }
+
+    int getNodeCount() { return nodeCount; }
+    long getCreatedMillis() { return createdMillis; }
+
+    List<String> getRoots() {
+        List<String> roots = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++) {
+            if (parent(node) < 0) {
+                roots.add(name(nameRef(node) & ~DIRECTORY_FLAG));
+            }
+        }
+        return roots;
+    }
+
+    static long trigram(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+    // 名称查询：普通文本按子串匹配，含 * 或 ? 时按通配符匹配整个名称，均不区分大小写
+    List<String> search(String query, int limit) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) return Collections.emptyList();
+
+        boolean glob = q.indexOf('*') >= 0 || q.indexOf('?') >= 0;
+        Pattern pattern = glob ? globToPattern(q) : null;
+        int[] candidates = candidateNames(glob ? globLiterals(q) : Collections.singletonList(q));
+
+        List<String> results = new ArrayList<>();
+        int count = candidates != null ? candidates.length : nameCount;
+        for (int i = 0; i < count && results.size() < limit; i++) {
+            int nameId = candidates != null ? candidates[i] : i;
+            String lower = name(nameId).toLowerCase(Locale.ROOT);
+            boolean matched = glob ? pattern.matcher(lower).matches() : lower.contains(q);
+            if (!matched) continue;
+
+            for (int node = firstNode(nameId); node >= 0 && results.size() < limit; node = nextSameName(node)) {
+                results.add(buildPath(node));
+            }
+        }
+        return results;
+    }
+
+    // 通过三元组倒排表求候选名称；查询中没有长度不小于3的片段时返回 null，表示需要全量扫描
+    private int[] candidateNames(List<String> literals) {
+        List<long[]> ranges = new ArrayList<>();
+        for (String literal : literals) {
+            for (int i = 0; i + 3 <= literal.length(); i++) {
+                int slot = findTrigram(trigram(literal.charAt(i), literal.charAt(i + 1), literal.charAt(i + 2)));
+                if (slot < 0) return new int[0];
+                ranges.add(new long[]{postingStart(slot), postingStart(slot + 1)});
+            }
+        }
+        if (ranges.isEmpty()) return null;
+
+        // 从最短的倒排表开始求交集
+        ranges.sort((a, b) -> Long.compare(a[1] - a[0], b[1] - b[0]));
+        long[] shortest = ranges.get(0);
+        int[] result = new int[(int) (shortest[1] - shortest[0])];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = posting((int) shortest[0] + i);
+        }
+
+        int size = result.length;
+        for (int r = 1; r < ranges.size() && size > 0; r++) {
+            int from = (int) ranges.get(r)[0];
+            int to = (int) ranges.get(r)[1];
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int found = binarySearchPosting(from, to, result[i]);
+                if (found >= 0) {
+                    result[kept++] = result[i];
+                    from = found + 1;
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static List<String> globLiterals(String glob) {
+        List<String> literals = new ArrayList<>();
+        for (String part : glob.split("[*?]")) {
+            if (part.length() >= 3) {
+                literals.add(part);
+            }
+        }
+        return literals;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    String buildPath(int node) {
+        int[] chain = new int[16];
+        int depth = 0;
+        for (int n = node; n >= 0; n = parent(n)) {
+            if (depth == chain.length) {
+                chain = Arrays.copyOf(chain, depth * 2);
+            }
+            chain[depth++] = n;
+        }
+
+        StringBuilder path = new StringBuilder();
+        for (int i = depth - 1; i >= 0; i--) {
+            String segment = name(nameRef(chain[i]) & ~DIRECTORY_FLAG);
+            if (path.length() > 0 && path.charAt(path.length() - 1) != File.separatorChar) {
+                path.append(File.separatorChar);
+            }
+            path.append(segment);
+        }
+        return path.toString();
+    }
+
+    boolean isDirectory(int node) {
+        return (nameRef(node) & DIRECTORY_FLAG) != 0;
+    }
+
+    private String name(int nameId) {
+        String name = nameCache[nameId];
+        if (name == null) {
+            int start = buffer.getInt(nameOffsetPos + nameId * 4);
+            int end = buffer.getInt(nameOffsetPos + (nameId + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(nameBytesPos + start, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+            nameCache[nameId] = name;
+        }
+        return name;
+    }
+
+    private int parent(int node) { return buffer.getInt(parentPos + node * 4); }
+    private int nameRef(int node) { return buffer.getInt(nameRefPos + node * 4); }
+    private int nextSameName(int node) { return buffer.getInt(nextSameNamePos + node * 4); }
+    private int firstNode(int nameId) { return buffer.getInt(firstNodePos + nameId * 4); }
+    private long trigramKey(int slot) { return buffer.getLong(trigramKeyPos + slot * 8); }
+    private int postingStart(int slot) { return buffer.getInt(trigramOffsetPos + slot * 4); }
+    private int posting(int i) { return buffer.getInt(postingPos + i * 4); }
+
+    private int findTrigram(long key) {
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = trigramKey(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int binarySearchPosting(int from, int to, int nameId) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = posting(mid);
+            if (value < nameId) {
+                low = mid + 1;
+            } else if (value > nameId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
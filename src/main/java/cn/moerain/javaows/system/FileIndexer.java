@@ -0,0 +1,283 @@
+package cn.moerain.javaows.system;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 后台建立文件索引：ForkJoin 并行遍历目录，完成后写入索引文件并以内存映射方式打开
+class FileIndexer {
+    private final List<Path> roots;
+    private final AtomicLong scannedCount = new AtomicLong();
+    private volatile boolean cancelled;
+
+    // 遍历期间对路径段去重，相同名称共享同一个 String
+    private final Map<String, String> internedNames = new ConcurrentHashMap<>();
+
+    FileIndexer(List<Path> roots) {
+        this.roots = roots;
+    }
+
+    long getScannedCount() {
+        return scannedCount.get();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    // 在调用线程中执行，结果写入 directory 中的新一代索引文件，返回 null 表示已取消
+    FileIndex build(Path directory) throws IOException {
+        List<DirNode> rootNodes = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Path root : roots) {
+                Path absolute = root.toAbsolutePath().normalize();
+                DirNode rootNode = new DirNode(absolute.toString());
+                pool.invoke(new CrawlTask(absolute, rootNode));
+                rootNodes.add(rootNode);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (cancelled) return null;
+
+        Path indexFile = write(rootNodes, directory);
+        return FileIndex.open(indexFile);
+    }
+
+    // ---- 目录遍历 ----
+
+    // 遍历结果只为目录创建对象，文件只保存名称
+    private static class DirNode {
+        final String name;
+        String[] files = new String[0];
+        DirNode[] dirs = new DirNode[0];
+
+        DirNode(String name) {
+            this.name = name;
+        }
+    }
+
+    private class CrawlTask extends RecursiveAction {
+        private final Path directory;
+        private final DirNode node;
+
+        CrawlTask(Path directory, DirNode node) {
+            this.directory = directory;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) return;
+
+            List<String> files = new ArrayList<>();
+            List<DirNode> dirs = new ArrayList<>();
+            List<CrawlTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (cancelled) return;
+
+                    Path fileName = child.getFileName();
+                    if (fileName == null) continue;
+                    String name = intern(fileName.toString());
+
+                    // 不跟随符号链接，避免循环
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        DirNode dirNode = new DirNode(name);
+                        dirs.add(dirNode);
+                        subtasks.add(new CrawlTask(child, dirNode));
+                    } else {
+                        files.add(name);
+                    }
+                    scannedCount.incrementAndGet();
+                }
+            } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                // 无权限或已删除的目录直接跳过，遍历中途出错时保留已读到的部分
+            }
+
+            node.files = files.toArray(new String[0]);
+            node.dirs = dirs.toArray(new DirNode[0]);
+            invokeAll(subtasks);
+        }
+    }
+
+    private String intern(String name) {
+        String existing = internedNames.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
+    // ---- 写入索引文件 ----
+
+    private Path write(List<DirNode> rootNodes, Path directory) throws IOException {
+        IntList parents = new IntList();
+        IntList nameRefs = new IntList();
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+
+        // 展平为数组：每个节点只保存父节点下标和名称下标
+        Deque<Object[]> stack = new ArrayDeque<>();
+        for (DirNode root : rootNodes) {
+            stack.push(new Object[]{root, -1});
+        }
+        while (!stack.isEmpty()) {
+            Object[] item = stack.pop();
+            DirNode dir = (DirNode) item[0];
+            int dirIndex = parents.size();
+            parents.add((Integer) item[1]);
+            nameRefs.add(nameId(dir.name, nameIds, names) | FileIndex.DIRECTORY_FLAG);
+
+            for (String file : dir.files) {
+                parents.add(dirIndex);
+                nameRefs.add(nameId(file, nameIds, names));
+            }
+            for (DirNode child : dir.dirs) {
+                stack.push(new Object[]{child, dirIndex});
+            }
+        }
+
+        int nodeCount = parents.size();
+        int nameCount = names.size();
+
+        // 同名节点链表，升序排列
+        int[] firstNode = new int[nameCount];
+        Arrays.fill(firstNode, -1);
+        int[] nextSameName = new int[nodeCount];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int nameId = nameRefs.get(node) & ~FileIndex.DIRECTORY_FLAG;
+            nextSameName[node] = firstNode[nameId];
+            firstNode[nameId] = node;
+        }
+
+        // 三元组倒排表
+        Map<Long, IntList> postingMap = new HashMap<>();
+        byte[][] encodedNames = new byte[nameCount][];
+        int postingCount = 0;
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            String name = names.get(nameId);
+            encodedNames[nameId] = name.getBytes(StandardCharsets.UTF_8);
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                long key = FileIndex.trigram(lower.charAt(i), lower.charAt(i + 1), lower.charAt(i + 2));
+                IntList postings = postingMap.computeIfAbsent(key, k -> new IntList());
+                if (postings.size() == 0 || postings.get(postings.size() - 1) != nameId) {
+                    postings.add(nameId);
+                    postingCount++;
+                }
+            }
+        }
+        long[] trigramKeys = new long[postingMap.size()];
+        int k = 0;
+        for (Long key : postingMap.keySet()) {
+            trigramKeys[k++] = key;
+        }
+        Arrays.sort(trigramKeys);
+
+        int nameBytesLength = 0;
+        for (byte[] encoded : encodedNames) {
+            nameBytesLength += encoded.length;
+        }
+
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "file-index-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(FileIndex.MAGIC);
+            out.writeInt(FileIndex.VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(nameCount);
+            out.writeInt(trigramKeys.length);
+            out.writeInt(postingCount);
+            out.writeInt(nameBytesLength);
+            out.writeLong(System.currentTimeMillis());
+
+            for (int i = 0; i < nodeCount; i++) out.writeInt(parents.get(i));
+            for (int i = 0; i < nodeCount; i++) out.writeInt(nameRefs.get(i));
+            for (int i = 0; i < nodeCount; i++) out.writeInt(nextSameName[i]);
+            for (int i = 0; i < nameCount; i++) out.writeInt(firstNode[i]);
+
+            int offset = 0;
+            for (byte[] encoded : encodedNames) {
+                out.writeInt(offset);
+                offset += encoded.length;
+            }
+            out.writeInt(offset);
+
+            for (long key : trigramKeys) out.writeLong(key);
+            int postingOffset = 0;
+            for (long key : trigramKeys) {
+                out.writeInt(postingOffset);
+                postingOffset += postingMap.get(key).size();
+            }
+            out.writeInt(postingOffset);
+            for (long key : trigramKeys) {
+                IntList postings = postingMap.get(key);
+                for (int i = 0; i < postings.size(); i++) out.writeInt(postings.get(i));
+            }
+
+            for (byte[] encoded : encodedNames) out.write(encoded);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        // 新一代文件名尚不存在，不必替换旧文件
+        Path indexFile = FileIndex.nextFile(directory);
+        try {
+            Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, indexFile);
+        }
+        return indexFile;
+    }
+
+    private static int nameId(String name, Map<String, Integer> nameIds, List<String> names) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            nameIds.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    // 可增长的 int 数组，避免装箱
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) { return values[index]; }
+        int size() { return size; }
+    }
+}
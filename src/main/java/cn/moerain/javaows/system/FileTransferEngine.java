@@ -0,0 +1,593 @@
+package cn.moerain.javaows.system;
+
+import cn.moerain.javaows.misc.NamedThreadFactory;
+import javax.swing.SwingUtilities;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 复制/移动引擎：小文件在线程池中并行复制，大文件单独按块流式传输。
+// 每完成一个文件都写入日志，大文件定期记录已写入的偏移，中断后可以从日志继续
+//
+// 日志格式（UTF-8，每行一条记录，字段用制表符分隔，字段中的 \ 制表符和换行转义为 \\ \t \n \r）：
+//   JOWT    2
+//   mode    copy | move
+//   source  源路径  目标路径
+//   done    目标文件路径
+//   part    目标文件路径  已写入偏移
+class FileTransferEngine implements Runnable {
+    private static final String MAGIC = "JOWT";
+    private static final String VERSION = "2";
+    // 版本 1 的字段没有转义，仍可读取
+    private static final String UNESCAPED_VERSION = "1";
+
+    // 超过该大小的文件按块流式传输
+    static final long LARGE_FILE_THRESHOLD = 8L << 20;
+    // 每次 transferTo 的块大小
+    private static final long CHUNK_SIZE = 64L << 20;
+    // 大文件每写入这么多数据记录一次偏移
+    private static final long CHECKPOINT_SIZE = 256L << 20;
+    // 内核无法直接传输时使用的缓冲区
+    private static final int DIRECT_BUFFER_SIZE = 4 << 20;
+    // 日志每积累这么多条记录刷新一次
+    private static final int JOURNAL_FLUSH_RECORDS = 256;
+    private static final int MAX_ERRORS = 100;
+
+    interface Listener {
+        // 在EDT中调用
+        void onFinished(FileTransferEngine engine);
+    }
+
+    private static class FileTask {
+        final Path source;
+        final Path target;
+        final long size;
+
+        FileTask(Path source, Path target, long size) {
+            this.source = source;
+            this.target = target;
+            this.size = size;
+        }
+    }
+
+    // 本进程中正在运行的传输的日志，不能再被继续
+    private static final Set<Path> activeJournals = ConcurrentHashMap.newKeySet();
+
+    private final Path journalFile;
+    private final boolean move;
+    private final List<Path> sources;
+    private final List<Path> targets;
+    private final Set<Path> doneTargets;
+    private final Map<Path, Long> partOffsets;
+    private final Listener listener;
+
+    private BufferedWriter journal;
+    private int unflushedRecords;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicLong totalFiles = new AtomicLong();
+    private final AtomicLong copiedFiles = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean planning = true;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    private FileTransferEngine(Path journalFile, boolean move, List<Path> sources, List<Path> targets,
+                               Set<Path> doneTargets, Map<Path, Long> partOffsets, Listener listener) {
+        this.journalFile = journalFile;
+        this.move = move;
+        this.sources = sources;
+        this.targets = targets;
+        this.doneTargets = doneTargets;
+        this.partOffsets = partOffsets;
+        this.listener = listener;
+    }
+
+    static Path journalDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".javaows", "transfers");
+    }
+
+    // 新建传输：确定每个源在目标目录中的名称，并写入日志头
+    static FileTransferEngine create(List<Path> sources, Path targetDirectory, boolean move, Listener listener) throws IOException {
+        List<Path> resolvedSources = new ArrayList<>();
+        List<Path> resolvedTargets = new ArrayList<>();
+        Set<Path> reserved = new HashSet<>();
+
+        for (Path source : sources) {
+            Path src = source.toAbsolutePath().normalize();
+            Path dir = targetDirectory.toAbsolutePath().normalize();
+            if (dir.startsWith(src)) {
+                throw new IOException("无法将文件夹复制到其自身的子文件夹中: " + src);
+            }
+            // 移动到原目录等于什么都不做
+            if (move && dir.equals(src.getParent())) continue;
+
+            resolvedSources.add(src);
+            resolvedTargets.add(uniqueTarget(dir, src.getFileName().toString(), reserved));
+        }
+
+        Files.createDirectories(journalDirectory());
+        // 同一毫秒开始的两次传输也不会共用日志；名称以时间开头，按名称排序即按开始时间排序
+        Path journalFile = Files.createTempFile(journalDirectory(), "transfer-" + System.currentTimeMillis() + "-", ".journal");
+        FileTransferEngine engine = new FileTransferEngine(journalFile, move, resolvedSources, resolvedTargets,
+            new HashSet<>(), new HashMap<>(), listener);
+
+        engine.journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8);
+        activeJournals.add(journalFile);
+        engine.writeRecord(MAGIC, VERSION);
+        engine.writeRecord("mode", move ? "move" : "copy");
+        for (int i = 0; i < resolvedSources.size(); i++) {
+            engine.writeRecord("source", resolvedSources.get(i).toString(), resolvedTargets.get(i).toString());
+        }
+        engine.flushJournal();
+        return engine;
+    }
+
+    // 从日志恢复一次中断的传输
+    static FileTransferEngine resume(Path journalFile, Listener listener) throws IOException {
+        if (!activeJournals.add(journalFile)) {
+            throw new IOException("该传输正在进行: " + journalFile);
+        }
+        try {
+            return readJournal(journalFile, listener);
+        } catch (IOException | RuntimeException e) {
+            activeJournals.remove(journalFile);
+            throw e;
+        }
+    }
+
+    private static FileTransferEngine readJournal(Path journalFile, Listener listener) throws IOException {
+        List<String> lines = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+        boolean escaped = !lines.isEmpty() && lines.get(0).equals(MAGIC + "\t" + VERSION);
+        if (!escaped && (lines.isEmpty() || !lines.get(0).equals(MAGIC + "\t" + UNESCAPED_VERSION))) {
+            throw new IOException("传输日志格式不正确: " + journalFile);
+        }
+
+        boolean move = false;
+        List<Path> sources = new ArrayList<>();
+        List<Path> targets = new ArrayList<>();
+        Set<Path> doneTargets = new HashSet<>();
+        Map<Path, Long> partOffsets = new HashMap<>();
+
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (escaped) {
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = unescape(fields[i]);
+                }
+            }
+            switch (fields[0]) {
+                case "mode":
+                    move = fields.length > 1 && fields[1].equals("move");
+                    break;
+                case "source":
+                    if (fields.length < 3) break;
+                    sources.add(Paths.get(fields[1]));
+                    targets.add(Paths.get(fields[2]));
+                    break;
+                case "done":
+                    // 程序崩溃时最后一行可能不完整，直接忽略
+                    if (fields.length < 2) break;
+                    doneTargets.add(Paths.get(fields[1]));
+                    break;
+                case "part":
+                    if (fields.length < 3) break;
+                    try {
+                        partOffsets.put(Paths.get(fields[1]), Long.parseLong(fields[2]));
+                    } catch (NumberFormatException e) {
+                        // 不完整的记录
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        FileTransferEngine engine = new FileTransferEngine(journalFile, move, sources, targets, doneTargets, partOffsets, listener);
+        engine.journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        return engine;
+    }
+
+    // 未完成的传输日志，不含本进程中仍在运行的传输
+    static List<Path> pendingJournals() {
+        List<Path> journals = new ArrayList<>();
+        Path dir = journalDirectory();
+        if (!Files.isDirectory(dir)) return journals;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.journal")) {
+            for (Path journal : stream) {
+                if (!activeJournals.contains(journal)) {
+                    journals.add(journal);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Collections.sort(journals);
+        return journals;
+    }
+
+    // 目标已存在时使用“名称 - 副本”形式的新名称
+    private static Path uniqueTarget(Path directory, String name, Set<Path> reserved) {
+        Path target = directory.resolve(name);
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS) && reserved.add(target)) {
+            return target;
+        }
+
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + " - 副本" + (i > 1 ? " (" + i + ")" : "") + extension;
+            target = directory.resolve(candidate);
+            if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS) && reserved.add(target)) {
+                return target;
+            }
+        }
+    }
+
+    boolean isMove() { return move; }
+    List<Path> getSources() { return sources; }
+    List<Path> getTargets() { return targets; }
+    boolean isPlanning() { return planning; }
+    boolean isCancelled() { return cancelled; }
+    boolean isFinished() { return finished; }
+    long getTotalBytes() { return totalBytes.get(); }
+    long getCopiedBytes() { return copiedBytes.get(); }
+    long getTotalFiles() { return totalFiles.get(); }
+    long getCopiedFiles() { return copiedFiles.get(); }
+    List<String> getErrors() { return new ArrayList<>(errors); }
+
+    // 取消后日志保留，之后可以继续
+    void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+        ExecutorService smallFilePool = Executors.newFixedThreadPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() * 2)),
+            new NamedThreadFactory("Explorer-Copy"));
+        // 大文件顺序传输，避免多个大文件在同一磁盘上相互争抢
+        ExecutorService largeFilePool = Executors.newSingleThreadExecutor(new NamedThreadFactory("Explorer-LargeCopy"));
+
+        try {
+            List<Path> pendingSources = new ArrayList<>();
+            List<Path> pendingTargets = new ArrayList<>();
+            for (int i = 0; i < sources.size(); i++) {
+                Path source = sources.get(i);
+                Path target = targets.get(i);
+
+                // 移动时源已经不在而目标存在，说明之前已经完成
+                if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                        addError("源文件不存在: " + source);
+                    }
+                    continue;
+                }
+
+                // 同一文件系统内的移动直接重命名
+                if (move && !Files.exists(target, LinkOption.NOFOLLOW_LINKS) && tryRename(source, target)) {
+                    continue;
+                }
+                pendingSources.add(source);
+                pendingTargets.add(target);
+            }
+
+            List<FileTask> tasks = new ArrayList<>();
+            List<Path[]> directories = new ArrayList<>();
+            for (int i = 0; i < pendingSources.size() && !cancelled; i++) {
+                plan(pendingSources.get(i), pendingTargets.get(i), tasks, directories);
+            }
+            planning = false;
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (FileTask task : tasks) {
+                if (cancelled) break;
+                boolean large = task.size >= LARGE_FILE_THRESHOLD;
+                futures.add((large ? largeFilePool : smallFilePool).submit(() -> transfer(task, large)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    addError(e.getMessage());
+                }
+            }
+
+            if (!cancelled) {
+                // 文件写入会修改目录时间，最后从内向外恢复
+                for (int i = directories.size() - 1; i >= 0; i--) {
+                    Path[] pair = directories.get(i);
+                    try {
+                        Files.setLastModifiedTime(pair[1], Files.getLastModifiedTime(pair[0]));
+                    } catch (IOException e) {
+                        // 目录时间不是关键属性
+                    }
+                }
+            }
+
+            if (!cancelled && errors.isEmpty() && move) {
+                for (Path source : pendingSources) {
+                    deleteTree(source);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            addError(e.getMessage());
+        } finally {
+            planning = false;
+            smallFilePool.shutdownNow();
+            largeFilePool.shutdownNow();
+            closeJournal();
+            activeJournals.remove(journalFile);
+            finished = true;
+            SwingUtilities.invokeLater(() -> listener.onFinished(this));
+        }
+    }
+
+    private boolean tryRename(Path source, Path target) {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (IOException e) {
+            // 跨设备等情况改为复制后删除
+            return false;
+        }
+    }
+
+    // 遍历源树：立即创建目标目录，文件加入任务列表；日志中已完成的文件直接计入进度
+    private void plan(Path source, Path target, List<FileTask> tasks, List<Path[]> directories) throws IOException {
+        Files.walkFileTree(source, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (cancelled) return FileVisitResult.TERMINATE;
+                Path targetDir = target.resolve(source.relativize(dir).toString());
+                Files.createDirectories(targetDir);
+                directories.add(new Path[]{dir, targetDir});
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (cancelled) return FileVisitResult.TERMINATE;
+                Path targetFile = file == source ? target : target.resolve(source.relativize(file).toString());
+                long size = attrs.size();
+
+                totalFiles.incrementAndGet();
+                totalBytes.addAndGet(size);
+                if (doneTargets.contains(targetFile) && isComplete(targetFile, size)) {
+                    copiedFiles.incrementAndGet();
+                    copiedBytes.addAndGet(size);
+                } else {
+                    tasks.add(new FileTask(file, targetFile, size));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                addError("无法读取: " + file + " (" + exc.getMessage() + ")");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isComplete(Path target, long size) {
+        try {
+            return Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size() == size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void transfer(FileTask task, boolean large) {
+        if (cancelled) return;
+        try {
+            if (large && !Files.isSymbolicLink(task.source)) {
+                if (!copyLargeFile(task)) return;
+            } else {
+                // Files.copy 由 JDK 选择平台上最快的方式（部分平台支持写时复制）
+                Files.copy(task.source, task.target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                copiedBytes.addAndGet(task.size);
+            }
+            copiedFiles.incrementAndGet();
+            writeRecord("done", task.target.toString());
+        } catch (IOException e) {
+            addError(task.source + ": " + e.getMessage());
+        }
+    }
+
+    // 大文件按块用 transferTo 传输，由内核完成数据搬运；从日志中记录的偏移处继续。
+    // 取消时返回 false
+    private boolean copyLargeFile(FileTask task) throws IOException {
+        Long checkpoint = partOffsets.get(task.target);
+        long offset = checkpoint != null ? checkpoint : 0;
+
+        try (FileChannel in = FileChannel.open(task.source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(task.target, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            long size = in.size();
+            if (offset > out.size() || offset > size) {
+                offset = 0;
+            }
+            out.truncate(offset);
+            out.position(offset);
+            copiedBytes.addAndGet(offset);
+
+            ByteBuffer buffer = null;
+            long nextCheckpoint = offset + CHECKPOINT_SIZE;
+            while (offset < size) {
+                if (cancelled) {
+                    out.force(false);
+                    writeRecord("part", task.target.toString(), Long.toString(offset));
+                    flushJournal();
+                    return false;
+                }
+
+                long written = in.transferTo(offset, Math.min(CHUNK_SIZE, size - offset), out);
+                if (written <= 0) {
+                    if (buffer == null) {
+                        buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+                    }
+                    buffer.clear();
+                    int read = in.read(buffer, offset);
+                    if (read < 0) break;
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    written = read;
+                }
+                offset += written;
+                copiedBytes.addAndGet(written);
+
+                if (offset >= nextCheckpoint && offset < size) {
+                    out.force(false);
+                    writeRecord("part", task.target.toString(), Long.toString(offset));
+                    flushJournal();
+                    nextCheckpoint = offset + CHECKPOINT_SIZE;
+                }
+            }
+        }
+
+        FileTime modified = Files.getLastModifiedTime(task.source);
+        Files.setLastModifiedTime(task.target, modified);
+        return true;
+    }
+
+    private void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void addError(String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(message);
+        }
+    }
+
+    // ---- 日志 ----
+
+    private synchronized void writeRecord(String... fields) {
+        if (journal == null) return;
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) journal.write('\t');
+                journal.write(escape(fields[i]));
+            }
+            journal.newLine();
+            // 丢失最后几条记录只会导致少量文件被重新复制
+            if (++unflushedRecords >= JOURNAL_FLUSH_RECORDS) {
+                flushJournal();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Linux 上的文件名可以包含制表符和换行
+    static String escape(String field) {
+        if (field.indexOf('\\') < 0 && field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        StringBuilder out = new StringBuilder(field.length() + 8);
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c); break;
+            }
+        }
+        return out.toString();
+    }
+
+    static String unescape(String field) {
+        if (field.indexOf('\\') < 0) return field;
+        StringBuilder out = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                out.append(c);
+                continue;
+            }
+            char next = field.charAt(++i);
+            switch (next) {
+                case 't': out.append('\t'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                default: out.append(next); break;
+            }
+        }
+        return out.toString();
+    }
+
+    private synchronized void flushJournal() {
+        if (journal == null) return;
+        try {
+            journal.flush();
+            unflushedRecords = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 全部成功时删除日志，否则保留以便继续
+    private synchronized void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+            journal = null;
+            if (!cancelled && errors.isEmpty()) {
+                Files.deleteIfExists(journalFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
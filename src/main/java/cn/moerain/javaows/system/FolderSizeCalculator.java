@@ -0,0 +1,156 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// 文件夹大小计算：ForkJoin 并行遍历，每个目录缓存其直接包含的文件的总大小、文件数和子目录列表。
+// 目录的修改时间未变时不必重新列出。追加写入或重写已有文件不改变目录修改时间，
+// 要等该目录所在的子树被 invalidate（手动刷新或监视事件丢失）后才能反映出来
+class FolderSizeCalculator {
+    private static final int MAX_CACHED_DIRECTORIES = 500000;
+
+    interface Listener {
+        // 在EDT中调用，每个目录计算完成时一次
+        void onSize(Path directory, long bytes, long files);
+    }
+
+    private static class CachedDirectory {
+        final long modified;
+        // 列出时的文件总大小和文件数，不保存文件本身
+        final long fileBytes;
+        final long fileCount;
+        final Path[] subdirectories;
+
+        CachedDirectory(long modified, long fileBytes, long fileCount, Path[] subdirectories) {
+            this.modified = modified;
+            this.fileBytes = fileBytes;
+            this.fileCount = fileCount;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private final Map<Path, CachedDirectory> cache = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // 每次计算递增，旧的计算任务发现后立即停止
+    private volatile int generation;
+
+    // EDT：计算一组目录的大小，结果按完成顺序回调；再次调用会取消上一次的计算
+    void calculate(List<Path> directories, Listener listener) {
+        int current = ++generation;
+        if (cache.size() > MAX_CACHED_DIRECTORIES) {
+            cache.clear();
+        }
+
+        for (Path directory : directories) {
+            pool.execute(() -> {
+                long[] result = new SizeTask(directory, current).invoke();
+                if (result != null && current == generation) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (current == generation) {
+                            listener.onSize(directory, result[0], result[1]);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    void cancel() {
+        generation++;
+    }
+
+    // 丢弃 directory 及其下所有目录的缓存
+    void invalidate(Path directory) {
+        cache.keySet().removeIf(path -> path.startsWith(directory));
+    }
+
+    void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+
+    // 返回 {字节数, 文件数}，已取消时返回 null
+    private class SizeTask extends RecursiveTask<long[]> {
+        private final Path directory;
+        private final int taskGeneration;
+
+        SizeTask(Path directory, int taskGeneration) {
+            this.directory = directory;
+            this.taskGeneration = taskGeneration;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (taskGeneration != generation) return null;
+
+            CachedDirectory cached = cache.get(directory);
+            try {
+                long modified = Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    .lastModifiedTime().toMillis();
+                if (cached == null || cached.modified != modified) {
+                    cached = list(modified);
+                    if (cached == null) return null;
+                    cache.put(directory, cached);
+                }
+            } catch (IOException | SecurityException e) {
+                // 无权限或已删除的目录计为 0
+                cache.remove(directory);
+                return new long[]{0, 0};
+            }
+            if (taskGeneration != generation) return null;
+
+            List<SizeTask> subtasks = new ArrayList<>(cached.subdirectories.length);
+            for (Path subdirectory : cached.subdirectories) {
+                subtasks.add(new SizeTask(subdirectory, taskGeneration));
+            }
+            invokeAll(subtasks);
+
+            long bytes = cached.fileBytes;
+            long files = cached.fileCount;
+            for (SizeTask subtask : subtasks) {
+                long[] result = subtask.join();
+                if (result == null) return null;
+                bytes += result[0];
+                files += result[1];
+            }
+            return new long[]{bytes, files};
+        }
+
+        private CachedDirectory list(long modified) throws IOException {
+            long fileBytes = 0;
+            long fileCount = 0;
+            List<Path> subdirectories = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (taskGeneration != generation) return null;
+                    try {
+                        // 不跟随符号链接，避免重复计算和循环
+                        BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isDirectory()) {
+                            subdirectories.add(child);
+                        } else {
+                            fileBytes += attrs.size();
+                            fileCount++;
+                        }
+                    } catch (IOException e) {
+                        // 遍历期间被删除的条目
+                    }
+                }
+            }
+            return new CachedDirectory(modified, fileBytes, fileCount, subdirectories.toArray(new Path[0]));
+        }
+    }
+}
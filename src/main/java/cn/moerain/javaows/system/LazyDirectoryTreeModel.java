@@ -0,0 +1,276 @@
+package cn.moerain.javaows.system;
+
+import cn.moerain.javaows.misc.NamedThreadFactory;
+import javax.swing.SwingUtilities;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// 懒加载目录树：节点展开时才列出子目录，未加载的节点只有一个“正在加载...”占位子节点。
+// 每个节点同时最多一个加载任务，折叠或导航离开时取消；兄弟节点在有界线程池中并行加载；
+// 最近列出的目录保存在 LRU 缓存中，再次展开时立即显示，再在后台按修改时间校验
+class LazyDirectoryTreeModel extends DefaultTreeModel {
+    private static final int CACHE_SIZE = 512;
+    private static final String LOADING_TEXT = "正在加载...";
+
+    // 目录节点
+    static class DirectoryTreeNode extends DefaultMutableTreeNode {
+        private final Path directory;
+        private boolean loaded;
+        private long listedModified;
+        private Future<?> loadFuture;
+        private Object loadToken;
+
+        DirectoryTreeNode(Path directory, String name) {
+            super(name);
+            this.directory = directory;
+            // 占位子节点让树显示展开手柄
+            add(new DefaultMutableTreeNode(LOADING_TEXT));
+        }
+
+        Path getDirectory() { return directory; }
+        boolean isLoaded() { return loaded; }
+        boolean isLoading() { return loadFuture != null; }
+    }
+
+    // 缓存的目录列表
+    private static class CachedListing {
+        final String[] childNames;
+        final long modified;
+
+        CachedListing(String[] childNames, long modified) {
+            this.childNames = childNames;
+            this.modified = modified;
+        }
+    }
+
+    private final ExecutorService loadPool =
+        Executors.newFixedThreadPool(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            new NamedThreadFactory("Explorer-TreeLoader"));
+
+    private final Map<Path, CachedListing> cache = Collections.synchronizedMap(
+        new LinkedHashMap<Path, CachedListing>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedListing> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    // 正在加载的节点，只在EDT中访问
+    private final Set<DirectoryTreeNode> loadingNodes = new HashSet<>();
+
+    LazyDirectoryTreeModel(DefaultMutableTreeNode root) {
+        super(root);
+    }
+
+    // 节点展开时调用（EDT）
+    void expand(DirectoryTreeNode node) {
+        if (node.isLoading()) return;
+
+        if (node.isLoaded()) {
+            // 已加载：后台校验是否有变化
+            submitLoad(node, true);
+            return;
+        }
+
+        CachedListing cached = cache.get(node.getDirectory());
+        if (cached != null) {
+            setChildren(node, cached.childNames, cached.modified);
+            submitLoad(node, true);
+        } else {
+            submitLoad(node, false);
+        }
+    }
+
+    // 节点折叠时调用（EDT）
+    void collapse(DirectoryTreeNode node) {
+        cancelLoad(node);
+    }
+
+    // 导航到新目录时，取消不在新路径上的加载任务。
+    // 返回首次加载被取消、仍只有占位节点的节点，调用方应把它们折叠，下次展开时重新加载
+    List<DirectoryTreeNode> cancelLoadsOutside(Path directory) {
+        List<DirectoryTreeNode> unloaded = new ArrayList<>();
+        for (DirectoryTreeNode node : new ArrayList<>(loadingNodes)) {
+            if (!directory.startsWith(node.getDirectory())) {
+                cancelLoad(node);
+                if (!node.isLoaded()) {
+                    unloaded.add(node);
+                }
+            }
+        }
+        return unloaded;
+    }
+
+    // 强制重新列出（例如监视事件丢失时）
+    void reload(DirectoryTreeNode node) {
+        cancelLoad(node);
+        cache.remove(node.getDirectory());
+        submitLoad(node, false);
+    }
+
+    private void cancelLoad(DirectoryTreeNode node) {
+        if (node.loadFuture != null) {
+            node.loadFuture.cancel(true);
+            node.loadFuture = null;
+            node.loadToken = null;
+            loadingNodes.remove(node);
+        }
+    }
+
+    // validateOnly 为 true 时先比较目录修改时间，未变化则不重新列出
+    private void submitLoad(DirectoryTreeNode node, boolean validateOnly) {
+        long knownModified = node.listedModified;
+        Path directory = node.getDirectory();
+
+        // 每次加载一个令牌，过期任务的结果会被丢弃
+        Object token = new Object();
+        node.loadToken = token;
+        node.loadFuture = loadPool.submit(() -> {
+            try {
+                long modified = Files.readAttributes(directory, BasicFileAttributes.class).lastModifiedTime().toMillis();
+                if (validateOnly && modified == knownModified) {
+                    SwingUtilities.invokeLater(() -> finishLoad(node, token, null, modified));
+                    return;
+                }
+
+                String[] childNames = listChildDirectories(directory);
+                if (childNames == null) return; // 已取消
+                cache.put(directory, new CachedListing(childNames, modified));
+                SwingUtilities.invokeLater(() -> finishLoad(node, token, childNames, modified));
+            } catch (IOException | RuntimeException e) {
+                // 包括遍历中途抛出的 DirectoryIteratorException；无论如何都要结束加载状态
+                SwingUtilities.invokeLater(() -> finishLoad(node, token, new String[0], 0));
+            }
+        });
+        loadingNodes.add(node);
+    }
+
+    private static String[] listChildDirectories(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        Class<? extends BasicFileAttributes> attributesType = DirectoryEntry.attributesTypeFor(directory);
+        DirectoryEntry.StatCounter statCounter = new DirectoryEntry.StatCounter();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                if (Thread.currentThread().isInterrupted()) return null;
+
+                DirectoryEntry entry = DirectoryEntry.read(child, attributesType, statCounter);
+                if (entry.isDirectory() && !entry.isHidden()) {
+                    names.add(entry.getName());
+                }
+            }
+        }
+        names.sort(String::compareToIgnoreCase);
+        return names.toArray(new String[0]);
+    }
+
+    // EDT：只接受节点当前的加载任务的结果
+    private void finishLoad(DirectoryTreeNode node, Object token, String[] childNames, long modified) {
+        if (node.loadToken != token) return;
+
+        node.loadToken = null;
+        node.loadFuture = null;
+        loadingNodes.remove(node);
+        if (childNames != null) {
+            setChildren(node, childNames, modified);
+        }
+    }
+
+    private void setChildren(DirectoryTreeNode node, String[] childNames, long modified) {
+        node.listedModified = modified;
+
+        if (!node.loaded) {
+            // 首次加载：替换占位节点
+            node.loaded = true;
+            node.removeAllChildren();
+            for (String name : childNames) {
+                node.add(new DirectoryTreeNode(node.getDirectory().resolve(name), name));
+            }
+            nodeStructureChanged(node);
+            return;
+        }
+
+        // 已加载：逐个增删，保留已展开子节点的状态
+        Set<String> wanted = new HashSet<>();
+        Collections.addAll(wanted, childNames);
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+            if (!wanted.contains(child.getUserObject())) {
+                removeChild(child);
+            }
+        }
+        for (String name : childNames) {
+            if (findChild(node, name) == null) {
+                insertChild(node, name);
+            }
+        }
+    }
+
+    // 监视到的增量变化
+    void applyChanges(DirectoryTreeNode node, DirectoryWatcher.DirectoryChange change) {
+        if (!node.loaded) return;
+
+        cache.remove(node.getDirectory());
+        for (Path removed : change.removals) {
+            DefaultMutableTreeNode child = findChild(node, removed.getFileName().toString());
+            if (child != null) {
+                removeChild(child);
+            }
+        }
+        for (DirectoryEntry entry : change.upserts) {
+            DefaultMutableTreeNode child = findChild(node, entry.getName());
+            boolean shown = entry.isDirectory() && !entry.isHidden();
+            if (child == null && shown) {
+                insertChild(node, entry.getName());
+            } else if (child != null && !shown) {
+                removeChild(child);
+            }
+        }
+    }
+
+    // 按名称有序插入
+    private void insertChild(DirectoryTreeNode parent, String name) {
+        int index = 0;
+        while (index < parent.getChildCount()
+            && ((String) ((DefaultMutableTreeNode) parent.getChildAt(index)).getUserObject()).compareToIgnoreCase(name) < 0) {
+            index++;
+        }
+        insertNodeInto(new DirectoryTreeNode(parent.getDirectory().resolve(name), name), parent, index);
+    }
+
+    private void removeChild(DefaultMutableTreeNode child) {
+        if (child instanceof DirectoryTreeNode) {
+            cancelLoad((DirectoryTreeNode) child);
+        }
+        removeNodeFromParent(child);
+    }
+
+    DirectoryTreeNode findChild(DefaultMutableTreeNode parent, String name) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            Object child = parent.getChildAt(i);
+            if (child instanceof DirectoryTreeNode && name.equals(((DirectoryTreeNode) child).getUserObject())) {
+                return (DirectoryTreeNode) child;
+            }
+        }
+        return null;
+    }
+
+    void shutdown() {
+        loadPool.shutdownNow();
+    }
+}
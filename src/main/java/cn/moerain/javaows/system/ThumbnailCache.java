@@ -0,0 +1,310 @@
+package cn.moerain.javaows.system;
+
+import cn.moerain.javaows.misc.FileTypeRegistry;
+import cn.moerain.javaows.misc.NamedThreadFactory;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 缩略图缓存：图片和视频在后台线程中解码，结果保存在两级缓存中。
+//   内存  按字节数限制大小的 LRU，只在EDT中访问
+//   磁盘  ~/.javaows/thumbnails，以 路径+修改时间+大小 的摘要为文件名，文件变化后自动失效；
+//         读取时更新文件的修改时间，总大小超出上限时按修改时间删除最久未用的文件
+// 请求队列后进先出，滚动时不再可见的请求会被丢弃
+class ThumbnailCache {
+    private static final long MAX_MEMORY_BYTES = 32L << 20;
+    private static final int MAX_FAILED_ENTRIES = 4096;
+    private static final int MAX_QUEUED_REQUESTS = 512;
+    private static final long MAX_DISK_BYTES = 64L << 20;
+    // 清理到上限的这个比例，避免每写一个文件就清理一次
+    private static final double DISK_PRUNE_RATIO = 0.75;
+    // 每写入这么多个文件检查一次磁盘缓存的大小；每次启动后的第一次写入也会检查
+    private static final int DISK_PRUNE_INTERVAL = 256;
+
+    interface Listener {
+        // 在EDT中调用
+        void thumbnailReady(Path path);
+    }
+
+    private static class Request {
+        final String key;
+        final Path path;
+        final boolean video;
+
+        Request(String key, Path path, boolean video) {
+            this.key = key;
+            this.path = path;
+            this.video = video;
+        }
+    }
+
+    private final int size;
+    private final Listener listener;
+    private final Path diskDirectory = Paths.get(System.getProperty("user.home"), ".javaows", "thumbnails");
+    private final VideoFrameGrabber videoFrameGrabber;
+
+    // 以下字段只在EDT中访问
+    private final LinkedHashMap<String, Icon> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private final Map<String, Boolean> failed = new LinkedHashMap<String, Boolean>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_FAILED_ENTRIES;
+        }
+    };
+    private final Set<String> pending = new HashSet<>();
+
+    private final LinkedBlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+    private final ExecutorService workers;
+    private final AtomicInteger diskWrites = new AtomicInteger();
+
+    ThumbnailCache(int size, Listener listener) {
+        this.size = size;
+        this.listener = listener;
+        this.videoFrameGrabber = new VideoFrameGrabber(size);
+
+        int workerCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        workers = Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("Explorer-Thumbnail", true));
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workLoop);
+        }
+    }
+
+    static boolean supports(DirectoryEntry entry) {
+        if (entry.isDirectory()) return false;
+        // 照片查看器能打开的格式都能用 ImageIO 解码
+        FileTypeRegistry.FileType type = FileTypeRegistry.lookup(entry.getName());
+        return FileTypeRegistry.IMAGE_VIEWER.equals(type.getOpener()) || type.getCategory() == FileTypeRegistry.Category.VIDEO;
+    }
+
+    // EDT：返回已缓存的缩略图；没有时加入队列并返回 null
+    Icon get(DirectoryEntry entry) {
+        String key = entry.getPath() + "|" + entry.getLastModified() + "|" + entry.getSize();
+        Icon icon = memory.get(key);
+        if (icon != null || failed.containsKey(key) || !pending.add(key)) {
+            return icon;
+        }
+
+        boolean video = FileTypeRegistry.lookup(entry.getName()).getCategory() == FileTypeRegistry.Category.VIDEO;
+        queue.offerFirst(new Request(key, entry.getPath(), video));
+        // 队列过长时丢弃最早的请求，它们早已滚出视野
+        while (queue.size() > MAX_QUEUED_REQUESTS) {
+            Request dropped = queue.pollLast();
+            if (dropped == null) break;
+            pending.remove(dropped.key);
+        }
+        return null;
+    }
+
+    // EDT：丢弃不再可见的单元格的请求
+    void retainOnly(Collection<Path> visiblePaths) {
+        Iterator<Request> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (!visiblePaths.contains(request.path)) {
+                iterator.remove();
+                pending.remove(request.key);
+            }
+        }
+    }
+
+    void shutdown() {
+        workers.shutdownNow();
+        videoFrameGrabber.release();
+    }
+
+    private void workLoop() {
+        try {
+            while (true) {
+                Request request = queue.takeFirst();
+                BufferedImage image = null;
+                try {
+                    Path diskFile = diskFile(request.key);
+                    image = readDiskCache(diskFile);
+                    if (image == null) {
+                        image = request.video ? videoFrameGrabber.grab(request.path) : decodeImage(request.path);
+                        if (image != null) {
+                            image = scale(image);
+                            writeDiskCache(diskFile, image);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // 损坏或不支持的文件显示普通图标
+                }
+
+                BufferedImage result = image;
+                SwingUtilities.invokeLater(() -> finish(request, result));
+            }
+        } catch (InterruptedException e) {
+            // 已关闭
+        }
+    }
+
+    private void finish(Request request, BufferedImage image) {
+        pending.remove(request.key);
+        if (image == null) {
+            failed.put(request.key, Boolean.TRUE);
+            return;
+        }
+
+        memory.put(request.key, new ImageIcon(image));
+        memoryBytes += (long) image.getWidth() * image.getHeight() * 4;
+        Iterator<Map.Entry<String, Icon>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()) {
+            Icon evicted = iterator.next().getValue();
+            memoryBytes -= (long) evicted.getIconWidth() * evicted.getIconHeight() * 4;
+            iterator.remove();
+        }
+        listener.thumbnailReady(request.path);
+    }
+
+    // 按缩略图尺寸隔行采样读取，大照片无需完整解码
+    private BufferedImage decodeImage(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // 保留两倍尺寸再缩放，避免采样产生的锯齿
+                int subsampling = Math.max(1, longSide / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    // ---- 磁盘缓存 ----
+
+    private Path diskFile(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return diskDirectory.resolve(name.append(".png").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BufferedImage readDiskCache(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            BufferedImage image = ImageIO.read(file.toFile());
+            // 修改时间记录最近一次使用，清理时保留常用的缩略图
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return image;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDiskCache(Path file, BufferedImage image) {
+        try {
+            Files.createDirectories(diskDirectory);
+            Path tempFile = Files.createTempFile(diskDirectory, "thumb", ".tmp");
+            ImageIO.write(image, "png", tempFile.toFile());
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // 磁盘缓存写入失败不影响显示
+        }
+        if (diskWrites.getAndIncrement() % DISK_PRUNE_INTERVAL == 0) {
+            pruneDiskCache();
+        }
+    }
+
+    // 总大小超过上限时从最久未用的文件开始删除；多个工作线程同时清理也无妨
+    private void pruneDiskCache() {
+        List<Path> files = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDirectory)) {
+            for (Path file : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile()) continue;
+                    files.add(file);
+                    attributes.put(file, attrs);
+                    total += attrs.size();
+                } catch (IOException e) {
+                    // 已被其他线程删除
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            return;
+        }
+        if (total <= MAX_DISK_BYTES) return;
+
+        files.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+        long target = (long) (MAX_DISK_BYTES * DISK_PRUNE_RATIO);
+        for (Path file : files) {
+            if (total <= target) break;
+            try {
+                Files.deleteIfExists(file);
+                total -= attributes.get(file).size();
+            } catch (IOException e) {
+                // 正在被写入或读取，下次再删
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cn.moerain.javaows.system;
+
+import javax.swing.*;
+import java.awt.*;
+
+// 复制/移动进度窗口：定时读取引擎的计数器，不在EDT中做任何文件操作
+class TransferProgressDialog extends JDialog {
+    private static final int REFRESH_MILLIS = 250;
+    // 速度的指数平滑系数
+    private static final double SMOOTHING = 0.3;
+
+    private final FileTransferEngine engine;
+    private final JProgressBar progressBar = new JProgressBar(0, 1000);
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JLabel speedLabel = new JLabel(" ");
+    private final JLabel etaLabel = new JLabel(" ");
+    private final JButton cancelButton = new JButton("取消");
+    private final Timer refreshTimer;
+
+    private long lastSampleNanos;
+    private long lastBytes;
+    private long lastFiles;
+    private double bytesPerSecond = -1;
+    private double filesPerSecond = -1;
+
+    TransferProgressDialog(Frame owner, FileTransferEngine engine) {
+        super(owner, engine.isMove() ? "正在移动" : "正在复制", false);
+        this.engine = engine;
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        progressBar.setStringPainted(true);
+        progressBar.setIndeterminate(true);
+        panel.add(summaryLabel);
+        panel.add(progressBar);
+        panel.add(speedLabel);
+        panel.add(etaLabel);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        cancelButton.addActionListener(e -> {
+            engine.cancel();
+            cancelButton.setEnabled(false);
+            summaryLabel.setText("正在取消...");
+        });
+        buttonPanel.add(cancelButton);
+
+        setLayout(new BorderLayout());
+        add(panel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        setSize(420, 200);
+        setLocationRelativeTo(owner);
+
+        lastSampleNanos = System.nanoTime();
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        if (engine.isFinished()) {
+            refreshTimer.stop();
+            dispose();
+            return;
+        }
+
+        long totalBytes = engine.getTotalBytes();
+        long copiedBytes = engine.getCopiedBytes();
+        long totalFiles = engine.getTotalFiles();
+        long copiedFiles = engine.getCopiedFiles();
+
+        if (engine.isPlanning()) {
+            summaryLabel.setText(String.format("正在统计... %d 个文件, %s", totalFiles, DirectoryEntry.formatFileSize(totalBytes)));
+            return;
+        }
+        if (engine.isCancelled()) return;
+
+        progressBar.setIndeterminate(false);
+        int progress = totalBytes > 0 ? (int) (copiedBytes * 1000 / totalBytes) : 1000;
+        progressBar.setValue(progress);
+        progressBar.setString(String.format("%.1f%%", progress / 10.0));
+        summaryLabel.setText(String.format("%d / %d 个文件, %s / %s",
+            copiedFiles, totalFiles, DirectoryEntry.formatFileSize(copiedBytes), DirectoryEntry.formatFileSize(totalBytes)));
+
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        if (seconds > 0) {
+            double instantBytes = (copiedBytes - lastBytes) / seconds;
+            double instantFiles = (copiedFiles - lastFiles) / seconds;
+            bytesPerSecond = bytesPerSecond < 0 ? instantBytes : bytesPerSecond + SMOOTHING * (instantBytes - bytesPerSecond);
+            filesPerSecond = filesPerSecond < 0 ? instantFiles : filesPerSecond + SMOOTHING * (instantFiles - filesPerSecond);
+        }
+        lastSampleNanos = now;
+        lastBytes = copiedBytes;
+        lastFiles = copiedFiles;
+
+        speedLabel.setText(String.format("速度: %.1f MB/s, %.0f 个文件/秒", bytesPerSecond / (1024 * 1024), filesPerSecond));
+        if (bytesPerSecond > 1) {
+            long remaining = (long) ((totalBytes - copiedBytes) / bytesPerSecond);
+            etaLabel.setText(String.format("剩余时间: %d:%02d:%02d", remaining / 3600, (remaining / 60) % 60, remaining % 60));
+        } else {
+            etaLabel.setText("剩余时间: 正在计算...");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cn.moerain.javaows.system;
+
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormat;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormatCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.RenderCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.format.RV32BufferFormat;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// 用 vlcj 截取视频帧：视频直接解码到内存回调，由 VLC 缩放到缩略图大小，不需要窗口
+class VideoFrameGrabber {
+    // 跳过开头的若干帧，避免截到黑屏
+    private static final int SKIP_FRAMES = 15;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final int maxSize;
+    private MediaPlayerFactory factory;
+    // 未安装 VLC 时不再尝试
+    private boolean unavailable;
+
+    VideoFrameGrabber(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // 同一时间只解码一个视频，返回 null 表示无法截取
+    synchronized BufferedImage grab(Path file) {
+        if (unavailable) return null;
+
+        try {
+            if (factory == null) {
+                factory = new MediaPlayerFactory("--no-audio", "--quiet");
+            }
+        } catch (Throwable e) {
+            unavailable = true;
+            return null;
+        }
+
+        FrameCapture capture = new FrameCapture();
+        EmbeddedMediaPlayer mediaPlayer = factory.mediaPlayers().newEmbeddedMediaPlayer();
+        try {
+            mediaPlayer.videoSurface().set(factory.videoSurfaces().newVideoSurface(capture, capture, true));
+            mediaPlayer.events().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+                @Override
+                public void finished(MediaPlayer mediaPlayer) {
+                    capture.done.countDown();
+                }
+
+                @Override
+                public void error(MediaPlayer mediaPlayer) {
+                    capture.done.countDown();
+                }
+            });
+
+            if (!mediaPlayer.media().play(file.toString(), ":no-audio")) return null;
+            capture.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return capture.image;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            mediaPlayer.controls().stop();
+            mediaPlayer.release();
+        }
+    }
+
+    synchronized void release() {
+        if (factory != null) {
+            factory.release();
+            factory = null;
+        }
+    }
+
+    private class FrameCapture implements BufferFormatCallback, RenderCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile BufferedImage image;
+        private int frames;
+
+        @Override
+        public BufferFormat getBufferFormat(int sourceWidth, int sourceHeight) {
+            double scale = Math.min(1.0, (double) maxSize / Math.max(sourceWidth, sourceHeight));
+            int width = Math.max(1, (int) Math.round(sourceWidth * scale));
+            int height = Math.max(1, (int) Math.round(sourceHeight * scale));
+            return new RV32BufferFormat(width, height);
+        }
+
+        @Override
+        public void allocatedBuffers(ByteBuffer[] buffers) {
+        }
+
+        @Override
+        public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat) {
+            if (done.getCount() == 0) return;
+
+            // 缩略图尺寸很小，每帧都保留一份，短视频播放结束时也有结果
+            int width = bufferFormat.getWidth();
+            int height = bufferFormat.getHeight();
+            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            ByteBuffer buffer = nativeBuffers[0];
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                buffer.position(y * width * 4);
+                for (int x = 0; x < width; x++) {
+                    // RV32 为小端 BGRA
+                    int b = buffer.get() & 0xFF;
+                    int g = buffer.get() & 0xFF;
+                    int r = buffer.get() & 0xFF;
+                    buffer.get();
+                    row[x] = (r << 16) | (g << 8) | b;
+                }
+                frame.setRGB(0, y, width, 1, row, 0, width);
+            }
+            buffer.position(0);
+            image = frame;
+
+            if (++frames >= SKIP_FRAMES) {
+                done.countDown();
+            }
+        }
+    }
+}
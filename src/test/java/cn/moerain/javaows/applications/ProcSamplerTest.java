@@ -0,0 +1,98 @@
+package cn.moerain.javaows.applications;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProcSamplerTest {
+    private static final int TICKS = 20;
+
+    @BeforeAll
+    static void requireProc() {
+        assumeTrue(ProcSampler.isSupported(), "需要 Linux /proc");
+    }
+
+    @Test
+    void sampleContainsCurrentProcess() throws IOException {
+        ProcSampler sampler = new ProcSampler();
+        sampler.sample();
+        ProcessInfo self = find(sampler.sample(), ProcessHandle.current().pid());
+
+        assertNotNull(self);
+        assertEquals(ProcessHandle.current().parent().map(ProcessHandle::pid).orElse(-1L).longValue(), self.parentPid);
+        assertTrue(self.residentBytes > 0);
+        assertTrue(self.cpuPercent >= 0 && self.cpuPercent <= 100, "CPU% = " + self.cpuPercent);
+    }
+
+    // 与原来的 ps 路径比较每次采样在本线程的分配量；耗时受机器负载影响，不在单元测试中比较
+    @Test
+    void sampleIsCheaperThanForkingPs() throws Exception {
+        assumeTrue(new File("/bin/ps").canExecute() || new File("/usr/bin/ps").canExecute(), "需要 ps 命令");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        ProcSampler sampler = new ProcSampler();
+        sampler.sample();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            sampler.sample();
+        }
+        long procBytes = (threads.getCurrentThreadAllocatedBytes() - before) / TICKS;
+
+        samplePs();
+        before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            samplePs();
+        }
+        long psBytes = (threads.getCurrentThreadAllocatedBytes() - before) / TICKS;
+
+        assertTrue(procBytes < psBytes, "/proc 采样分配了 " + procBytes + " 字节，ps 为 " + psBytes + " 字节");
+    }
+
+    private static ProcessInfo find(List<ProcessInfo> processes, long pid) {
+        for (ProcessInfo info : processes) {
+            if (info.pid.equals(Long.toString(pid))) return info;
+        }
+        return null;
+    }
+
+    // 替换前 TaskMgr 使用的 ps 路径：启动 ps，按空白拆分每一行
+    private static List<ProcessInfo> samplePs() throws IOException, InterruptedException {
+        File output = File.createTempFile("taskmgr", ".txt");
+        try {
+            Process process = new ProcessBuilder("ps", "-eo", "pid,ppid,user,comm,pmem,pcpu,stat")
+                .redirectOutput(output)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+
+            List<ProcessInfo> result = new ArrayList<>();
+            String[] lines = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8).split("\\R");
+            for (int i = 1; i < lines.length; i++) {
+                String[] parts = lines[i].trim().split("\\s+");
+                if (parts.length >= 7) {
+                    ProcessInfo info = new ProcessInfo(parts[3], parts[0], "Console", "0",
+                        parts[4] + "%", parts[5], parts[6], parts[2]);
+                    info.cpuPercent = Double.parseDouble(parts[5]);
+                    info.parentPid = Integer.parseInt(parts[1]);
+                    result.add(info);
+                }
+            }
+            return result;
+        } finally {
+            output.delete();
+        }
+    }
+}
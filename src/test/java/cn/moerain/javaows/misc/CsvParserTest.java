@@ -0,0 +1,202 @@
+package cn.moerain.javaows.misc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvParserTest {
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = Files.createTempFile("csv-parser-test", ".csv");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void quotedFieldsSpanningChunkBoundaries() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            csv.append(i).append(",\"多行\n文本 ").append(i).append(", 含逗号\",\"引号\"\"").append(i).append("\"\"\"\n");
+        }
+        assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 7, 16);
+        assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 64, 4);
+    }
+
+    // 未加引号字段中的引号会让按奇偶性找到的块起点落在记录中间，这一块要从实际边界重新解析
+    @Test
+    void strayQuoteInUnquotedField() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            csv.append("row").append(i).append(i % 7 == 0 ? ",5\"3 inch," : ",plain,").append("\"q,\n").append(i).append("\"\n");
+        }
+        assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 32, 8);
+        assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 100, 3);
+    }
+
+    // 一条记录比初始窗口长很多时，窗口需要反复扩大
+    @Test
+    void recordsLongerThanWindow() throws IOException {
+        char[] longText = new char[5000];
+        Arrays.fill(longText, 'x');
+        String csv = "a,b\n\"" + new String(longText) + "\",c\n" + new String(longText) + ",d\n" + "e,f\n";
+        assertParsesLikeReference(csv, StandardCharsets.UTF_8, 16, 2);
+        assertParsesLikeReference(csv, StandardCharsets.UTF_8, 1 << 20, 2);
+    }
+
+    @Test
+    void lineBreaksAtWindowEdges() throws IOException {
+        String[] breaks = {"\n", "\r\n", "\r"};
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            csv.append("f").append(i).append(',').append(i * 7).append(breaks[i % breaks.length]);
+        }
+        // 不同的块和窗口大小让 \r 和 \n 分别落在窗口两侧
+        for (int slack = 1; slack <= 8; slack++) {
+            assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 13 + slack, slack);
+        }
+    }
+
+    @Test
+    void randomDocumentsMatchReference() throws IOException {
+        Random random = new Random(7);
+        String[] pieces = {"a", "bc", "中文", ",", ",", "\"", "\"\"", "\n", "\r\n", "\r", " ", "12", "x\"y"};
+        for (int round = 0; round < 200; round++) {
+            StringBuilder csv = new StringBuilder();
+            int length = 20 + random.nextInt(400);
+            for (int i = 0; i < length; i++) {
+                csv.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertParsesLikeReference(csv.toString(), StandardCharsets.UTF_8, 1 + random.nextInt(40), 1 + random.nextInt(16));
+        }
+    }
+
+    @Test
+    void byteOrderMarkIsSkipped() throws IOException {
+        byte[] body = "名称,数量\n苹果,3\n".getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[body.length + 3];
+        data[0] = (byte) 0xEF;
+        data[1] = (byte) 0xBB;
+        data[2] = (byte) 0xBF;
+        System.arraycopy(body, 0, data, 3, body.length);
+
+        CsvParser.Block block = new CsvParser(false).parse(data);
+        assertEquals("名称", block.getText(0, 0));
+        assertEquals("3", block.getText(1, 1));
+
+        Files.write(file, data);
+        assertEquals(reference("名称,数量\n苹果,3\n"), parseFile(new CsvParser(false, 4, 2)));
+    }
+
+    @Test
+    void gbkIsDetected() throws IOException {
+        String csv = "城市,人口\n北京,2189\n上海,2487\n";
+        byte[] gbk = csv.getBytes(GBK);
+        assertEquals(GBK, CsvParser.detectCharset(gbk, 0, gbk.length));
+        assertEquals(StandardCharsets.UTF_8, CsvParser.detectCharset(csv.getBytes(StandardCharsets.UTF_8), 0, gbk.length));
+        assertParsesLikeReference(csv, GBK, 5, 3);
+    }
+
+    @Test
+    void typedFields() {
+        CsvParser.Block block = new CsvParser(true).parse("12.5,007,2024-02-29,2023-02-29,x\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(CsvParser.NUMBER, block.getType(0, 0));
+        assertEquals(12.5, block.getNumber(0, 0));
+        assertEquals(CsvParser.TEXT, block.getType(0, 1));
+        assertEquals(CsvParser.DATE, block.getType(0, 2));
+        assertEquals(CsvParser.TEXT, block.getType(0, 3));
+        assertEquals(CsvParser.TEXT, block.getType(0, 4));
+    }
+
+    private void assertParsesLikeReference(String csv, Charset charset, int chunkBytes, int windowSlack) throws IOException {
+        Files.write(file, csv.getBytes(charset));
+        assertEquals(reference(csv), parseFile(new CsvParser(false, chunkBytes, windowSlack)),
+            "块 " + chunkBytes + " 字节，窗口余量 " + windowSlack + " 字节：" + csv);
+    }
+
+    private List<List<String>> parseFile(CsvParser parser) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        parser.parse(file, block -> {
+            for (int r = 0; r < block.getRowCount(); r++) {
+                List<String> row = new ArrayList<>();
+                for (int c = 0; c < block.getColumnCount(); c++) {
+                    row.add(block.getText(r, c));
+                }
+                rows.add(trim(row));
+            }
+        });
+        return rows;
+    }
+
+    // 逐字符的参考实现：引号开头的字段到配对的引号结束，两个引号表示一个引号，
+    // 其后到分隔符前的内容原样追加；其他位置的引号是普通字符。\n、\r\n 和单独的 \r 都结束一条记录
+    private static List<List<String>> reference(String csv) {
+        List<List<String>> rows = new ArrayList<>();
+        int i = 0;
+        int n = csv.length();
+        while (i < n) {
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean endOfRecord = false;
+            while (!endOfRecord) {
+                if (i < n && csv.charAt(i) == '"') {
+                    i++;
+                    while (i < n) {
+                        char c = csv.charAt(i);
+                        if (c == '"') {
+                            if (i + 1 < n && csv.charAt(i + 1) == '"') {
+                                field.append('"');
+                                i += 2;
+                                continue;
+                            }
+                            i++;
+                            break;
+                        }
+                        field.append(c);
+                        i++;
+                    }
+                }
+                while (i < n && csv.charAt(i) != ',' && csv.charAt(i) != '\n' && csv.charAt(i) != '\r') {
+                    field.append(csv.charAt(i++));
+                }
+                row.add(field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                if (i >= n) {
+                    endOfRecord = true;
+                } else if (csv.charAt(i) == ',') {
+                    i++;
+                } else {
+                    i += csv.startsWith("\r\n", i) ? 2 : 1;
+                    endOfRecord = true;
+                }
+            }
+            rows.add(trim(row));
+        }
+        return rows;
+    }
+
+    // 块只记录非空字段，行尾的空字段不影响比较
+    private static List<String> trim(List<String> row) {
+        int end = row.size();
+        while (end > 0 && row.get(end - 1) == null) end--;
+        return new ArrayList<>(row.subList(0, end));
+    }
+}
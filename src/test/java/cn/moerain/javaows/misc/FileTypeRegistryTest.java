@@ -0,0 +1,76 @@
+package cn.moerain.javaows.misc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileTypeRegistryTest {
+
+    @Test
+    void lookupIgnoresCaseAndPath() {
+        assertSame(FileTypeRegistry.forExtension("png"), FileTypeRegistry.lookup("photo.PNG"));
+        assertSame(FileTypeRegistry.forExtension("gz"), FileTypeRegistry.lookup("C:\\backup\\data.tar.gz"));
+        assertEquals(FileTypeRegistry.Category.IMAGE, FileTypeRegistry.lookup("/tmp/a.b/photo.jpeg").getCategory());
+    }
+
+    @Test
+    void namesWithoutExtensionAreUnknown() {
+        assertSame(FileTypeRegistry.UNKNOWN, FileTypeRegistry.lookup("Makefile"));
+        assertSame(FileTypeRegistry.UNKNOWN, FileTypeRegistry.lookup(".png"));
+        assertSame(FileTypeRegistry.UNKNOWN, FileTypeRegistry.lookup("dir.png/file"));
+        assertSame(FileTypeRegistry.UNKNOWN, FileTypeRegistry.lookup("name."));
+    }
+
+    // 注册表是全局的，测试结束时删除测试用的类型
+    @Test
+    void registeredTypesAreVisibleImmediately() {
+        FileTypeRegistry.FileType type = new FileTypeRegistry.FileType(
+            FileTypeRegistry.Category.TEXT, "测试文件", FileTypeRegistry.NOTEPAD, "jowstest");
+        try {
+            FileTypeRegistry.register(type);
+            assertSame(type, FileTypeRegistry.lookup("a.JOWSTEST"));
+            assertTrue(FileTypeRegistry.opensWith("a.jowstest", FileTypeRegistry.NOTEPAD));
+
+            // 重复注册不产生新的条目
+            int registered = FileTypeRegistry.all().size();
+            FileTypeRegistry.register(type);
+            assertEquals(registered, FileTypeRegistry.all().size());
+        } finally {
+            FileTypeRegistry.unregister(type);
+        }
+        assertSame(FileTypeRegistry.UNKNOWN, FileTypeRegistry.lookup("a.jowstest"));
+    }
+
+    // 替代 JMH 的分配测量：预热后同一线程内查找一百万次，线程分配的字节数应为 0
+    @Test
+    void lookupDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String[] names = {"photo.JPG", "song.flac", "movie.mkv", "notes.txt", "archive.tar.gz", "Makefile", "a.unknown"};
+
+        int hits = 0;
+        for (int i = 0; i < 200_000; i++) {
+            hits += lookupAll(names);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            hits += lookupAll(names);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(0, hits % 5, "每轮应命中 5 个已注册的后缀");
+        assertEquals(0, allocated, "查找期间分配了 " + allocated + " 字节");
+    }
+
+    private static int lookupAll(String[] names) {
+        int hits = 0;
+        for (String name : names) {
+            if (FileTypeRegistry.lookup(name) != FileTypeRegistry.UNKNOWN) hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,153 @@
+package cn.moerain.javaows.office;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FormulaEngineTest {
+
+    @Test
+    void cyclesShowCircularError() {
+        SheetModel model = new SheetModel(4, 3);
+        model.put(0, 0, "=A1+1");
+        model.put(0, 1, "=C1");
+        model.put(0, 2, "=B1*2");
+        // 依赖循环引用的公式同样无法计算
+        model.put(1, 1, "=B1+1");
+        model.put(2, 1, "=SUM(A2:A4)");
+        model.recalculate();
+        assertEquals("#CIRC!", model.getDisplayText(0, 0));
+        assertEquals("#CIRC!", model.getDisplayText(0, 1));
+        assertEquals("#CIRC!", model.getDisplayText(0, 2));
+        assertEquals("#CIRC!", model.getDisplayText(1, 1));
+        assertEquals("0", model.getDisplayText(2, 1));
+
+        // 打破循环后重新计算
+        model.setValueAt("7", 0, 2);
+        assertEquals("7", model.getDisplayText(0, 1));
+        assertEquals("8", model.getDisplayText(1, 1));
+        assertEquals("#CIRC!", model.getDisplayText(0, 0));
+    }
+
+    @Test
+    void vlookupExactAndApproximate() {
+        SheetModel model = new SheetModel(200, 4);
+        for (int row = 0; row < 200; row++) {
+            model.setText(row, 0, "k" + row);
+            model.setNumber(row, 1, row * 10);
+        }
+        // 精确查找不区分大小写，区域超过 64 行时走索引
+        model.put(0, 2, "=VLOOKUP(\"K150\",A:B,2,FALSE)");
+        model.put(1, 2, "=VLOOKUP(\"k3\",A1:B10,2,FALSE)");
+        model.put(2, 2, "=VLOOKUP(\"zz\",A1:B200,2,FALSE)");
+        model.put(3, 2, "=VLOOKUP(\"k1\",A1:B200,3,FALSE)");
+        // 近似查找返回不大于查找值的最后一行
+        model.put(4, 2, "=VLOOKUP(55,B1:B200,1)");
+        model.put(5, 2, "=VLOOKUP(1990,B1:B200,1,TRUE)");
+        model.put(6, 2, "=VLOOKUP(5000,B1:B200,1)");
+        model.put(7, 2, "=VLOOKUP(-1,B1:B200,1)");
+        model.recalculate();
+        assertEquals("1500", model.getDisplayText(0, 2));
+        assertEquals("30", model.getDisplayText(1, 2));
+        assertEquals("#N/A", model.getDisplayText(2, 2));
+        assertEquals("#REF!", model.getDisplayText(3, 2));
+        assertEquals("50", model.getDisplayText(4, 2));
+        assertEquals("1990", model.getDisplayText(5, 2));
+        assertEquals("1990", model.getDisplayText(6, 2));
+        assertEquals("#N/A", model.getDisplayText(7, 2));
+
+        // 查找区域中的值变化后结果随之更新
+        model.setValueAt("changed", 150, 0);
+        assertEquals("#N/A", model.getDisplayText(0, 2));
+        model.setValueAt("k150", 20, 0);
+        assertEquals("200", model.getDisplayText(0, 2));
+    }
+
+    // 跨越的列在公式加入时还不存在，增加列之后也要能找到依赖
+    @Test
+    void wideRangeSeesColumnsAddedLater() {
+        SheetModel model = new SheetModel(2, 2);
+        model.put(0, 0, "=SUM(B2:D2)");
+        model.recalculate();
+        model.setSize(2, 4);
+        model.setNumber(1, 3, 5);
+        model.recalculate();
+        assertEquals("5", model.getDisplayText(0, 0));
+    }
+
+    // 随机修改后增量重算的结果应与新建表格全部重算的结果一致
+    @Test
+    void incrementalRecalculationMatchesFullRecalculation() {
+        Random random = new Random(11);
+        int rows = 300;
+        int columns = 6;
+        SheetModel model = new SheetModel(rows, columns);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                model.put(row, column, randomCell(random, row, column));
+            }
+        }
+        model.recalculate();
+        assertSameAsFullRecalculation(model);
+
+        for (int edit = 0; edit < 400; edit++) {
+            int row = random.nextInt(rows);
+            int column = random.nextInt(columns);
+            model.setValueAt(randomCell(random, row, column), row, column);
+            if (edit % 20 == 0) {
+                assertSameAsFullRecalculation(model);
+            }
+        }
+        assertSameAsFullRecalculation(model);
+    }
+
+    // 只引用上面的行（第一行只引用左边的列），不会出现循环引用
+    private static String randomCell(Random random, int row, int column) {
+        int kind = random.nextInt(8);
+        if (kind < 3 || (row == 0 && column == 0)) {
+            return kind == 0 ? "" : String.valueOf(random.nextInt(100));
+        }
+        if (row == 0) {
+            return "=" + cellName(0, random.nextInt(column)) + "*2";
+        }
+        String above = cellName(random.nextInt(row), random.nextInt(column + 1));
+        int first = random.nextInt(row);
+        int last = first + random.nextInt(row - first);
+        int lastColumn = column > 0 ? random.nextInt(column + 1) : 0;
+        String range = cellName(first, 0) + ":" + cellName(last, lastColumn);
+        switch (kind) {
+            case 3:
+                return "=" + above + "+1";
+            case 4:
+                return "=SUM(" + range + ")";
+            case 5:
+                return "=IF(" + above + ">50,SUM(" + range + "),-" + above + ")";
+            case 6:
+                return "=COUNT(" + range + ")*" + above;
+            default:
+                return "=MAX(" + range + ")-MIN(" + range + ")";
+        }
+    }
+
+    private static String cellName(int row, int column) {
+        return (char) ('A' + column) + String.valueOf(row + 1);
+    }
+
+    private static void assertSameAsFullRecalculation(SheetModel model) {
+        SheetModel fresh = new SheetModel(model.getRowCount(), model.getColumnCount());
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                fresh.put(row, column, model.getEditText(row, column));
+            }
+        }
+        fresh.recalculate();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                assertEquals(fresh.getDisplayText(row, column), model.getDisplayText(row, column),
+                    cellName(row, column) + " = " + model.getEditText(row, column));
+            }
+        }
+    }
+}
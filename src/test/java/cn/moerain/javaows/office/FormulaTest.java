@@ -0,0 +1,100 @@
+package cn.moerain.javaows.office;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FormulaTest {
+
+    @Test
+    void operatorPrecedence() {
+        assertEquals("7", evaluate("1+2*3"));
+        assertEquals("9", evaluate("(1+2)*3"));
+        assertEquals("5", evaluate("10-2-3"));
+        assertEquals("2", evaluate("8/2/2"));
+        // 负号先于乘方，百分号先于乘除
+        assertEquals("4", evaluate("-2^2"));
+        assertEquals("-4", evaluate("0-2^2"));
+        assertEquals("0.09", evaluate("(1+2)*3%"));
+        // 连接低于加减，比较最低
+        assertEquals("33", evaluate("1+2&3"));
+        assertEquals("TRUE", evaluate("1+2>2"));
+        assertEquals("FALSE", evaluate("2*3<=5"));
+    }
+
+    @Test
+    void printsNormalizedSource() throws ParseException {
+        for (String source : new String[] {"SUM(A1:B3)+$C$4*2", "IF(A1>=3,\"big\",\"small\")", "VLOOKUP(D1,A:B,2,FALSE)",
+                "-2^2", "(1+2)*3%", "A1&\"x\"\"y\"", "A$1+$B2"}) {
+            assertEquals(source, Formula.parse(source).toString());
+        }
+        assertEquals("SUM(A1:B2)", Formula.parse("sum(a1:b2)").toString());
+    }
+
+    @Test
+    void rejectsMalformedSource() {
+        for (String source : new String[] {"1+", "(1", "SUM(A1", "A1:", "\"open"}) {
+            assertThrows(ParseException.class, () -> Formula.parse(source), source);
+        }
+    }
+
+    // 插入行时插入处及之后的引用下移，绝对引用同样调整；插入在区域中间时区域变大
+    @Test
+    void insertingRowsShiftsReferences() throws ParseException {
+        assertEquals("A1+A5+$B$6", shiftRows("A1+A3+$B$4", 2, 2));
+        assertEquals("SUM(A1:A7)", shiftRows("SUM(A1:A5)", 2, 2));
+        assertEquals("SUM(A4:A8)", shiftRows("SUM(A2:A6)", 0, 2));
+        assertEquals("SUM(A:A)", shiftRows("SUM(A:A)", 0, 2));
+        assertEquals("C1+E2", Formula.parse("B1+D2").shiftColumns(1, 1).toString());
+    }
+
+    // 删除行时被删除的单个引用变为 #REF!，区域缩小，整个区域被删除时也变为 #REF!
+    @Test
+    void deletingRowsShiftsReferences() throws ParseException {
+        assertEquals("A1+#REF!+A3", shiftRows("A1+A3+A5", 1, -2));
+        assertEquals("SUM(A1:A3)", shiftRows("SUM(A1:A5)", 1, -2));
+        assertEquals("SUM(A2:A5)", shiftRows("SUM(A3:A6)", 0, -1));
+        assertEquals("SUM(A2:A2)", shiftRows("SUM(A2:A4)", 2, -3));
+        assertEquals("SUM(#REF!)", shiftRows("SUM(A2:A3)", 1, -2));
+        assertEquals("#REF!*2", Formula.parse("B1*2").shiftColumns(1, -1).toString());
+    }
+
+    // 表格中的插入、删除会调整公式并重算
+    @Test
+    void sheetStructureChangesUpdateFormulas() {
+        SheetModel model = new SheetModel(5, 2);
+        for (int row = 0; row < 3; row++) {
+            model.put(row, 0, String.valueOf(row + 1));
+        }
+        model.put(3, 0, "=SUM(A1:A3)");
+        model.put(4, 0, "=A4*2");
+        model.recalculate();
+        assertEquals("12", model.getDisplayText(4, 0));
+
+        model.insertRows(1, 1);
+        model.put(1, 0, "10");
+        model.recalculate();
+        assertEquals("SUM(A1:A4)", model.getFormula(4, 0));
+        assertEquals("A5*2", model.getFormula(5, 0));
+        assertEquals("32", model.getDisplayText(5, 0));
+
+        model.removeRows(0, 2);
+        assertEquals("SUM(A1:A2)", model.getFormula(2, 0));
+        assertEquals("5", model.getDisplayText(2, 0));
+        assertEquals("10", model.getDisplayText(3, 0));
+    }
+
+    private static String shiftRows(String source, int at, int count) throws ParseException {
+        return Formula.parse(source).shiftRows(at, count).toString();
+    }
+
+    private static String evaluate(String source) {
+        SheetModel model = new SheetModel(1, 1);
+        model.put(0, 0, "=" + source);
+        model.recalculate();
+        return model.getDisplayText(0, 0);
+    }
+}
@@ -0,0 +1,102 @@
+package cn.moerain.javaows.office;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SheetModelTest {
+    private static final String[] CITIES = {"北京", "上海", "广州", "深圳", "杭州", "成都", "武汉", "南京"};
+
+    @Test
+    void formatNumberAvoidsExponentAndBinaryNoise() {
+        assertEquals("0.0001", SheetModel.formatNumber(1e-4));
+        assertEquals("0.3", SheetModel.formatNumber(0.1 + 0.2));
+        assertEquals("-0.00000025", SheetModel.formatNumber(-2.5e-7));
+        assertEquals("1.5", SheetModel.formatNumber(1.5));
+        assertEquals("123", SheetModel.formatNumber(123.0));
+        assertEquals("0", SheetModel.formatNumber(-0.0));
+        assertEquals("100000000000000000000", SheetModel.formatNumber(1e20));
+        assertEquals("123456789.123456", SheetModel.formatNumber(123456789.123456));
+    }
+
+    // 读入的数字最多 15 位有效数字，保存时写出的文本应与原来的数值相等
+    @Test
+    void numbersSurviveSaveAndReload() {
+        Random random = new Random(42);
+        SheetModel model = new SheetModel(1, 1);
+        for (int i = 0; i < 100_000; i++) {
+            int digits = 1 + random.nextInt(15);
+            StringBuilder text = new StringBuilder();
+            if (random.nextBoolean()) text.append('-');
+            int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point && d > 0) text.append('.');
+                text.append(d == 0 && point != 1 ? (char) ('1' + random.nextInt(9)) : (char) ('0' + random.nextInt(10)));
+            }
+            if (point == 0 && random.nextBoolean()) text.insert(text.charAt(0) == '-' ? 1 : 0, "0.000");
+
+            model.put(0, 0, text.toString());
+            if (model.getCellType(0, 0) != SheetModel.NUMBER) continue;
+            String saved = (String) model.getValueAt(0, 0);
+            assertEquals(Double.parseDouble(text.toString()), Double.parseDouble(saved), 0, text + " 保存为 " + saved);
+            model.put(0, 0, saved);
+            assertEquals(saved, model.getValueAt(0, 0));
+        }
+    }
+
+    // 每列按类型存储：数字和日期每格 8 字节加位图，文本每格 4 字节的字典编号，不会退化为每格类型字节加 long 的混合块。
+    // 原来的 DefaultTableModel 每格至少一个引用加一个 String 对象（对象头和字节数组，共 40 字节以上）
+    @Test
+    void typedColumnsStoreCellsCompactly() {
+        int rows = 100_000;
+        int columns = 20;
+        String[][] data = generate(rows, columns);
+
+        SheetModel model = new SheetModel(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                model.put(r, c, data[r][c]);
+            }
+        }
+        assertEquals(data[rows - 1][columns - 1], model.getValueAt(rows - 1, columns - 1));
+
+        long chunkRows = (long) (rows + SheetModel.CHUNK_SIZE - 1) / SheetModel.CHUNK_SIZE * SheetModel.CHUNK_SIZE;
+        long numberColumnBytes = chunkRows * 8 + chunkRows / 8;
+        long textColumnBytes = chunkRows * 4;
+        long expected = 0;
+        for (int c = 0; c < columns; c++) {
+            expected += c % 4 == 2 ? textColumnBytes : numberColumnBytes;
+            assertEquals(c % 4 == 2 ? CITIES.length : 0, model.getDictionarySize(c), "第 " + c + " 列的文本字典");
+        }
+        assertEquals(expected, model.getCellArrayBytes());
+        assertTrue(model.getCellArrayBytes() * 5 < (long) rows * columns * 40);
+    }
+
+    // 整数、两位小数、城市名、日期交替的列
+    private static String[][] generate(int rows, int columns) {
+        Random random = new Random(1);
+        String[][] data = new String[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                switch (c % 4) {
+                    case 0:
+                        data[r][c] = Integer.toString(random.nextInt(1_000_000));
+                        break;
+                    case 1:
+                        data[r][c] = random.nextInt(100_000) + "." + (10 + random.nextInt(90));
+                        break;
+                    case 2:
+                        data[r][c] = CITIES[random.nextInt(CITIES.length)];
+                        break;
+                    default:
+                        data[r][c] = String.format("20%02d-%02d-%02d", 10 + random.nextInt(15), 1 + random.nextInt(12), 1 + random.nextInt(28));
+                        break;
+                }
+            }
+        }
+        return data;
+    }
+}